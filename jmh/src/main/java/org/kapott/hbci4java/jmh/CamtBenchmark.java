@@ -0,0 +1,96 @@
+/**********************************************************************
+ *
+ * This file is part of HBCI4Java.
+ * Copyright (c) 2026 Olaf Willuhn
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ **********************************************************************/
+
+package org.kapott.hbci4java.jmh;
+
+import java.io.ByteArrayInputStream;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.kapott.hbci.GV.parsers.ISEPAParser;
+import org.kapott.hbci.GV.parsers.SEPAParserFactory;
+import org.kapott.hbci.GV_Result.GVRKUms;
+import org.kapott.hbci.GV_Result.GVRKUms.BTag;
+import org.kapott.hbci.sepa.SepaVersion;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Misst das Parsen von CAMT-Kontoauszuegen ueber {@link SEPAParserFactory}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class CamtBenchmark
+{
+  /**
+   * Entweder der Name einer aufgezeichneten Datei oder die Anzahl der
+   * Buchungen fuer einen synthetischen Kontoauszug.
+   */
+  @Param({"test-camt-parse-05200102.xml","test-camt-parse-05200108.xml","1000","10000","100000"})
+  public String input;
+
+  private byte[] data = null;
+  private ISEPAParser<List<BTag>> parser = null;
+
+  /**
+   * Laedt bzw. erzeugt den Kontoauszug und ermittelt den passenden Parser.
+   * @throws Exception
+   */
+  @SuppressWarnings("unchecked")
+  @Setup
+  public void setup() throws Exception
+  {
+    Fixtures.init();
+    if (this.input.matches("[0-9]+"))
+      this.data = Fixtures.createCamt(Integer.parseInt(this.input));
+    else
+      this.data = Fixtures.getBytes("sepa/" + this.input);
+
+    SepaVersion version = SepaVersion.autodetect(new ByteArrayInputStream(this.data));
+    this.parser = SEPAParserFactory.get(version);
+  }
+
+  /**
+   * Parst den Kontoauszug.
+   * @param bh Blackhole.
+   */
+  @Benchmark
+  public void parse(Blackhole bh)
+  {
+    GVRKUms ums = new GVRKUms();
+    this.parser.parse(new ByteArrayInputStream(this.data),ums.getDataPerDay());
+    bh.consume(ums.getDataPerDay());
+  }
+}
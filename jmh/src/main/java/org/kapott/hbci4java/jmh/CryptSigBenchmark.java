@@ -0,0 +1,203 @@
+/**********************************************************************
+ *
+ * This file is part of HBCI4Java.
+ * Copyright (c) 2026 Olaf Willuhn
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ **********************************************************************/
+
+package org.kapott.hbci4java.jmh;
+
+import java.util.concurrent.TimeUnit;
+
+import org.kapott.hbci.manager.IHandlerData;
+import org.kapott.hbci.manager.MsgGen;
+import org.kapott.hbci.manager.SyntaxCache;
+import org.kapott.hbci.passport.HBCIPassport;
+import org.kapott.hbci.passport.HBCIPassportList;
+import org.kapott.hbci.passport.HBCIPassportPinTanMemory;
+import org.kapott.hbci.protocol.MSG;
+import org.kapott.hbci.protocol.factory.MSGFactory;
+import org.kapott.hbci.security.Crypt;
+import org.kapott.hbci.security.Sig;
+import org.kapott.hbci.security.factory.CryptFactory;
+import org.kapott.hbci.security.factory.SigFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Misst das Signieren und Verschluesseln einer Nachricht sowie den Rueckweg
+ * (Parsen, Entschluesseln, Signatur pruefen).
+ * Verwendet wird ein PIN/TAN-Passport im Speicher. Dessen Verschluesselung ist
+ * nur ein Platzhalter, gemessen wird also vor allem der Aufwand im Kernel.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CryptSigBenchmark
+{
+  private HBCIPassportPinTanMemory passport = null;
+  private HBCIPassportList passports        = null;
+  private MsgGen gen                        = null;
+  private IHandlerData handler              = null;
+  private String crypted                    = null;
+
+  /**
+   * Erzeugt Passport und Message-Generator.
+   * @throws Exception
+   */
+  @Setup
+  public void setup() throws Exception
+  {
+    Fixtures.init();
+    this.passport = new HBCIPassportPinTanMemory(null);
+    this.passport.setCurrentTANMethod("999");
+    this.passports = new HBCIPassportList();
+    this.passports.addPassport(this.passport,HBCIPassport.ROLE_ISS);
+
+    this.gen = SyntaxCache.createMsgGen(null,"300");
+    this.gen.set("DialogEnd.MsgHead.dialogid","4711");
+    this.gen.set("DialogEnd.MsgHead.msgnum","2");
+    this.gen.set("DialogEnd.DialogEndS.dialogid","4711");
+    this.gen.set("DialogEnd.MsgTail.msgnum","2");
+
+    this.handler = new IHandlerData()
+    {
+      public HBCIPassport getPassport()
+      {
+        return passport;
+      }
+
+      public MsgGen getMsgGen()
+      {
+        return gen;
+      }
+
+      public void sync(boolean force)
+      {
+      }
+    };
+
+    this.crypted = this.signAndCrypt();
+  }
+
+  /**
+   * Schliesst das Passport.
+   */
+  @TearDown
+  public void tearDown()
+  {
+    if (this.passport != null)
+      this.passport.close();
+  }
+
+  /**
+   * Erzeugt, signiert und verschluesselt die Nachricht.
+   * @param bh Blackhole.
+   */
+  @Benchmark
+  public void signAndCrypt(Blackhole bh)
+  {
+    bh.consume(this.signAndCrypt());
+  }
+
+  /**
+   * Parst die verschluesselte Nachricht, entschluesselt sie und prueft die Signatur.
+   * @param bh Blackhole.
+   */
+  @Benchmark
+  public void decryptAndVerify(Blackhole bh)
+  {
+    MSGFactory factory = MSGFactory.getInstance();
+
+    // Die Crypto-Segmente haben die Sequenznummern 998 und 999
+    MSG msg = factory.createMSG("Crypted",this.crypted,this.crypted.length(),this.gen,MSG.DONT_CHECK_SEQ);
+    String plain = null;
+    Crypt crypt = CryptFactory.getInstance().createCrypt(this.handler,msg);
+    try
+    {
+      plain = crypt.decryptIt();
+    }
+    finally
+    {
+      CryptFactory.getInstance().unuseObject(crypt);
+      factory.unuseObject(msg);
+    }
+
+    // Die Signatur wird - wie im Kernel - ueber die empfangene Nachricht geprueft
+    this.gen.set("_origSignedMsg",plain);
+    msg = factory.createMSG("DialogEnd",plain,plain.length(),this.gen);
+    Sig sig = SigFactory.getInstance().createSig(this.handler,msg,this.passports);
+    try
+    {
+      bh.consume(sig.verify());
+    }
+    finally
+    {
+      SigFactory.getInstance().unuseObject(sig);
+      factory.unuseObject(msg);
+    }
+  }
+
+  /**
+   * Erzeugt, signiert und verschluesselt die Nachricht.
+   * @return die serialisierte, verschluesselte Nachricht.
+   */
+  private String signAndCrypt()
+  {
+    MSGFactory factory = MSGFactory.getInstance();
+    MSG msg = this.gen.generate("DialogEnd");
+
+    Sig sig = SigFactory.getInstance().createSig(this.handler,msg,this.passports);
+    try
+    {
+      if (!sig.signIt())
+        throw new IllegalStateException("unable to sign message");
+    }
+    finally
+    {
+      SigFactory.getInstance().unuseObject(sig);
+    }
+
+    Crypt crypt = CryptFactory.getInstance().createCrypt(this.handler,msg);
+    MSG result = msg;
+    try
+    {
+      result = crypt.cryptIt("Crypted");
+      return result.toString(0);
+    }
+    finally
+    {
+      CryptFactory.getInstance().unuseObject(crypt);
+      if (result != msg)
+        factory.unuseObject(result);
+      factory.unuseObject(msg);
+    }
+  }
+}
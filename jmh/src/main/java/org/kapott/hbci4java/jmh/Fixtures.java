@@ -0,0 +1,235 @@
+/**********************************************************************
+ *
+ * This file is part of HBCI4Java.
+ * Copyright (c) 2026 Olaf Willuhn
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ **********************************************************************/
+
+package org.kapott.hbci4java.jmh;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+
+import org.kapott.hbci.callback.AbstractHBCICallback;
+import org.kapott.hbci.callback.HBCICallback;
+import org.kapott.hbci.manager.HBCIUtils;
+import org.kapott.hbci.manager.MsgGen;
+import org.kapott.hbci.passport.HBCIPassport;
+
+/**
+ * Gemeinsame Testdaten fuer die Benchmarks.
+ * Die Dateien stammen aus den Test-Ressourcen des Hauptprojektes. Daneben
+ * werden synthetische Kontoauszuege mit beliebig vielen Buchungen erzeugt.
+ */
+public final class Fixtures
+{
+  /**
+   * Die Antworten auf die Callbacks des PIN/TAN-Passports.
+   */
+  final static Map<Integer,String> CALLBACK_VALUES = new HashMap<Integer,String>();
+
+  static
+  {
+    CALLBACK_VALUES.put(HBCICallback.NEED_COUNTRY,"DE");
+    CALLBACK_VALUES.put(HBCICallback.NEED_BLZ,"12345678");
+    CALLBACK_VALUES.put(HBCICallback.NEED_HOST,"localhost/hbci");
+    CALLBACK_VALUES.put(HBCICallback.NEED_PORT,"443");
+    CALLBACK_VALUES.put(HBCICallback.NEED_FILTER,"Base64");
+    CALLBACK_VALUES.put(HBCICallback.NEED_USERID,"benchmark");
+    CALLBACK_VALUES.put(HBCICallback.NEED_CUSTOMERID,"benchmark");
+    CALLBACK_VALUES.put(HBCICallback.NEED_PT_PIN,"12345");
+    CALLBACK_VALUES.put(HBCICallback.NEED_PT_SECMECH,"999");
+    CALLBACK_VALUES.put(HBCICallback.NEED_PASSPHRASE_LOAD,"benchmark");
+    CALLBACK_VALUES.put(HBCICallback.NEED_PASSPHRASE_SAVE,"benchmark");
+  }
+
+  /**
+   * ct.
+   */
+  private Fixtures()
+  {
+  }
+
+  /**
+   * Initialisiert HBCI4Java fuer die ThreadGroup des aufrufenden Threads.
+   * Die Log-Ausgaben werden verworfen, damit sie die Messung nicht verfaelschen.
+   */
+  public static synchronized void init()
+  {
+    if (HBCIUtils.getParams() != null)
+      return;
+
+    Properties props = new Properties();
+    props.put("log.loglevel.default",Integer.toString(HBCIUtils.LOG_NONE));
+    props.put("client.passport.PinTan.init","1");
+    props.put("client.passport.PinTan.checkcert","0");
+    props.put("client.errors.ignoreWrongDataSyntaxErrors","yes");
+    props.putAll(System.getProperties());
+    HBCIUtils.init(props,new AbstractHBCICallback()
+    {
+      public void log(String msg, int level, Date date, StackTraceElement trace)
+      {
+      }
+
+      public void callback(HBCIPassport passport, int reason, String msg, int datatype, StringBuffer retData)
+      {
+        String value = CALLBACK_VALUES.get(reason);
+        if (value != null)
+          retData.replace(0,retData.length(),value);
+      }
+
+      public void status(HBCIPassport passport, int statusTag, Object[] o)
+      {
+      }
+    });
+  }
+
+  /**
+   * Setzt die Werte fuer eine anonyme Dialog-Initialisierung ("DialogInitAnon").
+   * @param gen der MsgGen.
+   */
+  public static void setDialogInitAnon(MsgGen gen)
+  {
+    gen.set("DialogInitAnon.MsgHead.dialogid","0");
+    gen.set("DialogInitAnon.MsgHead.msgnum","1");
+    gen.set("DialogInitAnon.Idn.KIK.country","DE");
+    gen.set("DialogInitAnon.Idn.KIK.blz","12345678");
+    gen.set("DialogInitAnon.Idn.customerid","9999999999");
+    gen.set("DialogInitAnon.Idn.sysid","0");
+    gen.set("DialogInitAnon.Idn.sysStatus","0");
+    gen.set("DialogInitAnon.ProcPrep.BPD","0");
+    gen.set("DialogInitAnon.ProcPrep.UPD","0");
+    gen.set("DialogInitAnon.ProcPrep.lang","1");
+    gen.set("DialogInitAnon.ProcPrep.prodName","HBCI4Java");
+    gen.set("DialogInitAnon.ProcPrep.prodVersion","3.0");
+    gen.set("DialogInitAnon.MsgTail.msgnum","1");
+  }
+
+  /**
+   * Liefert den Inhalt einer Datei aus den Test-Ressourcen.
+   * @param path Pfad der Datei relativ zu "org/kapott/hbci4java".
+   * @return der Inhalt der Datei.
+   * @throws IOException
+   */
+  public static byte[] getBytes(String path) throws IOException
+  {
+    InputStream is = Fixtures.class.getClassLoader().getResourceAsStream("org/kapott/hbci4java/" + path);
+    if (is == null)
+      throw new IOException("resource not found: " + path);
+
+    try
+    {
+      ByteArrayOutputStream bos = new ByteArrayOutputStream();
+      byte[] buf = new byte[4096];
+      int len = 0;
+      while ((len = is.read(buf)) != -1)
+        bos.write(buf,0,len);
+      return bos.toByteArray();
+    }
+    finally
+    {
+      is.close();
+    }
+  }
+
+  /**
+   * Liefert eine aufgezeichnete HBCI-Nachricht.
+   * Zeilenumbrueche sind in den Dateien nur zur besseren Lesbarkeit enthalten
+   * und werden entfernt.
+   * @param name Dateiname in "org/kapott/hbci4java/bpd".
+   * @return die Nachricht.
+   * @throws IOException
+   */
+  public static String getMessage(String name) throws IOException
+  {
+    String s = new String(getBytes("bpd/" + name),StandardCharsets.ISO_8859_1);
+    return s.replaceAll("\\s*[\\r\\n]+\\s*","");
+  }
+
+  /**
+   * Erzeugt einen MT940-Kontoauszug mit einem Buchungstag und der angegebenen Anzahl Buchungen.
+   * @param count Anzahl der Buchungen.
+   * @return der Kontoauszug.
+   */
+  public static String createMT940(int count)
+  {
+    StringBuffer sb = new StringBuffer(count * 160 + 256);
+    sb.append("\r\n:20:STARTUMS\r\n");
+    sb.append(":25:12345678/1234567890\r\n");
+    sb.append(":28C:1\r\n");
+    sb.append(":60F:C230209EUR100,00\r\n");
+
+    BigDecimal saldo = new BigDecimal("100.00");
+    for (int i=0;i<count;i++)
+    {
+      BigDecimal value = BigDecimal.valueOf(100 + (i % 900),2);
+      saldo = saldo.add(value);
+      sb.append(":61:2302090209CR").append(value.toPlainString().replace('.',',')).append("NTRF").append(id(i)).append("\r\n");
+      sb.append(":86:152?00GUTSCHRIFT UEBERWEISUNG?109245?20Buchung ").append(i).append("?32Max Mustermann?34000\r\n");
+    }
+
+    sb.append(":62F:C230209EUR").append(saldo.toPlainString().replace('.',',')).append("\r\n");
+    sb.append("-\r\n");
+    return sb.toString();
+  }
+
+  /**
+   * Erzeugt einen CAMT-Kontoauszug (camt.052.001.02) mit der angegebenen Anzahl Buchungen.
+   * Als Vorlage dient die Datei "test-camt-parse-05200102.xml", deren erste Buchung
+   * entsprechend oft wiederholt wird.
+   * @param count Anzahl der Buchungen.
+   * @return der Kontoauszug.
+   * @throws IOException
+   */
+  public static byte[] createCamt(int count) throws IOException
+  {
+    String template = new String(getBytes("sepa/test-camt-parse-05200102.xml"),StandardCharsets.UTF_8);
+    int start = template.indexOf("<Ntry>");
+    int end = template.indexOf("</Ntry>") + "</Ntry>".length();
+    int last = template.lastIndexOf("</Ntry>") + "</Ntry>".length();
+
+    // Einrueckungen entfernen, damit auch 100.000 Buchungen noch in den Speicher passen
+    String entry = template.substring(start,end).replaceAll(">\\s+<","><");
+
+    ByteArrayOutputStream bos = new ByteArrayOutputStream(template.length() + count * (entry.length() + 32));
+    bos.write(template.substring(0,start).getBytes(StandardCharsets.UTF_8));
+    for (int i=0;i<count;i++)
+    {
+      String s = entry.replace("2018-07-20-07.51.25.370057",id(i)).replace("Verwendungszweck 1","Buchung " + i);
+      bos.write(s.getBytes(StandardCharsets.UTF_8));
+    }
+    bos.write(template.substring(last).getBytes(StandardCharsets.UTF_8));
+    return bos.toByteArray();
+  }
+
+  /**
+   * Erzeugt eine eindeutige Umsatz-ID.
+   * @param i laufende Nummer der Buchung.
+   * @return die ID.
+   */
+  private static String id(int i)
+  {
+    return String.format("2023-02-09-08.37.18.%06d",i);
+  }
+}
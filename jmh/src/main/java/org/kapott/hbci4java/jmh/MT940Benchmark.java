@@ -0,0 +1,89 @@
+/**********************************************************************
+ *
+ * This file is part of HBCI4Java.
+ * Copyright (c) 2026 Olaf Willuhn
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ **********************************************************************/
+
+package org.kapott.hbci4java.jmh;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.kapott.hbci.GV_Result.GVRKUms;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Misst das Parsen von MT940-Kontoauszuegen in {@link GVRKUms}.
+ * Die Laufzeit des Parsers waechst derzeit ueberproportional mit der Anzahl
+ * der Buchungen. Fuer einen schnellen Durchlauf koennen die grossen Auszuege
+ * per "-p input=test-mt940-001.sta,1000" ausgelassen werden.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class MT940Benchmark
+{
+  /**
+   * Entweder der Name einer aufgezeichneten Datei oder die Anzahl der
+   * Buchungen fuer einen synthetischen Kontoauszug.
+   */
+  @Param({"test-mt940-001.sta","test-mt940-002.sta","1000","10000","100000"})
+  public String input;
+
+  private String data = null;
+
+  /**
+   * Laedt bzw. erzeugt den Kontoauszug.
+   * @throws Exception
+   */
+  @Setup
+  public void setup() throws Exception
+  {
+    Fixtures.init();
+    if (this.input.matches("[0-9]+"))
+      this.data = Fixtures.createMT940(Integer.parseInt(this.input));
+    else
+      this.data = new String(Fixtures.getBytes("swift/" + this.input),StandardCharsets.ISO_8859_1);
+  }
+
+  /**
+   * Parst den Kontoauszug.
+   * @param bh Blackhole.
+   */
+  @Benchmark
+  public void parse(Blackhole bh)
+  {
+    GVRKUms ums = new GVRKUms();
+    ums.appendMT940Data(this.data);
+    bh.consume(ums.getFlatData());
+  }
+}
@@ -0,0 +1,78 @@
+/**********************************************************************
+ *
+ * This file is part of HBCI4Java.
+ * Copyright (c) 2026 Olaf Willuhn
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ **********************************************************************/
+
+package org.kapott.hbci4java.jmh;
+
+import java.util.concurrent.TimeUnit;
+
+import org.kapott.hbci.manager.MsgGen;
+import org.kapott.hbci.manager.SyntaxCache;
+import org.kapott.hbci.protocol.MSG;
+import org.kapott.hbci.protocol.factory.MSGFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Misst das Erzeugen und Serialisieren einer Nachricht.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MsgGenerateBenchmark
+{
+  private MsgGen gen = null;
+
+  /**
+   * Setzt die Werte fuer eine anonyme Dialog-Initialisierung.
+   * @throws Exception
+   */
+  @Setup
+  public void setup() throws Exception
+  {
+    Fixtures.init();
+    this.gen = SyntaxCache.createMsgGen(null,"300");
+    Fixtures.setDialogInitAnon(this.gen);
+  }
+
+  /**
+   * Erzeugt die Nachricht und serialisiert sie.
+   * @param bh Blackhole.
+   */
+  @Benchmark
+  public void generate(Blackhole bh)
+  {
+    MSG msg = this.gen.generate("DialogInitAnon");
+    bh.consume(msg.toBytes());
+    MSGFactory.getInstance().unuseObject(msg);
+  }
+}
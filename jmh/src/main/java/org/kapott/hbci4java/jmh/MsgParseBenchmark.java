@@ -0,0 +1,107 @@
+/**********************************************************************
+ *
+ * This file is part of HBCI4Java.
+ * Copyright (c) 2026 Olaf Willuhn
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ **********************************************************************/
+
+package org.kapott.hbci4java.jmh;
+
+import java.util.Hashtable;
+import java.util.concurrent.TimeUnit;
+
+import org.kapott.hbci.manager.HBCIKernelImpl;
+import org.kapott.hbci.manager.MsgGen;
+import org.kapott.hbci.protocol.MSG;
+import org.kapott.hbci.protocol.factory.MSGFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Misst das Parsen aufgezeichneter Dialog-Initialisierungen mit BPD.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MsgParseBenchmark
+{
+  /**
+   * Die aufgezeichnete Nachricht.
+   */
+  @Param({"bpd-raw.txt","bpd2-raw.txt","bpd3-raw.txt"})
+  public String file;
+
+  private String data = null;
+  private MsgGen gen  = null;
+
+  /**
+   * Laedt die Nachricht und die Syntax der darin verwendeten HBCI-Version.
+   * @throws Exception
+   */
+  @Setup
+  public void setup() throws Exception
+  {
+    Fixtures.init();
+    this.data = Fixtures.getMessage(this.file);
+
+    // Die HBCI-Version steht im Nachrichtenkopf: HNHBK:1:3+<size>+<version>+...
+    String version = this.data.split("\\+")[2];
+    HBCIKernelImpl kernel = new HBCIKernelImpl(null,version);
+    kernel.rawNewMsg("DialogInitAnon");
+    this.gen = kernel.getMsgGen();
+  }
+
+  /**
+   * Parst die Nachricht.
+   * @param bh Blackhole.
+   */
+  @Benchmark
+  public void parse(Blackhole bh)
+  {
+    MSG msg = MSGFactory.getInstance().createMSG("DialogInitAnonRes",this.data,this.data.length(),this.gen);
+    bh.consume(msg.getName());
+    MSGFactory.getInstance().unuseObject(msg);
+  }
+
+  /**
+   * Parst die Nachricht und extrahiert alle Werte - so wie es der Kernel
+   * beim Empfang einer Antwort tut.
+   * @param bh Blackhole.
+   */
+  @Benchmark
+  public void parseAndExtract(Blackhole bh)
+  {
+    MSG msg = MSGFactory.getInstance().createMSG("DialogInitAnonRes",this.data,this.data.length(),this.gen);
+    Hashtable<String,String> values = new Hashtable<String,String>();
+    msg.extractValues(values);
+    bh.consume(values);
+    MSGFactory.getInstance().unuseObject(msg);
+  }
+}
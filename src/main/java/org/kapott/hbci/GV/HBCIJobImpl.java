@@ -516,7 +516,7 @@ public abstract class HBCIJobImpl
         SEG seg=null;
         try {
             MsgGen gen=getParentHandler().getMsgGen();
-            seg=SEGFactory.getInstance().createSEG(getName(),getName(),null,0,gen.getSyntax());
+            seg=SEGFactory.getInstance().createSEG(getName(),getName(),null,0,gen.getSyntaxModel());
             for (Enumeration e=getLowlevelParams().propertyNames();e.hasMoreElements();) {
                 String key=(String)e.nextElement();
                 String value=getLowlevelParams().getProperty(key);
@@ -690,7 +690,7 @@ public abstract class HBCIJobImpl
     	// betreffenden Wert zum Logfilter hinzufügen
     	Integer logFilterLevel=logFilterLevels.get(paramName);
     	if (logFilterLevel!=null && logFilterLevel.intValue()!=0) {
-    		LogFilter.getInstance().addSecretData(value,"X",logFilterLevel.intValue());
+    		LogFilter.getInstance(getMainPassport()).addSecretData(value,"X",logFilterLevel.intValue());
     	}
 
         String[][]           destinations=constraints.get(paramName);
@@ -863,8 +863,7 @@ public abstract class HBCIJobImpl
     */
     public void fillJobResultFromTanJob(HBCIMsgStatus status,String header,int seg)
     {
-        Properties result = status.getData();
-        saveBasicValues(result, seg);
+        saveBasicValues(status, seg);
         saveReturnValues(status, seg);
 
         // wichtig um Parameter wie "content" zu füllen
@@ -884,47 +883,17 @@ public abstract class HBCIJobImpl
             this.haveTan = false;
             this.skip = false;
             this.loopCount++;
-            Properties result=status.getData();
 
-            // nachsehen, welche antwortsegmente ueberhaupt
-            // zu diesem task gehoeren
+            // die antwortsegmente, die zu diesem task gehoeren - in der
+            // reihenfolge des eintreffens. der index dafuer wird im status-
+            // objekt einmal fuer alle tasks der nachricht aufgebaut
+            List<String> headers=status.getResponseHeaders(idx+offset);
             
-            // res-num --> segmentheader (wird für sortierung der 
-            // antwort-segmente benötigt)
-            Hashtable<Integer,String> keyHeaders=new Hashtable<Integer, String>();
-            for (Enumeration i=result.keys();i.hasMoreElements();) {
-                String key=(String)(i.nextElement());
-                if (key.startsWith("GVRes")&&
-                    key.endsWith(".SegHead.ref")) {
-                    
-                    String segref=result.getProperty(key);
-                    if ((Integer.parseInt(segref))-offset==idx) {
-                        // nummer des antwortsegments ermitteln
-                        int resnum=0;
-                        if (key.startsWith("GVRes_")) {
-                            resnum=Integer.parseInt(key.substring(key.indexOf('_')+1,key.indexOf('.')));
-                        }
-                        
-                        keyHeaders.put(
-                            new Integer(resnum),
-                            key.substring(0,key.length()-(".SegHead.ref").length()));
-                    }
-                }
-            }
-            
-            saveBasicValues(result,idx+offset);
+            saveBasicValues(status,idx+offset);
             saveReturnValues(status,idx+offset);
             
-            // segment-header-namen der antwortsegmente in der reihenfolge des
-            // eintreffens sortieren
-            Object[] resnums=keyHeaders.keySet().toArray(new Object[0]);
-            Arrays.sort(resnums);
-
             // alle antwortsegmente durchlaufen
-            for (int i=0;i<resnums.length;i++) {
-                // dabei reihenfolge des eintreffens beachten
-                String header=keyHeaders.get(resnums[i]);
-                
+            for (String header:headers) {
                 extractPlaintextResults(status,header,contentCounter);
                 extractResults(status,header,contentCounter++);
                 // der contentCounter wird fuer jedes antwortsegment um 1 erhoeht
@@ -942,16 +911,16 @@ public abstract class HBCIJobImpl
     /* wenn wenigstens ein HBCI-Rückgabewert für den aktuellen GV gefunden wurde,
        so werden im outStore zusätzlich die entsprechenden Dialog-Parameter
        gespeichert (Property @c basic.*) */
-    private void saveBasicValues(Properties result,int ref)
+    private void saveBasicValues(HBCIMsgStatus status,int ref)
     {
         // wenn noch keine basic-daten gespeichert sind
         if (jobResult.getDialogId()==null) {
             // Pfad des originalen MsgHead-Segmentes holen und um "orig_" ergaenzen,
             // um den Key fuer die entsprechenden Daten in das result-Property zu erhalten
-            String msgheadName="orig_"+result.getProperty("1");
+            String msgheadName="orig_"+status.getValue("1");
             
-            jobResult.storeResult("basic.dialogid",result.getProperty(msgheadName+".dialogid"));
-            jobResult.storeResult("basic.msgnum",result.getProperty(msgheadName+".msgnum"));
+            jobResult.storeResult("basic.dialogid",status.getValue(msgheadName+".dialogid"));
+            jobResult.storeResult("basic.msgnum",status.getValue(msgheadName+".msgnum"));
             jobResult.storeResult("basic.segnum",Integer.toString(ref));
 
             HBCIUtils.log("basic values for " + getName() + " set to "
@@ -999,14 +968,11 @@ public abstract class HBCIJobImpl
 
     private void extractPlaintextResults(HBCIMsgStatus status,String header,int idx)
     {
-        Properties result=status.getData();
-        for (Enumeration e=result.keys();e.hasMoreElements();) {
+        Properties result=status.getResponseData(header);
+        String     prefix=HBCIUtilsInternal.withCounter("content",idx)+".";
+        for (Enumeration<?> e=result.propertyNames();e.hasMoreElements();) {
             String key=(String)(e.nextElement());
-            if (key.startsWith(header+".")) {
-                jobResult.storeResult(HBCIUtilsInternal.withCounter("content",idx)+
-                                      "."+
-                                      key.substring(header.length()+1),result.getProperty(key));
-            }
+            jobResult.storeResult(prefix+key,result.getProperty(key));
         }
     }
 
@@ -590,6 +590,17 @@ public interface HBCICallback
         des Aufrufes zu ermitteln) */
     public void log(String msg,int level,Date date,StackTraceElement trace);
     
+    /** Gibt an, ob {@link #log(String, int, Date, StackTraceElement)} das
+        <code>StackTrace</code>-Element mit der Aufrufstelle benötigt. Das
+        Ermitteln der Aufrufstelle ist vergleichsweise teuer. Callbacks, die
+        es nicht auswerten, können hier <code>false</code> liefern - dann wird
+        für <code>trace</code> immer <code>null</code> übergeben.
+        @return <code>true</code> (default), wenn die Aufrufstelle benötigt wird */
+    public default boolean needsCallerInfo()
+    {
+        return true;
+    }
+    
     /** Wird vom HBCI-Kernel aufgerufen, wenn die Interaktion mit der
         Anwendung erforderlich ist. In bestimmten Situationen benötigt der
         HBCI-Kernel zusätzliche Daten bzw. muss auf die Ausführung einer
@@ -120,7 +120,7 @@ public class HBCICallbackIOStreams
         
         try {
             INILetter iniletter;
-            LogFilter logfilter=LogFilter.getInstance();
+            LogFilter logfilter=LogFilter.getInstance(passport);
             Date      date;
             String    st;
             
@@ -63,6 +63,12 @@ public final class HBCICallbackThreaded
     {
         realCallback.log(msg,level,date,trace);
     }
+    
+    /** Aufruf wird an das "normale" Callback-Objekt weitergereicht. */
+    public boolean needsCallerInfo()
+    {
+        return realCallback.needsCallerInfo();
+    }
 
     /** Für asynchron zu behandelnde Callbacks wird der Aufruf an das "normale"
      * Callback-Objekt weitergereicht. Synchron zu behandelnde Callbacks werden
@@ -0,0 +1,150 @@
+/**********************************************************************
+ *
+ * This file is part of HBCI4Java.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ **********************************************************************/
+
+package org.kapott.hbci.comm;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Stream, der Base64-Daten beim Lesen dekodiert.
+ * Wie bei {@link FilterBase64#decode(byte[], int)} werden Zeichen ausserhalb
+ * des Base64-Alphabets uebersprungen, bei "=" endet die Nachricht.
+ * Anders als der Decoder aus <code>java.util.Base64</code> liest der Stream
+ * pro Aufruf nur einmal vom darunterliegenden Stream und liefert, was bis dahin
+ * dekodiert werden konnte. Er wartet also nicht, bis der Puffer des Aufrufers
+ * voll ist - bei einer offenen Socket-Verbindung wuerde er sonst blockieren.
+ */
+final class Base64InputStream extends InputStream
+{
+    private final InputStream in;
+
+    private final byte[] raw = new byte[8192];
+    private final byte[] decoded = new byte[(this.raw.length * 3) / 4 + 4];
+    private int pos = 0;
+    private int count = 0;
+
+    private int acc = 0;
+    private int bits = 0;
+    private boolean eof = false;
+
+    /**
+     * ct.
+     * @param in der Stream mit den Base64-Daten.
+     */
+    Base64InputStream(InputStream in)
+    {
+        this.in = in;
+    }
+
+    /**
+     * @see java.io.InputStream#read()
+     */
+    public int read() throws IOException
+    {
+        while (this.pos == this.count)
+        {
+            if (this.eof)
+                return -1;
+            this.fill(1);
+        }
+        return this.decoded[this.pos++] & 0xff;
+    }
+
+    /**
+     * @see java.io.InputStream#read(byte[], int, int)
+     */
+    public int read(byte[] b, int off, int len) throws IOException
+    {
+        if (len == 0)
+            return 0;
+
+        while (this.pos == this.count)
+        {
+            if (this.eof)
+                return -1;
+            this.fill(len);
+        }
+        int n = Math.min(len,this.count - this.pos);
+        System.arraycopy(this.decoded,this.pos,b,off,n);
+        this.pos += n;
+        return n;
+    }
+
+    /**
+     * @see java.io.InputStream#available()
+     */
+    public int available() throws IOException
+    {
+        return this.count - this.pos;
+    }
+
+    /**
+     * @see java.io.InputStream#close()
+     */
+    public void close() throws IOException
+    {
+        this.in.close();
+    }
+
+    /**
+     * Liest einmal vom darunterliegenden Stream und dekodiert die Daten.
+     * Es werden nur so viele Zeichen angefordert, wie fuer die gewuenschte
+     * Anzahl Bytes noetig sind, damit nicht ueber das Ende der Nachricht
+     * hinaus gelesen wird.
+     * @param len die Anzahl der gewuenschten Bytes.
+     * @throws IOException
+     */
+    private void fill(int len) throws IOException
+    {
+        this.pos = 0;
+        this.count = 0;
+
+        int want = (int) Math.min(this.raw.length,((len + 2L) / 3L) * 4L);
+        int num = this.in.read(this.raw,0,want);
+        if (num == -1)
+        {
+            this.eof = true;
+            return;
+        }
+
+        for (int i=0;i<num;i++)
+        {
+            int c = this.raw[i] & 0xff;
+            if (c == '=')
+            {
+                this.eof = true;
+                return;
+            }
+
+            int value = (c < 128) ? FilterBase64.VALUES[c] : -1;
+            if (value == -1)
+                continue;
+
+            this.acc = ((this.acc << 6) | value) & 0xffff;
+            this.bits += 6;
+            if (this.bits >= 8)
+            {
+                this.bits -= 8;
+                this.decoded[this.count++] = (byte) (this.acc >> this.bits);
+            }
+        }
+    }
+}
@@ -22,8 +22,9 @@
 package org.kapott.hbci.comm;
 
 import java.lang.reflect.Constructor;
-import java.util.ArrayList;
-import java.util.StringTokenizer;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
 
 import org.kapott.hbci.callback.HBCICallback;
 import org.kapott.hbci.exceptions.CanNotParseMessageException;
@@ -36,7 +37,8 @@ import org.kapott.hbci.manager.MsgGen;
 import org.kapott.hbci.passport.HBCIPassportInternal;
 import org.kapott.hbci.protocol.MSG;
 import org.kapott.hbci.protocol.factory.MSGFactory;
-import org.kapott.hbci.rewrite.Rewrite;
+import org.kapott.hbci.rewrite.RewriteContext;
+import org.kapott.hbci.rewrite.RewriterChain;
 
 public abstract class Comm
 {
@@ -49,7 +51,7 @@ public abstract class Comm
     private   HBCIPassportInternal parentPassport;
     
     protected abstract void ping(MSG msg);
-    protected abstract StringBuffer pong(MsgGen gen);
+    protected abstract String pong(MsgGen gen);
     protected abstract void closeConnection();
         
     protected Comm(HBCIPassportInternal parentPassport)
@@ -61,7 +63,27 @@ public abstract class Comm
                 HBCIUtilsInternal.getLocMsg("CALLB_NEED_CONN"),HBCICallback.TYPE_NONE,new StringBuffer());
     }
 
+    /**
+     * Die Rewriter benoetigen den Status und die Passports des Nachrichtenaustauschs,
+     * die hier nicht bekannt sind.
+     * @param msgName der Name der gesendeten Nachricht.
+     * @param msg die zu sendende Nachricht.
+     * @return wirft immer eine Exception.
+     * @deprecated Bitte {@link #pingpong(RewriteContext, MSG)} verwenden.
+     */
+    @Deprecated
     public MSG pingpong(String msgName, MSG msg)
+    {
+        throw new UnsupportedOperationException("pingpong without rewrite context is no longer supported - use pingpong(RewriteContext,MSG)");
+    }
+
+    /**
+     * Sendet die Nachricht und empfaengt die Antwort.
+     * @param ctx der Kontext des Nachrichtenaustauschs fuer die Rewriter.
+     * @param msg die zu sendende Nachricht.
+     * @return die empfangene Nachricht.
+     */
+    public MSG pingpong(RewriteContext ctx, MSG msg)
     {
         IHandlerData handler=getParentPassport().getParentHandlerData();
         MsgGen       gen=handler.getMsgGen();
@@ -73,33 +95,117 @@ public abstract class Comm
 
         // nachricht empfangen
         HBCIUtilsInternal.getCallback().status(getParentPassport(),HBCICallback.STATUS_MSG_RECV,null);
-        String st = pong(gen).toString();
+        String st = pong(gen);
+        return receive(ctx,gen,st);
+    }
+
+    /**
+     * Sendet die Nachricht und liefert die Antwort asynchron.
+     * Ob dabei ein Thread auf die Antwort wartet, haengt von der Implementierung
+     * in {@link #exchangeAsync(MSG, MsgGen)} ab. Per Default wird wie in
+     * {@link #pingpong(RewriteContext, MSG)} blockierend gesendet und empfangen,
+     * das Future ist dann bei der Rueckkehr bereits erfuellt.
+     * Die empfangene Nachricht wird in einem Thread aus {@link CommExecutor}
+     * geparst, der in der ThreadGroup des Aufrufers und mit dessen Kernel-Parametern
+     * und Log-Filter laeuft. Dort wird auch {@link HBCICallback#STATUS_MSG_RECV} gemeldet.
+     * @param ctx der Kontext des Nachrichtenaustauschs fuer die Rewriter.
+     * @param msg die zu sendende Nachricht.
+     * @return das Future mit der empfangenen Nachricht.
+     */
+    public CompletableFuture<MSG> pingpongAsync(final RewriteContext ctx, MSG msg)
+    {
+        IHandlerData handler=getParentPassport().getParentHandlerData();
+        final MsgGen gen=handler.getMsgGen();
+        
+        // ausgehende nachricht versenden
+        HBCIUtilsInternal.getCallback().status(getParentPassport(),HBCICallback.STATUS_MSG_SEND,null);
+        HBCIUtilsInternal.getCallback().status(getParentPassport(),HBCICallback.STATUS_MSG_RAW_SEND,msg.toString(0));
+        
+        // der executor muss hier geholt werden, damit er die bindungen des aufrufers übernimmt
+        Executor executor=CommExecutor.getInstance();
+        CompletableFuture<String> response;
+        try {
+            response=exchangeAsync(msg,gen);
+        } catch (RuntimeException e) {
+            response=new CompletableFuture<String>();
+            response.completeExceptionally(e);
+        }
+        
+        if (response.isDone())
+            return response.thenApply(st -> received(ctx,gen,st));
+        return response.thenApplyAsync(st -> received(ctx,gen,st),executor);
+    }
+
+    /**
+     * Sendet die Nachricht per {@link #pingpongAsync(RewriteContext, MSG)} und
+     * wartet auf die Antwort. Fehler werden unveraendert weitergeworfen.
+     * @param ctx der Kontext des Nachrichtenaustauschs fuer die Rewriter.
+     * @param msg die zu sendende Nachricht.
+     * @return die empfangene Nachricht.
+     */
+    public MSG pingpongAwait(RewriteContext ctx, MSG msg)
+    {
+        try {
+            return pingpongAsync(ctx,msg).join();
+        } catch (CompletionException e) {
+            Throwable cause=e.getCause();
+            if (cause instanceof RuntimeException)
+                throw (RuntimeException)cause;
+            if (cause instanceof Error)
+                throw (Error)cause;
+            throw new HBCI_Exception(cause);
+        }
+    }
+
+    /**
+     * Sendet die Nachricht und liefert die empfangene, per Filter dekodierte Antwort.
+     * Die Default-Implementierung blockiert dabei. Transport-Implementierungen,
+     * die ohne wartenden Thread auskommen, ueberschreiben diese Methode.
+     * Fehler werden ueber das Future gemeldet.
+     * @param msg die zu sendende Nachricht.
+     * @param gen der Message-Generator.
+     * @return das Future mit der empfangenen Antwort.
+     */
+    protected CompletableFuture<String> exchangeAsync(MSG msg, MsgGen gen)
+    {
+        ping(msg);
+        return CompletableFuture.completedFuture(pong(gen));
+    }
+
+    /**
+     * Meldet den Empfang der Antwort und parst sie.
+     * @param ctx der Kontext des Nachrichtenaustauschs fuer die Rewriter.
+     * @param gen der Message-Generator.
+     * @param st die empfangene Antwort.
+     * @return die geparste Nachricht.
+     */
+    private MSG received(RewriteContext ctx, MsgGen gen, String st)
+    {
+        HBCIUtilsInternal.getCallback().status(getParentPassport(),HBCICallback.STATUS_MSG_RECV,null);
+        return receive(ctx,gen,st);
+    }
+
+    /**
+     * Wendet die Rewriter auf die empfangene Antwort an und parst sie.
+     * @param ctx der Kontext des Nachrichtenaustauschs fuer die Rewriter.
+     * @param gen der Message-Generator.
+     * @param st die empfangene Antwort.
+     * @return die geparste Nachricht.
+     */
+    private MSG receive(RewriteContext ctx, MsgGen gen, String st)
+    {
+        String msgName=ctx.getMsgName();
         HBCIUtilsInternal.getCallback().status(getParentPassport(),HBCICallback.STATUS_MSG_RAW_RECV_ENCRYPTED,st);
 
-        HBCIUtils.log("received message: "+st,HBCIUtils.LOG_DEBUG2);
+        HBCIUtils.log("received message: {}",HBCIUtils.LOG_DEBUG2,st);
         MSG retmsg=null;
 
         try {
-            // erzeugen der liste aller rewriter
-            String rewriters_st=HBCIUtils.getParam("kernel.rewriter");
-            ArrayList<Rewrite> al=new ArrayList<Rewrite>();
-            StringTokenizer tok=new StringTokenizer(rewriters_st,",");
-            while (tok.hasMoreTokens()) {
-                String rewriterName=tok.nextToken().trim();
-                if (rewriterName.length()!=0) {
-                    Class cl=this.getClass().getClassLoader().loadClass("org.kapott.hbci.rewrite.R"+
-                                                                        rewriterName);
-                    Constructor con=cl.getConstructor((Class[])null);
-                    Rewrite rewriter=(Rewrite)(con.newInstance((Object[])null));
-                    al.add(rewriter);
-                }
-            }
-            Rewrite[] rewriters= al.toArray(new Rewrite[al.size()]);
+            // liste aller rewriter holen
+            RewriterChain rewriters=RewriterChain.getInstance();
     
             // alle rewriter für verschlüsselte nachricht durchlaufen
-            for (int i=0;i<rewriters.length;i++) {
-                st=rewriters[i].incomingCrypted(st,gen);
-            }
+            st=rewriters.incomingCrypted(st,gen,ctx);
             
             // versuche, nachricht als verschlüsselte nachricht zu parsen
             HBCIUtilsInternal.getCallback().status(getParentPassport(),HBCICallback.STATUS_MSG_PARSE,"CryptedRes");
@@ -112,9 +218,7 @@ public abstract class Comm
 
                 // alle rewriter durchlaufen, um nachricht evtl. als unverschlüsselte msg zu parsen
                 gen.set("_origSignedMsg",st);
-                for (int i=0;i<rewriters.length;i++) {
-                    st=rewriters[i].incomingClearText(st,gen);
-                }
+                st=rewriters.incomingClearText(st,gen,ctx);
                 
                 // versuch, nachricht als unverschlüsselte msg zu parsen
                 HBCIUtilsInternal.getCallback().status(getParentPassport(),HBCICallback.STATUS_MSG_PARSE,msgName+"Res");
@@ -0,0 +1,120 @@
+/**********************************************************************
+ *
+ * This file is part of HBCI4Java.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ **********************************************************************/
+
+package org.kapott.hbci.comm;
+
+import java.lang.ref.WeakReference;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.kapott.hbci.manager.HBCIUtils;
+
+/**
+ * Thread-Pools, in denen die asynchron empfangenen Antworten weiterverarbeitet werden.
+ * Callback und Texte von HBCI4Java sind an die ThreadGroup gebunden, in der
+ * {@link HBCIUtils#init(java.util.Properties, org.kapott.hbci.callback.HBCICallback)}
+ * bzw. {@link HBCIUtils#initThread(java.util.Properties, org.kapott.hbci.callback.HBCICallback)}
+ * aufgerufen wurde. Daher gibt es pro ThreadGroup einen eigenen kleinen Pool,
+ * dessen Threads in dieser ThreadGroup laufen. Kernel-Parameter und der Bereich
+ * des {@link org.kapott.hbci.manager.LogFilter} werden per
+ * {@link HBCIUtils#withConfig(Executor)} vom Aufrufer uebernommen.
+ * Die Groesse wird per Kernel-Parameter <code>client.comm.async.threads</code> festgelegt.
+ * Unbeschaeftigte Threads beenden sich nach kurzer Zeit. Die ThreadGroups werden
+ * nur schwach referenziert, damit ein vergessenes {@link HBCIUtils#doneThread()}
+ * sie nicht dauerhaft festhaelt.
+ */
+public final class CommExecutor
+{
+    /**
+     * Zeit in Sekunden, nach der sich ein unbeschaeftigter Thread beendet.
+     */
+    private final static int KEEP_ALIVE = 30;
+
+    private final static Map<ThreadGroup,ThreadPoolExecutor> executors = new WeakHashMap<ThreadGroup,ThreadPoolExecutor>();
+
+    /**
+     * ct.
+     */
+    private CommExecutor()
+    {
+    }
+
+    /**
+     * Liefert den Pool fuer die ThreadGroup des aktuellen Threads.
+     * Die Aufgaben laufen mit den Kernel-Parametern und dem Log-Filter des aktuellen Threads.
+     * @return der Pool.
+     */
+    public static Executor getInstance()
+    {
+        return HBCIUtils.withConfig(getPool());
+    }
+
+    /**
+     * Liefert den Pool fuer die ThreadGroup des aktuellen Threads.
+     * @return der Pool.
+     */
+    private static synchronized ThreadPoolExecutor getPool()
+    {
+        ThreadGroup group = Thread.currentThread().getThreadGroup();
+        ThreadPoolExecutor e = executors.get(group);
+        if (e == null)
+        {
+            // Die Thread-Factory darf die ThreadGroup nicht fest referenzieren,
+            // sonst wuerde der Eintrag in der WeakHashMap nie entfernt
+            final WeakReference<ThreadGroup> ref = new WeakReference<ThreadGroup>(group);
+            final AtomicInteger count = new AtomicInteger();
+            int size = Integer.parseInt(HBCIUtils.getParam("client.comm.async.threads","2"));
+            e = new ThreadPoolExecutor(size,size,KEEP_ALIVE,TimeUnit.SECONDS,new LinkedBlockingQueue<Runnable>(),r ->
+            {
+                Thread t = new Thread(ref.get(),r,"HBCI4Java comm " + count.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            });
+            e.allowCoreThreadTimeOut(true);
+            executors.put(group,e);
+        }
+        return e;
+    }
+
+    /**
+     * Beendet den Pool der ThreadGroup des aktuellen Threads.
+     */
+    public static synchronized void shutdown()
+    {
+        ThreadPoolExecutor e = executors.remove(Thread.currentThread().getThreadGroup());
+        if (e != null)
+            e.shutdown();
+    }
+
+    /**
+     * Beendet die Pools aller ThreadGroups.
+     */
+    public static synchronized void shutdownAll()
+    {
+        for (ThreadPoolExecutor e:executors.values())
+            e.shutdown();
+        executors.clear();
+    }
+}
@@ -21,10 +21,14 @@
 
 package org.kapott.hbci.comm;
 
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.Authenticator;
 import java.net.HttpURLConnection;
+import java.net.Proxy;
+import java.net.ProxySelector;
+import java.net.URISyntaxException;
 import java.net.URL;
 import java.util.Properties;
 
@@ -40,13 +44,16 @@ import org.kapott.hbci.passport.AbstractPinTanPassport;
 import org.kapott.hbci.passport.HBCIPassportInternal;
 import org.kapott.hbci.protocol.MSG;
 
-public final class CommPinTan
+public class CommPinTan
     extends Comm
 {
     private URL               url;
     private HttpURLConnection conn;
     private boolean           checkCert;
     
+    // der request ueber eine gepoolte keep-alive-verbindung, falls aktiviert
+    private HttpConnectionPool.Exchange exchange;
+    
     // die socket factory, die in jedem fall benutzt wird.
     private SSLSocketFactory   mySocketFactory;
     
@@ -112,7 +119,25 @@ public final class CommPinTan
     protected void ping(MSG msg)
     {
         try {
-            byte[] b=filter.encode(msg.toString(0));
+            releaseExchange();
+            
+            // wenn die laenge der kodierten nachricht vorab bekannt ist, wird
+            // sie beim schreiben kodiert, ohne sie vorher komplett zu kodieren
+            final byte[] data=msg.toBytes();
+            int          length=filter.getEncodedLength(data.length);
+            byte[]       encoded=null;
+            if (length==-1) {
+                encoded=filter.encode(data);
+                length=encoded.length;
+            }
+            final byte[] b=encoded;
+
+            HttpConnectionPool pool=getPool();
+            if (pool!=null) {
+                HBCIUtils.log("sending data using keep-alive connection",HBCIUtils.LOG_DEBUG);
+                exchange=pool.post(url.getFile(),"application/octet-stream",length,out -> write(out,data,b),HTTP_CONNECT_TIMEOUT,HTTP_READ_TIMEOUT);
+                return;
+            }
 
             HBCIUtils.log("connecting to server",HBCIUtils.LOG_DEBUG);
             conn=(HttpURLConnection)url.openConnection();
@@ -142,13 +167,13 @@ public final class CommPinTan
             conn.setDoOutput(true);
             conn.setRequestMethod("POST");
             conn.setRequestProperty("Content-Type", "application/octet-stream");
-            conn.setFixedLengthStreamingMode(b.length);
+            conn.setFixedLengthStreamingMode(length);
 
             conn.connect();                        
             OutputStream out=conn.getOutputStream();
             
             HBCIUtils.log("writing data to output stream", HBCIUtils.LOG_DEBUG);
-            out.write(b);
+            write(out,data,b);
             out.flush();
             
             HBCIUtils.log("closing output stream", HBCIUtils.LOG_DEBUG);
@@ -160,15 +185,26 @@ public final class CommPinTan
         }
     }
 
-    protected StringBuffer pong(MsgGen gen)
+    /* schreibt die nachricht - entweder die bereits kodierte oder sie wird
+     * beim schreiben kodiert */
+    private void write(OutputStream out,byte[] data,byte[] encoded)
+        throws IOException
     {
-        try {
-            byte[] b=new byte[1024];
-            StringBuffer ret=new StringBuffer();
+        if (encoded!=null) {
+            out.write(encoded);
+        } else {
+            OutputStream enc=filter.encode(out);
+            enc.write(data);
+            enc.close();
+        }
+    }
 
+    protected String pong(MsgGen gen)
+    {
+        try {
             HBCIUtils.log(HBCIUtilsInternal.getLocMsg("STATUS_MSG_RECV"),HBCIUtils.LOG_INFO);
 
-            int msgsize=conn.getContentLength();
+            int msgsize=(exchange!=null)?(int)exchange.getContentLength():conn.getContentLength();
             int num;
 
             if (msgsize!=-1) {
@@ -176,30 +212,104 @@ public final class CommPinTan
             } else {
                 HBCIUtils.log("can not determine message size, trying to detect automatically",HBCIUtils.LOG_DEBUG);
             }
-            InputStream i=conn.getInputStream();
-
-            while (msgsize!=0 && (num=i.read(b))>0) {
-                HBCIUtils.log("received "+num+" bytes",HBCIUtils.LOG_DEBUG2);
-                ret.append(new String(b,0,num,ENCODING));
-                msgsize-=num;
-                if (msgsize>=0) {
-                    HBCIUtils.log("we still need "+msgsize+" bytes",HBCIUtils.LOG_DEBUG2);
-                } else {
-                    HBCIUtils.log("read "+num+" bytes, looking for more",HBCIUtils.LOG_DEBUG2);
-                }
+            InputStream i=(exchange!=null)?exchange.getInputStream():conn.getInputStream();
+            
+            // die daten werden beim lesen dekodiert, direkt in einen puffer,
+            // der bei bekannter groesse passend angelegt wird
+            ReceiveBuffer buf=new ReceiveBuffer((msgsize!=-1)?filter.getMaxDecodedLength(msgsize):-1);
+            InputStream   decoded=filter.decode(i);
+            while ((num=buf.readFrom(decoded,-1))!=-1) {
+                HBCIUtils.log("received {} bytes",HBCIUtils.LOG_DEBUG2,num);
             }
 
             HBCIUtils.log("closing communication line",HBCIUtils.LOG_DEBUG);
-            conn.disconnect();
-            return new StringBuffer(filter.decode(ret.toString()));
+            if (exchange!=null) {
+                releaseExchange();
+            } else {
+                conn.disconnect();
+            }
+            return buf.toString();
         } catch (Exception e) {
+            releaseExchange();
             // Die hier marieren wir nicht als fatal - ich meine mich zu erinnern,
             // dass es Banken gibt, die einen anonymen BPD-Abruf mit einem HTTP-Fehlercode quittieren
             throw new HBCI_Exception(HBCIUtilsInternal.getLocMsg("EXCMSG_RECVERR"),e);
         }
     }
 
+    /* liefert den pool fuer keep-alive-verbindungen zum server. wenn die
+     * verbindungen nicht wiederverwendet werden sollen oder koennen (proxy,
+     * ssl-logging), wird null zurueckgegeben und fuer jede nachricht eine neue
+     * HttpURLConnection erzeugt */
+    private HttpConnectionPool getPool()
+    {
+        if (!HBCIUtils.getParam("client.passport.PinTan.keepalive","0").equals("1"))
+            return null;
+        if (!isDirect())
+            return null;
+        
+        int  maxConnections=Integer.parseInt(HBCIUtils.getParam("client.passport.PinTan.maxconnections","4"));
+        long idleTimeout=Long.parseLong(HBCIUtils.getParam("client.passport.PinTan.keepalive.timeout","30"))*1000L;
+        
+        // bei checkcert=0 wird auch der hostname nicht geprueft
+        return HttpConnectionPool.getInstance(url.getHost(),getPort(),getSocketFactory().getRealSocketFactory(),checkCert,maxConnections,idleTimeout);
+    }
+    
+    /* prueft, ob direkt mit dem server kommuniziert werden kann. ueber einen
+     * proxy oder mit ssl-logging geht das nur per HttpURLConnection. neben
+     * https.proxyHost wird auch der ProxySelector gefragt, damit system-weite
+     * proxy-einstellungen beruecksichtigt werden */
+    boolean isDirect()
+    {
+        String proxy=System.getProperty("https.proxyHost");
+        if (proxy!=null && proxy.length()!=0)
+            return false;
+        
+        ProxySelector selector=ProxySelector.getDefault();
+        if (selector!=null) {
+            try {
+                for (Proxy p:selector.select(url.toURI())) {
+                    if (p.type()!=Proxy.Type.DIRECT)
+                        return false;
+                }
+            } catch (URISyntaxException e) {
+                return false;
+            }
+        }
+        return !getSocketFactory().debug();
+    }
+    
+    URL getURL()
+    {
+        return url;
+    }
+    
+    int getPort()
+    {
+        int port=url.getPort();
+        return (port!=-1)?port:url.getDefaultPort();
+    }
+    
+    boolean getCheckCert()
+    {
+        return checkCert;
+    }
+    
+    PinTanSSLSocketFactory getSocketFactory()
+    {
+        return (PinTanSSLSocketFactory)mySocketFactory;
+    }
+    
+    private void releaseExchange()
+    {
+        if (exchange!=null) {
+            exchange.close();
+            exchange=null;
+        }
+    }
+
     protected void closeConnection()
     {
+        releaseExchange();
     }
 }
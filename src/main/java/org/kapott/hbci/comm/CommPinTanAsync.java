@@ -0,0 +1,106 @@
+/**********************************************************************
+ *
+ * This file is part of HBCI4Java.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ **********************************************************************/
+
+package org.kapott.hbci.comm;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import org.kapott.hbci.exceptions.HBCI_Exception;
+import org.kapott.hbci.manager.HBCIUtils;
+import org.kapott.hbci.manager.HBCIUtilsInternal;
+import org.kapott.hbci.manager.MsgGen;
+import org.kapott.hbci.passport.HBCIPassportInternal;
+import org.kapott.hbci.protocol.MSG;
+
+/**
+ * Nicht-blockierende Variante von {@link CommPinTan}.
+ * Bei {@link #pingpongAsync(org.kapott.hbci.rewrite.RewriteContext, MSG)} wartet
+ * kein Thread auf die Antwort der Bank. Die Verbindung wird vom gemeinsamen
+ * {@link NioSelector} bedient, geparst wird die Antwort anschliessend im
+ * {@link CommExecutor}. Damit koennen viele gleichzeitige Dialoge mit wenigen
+ * Threads abgewickelt werden.
+ * Das blockierende {@link #pingpong(org.kapott.hbci.rewrite.RewriteContext, MSG)}
+ * verhaelt sich wie bei {@link CommPinTan}. Ueber einen Proxy oder mit
+ * <code>log.ssl.enable=1</code> wird ebenfalls blockierend gesendet.
+ * Aktiviert wird diese Implementierung per Kernel-Parameter
+ * <code>client.passport.PinTan.async=1</code>.
+ */
+public class CommPinTanAsync extends CommPinTan
+{
+    /**
+     * Timeout fuer den Verbindungsaufbau in Millisekunden.
+     */
+    private final static int CONNECT_TIMEOUT = 60 * 1000;
+
+    /**
+     * Timeout in Millisekunden, nach dem die Verbindung abgebrochen wird, wenn nichts passiert.
+     */
+    private final static int READ_TIMEOUT = 5 * CONNECT_TIMEOUT;
+
+    /**
+     * ct.
+     * @param parentPassport der Passport.
+     */
+    public CommPinTanAsync(HBCIPassportInternal parentPassport)
+    {
+        super(parentPassport);
+    }
+
+    /**
+     * @see org.kapott.hbci.comm.Comm#exchangeAsync(org.kapott.hbci.protocol.MSG, org.kapott.hbci.manager.MsgGen)
+     */
+    protected CompletableFuture<String> exchangeAsync(MSG msg, MsgGen gen)
+    {
+        if (!this.isDirect())
+            return super.exchangeAsync(msg,gen);
+
+        final NioHttpsExchange exchange;
+        try
+        {
+            byte[] b = this.filter.encode(msg.toBytes());
+            HBCIUtils.log("sending data using non-blocking connection",HBCIUtils.LOG_DEBUG);
+            exchange = new NioHttpsExchange(PinTanSSLSocketFactory.getSSLContext(this.getCheckCert()),this.getCheckCert(),
+                                            this.getURL().getHost(),this.getPort(),this.getURL().getFile(),
+                                            "application/octet-stream",b,READ_TIMEOUT);
+        }
+        catch (Exception e)
+        {
+            HBCI_Exception he = new HBCI_Exception(HBCIUtilsInternal.getLocMsg("EXCMSG_SENDERR"),e);
+            he.setFatal(true);
+            throw he;
+        }
+
+        // Dekodiert wird nicht im Selector-Thread, da der Filter Texte und Log der ThreadGroup braucht
+        return exchange.start(CONNECT_TIMEOUT).handleAsync((b,t) ->
+        {
+            try
+            {
+                if (t != null)
+                    throw t;
+                return this.filter.decode(b,b.length);
+            }
+            catch (Throwable e)
+            {
+                throw new CompletionException(new HBCI_Exception(HBCIUtilsInternal.getLocMsg("EXCMSG_RECVERR"),e));
+            }
+        },CommExecutor.getInstance());
+    }
+}
@@ -21,11 +21,16 @@
 
 package org.kapott.hbci.comm;
 
+import java.io.BufferedOutputStream;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.InetSocketAddress;
 import java.net.Proxy;
 import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
 
 import org.kapott.hbci.exceptions.HBCI_Exception;
 import org.kapott.hbci.manager.HBCIUtils;
@@ -40,6 +45,11 @@ public final class CommStandard
     Socket s;                /**< @internal @brief The socket for communicating with the server. */
     OutputStream o;          /**< @internal @brief The outputstream to write HBCI-messages to. */
     InputStream i;           /**< @internal @brief The inputstream to read HBCI-messages from. */
+    
+    // nicht-blockierende verbindung ueber den gemeinsamen selector-thread.
+    // ist sie gesetzt, werden s, o und i nicht verwendet
+    private NioSocketConnection       channel;
+    private CompletableFuture<String> response;
 
     public CommStandard(HBCIPassportInternal parentPassport)
     {
@@ -51,6 +61,10 @@ public final class CommStandard
                 HBCIUtils.LOG_DEBUG);
         
         try {
+            InetSocketAddress remote=new InetSocketAddress(parentPassport.getHost(),
+                                                           parentPassport.getPort().intValue());
+            int localPort=Integer.parseInt(HBCIUtils.getParam("client.connection.localPort","0"));
+            
             String socksServer=HBCIUtils.getParam("comm.standard.socks.server");
             if (socksServer!=null && socksServer.trim().length()!=0) {
                 // use SOCKS server
@@ -66,21 +80,25 @@ public final class CommStandard
                     new InetSocketAddress(socksHost, Integer.parseInt(socksPort)));
                 this.s=new Socket(proxy);
                 
+            } else if (HBCIUtils.getParam("comm.standard.nio","0").equals("1")) {
+                // SocketChannel - ohne SOCKS-server, den unterstuetzt der
+                // SocketChannel nicht
+                HBCIUtils.log("using non-blocking connection",HBCIUtils.LOG_DEBUG);
+                channel=NioSocketConnection.open(remote,localPort,filter,0);
+                return;
             } else {
                 // no SOCKS server
                 s=new Socket();
             }
 
-            int localPort=Integer.parseInt(HBCIUtils.getParam("client.connection.localPort","0"));
             if (localPort!=0) {
                 s.setReuseAddress(true);
                 s.bind(new InetSocketAddress(localPort));
             }
 
-            s.connect(new InetSocketAddress(parentPassport.getHost(),
-                                            parentPassport.getPort().intValue()));
+            s.connect(remote);
             i=s.getInputStream();
-            o=s.getOutputStream();
+            o=new BufferedOutputStream(s.getOutputStream(),8192);
         } catch (Exception e) {
             throw new HBCI_Exception(HBCIUtilsInternal.getLocMsg("EXCMSG_CONNERR"),e);
         }
@@ -89,85 +107,123 @@ public final class CommStandard
     protected void ping(MSG msg)
     {
         try {
-            byte[] b=filter.encode(msg.toString(0));
-
-            o.write(b);
+            if (channel!=null) {
+                // gesendet und empfangen wird im selector-thread, pong()
+                // wartet dann nur noch auf die antwort
+                response=channel.exchange(filter.encode(msg.toBytes()));
+                return;
+            }
+            
+            // die nachricht wird beim schreiben kodiert
+            OutputStream out=filter.encode(o);
+            msg.writeTo(out);
+            out.close();
             o.flush();
         } catch (Exception ex) {
             throw new HBCI_Exception(HBCIUtilsInternal.getLocMsg("EXCMSG_SENDERR"),ex);
         }
     }
 
-    protected StringBuffer pong(MsgGen gen)
+    protected String pong(MsgGen gen)
     {
         int          num;
-        byte[]       b = new byte[1024];
-        StringBuffer ret = new StringBuffer();
+        ReceiveBuffer buf=new ReceiveBuffer(-1);
         boolean      sizeknown = false;
         int          msgsize=-1;
 
         HBCIUtils.log(HBCIUtilsInternal.getLocMsg("STATUS_MSG_RECV"),HBCIUtils.LOG_INFO);
 
-        try {
-            StringBuffer res=new StringBuffer();
-            
-            while ((!sizeknown || msgsize>0) && (num=i.read(b))!=-1) {
-                HBCIUtils.log("received "+num+" bytes",HBCIUtils.LOG_DEBUG2);
-
-                String st=new String(b,0,num,ENCODING);
+        if (channel!=null) {
+            try {
+                return response.get();
+            } catch (ExecutionException ex) {
+                throw new HBCI_Exception(HBCIUtilsInternal.getLocMsg("EXCMSG_RECVERR"),ex.getCause());
+            } catch (Exception ex) {
+                throw new HBCI_Exception(HBCIUtilsInternal.getLocMsg("EXCMSG_RECVERR"),ex);
+            } finally {
+                response=null;
+            }
+        }
 
-                ret.append(st);
+        try {
+            // die daten werden beim lesen dekodiert. solange die groesse nicht
+            // bekannt ist, wird gelesen, was da ist. danach genau den rest der
+            // nachricht direkt in den puffer
+            InputStream in=filter.decode(i);
+            while ((!sizeknown || msgsize>0) && (num=buf.readFrom(in,sizeknown?msgsize:-1))!=-1) {
+                HBCIUtils.log("received {} bytes",HBCIUtils.LOG_DEBUG2,num);
 
                 if (!sizeknown) {
-                    res.setLength(0);
-                    res.append(filter.decode(ret.toString()));
-                        
-                    msgsize=extractMessageSize(res);
+                    msgsize=extractMessageSize(buf);
                     if (msgsize!=-1) {
                         HBCIUtils.log("found message size: "+msgsize,HBCIUtils.LOG_DEBUG);
+                        buf.ensureCapacity(msgsize);
                         // jetzt ist die msgsize bekannt
                         // davon die anzahl der schon gelesenen zeichen abziehen
-                        msgsize-=ret.length();
+                        msgsize-=buf.length();
                         sizeknown=true;
                     }
                 } else {
                     msgsize-=num;
 
                 }
-                HBCIUtils.log("we still need "+msgsize+" bytes",HBCIUtils.LOG_DEBUG2);
+                HBCIUtils.log("we still need {} bytes",HBCIUtils.LOG_DEBUG2,msgsize);
             }
 
-            // FileOutputStream fo=new FileOutputStream("pong.dat");
-            // fo.write(ret.toString().getBytes(ENCODING));
-            // fo.close();
-
-            return new StringBuffer(filter.decode(ret.toString()));
+            return buf.toString();
         } catch (Exception ex) {
             throw new HBCI_Exception(HBCIUtilsInternal.getLocMsg("EXCMSG_RECVERR"),ex);
         }
     }
     
-    private int extractMessageSize(StringBuffer st)
+    /* die groesse steht im zweiten datenelement des nachrichtenkopfes. der
+     * puffer enthaelt bereits die dekodierten daten */
+    private int extractMessageSize(ReceiveBuffer buf)
     {
         int ret=-1;
         
-        if (st!=null) {
-            int firstPlus=st.indexOf("+");
-            if (firstPlus!=-1) {
-                int secondPlus=st.indexOf("+",firstPlus+1);
-                if (secondPlus!=-1) {
-                    ret=Integer.parseInt(st.substring(firstPlus+1,secondPlus));
-                }
+        String st=new String(buf.array(),0,Math.min(buf.length(),256),StandardCharsets.ISO_8859_1);
+        
+        int firstPlus=st.indexOf("+");
+        if (firstPlus!=-1) {
+            int secondPlus=st.indexOf("+",firstPlus+1);
+            if (secondPlus!=-1) {
+                ret=Integer.parseInt(st.substring(firstPlus+1,secondPlus));
             }
         }
         
         return ret;
     }
 
+    /* ueber den SocketChannel wartet kein thread auf die antwort. dekodiert ist
+     * sie bereits, die fehlermeldung wird aber erst im executor erzeugt, da
+     * texte und log an die threadgroup gebunden sind */
+    protected CompletableFuture<String> exchangeAsync(MSG msg, MsgGen gen)
+    {
+        if (channel==null)
+            return super.exchangeAsync(msg,gen);
+        
+        CompletableFuture<String> f;
+        try {
+            f=channel.exchange(filter.encode(msg.toBytes()));
+        } catch (Exception ex) {
+            throw new HBCI_Exception(HBCIUtilsInternal.getLocMsg("EXCMSG_SENDERR"),ex);
+        }
+        return f.handleAsync((st,t) -> {
+            if (t!=null)
+                throw new CompletionException(new HBCI_Exception(HBCIUtilsInternal.getLocMsg("EXCMSG_RECVERR"),t));
+            return st;
+        },CommExecutor.getInstance());
+    }
+
     protected void closeConnection()
     {
         try {
             HBCIUtils.log("closing communication line",HBCIUtils.LOG_DEBUG);
+            if (channel!=null) {
+                channel.close();
+                return;
+            }
             s.close();
         } catch (Exception ex) {
             throw new HBCI_Exception(HBCIUtilsInternal.getLocMsg("EXCMSG_CLOSEERR"),ex);
@@ -21,7 +21,13 @@
 
 package org.kapott.hbci.comm;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.lang.reflect.Constructor;
+import java.nio.charset.StandardCharsets;
 
 import org.kapott.hbci.exceptions.HBCI_Exception;
 import org.kapott.hbci.manager.HBCIUtilsInternal;
@@ -30,6 +36,106 @@ public abstract class Filter
 {
     public abstract byte[] encode(String st);
     public abstract String decode(String st);
+
+    /**
+     * Kodiert eine bereits im Zeichensatz {@link Comm#ENCODING} vorliegende Nachricht.
+     * Die Default-Implementierung wandelt die Daten in einen String und ruft
+     * {@link #encode(String)} auf.
+     * @param data die Nachricht.
+     * @return die kodierte Nachricht.
+     */
+    public byte[] encode(byte[] data)
+    {
+        return encode(new String(data,StandardCharsets.ISO_8859_1));
+    }
+
+    /**
+     * Dekodiert eine empfangene Nachricht direkt aus dem Empfangspuffer.
+     * Die Implementierung darf die Daten im Array ueberschreiben. Die
+     * Default-Implementierung wandelt die Daten in einen String und ruft
+     * {@link #decode(String)} auf.
+     * @param data der Empfangspuffer.
+     * @param len die Anzahl der gueltigen Bytes im Puffer.
+     * @return die dekodierte Nachricht.
+     */
+    public String decode(byte[] data, int len)
+    {
+        return decode(new String(data,0,len,StandardCharsets.ISO_8859_1));
+    }
+
+    /**
+     * Liefert einen Stream, der die hineingeschriebenen Daten kodiert und in
+     * den angegebenen Stream schreibt. Damit kann die Nachricht beim Senden
+     * kodiert werden, ohne sie vorher komplett kodiert im Speicher zu halten.
+     * Per {@link OutputStream#close()} werden die restlichen Daten geschrieben,
+     * der angegebene Stream bleibt dabei offen.
+     * Die Default-Implementierung sammelt die Daten und kodiert sie beim
+     * Schliessen per {@link #encode(byte[])}.
+     * @param out der Stream, in den die kodierten Daten geschrieben werden.
+     * @return der Stream fuer die unkodierten Daten.
+     */
+    public OutputStream encode(final OutputStream out)
+    {
+        return new ByteArrayOutputStream() {
+            public void close() throws IOException
+            {
+                out.write(encode(this.toByteArray()));
+                out.flush();
+            }
+        };
+    }
+
+    /**
+     * Liefert einen Stream, der die aus dem angegebenen Stream gelesenen Daten
+     * dekodiert. Damit kann die Nachricht beim Empfangen dekodiert werden.
+     * Die Default-Implementierung liest den Stream bis zum Ende und dekodiert
+     * die Daten dann per {@link #decode(byte[], int)}.
+     * @param in der Stream mit den kodierten Daten.
+     * @return der Stream mit den dekodierten Daten.
+     * @throws IOException
+     */
+    public InputStream decode(InputStream in) throws IOException
+    {
+        ByteArrayOutputStream bos=new ByteArrayOutputStream();
+        byte[] b=new byte[8192];
+        int num;
+        while ((num=in.read(b))!=-1)
+            bos.write(b,0,num);
+        return new ByteArrayInputStream(decode(bos.toByteArray(),bos.size()).getBytes(StandardCharsets.ISO_8859_1));
+    }
+
+    /**
+     * Liefert die Laenge der kodierten Daten.
+     * @param len die Laenge der unkodierten Daten.
+     * @return die Laenge der kodierten Daten oder -1, wenn sie vorab nicht bekannt ist.
+     */
+    public int getEncodedLength(int len)
+    {
+        return -1;
+    }
+
+    /**
+     * Liefert die maximale Laenge der dekodierten Daten.
+     * @param len die Laenge der kodierten Daten.
+     * @return die maximale Laenge der dekodierten Daten oder -1, wenn sie vorab nicht bekannt ist.
+     */
+    public int getMaxDecodedLength(int len)
+    {
+        return -1;
+    }
+
+    /**
+     * Liefert die Laenge, die die Daten im Empfangspuffer dekodiert haben, ohne
+     * sie zu dekodieren. Damit kann geprueft werden, ob eine Nachricht vollstaendig
+     * empfangen wurde, ohne den Puffer zu kopieren.
+     * @param data der Empfangspuffer.
+     * @param len die Anzahl der gueltigen Bytes im Puffer.
+     * @return die Laenge der dekodierten Daten oder -1, wenn sie nur per Dekodieren ermittelt werden kann.
+     */
+    public int getDecodedLength(byte[] data, int len)
+    {
+        return -1;
+    }
         
     public static Filter getInstance(String filter)
     {
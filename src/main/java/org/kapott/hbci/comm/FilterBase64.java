@@ -21,6 +21,12 @@
 
 package org.kapott.hbci.comm;
 
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
+
 import org.kapott.hbci.exceptions.HBCI_Exception;
 import org.kapott.hbci.manager.HBCIUtils;
 import org.kapott.hbci.manager.HBCIUtilsInternal;
@@ -28,6 +34,16 @@ import org.kapott.hbci.manager.HBCIUtilsInternal;
 public final class FilterBase64
     extends Filter
 {
+    // wert der zeichen aus dem base64-alphabet, -1 fuer alle anderen
+    final static int[] VALUES=new int[128];
+    
+    static {
+        Arrays.fill(VALUES,-1);
+        String alphabet="ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/";
+        for (int i=0;i<alphabet.length();i++)
+            VALUES[alphabet.charAt(i)]=i;
+    }
+    
     public FilterBase64()
     {
         HBCIUtils.log("using filter: MIM (base64)",HBCIUtils.LOG_DEBUG);
@@ -42,12 +58,106 @@ public final class FilterBase64
         }
     }
     
+    /**
+     * Dekodiert die Base64-Daten im Empfangspuffer selbst, ohne Zwischenkopie.
+     * Das ist moeglich, weil die dekodierten Daten immer kuerzer sind als die
+     * kodierten und die Schreibposition daher nie die Leseposition ueberholt.
+     * Wie bei {@link HBCIUtils#decodeBase64(String)} werden Zeichen ausserhalb
+     * des Base64-Alphabets uebersprungen, bei "=" endet die Nachricht.
+     * @see org.kapott.hbci.comm.Filter#decode(byte[], int)
+     */
+    public String decode(byte[] data, int len)
+    {
+        int bits=0;
+        int acc=0;
+        int pos=0;
+        
+        for (int i=0;i<len;i++) {
+            int c=data[i]&0xff;
+            if (c=='=')
+                break;
+            
+            int value=(c<128)?VALUES[c]:-1;
+            if (value==-1)
+                continue;
+            
+            acc=((acc<<6)|value)&0xffff;
+            bits+=6;
+            if (bits>=8) {
+                bits-=8;
+                data[pos++]=(byte)(acc>>bits);
+            }
+        }
+        return new String(data,0,pos,StandardCharsets.ISO_8859_1);
+    }
+    
+    /**
+     * @see org.kapott.hbci.comm.Filter#encode(byte[])
+     */
+    public byte[] encode(byte[] data)
+    {
+        return Base64.getEncoder().encode(data);
+    }
+    
     public byte[] encode(String st)
     {
         try {
-            return HBCIUtils.encodeBase64(st.getBytes(Comm.ENCODING)).getBytes(Comm.ENCODING);
+            return encode(st.getBytes(Comm.ENCODING));
         } catch (Exception ex) {
             throw new HBCI_Exception(HBCIUtilsInternal.getLocMsg("EXCMSG_B64ENCODEERR"),ex);
         }
     }
+    
+    /**
+     * Kodiert die Daten beim Schreiben.
+     * @see org.kapott.hbci.comm.Filter#encode(java.io.OutputStream)
+     */
+    public OutputStream encode(OutputStream out)
+    {
+        return Base64.getEncoder().wrap(new NonClosingOutputStream(out));
+    }
+    
+    /**
+     * Dekodiert die Daten beim Lesen. Zeilenumbrueche und andere Zeichen
+     * ausserhalb des Base64-Alphabets werden uebersprungen.
+     * @see org.kapott.hbci.comm.Filter#decode(java.io.InputStream)
+     */
+    public InputStream decode(InputStream in)
+    {
+        return new Base64InputStream(in);
+    }
+    
+    /**
+     * @see org.kapott.hbci.comm.Filter#getEncodedLength(int)
+     */
+    public int getEncodedLength(int len)
+    {
+        return ((len+2)/3)*4;
+    }
+    
+    /**
+     * @see org.kapott.hbci.comm.Filter#getMaxDecodedLength(int)
+     */
+    public int getMaxDecodedLength(int len)
+    {
+        return ((len+3)/4)*3;
+    }
+    
+    /**
+     * Zaehlt die Zeichen aus dem Base64-Alphabet bis zum ersten "=", so wie
+     * sie auch {@link #decode(byte[], int)} beruecksichtigt.
+     * @see org.kapott.hbci.comm.Filter#getDecodedLength(byte[], int)
+     */
+    public int getDecodedLength(byte[] data, int len)
+    {
+        int count=0;
+        for (int i=0;i<len;i++) {
+            int c=data[i]&0xff;
+            if (c=='=')
+                break;
+            if (c<128 && VALUES[c]!=-1)
+                count++;
+        }
+        return (count*6)/8;
+    }
 }
@@ -21,6 +21,10 @@
 
 package org.kapott.hbci.comm;
 
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
 import org.kapott.hbci.exceptions.HBCI_Exception;
 import org.kapott.hbci.manager.HBCIUtils;
 import org.kapott.hbci.manager.HBCIUtilsInternal;
@@ -42,8 +46,68 @@ public final class FilterNone
         }
     }
     
+    /**
+     * Liefert die Daten unveraendert zurueck.
+     * @see org.kapott.hbci.comm.Filter#encode(byte[])
+     */
+    public byte[] encode(byte[] data)
+    {
+        return data;
+    }
+    
     public String decode(String st)
     {
         return st;
     }
+    
+    /**
+     * Liefert die Daten unveraendert als String.
+     * @see org.kapott.hbci.comm.Filter#decode(byte[], int)
+     */
+    public String decode(byte[] data, int len)
+    {
+        return new String(data,0,len,StandardCharsets.ISO_8859_1);
+    }
+    
+    /**
+     * Schreibt die Daten unveraendert in den Stream.
+     * @see org.kapott.hbci.comm.Filter#encode(java.io.OutputStream)
+     */
+    public OutputStream encode(OutputStream out)
+    {
+        return new NonClosingOutputStream(out);
+    }
+    
+    /**
+     * Liefert den Stream unveraendert zurueck.
+     * @see org.kapott.hbci.comm.Filter#decode(java.io.InputStream)
+     */
+    public InputStream decode(InputStream in)
+    {
+        return in;
+    }
+    
+    /**
+     * @see org.kapott.hbci.comm.Filter#getEncodedLength(int)
+     */
+    public int getEncodedLength(int len)
+    {
+        return len;
+    }
+    
+    /**
+     * @see org.kapott.hbci.comm.Filter#getMaxDecodedLength(int)
+     */
+    public int getMaxDecodedLength(int len)
+    {
+        return len;
+    }
+    
+    /**
+     * @see org.kapott.hbci.comm.Filter#getDecodedLength(byte[], int)
+     */
+    public int getDecodedLength(byte[] data, int len)
+    {
+        return len;
+    }
 }
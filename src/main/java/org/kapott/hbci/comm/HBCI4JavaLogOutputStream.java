@@ -63,7 +63,7 @@ public class HBCI4JavaLogOutputStream
     public void flush()
         throws IOException
     {
-        if (this.logdata.size()!=0) {
+        if (this.logdata.size()!=0 && HBCIUtils.isEnabled(HBCIUtils.LOG_DEBUG2)) {
             HBCIUtils.log("socket log: "+this.logdata.toString(Comm.ENCODING), HBCIUtils.LOG_DEBUG2);
         }
         this.logdata.reset();
@@ -0,0 +1,819 @@
+/**********************************************************************
+ *
+ * This file is part of HBCI4Java.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ **********************************************************************/
+
+package org.kapott.hbci.comm;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.net.ssl.SSLParameters;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.SSLSocketFactory;
+
+import org.kapott.hbci.manager.HBCIUtils;
+
+/**
+ * Pool mit persistenten HTTPS-Verbindungen (HTTP/1.1 Keep-Alive) zu einem Bank-Server.
+ * Frueher wurde fuer jede HBCI-Nachricht eine neue Verbindung aufgebaut, inclusive
+ * TCP- und TLS-Handshake. Die Verbindungen werden jetzt pro Host, Port und
+ * Socket-Factory gepoolt und von allen Passports gemeinsam verwendet, die mit
+ * dem gleichen Server kommunizieren. Da die Socket-Factory ebenfalls gemeinsam
+ * verwendet wird, kann auch bei einer neuen Verbindung die TLS-Session
+ * wiederaufgenommen werden.
+ * Die Anzahl der gleichzeitigen Verbindungen pro Server ist begrenzt. Verbindungen,
+ * die laenger als das Idle-Timeout unbenutzt waren, werden geschlossen. Pools,
+ * die so lange gar nicht benutzt wurden, werden entfernt.
+ */
+public final class HttpConnectionPool
+{
+    private final static ConcurrentMap<String,HttpConnectionPool> pools = new ConcurrentHashMap<String,HttpConnectionPool>();
+
+    private final String key;
+    private final String host;
+    private final int port;
+    private final SSLSocketFactory factory;
+    private final boolean verifyHost;
+    private final int maxConnections;
+    private final long idleTimeout;
+    private final Semaphore permits;
+
+    // Zeitpunkt der letzten Benutzung des Pools
+    private volatile long lastUsed = System.currentTimeMillis();
+
+    // true, wenn der Pool entfernt wurde. Verbindungen werden dann nicht mehr aufgenommen
+    private boolean removed = false;
+
+    // Die zuletzt benutzte Verbindung steht vorn
+    private final Deque<Connection> idle = new LinkedList<Connection>();
+
+    private final AtomicInteger connects = new AtomicInteger();
+
+    /**
+     * ct.
+     * @param key der Schluessel des Pools.
+     * @param host der Hostname.
+     * @param port der Port.
+     * @param factory die Socket-Factory fuer die TLS-Verbindungen.
+     * @param verifyHost true, wenn der Hostname gegen das Zertifikat geprueft werden soll.
+     * @param maxConnections max. Anzahl gleichzeitiger Verbindungen.
+     * @param idleTimeout Idle-Timeout in Millisekunden.
+     */
+    private HttpConnectionPool(String key, String host, int port, SSLSocketFactory factory, boolean verifyHost, int maxConnections, long idleTimeout)
+    {
+        this.key = key;
+        this.host = host;
+        this.port = port;
+        this.factory = factory;
+        this.verifyHost = verifyHost;
+        this.maxConnections = maxConnections;
+        this.idleTimeout = idleTimeout;
+        this.permits = new Semaphore(maxConnections,true);
+    }
+
+    /**
+     * Liefert den Pool fuer den Server.
+     * Die Limits werden beim ersten Aufruf fuer den Server festgelegt.
+     * Unbenutzte Pools anderer Server werden dabei entfernt.
+     * @param host der Hostname.
+     * @param port der Port.
+     * @param factory die Socket-Factory fuer die TLS-Verbindungen.
+     * @param verifyHost true, wenn der Hostname gegen das Zertifikat geprueft werden soll.
+     * @param maxConnections max. Anzahl gleichzeitiger Verbindungen zu dem Server.
+     * @param idleTimeout Zeit in Millisekunden, nach der unbenutzte Verbindungen geschlossen werden.
+     * @return der Pool.
+     */
+    public static HttpConnectionPool getInstance(final String host, final int port, final SSLSocketFactory factory, final boolean verifyHost, final int maxConnections, final long idleTimeout)
+    {
+        removeUnused(System.currentTimeMillis());
+
+        String key = host.toLowerCase(Locale.ROOT) + ":" + port + "/" + System.identityHashCode(factory) + "/" + verifyHost;
+        HttpConnectionPool pool = pools.get(key);
+        if (pool != null && pool.factory == factory)
+            return pool;
+
+        return pools.compute(key,(k,p) -> (p != null && p.factory == factory) ? p : new HttpConnectionPool(key,host,port,factory,verifyHost,maxConnections,idleTimeout));
+    }
+
+    /**
+     * Entfernt alle Pools, die laenger als ihr Idle-Timeout nicht benutzt wurden
+     * und weder unbenutzte noch aktive Verbindungen haben.
+     * @param now die aktuelle Zeit.
+     */
+    private static void removeUnused(long now)
+    {
+        for (HttpConnectionPool pool:pools.values())
+        {
+            if (now - pool.lastUsed < pool.idleTimeout)
+                continue;
+            synchronized (pool.idle)
+            {
+                pool.evict(now);
+                if (pool.idle.isEmpty() && pool.permits.availablePermits() == pool.maxConnections && pools.remove(pool.key,pool))
+                {
+                    HBCIUtils.log("removing unused connection pool for " + pool.host + ":" + pool.port,HBCIUtils.LOG_DEBUG);
+                    pool.removed = true;
+                }
+            }
+        }
+    }
+
+    /**
+     * Schliesst alle unbenutzten Verbindungen aller Pools.
+     */
+    public static void closeAll()
+    {
+        for (HttpConnectionPool pool:pools.values())
+            pool.close();
+        pools.clear();
+    }
+
+    /**
+     * Schliesst alle unbenutzten Verbindungen des Pools.
+     */
+    public void close()
+    {
+        synchronized (this.idle)
+        {
+            for (Connection c:this.idle)
+                c.close();
+            this.idle.clear();
+        }
+    }
+
+    /**
+     * Liefert die Anzahl der bisher aufgebauten Verbindungen.
+     * @return die Anzahl der bisher aufgebauten Verbindungen.
+     */
+    public int getConnectCount()
+    {
+        return this.connects.get();
+    }
+
+    /**
+     * Liefert die Anzahl der unbenutzten Verbindungen im Pool.
+     * @return die Anzahl der unbenutzten Verbindungen.
+     */
+    public int getIdleCount()
+    {
+        synchronized (this.idle)
+        {
+            this.evict(System.currentTimeMillis());
+            return this.idle.size();
+        }
+    }
+
+    /**
+     * Sendet einen HTTP-POST-Request.
+     * Die Antwort wird erst beim Zugriff auf das gelieferte Objekt gelesen.
+     * Es muss in jedem Fall per {@link Exchange#close()} freigegeben werden.
+     * @param path der Pfad.
+     * @param contentType der Content-Type des Requests.
+     * @param body der Request-Body.
+     * @param connectTimeout Timeout fuer den Verbindungsaufbau in Millisekunden.
+     * @param readTimeout Timeout fuer das Lesen in Millisekunden.
+     * @return der Request.
+     * @throws IOException
+     */
+    public Exchange post(String path, String contentType, final byte[] body, int connectTimeout, int readTimeout) throws IOException
+    {
+        return this.post(path,contentType,body.length,out -> out.write(body),connectTimeout,readTimeout);
+    }
+
+    /**
+     * Sendet einen HTTP-POST-Request, dessen Body erst beim Senden erzeugt wird.
+     * Der Body muss ggf. mehrfach geschrieben werden koennen, falls der Request
+     * ueber eine neue Verbindung wiederholt wird.
+     * @param path der Pfad.
+     * @param contentType der Content-Type des Requests.
+     * @param length die Laenge des Bodys in Bytes.
+     * @param body schreibt den Body.
+     * @param connectTimeout Timeout fuer den Verbindungsaufbau in Millisekunden.
+     * @param readTimeout Timeout fuer das Lesen in Millisekunden.
+     * @return der Request.
+     * @throws IOException
+     */
+    public Exchange post(String path, String contentType, int length, Body body, int connectTimeout, int readTimeout) throws IOException
+    {
+        this.lastUsed = System.currentTimeMillis();
+        try
+        {
+            if (!this.permits.tryAcquire(connectTimeout,TimeUnit.MILLISECONDS))
+                throw new IOException("no free connection to " + this.host + ":" + this.port + " available");
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new IOException("interrupted while waiting for connection to " + this.host + ":" + this.port);
+        }
+
+        Exchange ex = new Exchange(path,contentType,length,body,connectTimeout,readTimeout);
+        try
+        {
+            ex.send(this.acquire(connectTimeout));
+            return ex;
+        }
+        catch (IOException | RuntimeException e)
+        {
+            ex.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Liefert eine unbenutzte Verbindung aus dem Pool oder erzeugt eine neue.
+     * @param connectTimeout Timeout fuer den Verbindungsaufbau.
+     * @return die Verbindung.
+     * @throws IOException
+     */
+    private Connection acquire(int connectTimeout) throws IOException
+    {
+        while (true)
+        {
+            Connection c = null;
+            synchronized (this.idle)
+            {
+                this.evict(System.currentTimeMillis());
+                c = this.idle.pollFirst();
+            }
+            if (c == null)
+                return this.connect(connectTimeout);
+
+            // Abgelaufene Verbindungen wurden bereits von evict() geschlossen.
+            // Hier werden nur noch ohne Blockieren erkennbar tote Verbindungen
+            // aussortiert. Hat der Server die Verbindung unbemerkt geschlossen,
+            // scheitert das Senden und send() wiederholt den Request ueber eine
+            // neue Verbindung
+            if (c.isStale())
+            {
+                HBCIUtils.log("idle connection to " + this.host + ":" + this.port + " closed by server",HBCIUtils.LOG_DEBUG);
+                c.close();
+                continue;
+            }
+            HBCIUtils.log("reusing connection to " + this.host + ":" + this.port,HBCIUtils.LOG_DEBUG);
+            return c;
+        }
+    }
+
+    /**
+     * Baut eine neue Verbindung auf.
+     * @param connectTimeout Timeout fuer den Verbindungsaufbau.
+     * @return die Verbindung.
+     * @throws IOException
+     */
+    private Connection connect(int connectTimeout) throws IOException
+    {
+        HBCIUtils.log("opening new connection to " + this.host + ":" + this.port,HBCIUtils.LOG_DEBUG);
+        Socket plain = new Socket();
+        try
+        {
+            plain.connect(new InetSocketAddress(this.host,this.port),connectTimeout);
+            plain.setTcpNoDelay(true);
+            SSLSocket s = (SSLSocket) this.factory.createSocket(plain,this.host,this.port,true);
+            if (this.verifyHost)
+            {
+                SSLParameters params = s.getSSLParameters();
+                params.setEndpointIdentificationAlgorithm("HTTPS");
+                s.setSSLParameters(params);
+            }
+            s.setSoTimeout(connectTimeout);
+            s.startHandshake();
+            this.connects.incrementAndGet();
+            return new Connection(s,plain);
+        }
+        catch (IOException | RuntimeException e)
+        {
+            try
+            {
+                plain.close();
+            }
+            catch (IOException e2)
+            {
+                // ignore
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Gibt die Verbindung an den Pool zurueck.
+     * @param c die Verbindung.
+     */
+    private void release(Connection c)
+    {
+        long now = System.currentTimeMillis();
+        synchronized (this.idle)
+        {
+            // Ein entfernter Pool wird von niemandem mehr aufgeraeumt
+            if (this.removed)
+            {
+                c.close();
+                return;
+            }
+            c.lastUsed = now;
+            this.idle.addFirst(c);
+            this.evict(now);
+        }
+    }
+
+    /**
+     * Schliesst alle Verbindungen, deren Idle-Timeout abgelaufen ist.
+     * Muss synchronisiert auf die Liste aufgerufen werden.
+     * @param now die aktuelle Zeit.
+     */
+    private void evict(long now)
+    {
+        for (Iterator<Connection> it = this.idle.descendingIterator();it.hasNext();)
+        {
+            Connection c = it.next();
+            if (now - c.lastUsed < Math.min(this.idleTimeout,c.keepAlive))
+                break;
+            HBCIUtils.log("closing idle connection to " + this.host + ":" + this.port,HBCIUtils.LOG_DEBUG);
+            it.remove();
+            c.close();
+        }
+    }
+
+    /**
+     * Schreibt den Body eines Requests.
+     */
+    public interface Body
+    {
+        /**
+         * Schreibt den Body in den Stream.
+         * @param out der Stream.
+         * @throws IOException
+         */
+        public void writeTo(OutputStream out) throws IOException;
+    }
+
+    /**
+     * Eine Verbindung zum Server.
+     */
+    private final static class Connection
+    {
+        private final Socket socket;
+        private final InputStream raw;
+        private final InputStream in;
+        private final OutputStream out;
+        private long lastUsed = 0L;
+        private long keepAlive = Long.MAX_VALUE;
+        private boolean reused = false;
+
+        /**
+         * ct.
+         * @param socket der SSL-Socket.
+         * @param plain der darunter liegende TCP-Socket.
+         * @throws IOException
+         */
+        private Connection(Socket socket, Socket plain) throws IOException
+        {
+            this.socket = socket;
+            this.raw = plain.getInputStream();
+            this.in = new BufferedInputStream(socket.getInputStream(),16 * 1024);
+            this.out = new BufferedOutputStream(socket.getOutputStream(),16 * 1024);
+        }
+
+        /**
+         * Prueft ohne zu blockieren, ob die unbenutzte Verbindung nicht mehr verwendbar ist.
+         * Auf einer unbenutzten Verbindung darf der Server nichts senden. Liegen
+         * bereits Daten vor - etwa das close_notify beim Schliessen durch den
+         * Server - ist sie nicht mehr verwendbar. Geprueft wird das per available()
+         * auf dem SSL- und dem TCP-Socket. Es wird bewusst nicht gelesen, da das
+         * auf dem SSL-Socket einen Record-Read samt Timeout bedeutet.
+         * @return true, wenn die Verbindung nicht mehr verwendet werden kann.
+         */
+        private boolean isStale()
+        {
+            if (this.socket.isClosed() || this.socket.isInputShutdown() || this.socket.isOutputShutdown())
+                return true;
+            try
+            {
+                return this.in.available() > 0 || this.raw.available() > 0;
+            }
+            catch (IOException e)
+            {
+                return true;
+            }
+        }
+
+        /**
+         * Schliesst die Verbindung.
+         */
+        private void close()
+        {
+            try
+            {
+                this.socket.close();
+            }
+            catch (IOException e)
+            {
+                HBCIUtils.log(e,HBCIUtils.LOG_DEBUG2);
+            }
+        }
+    }
+
+    /**
+     * Ein HTTP-Request mit seiner Antwort.
+     */
+    public final class Exchange
+    {
+        private final String path;
+        private final String contentType;
+        private final int length;
+        private final Body body;
+        private final int connectTimeout;
+        private final int readTimeout;
+
+        private Connection conn = null;
+        private boolean closed = false;
+        private boolean keepAlive = false;
+        private int status = -1;
+        private long contentLength = -1L;
+        private boolean chunked = false;
+        private BodyStream stream = null;
+
+        /**
+         * ct.
+         * @param path der Pfad.
+         * @param contentType der Content-Type.
+         * @param length die Laenge des Bodys.
+         * @param body der Body.
+         * @param connectTimeout Connect-Timeout.
+         * @param readTimeout Read-Timeout.
+         */
+        private Exchange(String path, String contentType, int length, Body body, int connectTimeout, int readTimeout)
+        {
+            this.path = path;
+            this.contentType = contentType;
+            this.length = length;
+            this.body = body;
+            this.connectTimeout = connectTimeout;
+            this.readTimeout = readTimeout;
+        }
+
+        /**
+         * Sendet den Request ueber die Verbindung.
+         * Schlaegt das Senden ueber eine wiederverwendete Verbindung fehl, wurde sie
+         * vermutlich vom Server geschlossen. Der Request wird dann ueber eine neue
+         * Verbindung gesendet.
+         * @param c die Verbindung.
+         * @throws IOException
+         */
+        private void send(Connection c) throws IOException
+        {
+            this.conn = c;
+            try
+            {
+                this.write();
+            }
+            catch (IOException e)
+            {
+                if (!c.reused)
+                    throw e;
+                HBCIUtils.log("reused connection seems to be closed by server, retrying with new connection",HBCIUtils.LOG_DEBUG);
+                c.close();
+                this.conn = connect(this.connectTimeout);
+                this.write();
+            }
+        }
+
+        /**
+         * Schreibt den Request.
+         * @throws IOException
+         */
+        private void write() throws IOException
+        {
+            StringBuilder sb = new StringBuilder(256);
+            sb.append("POST ").append(this.path.length() > 0 ? this.path : "/").append(" HTTP/1.1\r\n");
+            sb.append("Host: ").append(host);
+            if (port != 443)
+                sb.append(':').append(port);
+            sb.append("\r\n");
+            sb.append("Content-Type: ").append(this.contentType).append("\r\n");
+            sb.append("Content-Length: ").append(this.length).append("\r\n");
+            sb.append("Connection: keep-alive\r\n");
+            sb.append("Accept: */*\r\n");
+            sb.append("\r\n");
+
+            this.conn.socket.setSoTimeout(this.readTimeout);
+            this.conn.out.write(sb.toString().getBytes(Comm.ENCODING));
+            this.body.writeTo(this.conn.out);
+            this.conn.out.flush();
+        }
+
+        /**
+         * Liest Statuszeile und Header der Antwort, falls noch nicht geschehen.
+         * Der Request ist zu diesem Zeitpunkt bereits vollstaendig gesendet und
+         * wurde von der Bank eventuell schon ausgefuehrt. Er wird daher bei einem
+         * Fehler nie wiederholt, die Verbindung wird beim Schliessen verworfen.
+         * @throws IOException
+         */
+        private void readHead() throws IOException
+        {
+            if (this.status != -1)
+                return;
+            if (this.closed)
+                throw new IOException("exchange already closed");
+
+            String line = this.readLine(true);
+
+            // "100 Continue" ueberspringen
+            while (true)
+            {
+                if (!line.startsWith("HTTP/") || line.indexOf(' ') == -1)
+                    throw new IOException("invalid HTTP status line: " + line);
+
+                String[] parts = line.split(" ",3);
+                int code = Integer.parseInt(parts[1]);
+                boolean http10 = parts[0].equals("HTTP/1.0");
+                this.keepAlive = !http10;
+                this.contentLength = -1L;
+                this.chunked = false;
+
+                String header;
+                while ((header = this.readLine(false)).length() > 0)
+                {
+                    int idx = header.indexOf(':');
+                    if (idx == -1)
+                        continue;
+                    String name = header.substring(0,idx).trim().toLowerCase(Locale.ROOT);
+                    String value = header.substring(idx+1).trim();
+                    if (name.equals("content-length"))
+                        this.contentLength = Long.parseLong(value);
+                    else if (name.equals("transfer-encoding"))
+                        this.chunked = value.toLowerCase(Locale.ROOT).contains("chunked");
+                    else if (name.equals("connection"))
+                        this.keepAlive = value.equalsIgnoreCase("keep-alive") || (!http10 && !value.equalsIgnoreCase("close"));
+                    else if (name.equals("keep-alive"))
+                        this.parseKeepAlive(value);
+                }
+
+                if (code >= 100 && code < 200)
+                {
+                    line = this.readLine(false);
+                    continue;
+                }
+
+                this.status = code;
+                break;
+            }
+
+            if (this.chunked)
+                this.contentLength = -1L;
+            else if (this.contentLength < 0)
+                this.keepAlive = false; // Ende der Antwort ist das Ende der Verbindung
+
+            this.stream = new BodyStream();
+            if (this.status >= 400)
+            {
+                this.keepAlive = false;
+                throw new IOException("Server returned HTTP response code: " + this.status + " for URL: https://" + host + ":" + port + this.path);
+            }
+        }
+
+        /**
+         * Uebernimmt das Timeout aus dem Keep-Alive-Header der Antwort.
+         * @param value der Wert des Headers, z.Bsp. "timeout=5, max=100".
+         */
+        private void parseKeepAlive(String value)
+        {
+            for (String s:value.split(","))
+            {
+                s = s.trim();
+                if (!s.startsWith("timeout="))
+                    continue;
+                try
+                {
+                    // Etwas Puffer, damit wir nicht genau dann senden, wenn der Server schliesst
+                    long timeout = Long.parseLong(s.substring(8).trim()) * 1000L;
+                    this.conn.keepAlive = Math.max(0L,timeout - 1000L);
+                }
+                catch (NumberFormatException e)
+                {
+                    // ignore
+                }
+            }
+        }
+
+        /**
+         * Liest eine Zeile aus dem Header.
+         * @param first true, wenn es die erste Zeile der Antwort ist.
+         * @return die Zeile ohne Zeilenende.
+         * @throws IOException
+         */
+        private String readLine(boolean first) throws IOException
+        {
+            ByteArrayOutputStream bos = new ByteArrayOutputStream(64);
+            InputStream in = this.conn.in;
+            int c;
+            while ((c = in.read()) != -1)
+            {
+                if (c == '\n')
+                    break;
+                if (c != '\r')
+                    bos.write(c);
+                if (bos.size() > 8192)
+                    throw new IOException("HTTP header line too long");
+            }
+            if (c == -1 && (first || bos.size() == 0))
+                throw new EOFException("connection closed by server");
+            return bos.toString(Comm.ENCODING);
+        }
+
+        /**
+         * Liefert den HTTP-Status der Antwort.
+         * @return der HTTP-Status.
+         * @throws IOException
+         */
+        public int getStatus() throws IOException
+        {
+            this.readHead();
+            return this.status;
+        }
+
+        /**
+         * Liefert die Laenge der Antwort.
+         * @return die Laenge der Antwort oder -1, wenn sie nicht bekannt ist.
+         * @throws IOException
+         */
+        public long getContentLength() throws IOException
+        {
+            this.readHead();
+            return this.contentLength;
+        }
+
+        /**
+         * Liefert den Body der Antwort.
+         * @return der Body der Antwort.
+         * @throws IOException
+         */
+        public InputStream getInputStream() throws IOException
+        {
+            this.readHead();
+            return this.stream;
+        }
+
+        /**
+         * Beendet den Request.
+         * Wurde die Antwort vollstaendig gelesen und erlaubt der Server Keep-Alive,
+         * wird die Verbindung an den Pool zurueckgegeben, andernfalls geschlossen.
+         */
+        public void close()
+        {
+            if (this.closed)
+                return;
+            try
+            {
+                if (this.conn == null)
+                    return;
+
+                boolean reuse = this.keepAlive && this.stream != null && this.stream.drain();
+                if (reuse)
+                {
+                    this.conn.reused = true;
+                    release(this.conn);
+                }
+                else
+                {
+                    this.conn.close();
+                }
+            }
+            finally
+            {
+                this.closed = true;
+                lastUsed = System.currentTimeMillis();
+                permits.release();
+            }
+        }
+
+        /**
+         * Liest den Body der Antwort.
+         * Die Laenge ergibt sich aus Content-Length, Chunked-Encoding oder dem
+         * Ende der Verbindung.
+         */
+        private final class BodyStream extends InputStream
+        {
+            private long remaining = contentLength;
+            private boolean eof = false;
+
+            /**
+             * @see java.io.InputStream#read()
+             */
+            public int read() throws IOException
+            {
+                byte[] b = new byte[1];
+                int n = this.read(b,0,1);
+                return n == -1 ? -1 : (b[0] & 0xff);
+            }
+
+            /**
+             * @see java.io.InputStream#read(byte[], int, int)
+             */
+            public int read(byte[] b, int off, int len) throws IOException
+            {
+                if (closed)
+                    throw new IOException("exchange already closed");
+                if (this.eof)
+                    return -1;
+                if (len == 0)
+                    return 0;
+
+                if (chunked && this.remaining <= 0)
+                {
+                    if (this.remaining == 0)
+                        readLine(false); // CRLF nach dem vorherigen Chunk
+                    String line = readLine(false);
+                    int idx = line.indexOf(';');
+                    this.remaining = Long.parseLong((idx != -1 ? line.substring(0,idx) : line).trim(),16);
+                    if (this.remaining == 0)
+                    {
+                        // Trailer ueberspringen
+                        while (readLine(false).length() > 0);
+                        this.eof = true;
+                        return -1;
+                    }
+                }
+                else if (!chunked && contentLength >= 0 && this.remaining == 0)
+                {
+                    this.eof = true;
+                    return -1;
+                }
+
+                int max = this.remaining >= 0 ? (int) Math.min(len,this.remaining) : len;
+                int n = conn.in.read(b,off,max);
+                if (n == -1)
+                {
+                    if (this.remaining > 0)
+                        throw new EOFException("connection closed by server before end of response");
+                    this.eof = true;
+                    return -1;
+                }
+                if (this.remaining > 0)
+                    this.remaining -= n;
+                return n;
+            }
+
+            /**
+             * @see java.io.InputStream#available()
+             */
+            public int available() throws IOException
+            {
+                if (this.eof)
+                    return 0;
+                int n = conn.in.available();
+                return this.remaining >= 0 ? (int) Math.min(n,this.remaining) : n;
+            }
+
+            /**
+             * Liest den Rest der Antwort, damit die Verbindung wiederverwendet werden kann.
+             * @return true, wenn die Antwort vollstaendig gelesen wurde.
+             */
+            private boolean drain()
+            {
+                try
+                {
+                    byte[] b = new byte[1024];
+                    while (this.read(b,0,b.length) != -1);
+                    return true;
+                }
+                catch (IOException e)
+                {
+                    return false;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,446 @@
+/**********************************************************************
+ *
+ * This file is part of HBCI4Java.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ **********************************************************************/
+
+package org.kapott.hbci.comm;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLEngineResult;
+import javax.net.ssl.SSLEngineResult.HandshakeStatus;
+import javax.net.ssl.SSLParameters;
+
+/**
+ * Ein nicht-blockierender HTTPS-POST-Request.
+ * Verbindungsaufbau, TLS-Handshake, Senden und Empfangen laufen komplett im
+ * {@link NioSelector}-Thread. Der Aufrufer erhaelt sofort ein Future, das mit
+ * dem Body der Antwort erfuellt wird. Es wartet also kein Thread auf die Bank.
+ * Pro Request wird eine eigene Verbindung mit "Connection: close" verwendet.
+ * Da der Handler im Selector-Thread laeuft, darf er weder loggen noch Callbacks
+ * aufrufen - beides ist an die ThreadGroup des Aufrufers gebunden.
+ */
+public final class NioHttpsExchange implements NioSelector.Handler
+{
+    private final static ByteBuffer EMPTY = ByteBuffer.allocate(0);
+
+    private final String host;
+    private final int port;
+    private final int readTimeout;
+    private final SSLEngine engine;
+    private final ByteBuffer request;
+    private final CompletableFuture<byte[]> future = new CompletableFuture<byte[]>();
+
+    private SocketChannel channel = null;
+    private ByteBuffer netIn;
+    private ByteBuffer netOut;
+    private ByteBuffer appIn;
+    private final ByteArrayOutputStream response = new ByteArrayOutputStream(4096);
+
+    private volatile long deadline = 0L;
+    private boolean done = false;
+
+    // Ergebnis der Header-Auswertung
+    private int headerEnd = -1;
+    private int status = -1;
+    private long contentLength = -1L;
+    private boolean chunked = false;
+
+    /**
+     * ct.
+     * @param ctx der SSL-Kontext.
+     * @param verifyHost true, wenn der Hostname gegen das Zertifikat geprueft werden soll.
+     * @param host der Host.
+     * @param port der Port.
+     * @param path der Pfad.
+     * @param contentType der Content-Type des Requests.
+     * @param body der Body des Requests.
+     * @param readTimeout Timeout in Millisekunden, nach dem die Verbindung abgebrochen wird, wenn nichts passiert.
+     * @throws UnsupportedEncodingException
+     */
+    public NioHttpsExchange(SSLContext ctx, boolean verifyHost, String host, int port, String path, String contentType, byte[] body, int readTimeout) throws UnsupportedEncodingException
+    {
+        this.host = host;
+        this.port = port;
+        this.readTimeout = readTimeout;
+
+        this.engine = ctx.createSSLEngine(host,port);
+        this.engine.setUseClientMode(true);
+        if (verifyHost)
+        {
+            SSLParameters params = this.engine.getSSLParameters();
+            params.setEndpointIdentificationAlgorithm("HTTPS");
+            this.engine.setSSLParameters(params);
+        }
+
+        StringBuilder sb = new StringBuilder(256);
+        sb.append("POST ").append(path.length() > 0 ? path : "/").append(" HTTP/1.1\r\n");
+        sb.append("Host: ").append(host);
+        if (port != 443)
+            sb.append(':').append(port);
+        sb.append("\r\n");
+        sb.append("Content-Type: ").append(contentType).append("\r\n");
+        sb.append("Content-Length: ").append(body.length).append("\r\n");
+        sb.append("Connection: close\r\n");
+        sb.append("Accept: */*\r\n");
+        sb.append("\r\n");
+        byte[] head = sb.toString().getBytes(Comm.ENCODING);
+        this.request = ByteBuffer.allocate(head.length + body.length);
+        this.request.put(head).put(body).flip();
+
+        int packet = this.engine.getSession().getPacketBufferSize();
+        this.netIn = ByteBuffer.allocate(packet);
+        this.netOut = ByteBuffer.allocate(packet);
+        this.netOut.flip();
+        this.appIn = ByteBuffer.allocate(this.engine.getSession().getApplicationBufferSize());
+    }
+
+    /**
+     * Startet den Request.
+     * @param connectTimeout Timeout fuer den Verbindungsaufbau in Millisekunden.
+     * @return das Future mit dem Body der Antwort.
+     */
+    public CompletableFuture<byte[]> start(int connectTimeout)
+    {
+        try
+        {
+            this.channel = SocketChannel.open();
+            this.channel.configureBlocking(false);
+            this.channel.socket().setTcpNoDelay(true);
+            this.deadline = System.currentTimeMillis() + connectTimeout;
+            boolean connected = this.channel.connect(new InetSocketAddress(this.host,this.port));
+            if (connected)
+                this.engine.beginHandshake();
+            NioSelector.getInstance().register(this.channel,connected ? SelectionKey.OP_WRITE : SelectionKey.OP_CONNECT,this);
+        }
+        catch (Throwable t)
+        {
+            if (this.channel != null)
+                NioSelector.close(this.channel);
+            this.failed(t);
+        }
+        return this.future;
+    }
+
+    /**
+     * @see org.kapott.hbci.comm.NioSelector.Handler#getDeadline()
+     */
+    public long getDeadline()
+    {
+        return this.deadline;
+    }
+
+    /**
+     * @see org.kapott.hbci.comm.NioSelector.Handler#failed(java.lang.Throwable)
+     */
+    public void failed(Throwable t)
+    {
+        this.done = true;
+        this.deadline = 0L;
+        this.future.completeExceptionally(t);
+    }
+
+    /**
+     * @see org.kapott.hbci.comm.NioSelector.Handler#ready(java.nio.channels.SelectionKey)
+     */
+    public void ready(SelectionKey key) throws IOException
+    {
+        if (this.done)
+            return;
+
+        if (key.isValid() && key.isConnectable())
+        {
+            if (!this.channel.finishConnect())
+                return;
+            this.engine.beginHandshake();
+        }
+
+        this.deadline = System.currentTimeMillis() + this.readTimeout;
+        this.pump(key);
+    }
+
+    /**
+     * Treibt TLS-Handshake, Senden und Empfangen voran, bis der Kanal blockieren wuerde.
+     * @param key der Selection-Key.
+     * @throws IOException
+     */
+    private void pump(SelectionKey key) throws IOException
+    {
+        while (!this.done)
+        {
+            // Ausstehende TLS-Daten senden
+            if (this.netOut.hasRemaining())
+            {
+                this.channel.write(this.netOut);
+                if (this.netOut.hasRemaining())
+                {
+                    key.interestOps(SelectionKey.OP_WRITE);
+                    return;
+                }
+            }
+
+            HandshakeStatus hs = this.engine.getHandshakeStatus();
+            if (hs == HandshakeStatus.NEED_TASK)
+            {
+                // Die Tasks sind kurz (Zertifikatspruefung), daher direkt hier
+                Runnable task;
+                while ((task = this.engine.getDelegatedTask()) != null)
+                    task.run();
+                continue;
+            }
+
+            if (hs == HandshakeStatus.NEED_WRAP || (hs == HandshakeStatus.NOT_HANDSHAKING && this.request.hasRemaining()))
+            {
+                this.netOut.clear();
+                SSLEngineResult r = this.engine.wrap(hs == HandshakeStatus.NEED_WRAP ? EMPTY : this.request,this.netOut);
+                this.netOut.flip();
+                if (r.getStatus() == SSLEngineResult.Status.CLOSED && !this.netOut.hasRemaining())
+                    throw new EOFException("connection closed by server");
+                continue;
+            }
+
+            // Empfangen
+            this.netIn.flip();
+            SSLEngineResult r = this.engine.unwrap(this.netIn,this.appIn);
+            this.netIn.compact();
+
+            switch (r.getStatus())
+            {
+                case BUFFER_OVERFLOW:
+                    this.appIn = enlarge(this.appIn,this.engine.getSession().getApplicationBufferSize());
+                    continue;
+
+                case BUFFER_UNDERFLOW:
+                    if (this.netIn.position() == this.netIn.capacity())
+                        this.netIn = enlarge(this.netIn,this.engine.getSession().getPacketBufferSize());
+                    break;
+
+                case CLOSED:
+                    this.consume();
+                    this.complete();
+                    return;
+
+                default:
+                    this.consume();
+                    if (r.bytesConsumed() > 0 || r.bytesProduced() > 0)
+                        continue;
+            }
+
+            int n = this.channel.read(this.netIn);
+            if (n == -1)
+            {
+                if (hs != HandshakeStatus.NOT_HANDSHAKING)
+                    throw new EOFException("connection closed by server during handshake");
+                this.complete();
+                return;
+            }
+            if (n == 0)
+            {
+                key.interestOps(SelectionKey.OP_READ);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Vergroessert den Puffer.
+     * @param buf der Puffer im Schreib-Modus.
+     * @param min die minimale zusaetzliche Groesse.
+     * @return der neue Puffer im Schreib-Modus.
+     */
+    private static ByteBuffer enlarge(ByteBuffer buf, int min)
+    {
+        ByteBuffer b = ByteBuffer.allocate(buf.capacity() + Math.max(min,buf.capacity()));
+        buf.flip();
+        b.put(buf);
+        return b;
+    }
+
+    /**
+     * Uebernimmt die entschluesselten Daten in die Antwort und prueft, ob sie vollstaendig ist.
+     * @throws IOException
+     */
+    private void consume() throws IOException
+    {
+        if (this.appIn.position() == 0)
+            return;
+        this.appIn.flip();
+        this.response.write(this.appIn.array(),this.appIn.arrayOffset() + this.appIn.position(),this.appIn.remaining());
+        this.appIn.clear();
+
+        if (this.headerEnd == -1)
+            this.parseHeader();
+        if (this.headerEnd == -1)
+            return;
+
+        if (!this.chunked && this.contentLength >= 0 && this.response.size() - this.headerEnd >= this.contentLength)
+            this.complete();
+        else if (this.chunked && dechunk(this.response.toByteArray(),this.headerEnd) != null)
+            this.complete();
+    }
+
+    /**
+     * Wertet den HTTP-Header aus, sobald er vollstaendig empfangen wurde.
+     * @throws IOException
+     */
+    private void parseHeader() throws IOException
+    {
+        byte[] data = this.response.toByteArray();
+        int end = -1;
+        for (int i=0;i+3<data.length;i++)
+        {
+            if (data[i] == '\r' && data[i+1] == '\n' && data[i+2] == '\r' && data[i+3] == '\n')
+            {
+                end = i;
+                break;
+            }
+        }
+        if (end == -1)
+            return;
+
+        String[] lines = new String(data,0,end,Comm.ENCODING).split("\r\n");
+        int pos = end + 4;
+
+        // "100 Continue" ueberspringen
+        String[] parts = lines[0].split(" ",3);
+        if (!parts[0].startsWith("HTTP/") || parts.length < 2)
+            throw new IOException("invalid HTTP status line: " + lines[0]);
+        int code = Integer.parseInt(parts[1]);
+        if (code >= 100 && code < 200)
+        {
+            byte[] rest = new byte[data.length - pos];
+            System.arraycopy(data,pos,rest,0,rest.length);
+            this.response.reset();
+            this.response.write(rest);
+            this.parseHeader();
+            return;
+        }
+
+        for (int i=1;i<lines.length;i++)
+        {
+            int idx = lines[i].indexOf(':');
+            if (idx == -1)
+                continue;
+            String name = lines[i].substring(0,idx).trim().toLowerCase(Locale.ROOT);
+            String value = lines[i].substring(idx+1).trim();
+            if (name.equals("content-length"))
+                this.contentLength = Long.parseLong(value);
+            else if (name.equals("transfer-encoding"))
+                this.chunked = value.toLowerCase(Locale.ROOT).contains("chunked");
+        }
+
+        this.status = code;
+        this.headerEnd = pos;
+        if (this.status >= 400)
+            throw new IOException("Server returned HTTP response code: " + this.status + " for URL: https://" + this.host + ":" + this.port);
+    }
+
+    /**
+     * Dekodiert einen Body im Chunked-Encoding.
+     * @param data die Daten.
+     * @param pos Beginn des Bodys.
+     * @return der dekodierte Body oder NULL, wenn er noch nicht vollstaendig ist.
+     * @throws IOException
+     */
+    private static byte[] dechunk(byte[] data, int pos) throws IOException
+    {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream(data.length - pos);
+        while (true)
+        {
+            int eol = indexOfCRLF(data,pos);
+            if (eol == -1)
+                return null;
+            String line = new String(data,pos,eol - pos,Comm.ENCODING);
+            int idx = line.indexOf(';');
+            int size = Integer.parseInt((idx != -1 ? line.substring(0,idx) : line).trim(),16);
+            pos = eol + 2;
+            if (size == 0)
+                return bos.toByteArray();
+            if (pos + size + 2 > data.length)
+                return null;
+            bos.write(data,pos,size);
+            pos += size + 2;
+        }
+    }
+
+    /**
+     * Sucht das naechste Zeilenende.
+     * @param data die Daten.
+     * @param pos Startposition.
+     * @return Position des Zeilenendes oder -1.
+     */
+    private static int indexOfCRLF(byte[] data, int pos)
+    {
+        for (int i=pos;i+1<data.length;i++)
+        {
+            if (data[i] == '\r' && data[i+1] == '\n')
+                return i;
+        }
+        return -1;
+    }
+
+    /**
+     * Schliesst die Verbindung und erfuellt das Future mit dem Body der Antwort.
+     * @throws IOException
+     */
+    private void complete() throws IOException
+    {
+        if (this.done)
+            return;
+        if (this.headerEnd == -1)
+            throw new EOFException("connection closed by server before response");
+
+        byte[] data = this.response.toByteArray();
+        byte[] body;
+        if (this.chunked)
+        {
+            body = dechunk(data,this.headerEnd);
+            if (body == null)
+                throw new EOFException("connection closed by server before end of response");
+        }
+        else
+        {
+            int length = data.length - this.headerEnd;
+            if (this.contentLength >= 0)
+            {
+                if (length < this.contentLength)
+                    throw new EOFException("connection closed by server before end of response");
+                length = (int) this.contentLength;
+            }
+            body = new byte[length];
+            System.arraycopy(data,this.headerEnd,body,0,length);
+        }
+
+        this.done = true;
+        this.deadline = 0L;
+        this.engine.closeOutbound();
+        NioSelector.close(this.channel);
+        this.future.complete(body);
+    }
+}
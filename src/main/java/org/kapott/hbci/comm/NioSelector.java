@@ -0,0 +1,227 @@
+/**********************************************************************
+ *
+ * This file is part of HBCI4Java.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ **********************************************************************/
+
+package org.kapott.hbci.comm;
+
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.nio.channels.SelectableChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import org.kapott.hbci.manager.HBCIUtils;
+
+/**
+ * Ein gemeinsamer Selector-Thread fuer alle nicht-blockierenden Verbindungen.
+ * Statt eines wartenden Threads pro Dialog bedient dieser eine Thread alle
+ * offenen Verbindungen. Die Handler werden im Selector-Thread aufgerufen und
+ * duerfen daher nicht blockieren.
+ */
+final class NioSelector implements Runnable
+{
+    /**
+     * Wird vom Selector-Thread benachrichtigt, wenn der Kanal bereit ist.
+     */
+    interface Handler
+    {
+        /**
+         * Wird aufgerufen, wenn der Kanal fuer die angemeldeten Operationen bereit ist.
+         * @param key der Selection-Key.
+         * @throws IOException
+         */
+        public void ready(SelectionKey key) throws IOException;
+
+        /**
+         * Wird aufgerufen, wenn die Verbindung fehlgeschlagen ist. Der Kanal ist dann bereits geschlossen.
+         * @param t der Fehler.
+         */
+        public void failed(Throwable t);
+
+        /**
+         * Liefert den Zeitpunkt, zu dem die Verbindung abgebrochen wird, wenn bis dahin nichts passiert.
+         * @return der Zeitpunkt in Millisekunden oder 0, wenn es kein Timeout gibt.
+         */
+        public long getDeadline();
+    }
+
+    private static NioSelector instance = null;
+
+    private final Selector selector;
+    private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<Runnable>();
+
+    /**
+     * Liefert den Selector und startet ihn beim ersten Aufruf.
+     * @return der Selector.
+     * @throws IOException
+     */
+    static synchronized NioSelector getInstance() throws IOException
+    {
+        if (instance == null)
+        {
+            instance = new NioSelector();
+            Thread t = new Thread(instance,"HBCI4Java NIO selector");
+            t.setDaemon(true);
+            t.start();
+        }
+        return instance;
+    }
+
+    /**
+     * ct.
+     * @throws IOException
+     */
+    private NioSelector() throws IOException
+    {
+        this.selector = Selector.open();
+    }
+
+    /**
+     * Fuehrt die Aufgabe im Selector-Thread aus.
+     * @param r die Aufgabe.
+     */
+    void execute(Runnable r)
+    {
+        this.tasks.add(r);
+        this.selector.wakeup();
+    }
+
+    /**
+     * Meldet den Kanal am Selector an.
+     * @param ch der nicht-blockierende Kanal.
+     * @param ops die Operationen, fuer die der Handler benachrichtigt werden soll.
+     * @param h der Handler.
+     */
+    void register(final SelectableChannel ch, final int ops, final Handler h)
+    {
+        this.execute(() ->
+        {
+            try
+            {
+                SelectionKey key = ch.register(this.selector,ops,h);
+
+                // Beim Anmelden ist der Kanal evtl. schon bereit, z.Bsp. nach einem sofortigen connect
+                if (ops == SelectionKey.OP_WRITE)
+                    this.dispatch(key);
+            }
+            catch (Throwable t)
+            {
+                close(ch);
+                h.failed(t);
+            }
+        });
+    }
+
+    /**
+     * @see java.lang.Runnable#run()
+     */
+    public void run()
+    {
+        while (true)
+        {
+            try
+            {
+                this.selector.select(1000L);
+
+                Runnable r;
+                while ((r = this.tasks.poll()) != null)
+                    r.run();
+
+                Iterator<SelectionKey> it = this.selector.selectedKeys().iterator();
+                while (it.hasNext())
+                {
+                    SelectionKey key = it.next();
+                    it.remove();
+                    this.dispatch(key);
+                }
+
+                this.expire();
+            }
+            catch (Exception e)
+            {
+                // Der Selector-Thread darf nicht sterben
+                try
+                {
+                    HBCIUtils.log(e,HBCIUtils.LOG_ERR);
+                }
+                catch (Exception e2)
+                {
+                    // HBCI4Java nicht fuer diese ThreadGroup initialisiert
+                }
+            }
+        }
+    }
+
+    /**
+     * Benachrichtigt den Handler des Keys.
+     * @param key der Key.
+     */
+    private void dispatch(SelectionKey key)
+    {
+        Handler h = (Handler) key.attachment();
+        try
+        {
+            if (key.isValid())
+                h.ready(key);
+        }
+        catch (Throwable t)
+        {
+            key.cancel();
+            close(key.channel());
+            h.failed(t);
+        }
+    }
+
+    /**
+     * Bricht alle Verbindungen ab, deren Timeout abgelaufen ist.
+     */
+    private void expire()
+    {
+        long now = System.currentTimeMillis();
+        for (SelectionKey key:this.selector.keys())
+        {
+            Handler h = (Handler) key.attachment();
+            long deadline = h.getDeadline();
+            if (!key.isValid() || deadline == 0L || deadline > now)
+                continue;
+            key.cancel();
+            close(key.channel());
+            h.failed(new SocketTimeoutException("timeout"));
+        }
+    }
+
+    /**
+     * Schliesst den Kanal ohne Fehler.
+     * @param ch der Kanal.
+     */
+    static void close(SelectableChannel ch)
+    {
+        try
+        {
+            ch.close();
+        }
+        catch (IOException e)
+        {
+            // ignore
+        }
+    }
+}
@@ -0,0 +1,318 @@
+/**********************************************************************
+ *
+ * This file is part of HBCI4Java.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ **********************************************************************/
+
+package org.kapott.hbci.comm;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Eine nicht-blockierende TCP-Verbindung zum HBCI-Server (Port 3000).
+ * Die Verbindung bleibt fuer den ganzen Dialog offen. Senden und Empfangen
+ * laufen im gemeinsamen {@link NioSelector}-Thread, so dass viele Dialoge ohne
+ * eigenen wartenden Thread abgewickelt werden koennen.
+ * Sobald der Nachrichtenkopf empfangen wurde, wird der Empfangspuffer anhand
+ * der darin enthaltenen Nachrichtengroesse passend angelegt und die Antwort
+ * ohne weiteres Umkopieren gelesen.
+ * Da der Handler im Selector-Thread laeuft, darf er weder loggen noch Callbacks
+ * aufrufen. Vom {@link Filter} wird nur {@link Filter#decode(byte[], int)}
+ * verwendet, das bei den mitgelieferten Filtern ohne beides auskommt.
+ */
+public final class NioSocketConnection implements NioSelector.Handler
+{
+    /**
+     * Groesse, mit der der Empfangspuffer beginnt, solange die Nachrichtengroesse nicht bekannt ist.
+     */
+    private final static int INITIAL_SIZE = 1024;
+
+    /**
+     * Anzahl der Bytes vom Anfang der Nachricht, in denen die Nachrichtengroesse gesucht wird.
+     */
+    private final static int HEADER_SIZE = 256;
+
+    private final SocketChannel channel;
+    private final Filter filter;
+    private final int readTimeout;
+
+    private volatile long deadline = 0L;
+
+    // Zustand des laufenden Nachrichtenaustauschs
+    private CompletableFuture<String> future = null;
+    private ByteBuffer request = null;
+    private ByteBuffer response = null;
+    private int msgsize = -1;
+    private int expected = -1;
+
+    /**
+     * ct.
+     * @param channel der verbundene Kanal.
+     * @param filter der Filter, mit dem die Antworten dekodiert werden.
+     * @param readTimeout Timeout in Millisekunden, nach dem die Verbindung abgebrochen wird, wenn nichts passiert. 0 fuer keinen Timeout.
+     */
+    private NioSocketConnection(SocketChannel channel, Filter filter, int readTimeout)
+    {
+        this.channel = channel;
+        this.filter = filter;
+        this.readTimeout = readTimeout;
+    }
+
+    /**
+     * Baut die Verbindung zum Server auf.
+     * Der Verbindungsaufbau selbst erfolgt blockierend.
+     * @param remote die Adresse des Servers.
+     * @param localPort der lokale Port oder 0, wenn er beliebig ist.
+     * @param filter der Filter, mit dem die Antworten dekodiert werden.
+     * @param readTimeout Timeout in Millisekunden, nach dem die Verbindung abgebrochen wird, wenn nichts passiert. 0 fuer keinen Timeout.
+     * @return die Verbindung.
+     * @throws IOException
+     */
+    public static NioSocketConnection open(InetSocketAddress remote, int localPort, Filter filter, int readTimeout) throws IOException
+    {
+        SocketChannel ch = SocketChannel.open();
+        try
+        {
+            if (localPort != 0)
+            {
+                ch.setOption(StandardSocketOptions.SO_REUSEADDR,true);
+                ch.bind(new InetSocketAddress(localPort));
+            }
+            ch.connect(remote);
+            ch.configureBlocking(false);
+            ch.setOption(StandardSocketOptions.TCP_NODELAY,true);
+            return new NioSocketConnection(ch,filter,readTimeout);
+        }
+        catch (IOException | RuntimeException e)
+        {
+            NioSelector.close(ch);
+            throw e;
+        }
+    }
+
+    /**
+     * Sendet die bereits kodierte Nachricht und liefert die dekodierte Antwort.
+     * Es kann immer nur ein Nachrichtenaustausch gleichzeitig laufen.
+     * @param data die kodierte Nachricht.
+     * @return das Future mit der dekodierten Antwort.
+     */
+    public CompletableFuture<String> exchange(byte[] data)
+    {
+        CompletableFuture<String> f = new CompletableFuture<String>();
+        synchronized (this)
+        {
+            if (this.future != null && !this.future.isDone())
+                throw new IllegalStateException("message exchange already in progress");
+            this.future = f;
+            this.request = ByteBuffer.wrap(data);
+            this.response = ByteBuffer.allocate(INITIAL_SIZE);
+            this.msgsize = -1;
+            this.expected = -1;
+        }
+
+        try
+        {
+            this.touch();
+            NioSelector.getInstance().register(this.channel,SelectionKey.OP_WRITE,this);
+        }
+        catch (Throwable t)
+        {
+            NioSelector.close(this.channel);
+            this.failed(t);
+        }
+        return f;
+    }
+
+    /**
+     * Schliesst die Verbindung.
+     */
+    public void close()
+    {
+        NioSelector.close(this.channel);
+    }
+
+    /**
+     * Prueft, ob die Verbindung noch offen ist.
+     * @return true, wenn die Verbindung noch offen ist.
+     */
+    public boolean isOpen()
+    {
+        return this.channel.isOpen();
+    }
+
+    /**
+     * @see org.kapott.hbci.comm.NioSelector.Handler#getDeadline()
+     */
+    public long getDeadline()
+    {
+        return this.deadline;
+    }
+
+    /**
+     * @see org.kapott.hbci.comm.NioSelector.Handler#failed(java.lang.Throwable)
+     */
+    public synchronized void failed(Throwable t)
+    {
+        this.deadline = 0L;
+        if (this.future != null)
+            this.future.completeExceptionally(t);
+    }
+
+    /**
+     * @see org.kapott.hbci.comm.NioSelector.Handler#ready(java.nio.channels.SelectionKey)
+     */
+    public synchronized void ready(SelectionKey key) throws IOException
+    {
+        if (this.future == null || this.future.isDone())
+        {
+            // Zwischen zwei Nachrichten ist nichts zu tun
+            key.interestOps(0);
+            return;
+        }
+
+        this.touch();
+
+        if (this.request.hasRemaining())
+        {
+            this.channel.write(this.request);
+            if (this.request.hasRemaining())
+            {
+                key.interestOps(SelectionKey.OP_WRITE);
+                return;
+            }
+        }
+
+        while (true)
+        {
+            if (!this.response.hasRemaining())
+                this.response = enlarge(this.response,Math.max(this.expected,this.response.capacity() + INITIAL_SIZE));
+
+            int n = this.channel.read(this.response);
+            if (n == -1)
+                throw new EOFException("connection closed by server after " + this.response.position() + " bytes");
+            if (n == 0)
+            {
+                key.interestOps(SelectionKey.OP_READ);
+                return;
+            }
+
+            if (this.msgsize == -1)
+                this.parseHeader();
+
+            if (this.expected != -1 && this.response.position() >= this.expected && this.complete())
+            {
+                key.interestOps(0);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Setzt den Timeout neu, da etwas passiert ist.
+     */
+    private void touch()
+    {
+        this.deadline = (this.readTimeout > 0) ? System.currentTimeMillis() + this.readTimeout : 0L;
+    }
+
+    /**
+     * Sucht die Nachrichtengroesse im zweiten Datenelement des Nachrichtenkopfes.
+     * Wurde sie gefunden, wird der Empfangspuffer auf die erwartete Groesse gebracht.
+     */
+    private void parseHeader()
+    {
+        byte[] head = Arrays.copyOf(this.response.array(),Math.min(this.response.position(),HEADER_SIZE));
+        String st = this.filter.decode(head,head.length);
+
+        int firstPlus = st.indexOf('+');
+        if (firstPlus == -1)
+            return;
+        int secondPlus = st.indexOf('+',firstPlus + 1);
+        if (secondPlus == -1)
+            return;
+
+        this.msgsize = Integer.parseInt(st.substring(firstPlus + 1,secondPlus));
+        int len = this.filter.getEncodedLength(this.msgsize);
+        this.expected = (len != -1) ? len : this.msgsize;
+        if (this.expected > this.response.capacity())
+            this.response = enlarge(this.response,this.expected);
+    }
+
+    /**
+     * Dekodiert die Antwort und erfuellt das Future, wenn sie vollstaendig ist.
+     * Enthaelt die Antwort z.Bsp. Zeilenumbrueche, ist die kodierte Nachricht
+     * laenger als berechnet. Dann wird weiter gelesen, der Puffer waechst dabei
+     * um die fehlende Laenge. Die Vollstaendigkeit wird per
+     * {@link Filter#getDecodedLength(byte[], int)} geprueft, dekodiert wird
+     * erst die vollstaendige Antwort - und zwar direkt im Empfangspuffer.
+     * @return true, wenn die Antwort vollstaendig war.
+     */
+    private boolean complete()
+    {
+        byte[] data = this.response.array();
+        int len = this.response.position();
+
+        String st = null;
+        int decoded = this.filter.getDecodedLength(data,len);
+        if (decoded == -1)
+        {
+            // Der Filter kann die Laenge nur per Dekodieren ermitteln. Er
+            // dekodiert im uebergebenen Array selbst, falls noch etwas fehlt,
+            // werden die kodierten Daten aber noch gebraucht
+            st = this.filter.decode(Arrays.copyOf(data,len),len);
+            decoded = st.length();
+        }
+
+        if (decoded < this.msgsize)
+        {
+            int missing = this.filter.getEncodedLength(this.msgsize - decoded);
+            this.expected = len + (missing != -1 ? missing : this.msgsize - decoded);
+            return false;
+        }
+
+        if (st == null)
+            st = this.filter.decode(data,len);
+
+        this.deadline = 0L;
+        this.request = null;
+        this.response = null;
+        this.future.complete(st);
+        return true;
+    }
+
+    /**
+     * Vergroessert den Puffer.
+     * @param buf der Puffer im Schreib-Modus.
+     * @param size die neue Groesse.
+     * @return der neue Puffer im Schreib-Modus.
+     */
+    private static ByteBuffer enlarge(ByteBuffer buf, int size)
+    {
+        ByteBuffer b = ByteBuffer.allocate(size);
+        buf.flip();
+        b.put(buf);
+        return b;
+    }
+}
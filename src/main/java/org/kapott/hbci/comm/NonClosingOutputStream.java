@@ -0,0 +1,58 @@
+/**********************************************************************
+ *
+ * This file is part of HBCI4Java.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ **********************************************************************/
+
+package org.kapott.hbci.comm;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Stream, der beim Schliessen nur flusht, den darunterliegenden Stream aber offen laesst.
+ * Wird von den Filtern verwendet, damit beim Abschliessen der Kodierung nicht
+ * die Verbindung zum Server geschlossen wird.
+ */
+final class NonClosingOutputStream extends FilterOutputStream
+{
+    /**
+     * ct.
+     * @param out der darunterliegende Stream.
+     */
+    NonClosingOutputStream(OutputStream out)
+    {
+        super(out);
+    }
+
+    /**
+     * @see java.io.FilterOutputStream#write(byte[], int, int)
+     */
+    public void write(byte[] b, int off, int len) throws IOException
+    {
+        this.out.write(b,off,len);
+    }
+
+    /**
+     * @see java.io.FilterOutputStream#close()
+     */
+    public void close() throws IOException
+    {
+        this.flush();
+    }
+}
@@ -58,7 +58,7 @@ extends Authenticator
                     HBCICallback.TYPE_TEXT,
                     retData);
             user=retData.toString();
-            LogFilter.getInstance().addSecretData(user,"X",LogFilter.FILTER_IDS);
+            LogFilter.getInstance(passport).addSecretData(user,"X",LogFilter.FILTER_IDS);
         } else {
             HBCIUtils.log("returning proxyuser from client.passport.PinTan.proxyuser", HBCIUtils.LOG_DEBUG);
         }
@@ -72,7 +72,7 @@ extends Authenticator
                     HBCICallback.TYPE_SECRET,
                     retData);
             pass=retData.toString();
-            LogFilter.getInstance().addSecretData(pass,"X",LogFilter.FILTER_SECRETS);
+            LogFilter.getInstance(passport).addSecretData(pass,"X",LogFilter.FILTER_SECRETS);
         } else {
             HBCIUtils.log("returning proxyuser from client.passport.PinTan.proxypass", HBCIUtils.LOG_DEBUG);
         }
@@ -60,6 +60,11 @@ import org.kapott.hbci.passport.AbstractPinTanPassport;
 public class PinTanSSLSocketFactory
     extends SSLSocketFactory
 {
+    // die factory ohne zertifikatspruefung wird von allen passports gemeinsam
+    // benutzt, damit tls-sessions wiederaufgenommen werden koennen
+    private static SSLContext trustAllContext;
+    private static SSLSocketFactory trustAllSocketFactory;
+    
     private SSLSocketFactory realSocketFactory;
 
     public PinTanSSLSocketFactory(AbstractPinTanPassport passport)
@@ -70,11 +75,7 @@ public class PinTanSSLSocketFactory
                     "creating socket factory with disabled cert checking",
                     HBCIUtils.LOG_WARN);
                 
-                SSLContext sslContext = SSLContext.getInstance("SSL");
-                sslContext.init(null,
-                    new TrustManager[] {new PinTanSSLTrustManager()},
-                    new SecureRandom());
-                this.realSocketFactory = sslContext.getSocketFactory();
+                this.realSocketFactory = getTrustAllSocketFactory();
                 
             } else {
                 HBCIUtils.log("using system socket factory", HBCIUtils.LOG_DEBUG);
@@ -86,6 +87,42 @@ public class PinTanSSLSocketFactory
     }
     
     
+    private static synchronized SSLSocketFactory getTrustAllSocketFactory()
+        throws Exception
+    {
+        if (trustAllSocketFactory==null) {
+            trustAllSocketFactory = getTrustAllContext().getSocketFactory();
+        }
+        return trustAllSocketFactory;
+    }
+    
+    private static synchronized SSLContext getTrustAllContext()
+        throws Exception
+    {
+        if (trustAllContext==null) {
+            SSLContext sslContext = SSLContext.getInstance("SSL");
+            sslContext.init(null,
+                new TrustManager[] {new PinTanSSLTrustManager()},
+                new SecureRandom());
+            trustAllContext = sslContext;
+        }
+        return trustAllContext;
+    }
+    
+    /* liefert den ssl-kontext passend zur socket factory - wird fuer
+     * nicht-blockierende verbindungen per SSLEngine gebraucht */
+    static SSLContext getSSLContext(boolean checkCert)
+        throws Exception
+    {
+        return checkCert ? SSLContext.getDefault() : getTrustAllContext();
+    }
+    
+    /* liefert die eigentliche socket factory ohne ssl-logging */
+    SSLSocketFactory getRealSocketFactory()
+    {
+        return this.realSocketFactory;
+    }
+    
     public boolean debug()
     {
         return HBCIUtils.getParam("log.ssl.enable","0").equals("1");
@@ -0,0 +1,119 @@
+/**********************************************************************
+ *
+ * This file is part of HBCI4Java.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ **********************************************************************/
+
+package org.kapott.hbci.comm;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Empfangspuffer fuer eine Nachricht.
+ * Die bereits vom {@link Filter} dekodierten Bytes werden direkt in ein einziges
+ * Array gelesen, das anhand der bekannten Nachrichtengroesse vorab passend
+ * angelegt wird. Daraus wird einmalig der String fuer den Parser erzeugt.
+ * Frueher wurde jeder 1 KB-Block einzeln in einen String gewandelt und
+ * mehrfach umkopiert.
+ */
+final class ReceiveBuffer
+{
+    /**
+     * Groesse, mit der der Puffer bei unbekannter Nachrichtengroesse beginnt.
+     */
+    private final static int INITIAL_SIZE = 8 * 1024;
+
+    private byte[] data;
+    private int length = 0;
+
+    /**
+     * ct.
+     * @param expected die erwartete Groesse in Bytes oder -1, wenn sie nicht bekannt ist.
+     */
+    ReceiveBuffer(int expected)
+    {
+        this.data = new byte[expected > 0 ? expected : INITIAL_SIZE];
+    }
+
+    /**
+     * Stellt sicher, dass der Puffer mindestens die angegebene Groesse hat.
+     * @param size die Groesse.
+     */
+    void ensureCapacity(int size)
+    {
+        if (size <= this.data.length)
+            return;
+        byte[] b = new byte[Math.max(size,this.data.length * 2)];
+        System.arraycopy(this.data,0,b,0,this.length);
+        this.data = b;
+    }
+
+    /**
+     * Liest einmal vom Stream, maximal so viele Bytes wie angegeben.
+     * @param in der Stream.
+     * @param max die max. Anzahl der Bytes oder -1, wenn beliebig viele gelesen werden koennen.
+     * @return die Anzahl der gelesenen Bytes oder -1 am Ende des Streams.
+     * @throws IOException
+     */
+    int readFrom(InputStream in, int max) throws IOException
+    {
+        if (this.length == this.data.length)
+        {
+            // Bei passend angelegtem Puffer ist meist nur noch das Ende des Streams zu lesen
+            int c = in.read();
+            if (c == -1)
+                return -1;
+            this.ensureCapacity(this.length + 1);
+            this.data[this.length++] = (byte) c;
+            return 1;
+        }
+        int free = this.data.length - this.length;
+        int num = in.read(this.data,this.length,max >= 0 ? Math.min(max,free) : free);
+        if (num > 0)
+            this.length += num;
+        return num;
+    }
+
+    /**
+     * Liefert die Anzahl der gelesenen Bytes.
+     * @return die Anzahl der gelesenen Bytes.
+     */
+    int length()
+    {
+        return this.length;
+    }
+
+    /**
+     * Liefert das Array mit den Daten. Es kann groesser sein als {@link #length()}.
+     * @return das Array mit den Daten.
+     */
+    byte[] array()
+    {
+        return this.data;
+    }
+
+    /**
+     * Liefert die empfangenen Daten als String im Zeichensatz {@link Comm#ENCODING}.
+     * @see java.lang.Object#toString()
+     */
+    public String toString()
+    {
+        return new String(this.data,0,this.length,StandardCharsets.ISO_8859_1);
+    }
+}
@@ -27,6 +27,7 @@ import org.kapott.hbci.comm.Comm;
 import org.kapott.hbci.exceptions.InvalidArgumentException;
 import org.kapott.hbci.exceptions.InvalidUserDataException;
 import org.kapott.hbci.manager.HBCIUtilsInternal;
+import org.kapott.hbci.protocol.ParseCursor;
 
 /* @internal
     @brief SyntaxBin enthält Binärdaten.
@@ -165,7 +166,7 @@ public class SyntaxBin
         return ret;
     }
     
-    private void initData(StringBuffer res,int minsize,int maxsize)
+    private void initData(ParseCursor res,int minsize,int maxsize)
     {
         int startidx = skipPreDelim(res);
         int endidx = findNextDelim(res, startidx);
@@ -174,16 +175,16 @@ public class SyntaxBin
         String temp = parse(st);
         setContent(temp, minsize, maxsize);
 
-        res.delete(0, endidx);
+        res.setPos(endidx);
     }
 
     /** @see SyntaxDE */
-    public SyntaxBin(StringBuffer res, int minsize, int maxsize)
+    public SyntaxBin(ParseCursor res, int minsize, int maxsize)
     {
         initData(res,minsize,maxsize);
     }
 
-    public void init(StringBuffer res, int minsize, int maxsize)
+    public void init(ParseCursor res, int minsize, int maxsize)
     {
         initData(res,minsize,maxsize);
     }
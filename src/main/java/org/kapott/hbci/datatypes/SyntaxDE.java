@@ -36,6 +36,8 @@ package org.kapott.hbci.datatypes;
 
 import org.kapott.hbci.exceptions.InvalidArgumentException;
 import org.kapott.hbci.manager.HBCIUtilsInternal;
+import org.kapott.hbci.protocol.ParseCursor;
+import org.kapott.hbci.tools.PoolableObject;
 
 /* @internal
     @brief Abstract base class for datatypes.
@@ -45,6 +47,7 @@ import org.kapott.hbci.manager.HBCIUtilsInternal;
     @author $Author: willuhn $
 */
 public abstract class SyntaxDE
+    extends PoolableObject
 {
     private String content;  /**< @internal @brief contains the value of the DE in human readable format */
     
@@ -76,9 +79,12 @@ public abstract class SyntaxDE
         initData(x,minsize,maxsize);
     }
     
-    public void init(StringBuffer x, int minsize, int maxsize)
+    public void init(ParseCursor res, int minsize, int maxsize)
     {
-        initData(x.toString(),minsize,maxsize);
+        int startidx = skipPreDelim(res);
+        int endidx = findNextDelim(res, startidx);
+        initData(res.substring(startidx, endidx),minsize,maxsize);
+        res.setPos(endidx);
     }
     
     private void initData()
@@ -149,21 +155,21 @@ public abstract class SyntaxDE
         @brief Returns the index, where the next value in the HBCI message @c res
                starts.
 
-        This method is needed when parsing HBCI messages. It checks the first
-        character of String @p res. If this character is one of the
-        HBCI-specific data-element-delimiters, 1 will be returned, else 0
-        (i.e. the return value is the index into the String @p res where we
-        can start fetching the next syntax token)
+        This method is needed when parsing HBCI messages. It checks the character
+        at the current read position of @p res. If this character is one of the
+        HBCI-specific data-element-delimiters, the position after it will be returned,
+        else the current read position (i.e. the return value is the absolute index
+        into the message where we can start fetching the next syntax token)
 
-        @param res A part of an HBCI message to be parsed.
-        @return Index into @p res where next token starts.
+        @param res The HBCI message to be parsed, positioned at the next token.
+        @return Absolute index into @p res where next token starts.
     */
-    protected static int skipPreDelim(StringBuffer res)
+    protected static int skipPreDelim(ParseCursor res)
     {
-        int ret = 0;
+        int ret = res.getPos();
 
-        if (res.length() != 0) {
-            char ch = res.charAt(0);
+        if (ret < res.length()) {
+            char ch = res.charAt(ret);
  
             if (ch == '\'' || ch == '+' || ch == ':') {
                 ret++;
@@ -173,6 +179,16 @@ public abstract class SyntaxDE
         return ret;
     }
 
+    /** @internal
+        @brief Returns the index of the next delimiter token.
+
+        @see #findNextDelim(CharSequence, int)
+    */
+    public static int findNextDelim(ParseCursor res, int startidx)
+    {
+        return findNextDelim(res.getData(), startidx);
+    }
+
     /** @internal
         @brief Returns the index of the next delimiter token.
 
@@ -187,7 +203,7 @@ public abstract class SyntaxDE
                 next delimiter character, the return value will be the next character
                 after the end of the String @p res (i.e. will equal @c res.length())
     */
-    public static int findNextDelim(StringBuffer res, int startidx)
+    public static int findNextDelim(CharSequence res, int startidx)
     {
         int ret = startidx;
         boolean quoted = false;
@@ -208,7 +224,7 @@ public abstract class SyntaxDE
                         binLenStart = ret;
                     } else {
                         int binLenEnd=ret-1;
-                        String st=res.substring(binLenStart, binLenEnd);
+                        String st=res.subSequence(binLenStart, binLenEnd).toString();
                         int binLen = Integer.parseInt(st);
 
                         ret+=binLen;
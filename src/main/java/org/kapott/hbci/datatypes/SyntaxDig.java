@@ -23,6 +23,7 @@ package org.kapott.hbci.datatypes;
 
 import org.kapott.hbci.exceptions.InvalidArgumentException;
 import org.kapott.hbci.manager.HBCIUtilsInternal;
+import org.kapott.hbci.protocol.ParseCursor;
 
 /* a representation of the datatype "dig", which
     consists of a string of digits (including zeroes) */
@@ -68,7 +69,7 @@ public final class SyntaxDig
 
     // --------------------------------------------------------------------------------
 
-    private void initData(StringBuffer res, int minsize, int maxsize)
+    private void initData(ParseCursor res, int minsize, int maxsize)
     {
         int startidx = skipPreDelim(res);
         int endidx = findNextDelim(res, startidx);
@@ -83,15 +84,15 @@ public final class SyntaxDig
         }
 
         setContent(st,minsize,maxsize);
-        res.delete(0, endidx);
+        res.setPos(endidx);
     }
     
-    public SyntaxDig(StringBuffer res, int minsize, int maxsize)
+    public SyntaxDig(ParseCursor res, int minsize, int maxsize)
     {
         initData(res,minsize,maxsize);
     }
     
-    public void init(StringBuffer res, int minsize, int maxsize)
+    public void init(ParseCursor res, int minsize, int maxsize)
     {
         initData(res,minsize,maxsize);
     }
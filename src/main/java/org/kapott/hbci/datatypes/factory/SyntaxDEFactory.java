@@ -23,23 +23,103 @@ package org.kapott.hbci.datatypes.factory;
 
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
-import java.util.Enumeration;
-import java.util.Hashtable;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
+import org.kapott.hbci.datatypes.SyntaxAN;
+import org.kapott.hbci.datatypes.SyntaxBin;
+import org.kapott.hbci.datatypes.SyntaxCode;
+import org.kapott.hbci.datatypes.SyntaxCtr;
+import org.kapott.hbci.datatypes.SyntaxCur;
 import org.kapott.hbci.datatypes.SyntaxDE;
+import org.kapott.hbci.datatypes.SyntaxDTAUS;
+import org.kapott.hbci.datatypes.SyntaxDate;
+import org.kapott.hbci.datatypes.SyntaxDig;
+import org.kapott.hbci.datatypes.SyntaxFloat;
+import org.kapott.hbci.datatypes.SyntaxID;
+import org.kapott.hbci.datatypes.SyntaxJN;
+import org.kapott.hbci.datatypes.SyntaxNum;
+import org.kapott.hbci.datatypes.SyntaxTime;
+import org.kapott.hbci.datatypes.SyntaxWrt;
+import org.kapott.hbci.exceptions.HBCI_Exception;
 import org.kapott.hbci.exceptions.InitializingException;
 import org.kapott.hbci.exceptions.NoSuchConstructorException;
 import org.kapott.hbci.exceptions.NoSuchSyntaxException;
 import org.kapott.hbci.exceptions.ParseErrorException;
-import org.kapott.hbci.manager.HBCIUtils;
 import org.kapott.hbci.manager.HBCIUtilsInternal;
+import org.kapott.hbci.protocol.ParseCursor;
 import org.kapott.hbci.tools.ObjectFactory;
 
+/* erzeugt die instanzen der datentypen (SyntaxDE) fuer die datenelemente.
+   die eingebauten datentypen werden ueber eine statische tabelle direkt
+   instanziiert. unbekannte datentypen werden ueber einen austauschbaren
+   Resolver gesucht - per default wie frueher per reflection ueber die klasse
+   org.kapott.hbci.datatypes.Syntax<datentyp> */
 public class SyntaxDEFactory 
 {
+    /** erzeugt eine neue instanz eines datentyps aus einem wert */
+    public interface ValueCreator
+    {
+        public SyntaxDE create(String value,int minsize,int maxsize);
+    }
+    
+    /** erzeugt eine neue instanz eines datentyps durch parsen */
+    public interface ParseCreator
+    {
+        public SyntaxDE create(ParseCursor res,int minsize,int maxsize);
+    }
+    
+    /** sucht die konstruktoren fuer einen nicht registrierten datentyp.
+        liefert NULL, wenn der datentyp unbekannt ist */
+    public interface Resolver
+    {
+        public Creators resolve(String dataType);
+    }
+    
+    /** die beiden konstruktoren eines datentyps. ein konstruktor darf NULL
+        sein, wenn der datentyp diese art der erzeugung nicht unterstuetzt */
+    public final static class Creators
+    {
+        private final ValueCreator value;
+        private final ParseCreator parse;
+        
+        public Creators(ValueCreator value,ParseCreator parse)
+        {
+            this.value=value;
+            this.parse=parse;
+        }
+    }
+    
+    private final static Map<String, Creators>           builtin;
+    private final static ConcurrentMap<String, Creators> resolved=new ConcurrentHashMap<String, Creators>();
+    private final static Resolver                        defaultResolver=SyntaxDEFactory::reflect;
+    private static volatile Resolver                     resolver=defaultResolver;
+    
+    static {
+        Map<String, Creators> m=new HashMap<String, Creators>();
+        m.put("AN",new Creators(SyntaxAN::new,SyntaxAN::new));
+        m.put("Bin",new Creators(SyntaxBin::new,SyntaxBin::new));
+        m.put("Code",new Creators(SyntaxCode::new,SyntaxCode::new));
+        m.put("Ctr",new Creators(SyntaxCtr::new,SyntaxCtr::new));
+        m.put("Cur",new Creators(SyntaxCur::new,SyntaxCur::new));
+        m.put("DTAUS",new Creators(SyntaxDTAUS::new,SyntaxDTAUS::new));
+        m.put("Date",new Creators(SyntaxDate::new,SyntaxDate::new));
+        m.put("Dig",new Creators(SyntaxDig::new,SyntaxDig::new));
+        m.put("Float",new Creators(SyntaxFloat::new,SyntaxFloat::new));
+        m.put("ID",new Creators(SyntaxID::new,SyntaxID::new));
+        m.put("JN",new Creators(SyntaxJN::new,SyntaxJN::new));
+        m.put("Num",new Creators(SyntaxNum::new,SyntaxNum::new));
+        m.put("Time",new Creators(SyntaxTime::new,SyntaxTime::new));
+        m.put("Wrt",new Creators(SyntaxWrt::new,SyntaxWrt::new));
+        builtin=Collections.unmodifiableMap(m);
+    }
+    
     private static SyntaxDEFactory instance;
     
-    private Hashtable<String, ObjectFactory> factories;
+    private final ConcurrentMap<String, ObjectFactory> factories;
     
     public static synchronized SyntaxDEFactory getInstance()
     {
@@ -51,58 +131,113 @@ public class SyntaxDEFactory
     
     private SyntaxDEFactory()
     {
-        factories=new Hashtable<String, ObjectFactory>();
+        factories=new ConcurrentHashMap<String, ObjectFactory>();
     }
     
-    public SyntaxDE createSyntaxDE(String dataType,String path,String value,int minsize,int maxsize)
+    /** setzt den resolver fuer datentypen, die nicht zu den eingebauten
+        gehoeren. mit NULL wird wieder die suche per reflection aktiviert.
+        bereits gefundene datentypen werden dabei vergessen */
+    public static void setResolver(Resolver r)
     {
-        SyntaxDE ret=null;
-        ObjectFactory factory;
+        resolver=(r!=null)?r:defaultResolver;
+        resolved.clear();
+    }
+    
+    /* liefert die konstruktoren fuer den datentyp */
+    private static Creators getCreators(String dataType,String path)
+    {
+        Creators ret=builtin.get(dataType);
+        if (ret==null) {
+            ret=resolved.get(dataType);
+            if (ret==null) {
+                ret=resolver.resolve(dataType);
+                if (ret==null) {
+                    throw new NoSuchSyntaxException(dataType,path);
+                }
+                resolved.putIfAbsent(dataType,ret);
+            }
+        }
+        return ret;
+    }
+    
+    /* sucht die klasse org.kapott.hbci.datatypes.Syntax<datentyp> per
+       reflection und liefert deren konstruktoren */
+    private static Creators reflect(final String dataType)
+    {
+        Class<?> c;
+        try {
+            c=Class.forName("org.kapott.hbci.datatypes.Syntax"+dataType,false,SyntaxDEFactory.class.getClassLoader());
+        } catch (ClassNotFoundException e) {
+            return null;
+        }
         
-        synchronized(this) {
-        	factory=factories.get(dataType);
-
-        	if (factory==null) {
-        		factory=new ObjectFactory(Integer.parseInt(HBCIUtils.getParam("kernel.objpool.Syntax","1024")));
-        		factories.put(dataType,factory);
-        	}
+        ValueCreator value=null;
+        try {
+            final Constructor<?> con=c.getConstructor(String.class,int.class,int.class);
+            value=(x,minsize,maxsize) -> newInstance(con,dataType,x,minsize,maxsize);
+        } catch (NoSuchMethodException e) {
         }
         
-        ret=(SyntaxDE)factory.getFreeObject();
-        if (ret==null) {
-            // laden der klasse, die die syntax des de enthaelt
-            Class c;
-            try {
-                c=Class.forName("org.kapott.hbci.datatypes.Syntax"+dataType,false,this.getClass().getClassLoader());
-            } catch (ClassNotFoundException e) {
-                throw new NoSuchSyntaxException(dataType,path);
+        ParseCreator parse=null;
+        try {
+            final Constructor<?> con=c.getConstructor(ParseCursor.class,int.class,int.class);
+            parse=(res,minsize,maxsize) -> newInstance(con,dataType,res,minsize,maxsize);
+        } catch (NoSuchMethodException e) {
+        }
+        
+        return new Creators(value,parse);
+    }
+    
+    /* ruft den konstruktor auf. exceptions aus dem konstruktor werden
+       unveraendert weitergeworfen */
+    private static SyntaxDE newInstance(Constructor<?> con,String dataType,Object x,int minsize,int maxsize)
+    {
+        try {
+            return (SyntaxDE)con.newInstance(x,minsize,maxsize);
+        } catch (InvocationTargetException e) {
+            Throwable cause=e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException)cause;
             }
-
-            // holen des constructors fuer diese klasse
-            Constructor con;
-            try {
-                con=c.getConstructor(new Class[]{String.class, int.class, int.class});
-            } catch (NoSuchMethodException e) {
+            throw new HBCI_Exception(cause);
+        } catch (ReflectiveOperationException e) {
+            throw new NoSuchConstructorException(dataType);
+        }
+    }
+    
+    /* liefert den object-pool fuer den datentyp und legt ihn bei bedarf an */
+    private ObjectFactory getFactory(String dataType)
+    {
+        ObjectFactory ret=factories.get(dataType);
+        if (ret==null) {
+            ret=factories.computeIfAbsent(dataType,t -> new ObjectFactory(ObjectFactory.getPoolSize("Syntax",1024)));
+        }
+        return ret;
+    }
+    
+    public SyntaxDE createSyntaxDE(String dataType,String path,String value,int minsize,int maxsize)
+    {
+        ObjectFactory factory=getFactory(dataType);
+        SyntaxDE      ret=(SyntaxDE)factory.getFreeObject();
+        
+        if (ret==null) {
+            ValueCreator creator=getCreators(dataType,path).value;
+            if (creator==null) {
                 throw new NoSuchConstructorException(dataType);
             }
-
+            
             /* anlegen einer neuen instanz der syntaxklasse und initialisieren
              mit dem uebergebenen wert */
             try {
-                ret=(SyntaxDE)(con.newInstance(new Object[]{value, new Integer(minsize), new Integer(maxsize)}));
-            } catch (InstantiationException e) {
-            } catch (IllegalAccessException e) {
-            } catch (InvocationTargetException e) {
-                throw new InitializingException((Exception)e.getCause(),path);
-            }
-            
-            if (ret!=null) {
-                factory.addToUsedPool(ret);
+                ret=creator.create(value,minsize,maxsize);
+            } catch (NoSuchConstructorException e) {
+                throw e;
+            } catch (RuntimeException e) {
+                throw new InitializingException(e,path);
             }
         } else {
             try {
                 ret.init(value,minsize,maxsize);
-                factory.addToUsedPool(ret);
             } catch (RuntimeException e) {
                 factory.addToFreePool(ret);
                 throw new InitializingException(e,path);
@@ -112,58 +247,32 @@ public class SyntaxDEFactory
         return ret;
     }
 
-    public SyntaxDE createSyntaxDE(String dataType,String path,StringBuffer res,int minsize,int maxsize)
+    public SyntaxDE createSyntaxDE(String dataType,String path,ParseCursor res,int minsize,int maxsize)
     {
-        SyntaxDE      ret=null;
-        ObjectFactory factory;
+        ObjectFactory factory=getFactory(dataType);
+        SyntaxDE      ret=(SyntaxDE)factory.getFreeObject();
         
-        synchronized(this) {
-        	factory=factories.get(dataType);
-
-        	if (factory==null) {
-        		factory=new ObjectFactory(Integer.parseInt(HBCIUtils.getParam("kernel.objpool.Syntax","1024")));
-        		factories.put(dataType,factory);
-        	}
-        }
-        
-        ret=(SyntaxDE)factory.getFreeObject();
         if (ret==null) {
-            // laden der klasse, die die syntax des de enthaelt
-            Class c;
-            try {
-                c=Class.forName("org.kapott.hbci.datatypes.Syntax"+dataType,false,this.getClass().getClassLoader());
-            } catch (ClassNotFoundException e) {
-                throw new NoSuchSyntaxException(dataType,path);
-            }
-
-            // holen des constructors fuer diese klasse
-            Constructor con;
-            try {
-                con=c.getConstructor(new Class[]{StringBuffer.class, int.class, int.class});
-            } catch (NoSuchMethodException e) {
+            ParseCreator creator=getCreators(dataType,path).parse;
+            if (creator==null) {
                 throw new NoSuchConstructorException(dataType);
             }
-
+            
             /* anlegen einer neuen instanz der syntaxklasse und initialisieren
              mit dem uebergebenen wert */
             try {
-                ret=(SyntaxDE)(con.newInstance(new Object[]{res, new Integer(minsize), new Integer(maxsize)}));
-            } catch (InstantiationException e) {
-            } catch (IllegalAccessException e) {
-            } catch (InvocationTargetException e) {
-                throw new ParseErrorException(HBCIUtilsInternal.getLocMsg("EXCMSG_PROT_ERRSYNDE",path),(Exception)e.getCause());
-            }
-            
-            if (ret!=null) {
-                factory.addToUsedPool(ret);
+                ret=creator.create(res,minsize,maxsize);
+            } catch (NoSuchConstructorException e) {
+                throw e;
+            } catch (RuntimeException e) {
+                throw new ParseErrorException(HBCIUtilsInternal.getLocMsg("EXCMSG_PROT_ERRSYNDE",path),e);
             }
         } else {
             try {
                 ret.init(res,minsize,maxsize);
-                factory.addToUsedPool(ret);
             } catch (RuntimeException e) {
                 factory.addToFreePool(ret);
-                throw new ParseErrorException(HBCIUtilsInternal.getLocMsg("EXCMSG_PROT_ERRSYNDE",path),(Exception)e.getCause());
+                throw new ParseErrorException(HBCIUtilsInternal.getLocMsg("EXCMSG_PROT_ERRSYNDE",path),e);
             }
         }
         
@@ -183,9 +292,9 @@ public class SyntaxDEFactory
     {
         StringBuffer ret=new StringBuffer();
         
-        for (Enumeration<String> e=factories.keys();e.hasMoreElements();) {
-            String        type=e.nextElement();
-            ObjectFactory fac=factories.get(type);
+        for (Map.Entry<String, ObjectFactory> e:factories.entrySet()) {
+            String        type=e.getKey();
+            ObjectFactory fac=e.getValue();
             
             ret.append(type).append(": ").append(fac.toString()).append(System.getProperty("line.separator"));
         }
@@ -0,0 +1,411 @@
+/**********************************************************************
+ *
+ * This file is part of HBCI4Java.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ **********************************************************************/
+
+package org.kapott.hbci.manager;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.kapott.hbci.exceptions.InvalidArgumentException;
+
+/**
+ * Kompaktes, unveraenderliches Bankleitzahlen-Verzeichnis.
+ * Statt einer HashMap mit einem BankInfo-Objekt pro Bank liegen die Daten
+ * in einem einzigen ByteBuffer, der direkt aus einer Datei gemappt werden kann:
+ *
+ * <pre>
+ * Header:   Magic "H4JB", Version, Anzahl der Banken, Offset des String-Pools (je int)
+ * Keys:     die BLZ als int, aufsteigend sortiert
+ * Records:  pro Bank {@value #COLUMNS} Offsets in den String-Pool, -1 fuer nicht vorhanden
+ * Pool:     jeder String einmalig als Laenge (unsigned short) und UTF-8-Bytes
+ * </pre>
+ *
+ * Die Spalten entsprechen denen der blz.properties. Gesucht wird per
+ * Binaersuche ueber die Keys. Die BankInfo-Objekte werden erst beim ersten
+ * Zugriff erzeugt und danach wiederverwendet.
+ * Erzeugt wird die Datei von {@link org.kapott.hbci.tools.UpdateBLZProperties}.
+ */
+public final class BankDirectory
+{
+    /**
+     * Leeres Verzeichnis.
+     */
+    final static BankDirectory EMPTY = create(new Properties());
+
+    private final static int MAGIC   = 0x48344A42;
+    private final static int VERSION = 1;
+    private final static int HEADER  = 16;
+    private final static int COLUMNS = 8;
+
+    final static int COLUMN_NAME     = 0;
+    final static int COLUMN_LOCATION = 1;
+    final static int COLUMN_BIC      = 2;
+
+    private final ByteBuffer buffer;
+    private final int count;
+    private final int records;
+
+    private final AtomicReferenceArray<BankInfo> infos;
+    private volatile BankInfoIndex index;
+
+    /**
+     * ct.
+     * @param buffer der Buffer mit dem Verzeichnis.
+     * @throws IOException wenn der Buffer kein gueltiges Verzeichnis enthaelt.
+     */
+    private BankDirectory(ByteBuffer buffer) throws IOException
+    {
+        if (buffer.capacity() < HEADER || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION)
+            throw new IOException("no bank directory or unsupported version");
+
+        this.buffer  = buffer;
+        this.count   = buffer.getInt(8);
+        this.records = HEADER + this.count * 4;
+
+        int pool = buffer.getInt(12);
+        if (this.count < 0 || pool != this.records + this.count * COLUMNS * 4 || pool > buffer.capacity())
+            throw new IOException("bank directory corrupt");
+
+        this.infos = new AtomicReferenceArray<BankInfo>(this.count);
+    }
+
+    /**
+     * Erzeugt das Verzeichnis aus dem Inhalt einer blz.properties.
+     * @param blzs die Properties mit der BLZ als Key und den durch "|" getrennten Spalten als Wert.
+     * @return das Verzeichnis.
+     */
+    public static BankDirectory create(Properties blzs)
+    {
+        String[] keys = blzs.stringPropertyNames().toArray(new String[0]);
+        Arrays.sort(keys);
+
+        try
+        {
+            ByteArrayOutputStream poolBytes = new ByteArrayOutputStream();
+            DataOutputStream poolOut = new DataOutputStream(poolBytes);
+            Map<String,Integer> offsets = new HashMap<String,Integer>();
+
+            int[] blzKeys = new int[keys.length];
+            int[] columns = new int[keys.length * COLUMNS];
+            for (int i=0;i<keys.length;i++)
+            {
+                blzKeys[i] = toKey(keys[i]);
+                if (blzKeys[i] < 0)
+                    throw new InvalidArgumentException("invalid BLZ in bank directory: " + keys[i]);
+
+                String value = blzs.getProperty(keys[i]);
+                String[] cols = value != null && value.length() > 0 ? value.split("\\|") : new String[0];
+                for (int c=0;c<COLUMNS;c++)
+                {
+                    if (c >= cols.length)
+                    {
+                        columns[i * COLUMNS + c] = -1;
+                        continue;
+                    }
+
+                    // Gleiche Strings (Orte, Namen, URLs) landen nur einmal im Pool
+                    Integer offset = offsets.get(cols[c]);
+                    if (offset == null)
+                    {
+                        byte[] b = cols[c].getBytes(StandardCharsets.UTF_8);
+                        if (b.length > 0xFFFF)
+                            throw new InvalidArgumentException("value too long in bank directory: " + keys[i]);
+                        offset = Integer.valueOf(poolOut.size());
+                        poolOut.writeShort(b.length);
+                        poolOut.write(b);
+                        offsets.put(cols[c],offset);
+                    }
+                    columns[i * COLUMNS + c] = offset.intValue();
+                }
+            }
+
+            int poolStart = HEADER + keys.length * 4 + columns.length * 4;
+            ByteBuffer buffer = ByteBuffer.allocate(poolStart + poolOut.size());
+            buffer.putInt(MAGIC).putInt(VERSION).putInt(keys.length).putInt(poolStart);
+            for (int key:blzKeys)
+                buffer.putInt(key);
+            for (int offset:columns)
+                buffer.putInt(offset < 0 ? -1 : poolStart + offset);
+            buffer.put(poolBytes.toByteArray());
+            buffer.clear();
+            return new BankDirectory(buffer);
+        }
+        catch (IOException e)
+        {
+            // kann bei Streams im Speicher nicht passieren
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Mappt das Verzeichnis aus einer Datei in den Speicher.
+     * Die Datei darf danach nicht mehr geaendert werden. Zum Aktualisieren
+     * sollte eine neue Datei erzeugt und geladen werden.
+     * @param file die Datei.
+     * @return das Verzeichnis.
+     * @throws IOException
+     */
+    public static BankDirectory load(File file) throws IOException
+    {
+        try (RandomAccessFile raf = new RandomAccessFile(file,"r"); FileChannel channel = raf.getChannel())
+        {
+            return new BankDirectory(channel.map(FileChannel.MapMode.READ_ONLY,0,channel.size()));
+        }
+    }
+
+    /**
+     * Liest das Verzeichnis aus einem Stream in den Speicher.
+     * Der Stream wird nicht geschlossen.
+     * @param in der Stream.
+     * @return das Verzeichnis.
+     * @throws IOException
+     */
+    public static BankDirectory read(InputStream in) throws IOException
+    {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        byte[] buf = new byte[8192];
+        int read = 0;
+        while ((read = in.read(buf)) != -1)
+            bos.write(buf,0,read);
+        return new BankDirectory(ByteBuffer.wrap(bos.toByteArray()));
+    }
+
+    /**
+     * Schreibt das Verzeichnis in den Stream.
+     * Der Stream wird nicht geschlossen.
+     * @param out der Stream.
+     * @throws IOException
+     */
+    public void write(OutputStream out) throws IOException
+    {
+        byte[] buf = new byte[8192];
+        ByteBuffer b = this.buffer.duplicate();
+        b.clear();
+        while (b.hasRemaining())
+        {
+            int len = Math.min(buf.length,b.remaining());
+            b.get(buf,0,len);
+            out.write(buf,0,len);
+        }
+    }
+
+    /**
+     * Liefert die Anzahl der Banken.
+     * @return die Anzahl der Banken.
+     */
+    public int size()
+    {
+        return this.count;
+    }
+
+    /**
+     * Liefert die Bank-Informationen zur angegebenen BLZ.
+     * @param blz die BLZ.
+     * @return die Bank-Informationen oder NULL, wenn die BLZ nicht enthalten ist.
+     */
+    public BankInfo get(String blz)
+    {
+        int ordinal = indexOf(blz);
+        return ordinal >= 0 ? get(ordinal) : null;
+    }
+
+    /**
+     * Liefert die Zeile im Format der blz.properties zur angegebenen BLZ.
+     * @param blz die BLZ.
+     * @return die Zeile oder NULL, wenn die BLZ nicht enthalten ist.
+     */
+    String getLine(String blz)
+    {
+        int ordinal = indexOf(blz);
+        if (ordinal < 0)
+            return null;
+
+        StringBuilder sb = new StringBuilder();
+        for (int c=0;c<COLUMNS;c++)
+        {
+            String s = getColumn(ordinal,c);
+            if (s == null)
+                break;
+            if (c > 0)
+                sb.append('|');
+            sb.append(s);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Liefert das Verzeichnis im Format der blz.properties.
+     * @return die Properties mit der BLZ als Key und der Zeile als Wert.
+     */
+    Properties toProperties()
+    {
+        Properties result = new Properties();
+        for (int i=0;i<this.count;i++)
+        {
+            String blz = getBlz(i);
+            result.setProperty(blz,getLine(blz));
+        }
+        return result;
+    }
+
+    /**
+     * Liefert die Position der BLZ im Verzeichnis.
+     * @param blz die BLZ.
+     * @return die Position oder -1, wenn die BLZ nicht enthalten ist.
+     */
+    int indexOf(String blz)
+    {
+        int key = toKey(blz);
+        if (key < 0)
+            return -1;
+
+        int low  = 0;
+        int high = this.count - 1;
+        while (low <= high)
+        {
+            int mid = (low + high) >>> 1;
+            int current = this.buffer.getInt(HEADER + mid * 4);
+            if (current < key)
+                low = mid + 1;
+            else if (current > key)
+                high = mid - 1;
+            else
+                return mid;
+        }
+        return -1;
+    }
+
+    /**
+     * Liefert die Bank-Informationen an der angegebenen Position.
+     * Die Objekte werden beim ersten Zugriff erzeugt.
+     * @param ordinal die Position.
+     * @return die Bank-Informationen.
+     */
+    BankInfo get(int ordinal)
+    {
+        BankInfo info = this.infos.get(ordinal);
+        if (info != null)
+            return info;
+
+        String[] cols = new String[COLUMNS];
+        for (int c=0;c<COLUMNS;c++)
+            cols[c] = getColumn(ordinal,c);
+
+        info = BankInfo.parse(cols);
+        info.setBlz(getBlz(ordinal));
+
+        // Falls ein anderer Thread schneller war, nehmen wir dessen Objekt
+        if (!this.infos.compareAndSet(ordinal,null,info))
+            info = this.infos.get(ordinal);
+        return info;
+    }
+
+    /**
+     * Liefert die BLZ an der angegebenen Position.
+     * @param ordinal die Position.
+     * @return die BLZ.
+     */
+    String getBlz(int ordinal)
+    {
+        int key = this.buffer.getInt(HEADER + ordinal * 4);
+        char[] c = new char[8];
+        for (int i=7;i>=0;i--)
+        {
+            c[i] = (char) ('0' + key % 10);
+            key /= 10;
+        }
+        return new String(c);
+    }
+
+    /**
+     * Liefert den Such-Index. Er wird beim ersten Aufruf erzeugt.
+     * @return der Such-Index.
+     */
+    BankInfoIndex getIndex()
+    {
+        BankInfoIndex result = this.index;
+        if (result == null)
+        {
+            synchronized (this)
+            {
+                result = this.index;
+                if (result == null)
+                {
+                    result = BankInfoIndex.create(this);
+                    this.index = result;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Liefert den Wert einer Spalte.
+     * @param ordinal die Position der Bank.
+     * @param column die Spalte.
+     * @return der Wert oder NULL, wenn die Spalte nicht vorhanden ist.
+     */
+    String getColumn(int ordinal, int column)
+    {
+        int offset = this.buffer.getInt(this.records + (ordinal * COLUMNS + column) * 4);
+        if (offset < 0)
+            return null;
+
+        int len = this.buffer.getShort(offset) & 0xFFFF;
+        byte[] b = new byte[len];
+        for (int i=0;i<len;i++)
+            b[i] = this.buffer.get(offset + 2 + i);
+        return new String(b,StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Wandelt die BLZ in den int-Key.
+     * @param blz die BLZ.
+     * @return der Key oder -1, wenn es keine 8-stellige BLZ ist.
+     */
+    private static int toKey(String blz)
+    {
+        if (blz == null || blz.length() != 8)
+            return -1;
+
+        int key = 0;
+        for (int i=0;i<8;i++)
+        {
+            char c = blz.charAt(i);
+            if (c < '0' || c > '9')
+                return -1;
+            key = key * 10 + (c - '0');
+        }
+        return key;
+    }
+}
@@ -206,11 +206,20 @@ public class BankInfo
      */
     static BankInfo parse(String text)
     {
-        BankInfo info = new BankInfo();
         if (text == null || text.length() == 0)
-            return info;
+            return new BankInfo();
         
-        String[] cols = text.split("\\|");
+        return parse(text.split("\\|"));
+    }
+    
+    /**
+     * Erzeugt das BankInfo-Objekt aus den Spalten einer Zeile der blz.properties.
+     * @param cols die Spalten. Fehlende Spalten koennen NULL sein.
+     * @return das BankInfo-Objekt.
+     */
+    static BankInfo parse(String[] cols)
+    {
+        BankInfo info = new BankInfo();
         info.setName(getValue(cols,0));
         info.setLocation(getValue(cols,1));
         info.setBic(getValue(cols,2));
@@ -223,6 +232,33 @@ public class BankInfo
         return info;
     }
     
+    /**
+     * Liefert die Daten im Format einer Zeile der blz.properties.
+     * Das Gegenstueck zu {@link #parse(String)}.
+     * @return die Zeile.
+     */
+    String toLine()
+    {
+        String[] cols = new String[]{this.name,this.location,this.bic,this.checksumMethod,this.rdhAddress,this.pinTanAddress,
+                                     this.rdhVersion != null ? this.rdhVersion.getId() : null,
+                                     this.pinTanVersion != null ? this.pinTanVersion.getId() : null};
+
+        // Fehlende Spalten am Ende entfallen, fehlende Spalten dazwischen bleiben leer
+        int count = cols.length;
+        while (count > 0 && cols[count - 1] == null)
+            count--;
+
+        StringBuilder sb = new StringBuilder();
+        for (int i=0;i<count;i++)
+        {
+            if (i > 0)
+                sb.append('|');
+            if (cols[i] != null)
+                sb.append(cols[i]);
+        }
+        return sb.toString();
+    }
+    
     /**
      * Liefert den Wert aus der angegebenen Spalte.
      * @param cols die Werte.
@@ -0,0 +1,256 @@
+/**********************************************************************
+ *
+ * This file is part of HBCI4Java.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ **********************************************************************/
+
+package org.kapott.hbci.manager;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Unveraenderlicher Such-Index ueber die Bank-Informationen fuer
+ * {@link HBCIUtils#searchBankInfo(String)}.
+ * Der Index wird einmal pro {@link BankDirectory} bei der ersten Suche erzeugt.
+ * Die Eintraege sind dort nach BLZ sortiert, ihre Position dient als
+ * Ordinalzahl. Damit ist eine nach Ordinalzahl sortierte Treffermenge
+ * automatisch nach BLZ sortiert.
+ * BLZ und BIC werden per Binaersuche in sortierten Arrays nach Praefixen
+ * durchsucht. Fuer die Suche in Name und Ort existiert ein Trigramm-Index,
+ * dessen Kandidaten gegen die bereits normalisierten Texte geprueft werden.
+ */
+final class BankInfoIndex
+{
+    private final static int[] NONE = new int[0];
+
+    private final BankDirectory directory;
+    private final String[] blzs;
+    private final String[] bics;
+    private final int[] bicOrdinals;
+    private final String[] names;
+    private final String[] locations;
+    private final Map<Long,int[]> grams;
+
+    /**
+     * ct.
+     */
+    private BankInfoIndex(BankDirectory directory, String[] blzs, String[] bics, int[] bicOrdinals, String[] names, String[] locations, Map<Long,int[]> grams)
+    {
+        this.directory   = directory;
+        this.blzs        = blzs;
+        this.bics        = bics;
+        this.bicOrdinals = bicOrdinals;
+        this.names       = names;
+        this.locations   = locations;
+        this.grams       = grams;
+    }
+
+    /**
+     * Erzeugt den Index.
+     * @param directory das Verzeichnis.
+     * @return der Index.
+     */
+    static BankInfoIndex create(BankDirectory directory)
+    {
+        int size = directory.size();
+        String[] allBics   = new String[size];
+        String[] blzs      = new String[size];
+        String[] names     = new String[size];
+        String[] locations = new String[size];
+        List<Integer> withBic = new ArrayList<Integer>();
+        Map<Long,int[]> grams = new HashMap<Long,int[]>();
+
+        for (int i=0;i<size;i++)
+        {
+            blzs[i]      = directory.getBlz(i);
+            names[i]     = normalize(directory.getColumn(i,BankDirectory.COLUMN_NAME));
+            locations[i] = normalize(directory.getColumn(i,BankDirectory.COLUMN_LOCATION));
+            allBics[i]   = normalize(directory.getColumn(i,BankDirectory.COLUMN_BIC));
+
+            if (allBics[i] != null)
+                withBic.add(Integer.valueOf(i));
+
+            addGrams(grams,names[i],i);
+            addGrams(grams,locations[i],i);
+        }
+
+        // Die Posting-Listen auf ihre tatsaechliche Laenge kuerzen. Im ersten
+        // Element steht waehrend des Aufbaus die Anzahl
+        for (Map.Entry<Long,int[]> e:grams.entrySet())
+        {
+            int[] list = e.getValue();
+            e.setValue(Arrays.copyOfRange(list,1,list[0] + 1));
+        }
+
+        // Die BICs bekommen ein eigenes sortiertes Array mit Verweis auf die Ordinalzahl
+        withBic.sort((a,b) -> allBics[a].compareTo(allBics[b]));
+        String[] bics = new String[withBic.size()];
+        int[] bicOrdinals = new int[withBic.size()];
+        for (int i=0;i<bics.length;i++)
+        {
+            bicOrdinals[i] = withBic.get(i).intValue();
+            bics[i]        = allBics[bicOrdinals[i]];
+        }
+
+        return new BankInfoIndex(directory,blzs,bics,bicOrdinals,names,locations,grams);
+    }
+
+    /**
+     * Sucht nach Banken, deren BLZ oder BIC mit dem Suchbegriff beginnt oder
+     * deren Name oder Ort den Suchbegriff enthaelt.
+     * @param query der Suchbegriff. Er muss bereits getrimmt sein und mindestens 3 Zeichen lang sein.
+     * @return die nach BLZ sortierte Liste der Treffer.
+     */
+    List<BankInfo> search(String query)
+    {
+        query = normalize(query);
+        BitSet hits = new BitSet(this.blzs.length);
+
+        // Anhand der BLZ?
+        for (int i=lowerBound(this.blzs,query);i<this.blzs.length && this.blzs[i].startsWith(query);i++)
+            hits.set(i);
+
+        // Anhand der BIC?
+        for (int i=lowerBound(this.bics,query);i<this.bics.length && this.bics[i].startsWith(query);i++)
+            hits.set(this.bicOrdinals[i]);
+
+        // Anhand von Name oder Ort? Es genuegt, die kuerzeste Posting-Liste
+        // der im Suchbegriff enthaltenen Trigramme zu pruefen
+        int[] candidates = null;
+        for (int i=0;i+3<=query.length();i++)
+        {
+            int[] list = this.grams.get(gram(query,i));
+            if (list == null)
+            {
+                candidates = NONE;
+                break;
+            }
+            if (candidates == null || list.length < candidates.length)
+                candidates = list;
+        }
+
+        for (int ordinal:candidates)
+        {
+            if (hits.get(ordinal))
+                continue;
+            if (contains(this.names[ordinal],query) || contains(this.locations[ordinal],query))
+                hits.set(ordinal);
+        }
+
+        List<BankInfo> result = new ArrayList<BankInfo>(hits.cardinality());
+        for (int i=hits.nextSetBit(0);i>=0;i=hits.nextSetBit(i + 1))
+            result.add(this.directory.get(i));
+        return result;
+    }
+
+    /**
+     * Normalisiert einen Text fuer die Suche.
+     * @param s der Text. Kann NULL sein.
+     * @return der normalisierte Text oder NULL.
+     */
+    static String normalize(String s)
+    {
+        return s != null ? s.toLowerCase(Locale.ROOT) : null;
+    }
+
+    /**
+     * Liefert die Position des ersten Elements, das nicht kleiner als der
+     * Suchbegriff ist.
+     * @param sorted das sortierte Array.
+     * @param key der Suchbegriff.
+     * @return die Position.
+     */
+    private static int lowerBound(String[] sorted, String key)
+    {
+        int low  = 0;
+        int high = sorted.length;
+        while (low < high)
+        {
+            int mid = (low + high) >>> 1;
+            if (sorted[mid].compareTo(key) < 0)
+                low = mid + 1;
+            else
+                high = mid;
+        }
+        return low;
+    }
+
+    /**
+     * Nimmt alle Trigramme des Textes in den Index auf.
+     * @param grams der Index.
+     * @param s der normalisierte Text. Kann NULL sein.
+     * @param ordinal die Ordinalzahl der Bank.
+     */
+    private static void addGrams(Map<Long,int[]> grams, String s, int ordinal)
+    {
+        if (s == null)
+            return;
+
+        for (int i=0;i+3<=s.length();i++)
+        {
+            Long key = gram(s,i);
+            int[] list = grams.get(key);
+            if (list == null)
+            {
+                list = new int[4];
+                grams.put(key,list);
+            }
+
+            // Die Eintraege kommen in aufsteigender Reihenfolge. Doppelte
+            // Trigramme derselben Bank landen daher direkt hintereinander
+            int count = list[0];
+            if (count > 0 && list[count] == ordinal)
+                continue;
+
+            if (count + 1 == list.length)
+            {
+                list = Arrays.copyOf(list,list.length * 2);
+                grams.put(key,list);
+            }
+            list[count + 1] = ordinal;
+            list[0] = count + 1;
+        }
+    }
+
+    /**
+     * Liefert den Schluessel des Trigramms an der angegebenen Position.
+     * @param s der Text.
+     * @param pos die Position.
+     * @return der Schluessel.
+     */
+    private static Long gram(String s, int pos)
+    {
+        return Long.valueOf(((long) s.charAt(pos) << 32) | ((long) s.charAt(pos + 1) << 16) | s.charAt(pos + 2));
+    }
+
+    /**
+     * Prueft, ob der Text den Suchbegriff enthaelt.
+     * @param s der Text. Kann NULL sein.
+     * @param query der Suchbegriff.
+     * @return true, wenn der Suchbegriff enthalten ist.
+     */
+    private static boolean contains(String s, String query)
+    {
+        return s != null && s.contains(query);
+    }
+}
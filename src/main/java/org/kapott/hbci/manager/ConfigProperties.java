@@ -0,0 +1,337 @@
+/**********************************************************************
+ *
+ * This file is part of HBCI4Java.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ **********************************************************************/
+
+package org.kapott.hbci.manager;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Enumeration;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Properties-Sicht auf die Kernel-Parameter, wie sie von
+ * {@link HBCIUtils#getParams()} geliefert wird.
+ * Lesend wird jeweils der aktuelle Stand geliefert, die Properties werden nur
+ * dann neu befuellt, wenn sich der Stand inzwischen geaendert hat.
+ * Aenderungen per put(), setProperty(), remove(), putAll(), clear() und den
+ * weiteren schreibenden Methoden von {@link Map} werden wie bei
+ * {@link HBCIUtils#setParam(String, String)} in einen neuen Stand uebernommen.
+ */
+final class ConfigProperties extends Properties
+{
+    private static final long serialVersionUID = 1L;
+
+    private final transient AtomicReference<HBCIConfig> ref;
+    private transient volatile HBCIConfig loaded = null;
+
+    /**
+     * ct.
+     * @param ref der Verweis auf den Stand der Kernel-Parameter.
+     */
+    ConfigProperties(AtomicReference<HBCIConfig> ref)
+    {
+        this.ref = ref;
+        sync();
+    }
+
+    /**
+     * Befuellt die Properties, wenn sich der Stand geaendert hat.
+     * Die Properties werden dabei nie geleert, sondern nur die geaenderten
+     * Eintraege ersetzt bzw. entfernt. Lesende Zugriffe ohne Lock sehen daher
+     * pro Parameter den alten oder den neuen Wert. Der neue Stand gilt erst
+     * als geladen, wenn alle Eintraege uebernommen sind.
+     */
+    private void sync()
+    {
+        HBCIConfig c = this.ref.get();
+        if (c == this.loaded)
+            return;
+
+        synchronized (this)
+        {
+            c = this.ref.get();
+            if (c == this.loaded)
+                return;
+
+            Properties p = c.toProperties();
+            for (Object key:new ArrayList<Object>(super.keySet()))
+            {
+                if (!p.containsKey(key))
+                    super.remove(key);
+            }
+            for (Map.Entry<Object,Object> e:p.entrySet())
+            {
+                if (!e.getValue().equals(super.get(e.getKey())))
+                    super.put(e.getKey(),e.getValue());
+            }
+            this.loaded = c;
+        }
+    }
+
+    /**
+     * Uebernimmt die Aenderung in einen neuen Stand.
+     * @param key Name des Parameters.
+     * @param value neuer Wert. NULL entfernt den Parameter.
+     */
+    private void update(final String key, final String value)
+    {
+        this.ref.updateAndGet(config -> config.with(key,value));
+        sync();
+    }
+
+    /**
+     * Aendert einen Parameter abhaengig von seinem aktuellen Wert.
+     * Wie alle schreibenden Methoden laeuft das unter dem Lock der Properties,
+     * die Funktion wird daher genau einmal aufgerufen.
+     * @param key Name des Parameters.
+     * @param f liefert zum aktuellen Wert den neuen Wert. NULL entfernt den Parameter.
+     * @return der neue Wert.
+     */
+    private synchronized Object change(Object key, Function<Object,Object> f)
+    {
+        if (key == null)
+            throw new NullPointerException();
+        Object prev = get(key);
+        Object value = f.apply(prev);
+        if (value == null)
+        {
+            if (prev != null)
+                update((String) key,null);
+        }
+        else if (!value.equals(prev))
+        {
+            update((String) key,(String) value);
+        }
+        return value;
+    }
+
+    @Override
+    public synchronized Object put(Object key, Object value)
+    {
+        if (key == null || value == null)
+            throw new NullPointerException();
+        Object prev = get(key);
+        update((String) key,(String) value);
+        return prev;
+    }
+
+    @Override
+    public synchronized Object remove(Object key)
+    {
+        Object prev = get(key);
+        if (prev != null)
+            update((String) key,null);
+        return prev;
+    }
+
+    @Override
+    public synchronized boolean remove(Object key, Object value)
+    {
+        Object prev = get(key);
+        if (prev == null || !prev.equals(value))
+            return false;
+        update((String) key,null);
+        return true;
+    }
+
+    @Override
+    public synchronized Object putIfAbsent(Object key, Object value)
+    {
+        if (value == null)
+            throw new NullPointerException();
+        Object prev = get(key);
+        if (prev == null)
+            put(key,value);
+        return prev;
+    }
+
+    @Override
+    public synchronized Object replace(Object key, Object value)
+    {
+        if (value == null)
+            throw new NullPointerException();
+        Object prev = get(key);
+        if (prev != null)
+            put(key,value);
+        return prev;
+    }
+
+    @Override
+    public synchronized boolean replace(Object key, Object oldValue, Object newValue)
+    {
+        if (newValue == null)
+            throw new NullPointerException();
+        Object prev = get(key);
+        if (prev == null || !prev.equals(oldValue))
+            return false;
+        put(key,newValue);
+        return true;
+    }
+
+    @Override
+    public Object computeIfAbsent(Object key, Function<? super Object,?> f)
+    {
+        return change(key,prev -> prev != null ? prev : f.apply(key));
+    }
+
+    @Override
+    public Object computeIfPresent(Object key, BiFunction<? super Object,? super Object,?> f)
+    {
+        return change(key,prev -> prev != null ? f.apply(key,prev) : null);
+    }
+
+    @Override
+    public Object compute(Object key, BiFunction<? super Object,? super Object,?> f)
+    {
+        return change(key,prev -> f.apply(key,prev));
+    }
+
+    @Override
+    public Object merge(Object key, Object value, BiFunction<? super Object,? super Object,?> f)
+    {
+        if (value == null)
+            throw new NullPointerException();
+        return change(key,prev -> prev != null ? f.apply(prev,value) : value);
+    }
+
+    @Override
+    public synchronized void replaceAll(BiFunction<? super Object,? super Object,?> f)
+    {
+        for (Map.Entry<Object,Object> e:new ArrayList<Map.Entry<Object,Object>>(entrySet()))
+            put(e.getKey(),f.apply(e.getKey(),e.getValue()));
+    }
+
+    @Override
+    public synchronized void putAll(Map<?,?> t)
+    {
+        for (Map.Entry<?,?> e:t.entrySet())
+            put(e.getKey(),e.getValue());
+    }
+
+    @Override
+    public synchronized void clear()
+    {
+        for (Object key:new ArrayList<Object>(keySet()))
+            update((String) key,null);
+    }
+
+    @Override
+    public String getProperty(String key)
+    {
+        sync();
+        return super.getProperty(key);
+    }
+
+    @Override
+    public Object get(Object key)
+    {
+        sync();
+        return super.get(key);
+    }
+
+    @Override
+    public Object getOrDefault(Object key, Object defaultValue)
+    {
+        sync();
+        return super.getOrDefault(key,defaultValue);
+    }
+
+    @Override
+    public boolean containsKey(Object key)
+    {
+        sync();
+        return super.containsKey(key);
+    }
+
+    @Override
+    public boolean containsValue(Object value)
+    {
+        sync();
+        return super.containsValue(value);
+    }
+
+    @Override
+    public boolean contains(Object value)
+    {
+        sync();
+        return super.contains(value);
+    }
+
+    @Override
+    public int size()
+    {
+        sync();
+        return super.size();
+    }
+
+    @Override
+    public boolean isEmpty()
+    {
+        sync();
+        return super.isEmpty();
+    }
+
+    @Override
+    public Enumeration<Object> keys()
+    {
+        sync();
+        return super.keys();
+    }
+
+    @Override
+    public Enumeration<Object> elements()
+    {
+        sync();
+        return super.elements();
+    }
+
+    @Override
+    public Set<Object> keySet()
+    {
+        sync();
+        return super.keySet();
+    }
+
+    @Override
+    public Set<Map.Entry<Object,Object>> entrySet()
+    {
+        sync();
+        return super.entrySet();
+    }
+
+    @Override
+    public Collection<Object> values()
+    {
+        sync();
+        return super.values();
+    }
+
+    @Override
+    public Set<String> stringPropertyNames()
+    {
+        sync();
+        return super.stringPropertyNames();
+    }
+}
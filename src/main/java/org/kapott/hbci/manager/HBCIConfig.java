@@ -0,0 +1,223 @@
+/**********************************************************************
+ *
+ * This file is part of HBCI4Java.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ **********************************************************************/
+
+package org.kapott.hbci.manager;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Unveraenderlicher Stand der Kernel-Parameter.
+ * Die Werte, die bei fast jeder Nachricht oder Log-Ausgabe gebraucht werden,
+ * werden nur einmal pro Stand geparst. Da sich die Parameter nach dem Erzeugen
+ * nicht mehr aendern, kann das Objekt ohne Synchronisierung von beliebig
+ * vielen Threads gelesen werden. {@link HBCIUtils#setParam(String, String)} ersetzt den
+ * Stand durch eine geaenderte Kopie.
+ */
+public final class HBCIConfig
+{
+    private final static String OBJPOOL = "kernel.objpool.";
+
+    /* markiert einen noch nicht geparsten wert */
+    private final static int UNPARSED = Integer.MIN_VALUE;
+
+    private final Map<String,String> params;
+
+    private final boolean objpoolEnabled;
+    private final String rewriter;
+
+    /* die zahlen werden erst beim ersten zugriff geparst, damit ein
+       ungueltiger wert nicht jede weitere aenderung der parameter verhindert.
+       ein paralleler zugriff parst den wert schlimmstenfalls doppelt */
+    private int logLevel = UNPARSED;
+    private int logFilter = UNPARSED;
+
+    /**
+     * ct.
+     * @param params die Parameter. Die Map wird uebernommen und darf danach nicht mehr geaendert werden.
+     */
+    private HBCIConfig(Map<String,String> params)
+    {
+        this.params         = Collections.unmodifiableMap(params);
+        this.objpoolEnabled = !"0".equals(params.get(OBJPOOL + "enabled"));
+        this.rewriter       = params.get("kernel.rewriter");
+    }
+
+    /**
+     * Erzeugt einen Stand aus den angegebenen Properties.
+     * Von den Properties wird eine Kopie erstellt.
+     * @param props die Properties. Kann NULL sein.
+     * @return der Stand.
+     */
+    public static HBCIConfig create(Properties props)
+    {
+        Map<String,String> map = new HashMap<String,String>();
+        if (props != null)
+        {
+            // beruecksichtigt auch die Defaults der Properties
+            for (String key:props.stringPropertyNames())
+                map.put(key,props.getProperty(key));
+        }
+        return new HBCIConfig(map);
+    }
+
+    /**
+     * Liefert eine Kopie des Standes, in der der Parameter geaendert ist.
+     * @param key Name des Parameters.
+     * @param value neuer Wert. NULL entfernt den Parameter.
+     * @return der neue Stand.
+     */
+    public HBCIConfig with(String key, String value)
+    {
+        Map<String,String> map = new HashMap<String,String>(this.params);
+        if (value != null)
+            map.put(key,value);
+        else
+            map.remove(key);
+        return new HBCIConfig(map);
+    }
+
+    /**
+     * Liefert den Wert eines Parameters.
+     * @param key Name des Parameters.
+     * @return der Wert oder NULL, wenn er nicht gesetzt ist.
+     */
+    public String get(String key)
+    {
+        return this.params.get(key);
+    }
+
+    /**
+     * Liefert den Wert eines Parameters.
+     * @param key Name des Parameters.
+     * @param def Default-Wert, falls der Parameter nicht gesetzt ist.
+     * @return der Wert.
+     */
+    public String get(String key, String def)
+    {
+        String value = this.params.get(key);
+        return value != null ? value : def;
+    }
+
+    /**
+     * Liefert den Wert eines Parameters als Zahl.
+     * @param key Name des Parameters.
+     * @param def Default-Wert, falls der Parameter nicht gesetzt ist.
+     * @return der Wert.
+     */
+    public int getInt(String key, int def)
+    {
+        return parseInt(this.params.get(key),def);
+    }
+
+    /**
+     * Liefert den Wert eines Parameters als Boolean.
+     * Wie bei den Kernel-Parametern ueblich, gilt "1" als true und "0" als
+     * false. Zusaetzlich werden "true" und "false" erkannt.
+     * @param key Name des Parameters.
+     * @param def Default-Wert, falls der Parameter nicht gesetzt ist.
+     * @return der Wert.
+     */
+    public boolean getBoolean(String key, boolean def)
+    {
+        String value = this.params.get(key);
+        if (value == null)
+            return def;
+        value = value.trim();
+        if (value.equals("1") || value.equalsIgnoreCase("true"))
+            return true;
+        if (value.equals("0") || value.equalsIgnoreCase("false"))
+            return false;
+        return def;
+    }
+
+    /**
+     * Liefert den Parameter "log.loglevel.default".
+     * @return der Log-Level.
+     */
+    public int getLogLevel()
+    {
+        int level = this.logLevel;
+        if (level == UNPARSED)
+            this.logLevel = level = parseInt(this.params.get("log.loglevel.default"),2);
+        return level;
+    }
+
+    /**
+     * Liefert den Parameter "log.filter".
+     * @return der Filter-Level.
+     */
+    public int getLogFilter()
+    {
+        int filter = this.logFilter;
+        if (filter == UNPARSED)
+            this.logFilter = filter = parseInt(this.params.get("log.filter"),2);
+        return filter;
+    }
+
+    /**
+     * Liefert den Parameter "kernel.rewriter".
+     * @return die kommaseparierte Liste der Rewriter oder NULL.
+     */
+    public String getRewriter()
+    {
+        return this.rewriter;
+    }
+
+    /**
+     * Liefert die Groesse des Pools fuer den angegebenen Objekttyp aus dem
+     * Parameter "kernel.objpool.&lt;type&gt;". Ist "kernel.objpool.enabled"
+     * auf "0" gesetzt, wird 0 geliefert.
+     * @param type der Objekttyp.
+     * @param def Default-Groesse, falls der Parameter nicht gesetzt ist.
+     * @return die Groesse des Pools.
+     */
+    public int getPoolSize(String type, int def)
+    {
+        if (!this.objpoolEnabled)
+            return 0;
+        return parseInt(this.params.get(OBJPOOL + type),def);
+    }
+
+    /**
+     * Liefert die Parameter als Properties.
+     * Aenderungen an den Properties wirken sich nicht auf den Stand aus.
+     * @return Kopie der Parameter.
+     */
+    public Properties toProperties()
+    {
+        Properties props = new Properties();
+        props.putAll(this.params);
+        return props;
+    }
+
+    /**
+     * Parst eine Zahl.
+     * @param value der Wert.
+     * @param def Default-Wert, falls der Wert NULL ist.
+     * @return die Zahl.
+     */
+    private static int parseInt(String value, int def)
+    {
+        return value != null ? Integer.parseInt(value.trim()) : def;
+    }
+}
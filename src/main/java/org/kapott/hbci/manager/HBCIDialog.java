@@ -384,15 +384,13 @@ public final class HBCIDialog
      */
     private int findTaskSegment(HBCIMsgStatus msgstatus)
     {
-        final Properties result = msgstatus.getData();
-        
         // searching for first segment number that belongs to the custom_msg
         // we look for entries like {"1","CustomMsg.GV*"} and so on (this data is inserted from the HBCIKernelImpl.rawDoIt() method),
         // until we find the first segment containing a task
         int segnum = 1;
         while (segnum < 1000) // Wir brauchen ja nicht endlos suchen
         {
-            final String path = result.getProperty(Integer.toString(segnum));
+            final String path = msgstatus.getValue(Integer.toString(segnum));
             
             // Wir sind am Ende der Segmente angekommen
             if (path == null)
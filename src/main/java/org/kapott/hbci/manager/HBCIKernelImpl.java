@@ -21,14 +21,9 @@
 
 package org.kapott.hbci.manager;
 
-import java.io.InputStream;
-import java.lang.reflect.Constructor;
-import java.util.ArrayList;
-import java.util.Enumeration;
 import java.util.Hashtable;
 import java.util.List;
-import java.util.Properties;
-import java.util.StringTokenizer;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.kapott.hbci.callback.HBCICallback;
 import org.kapott.hbci.exceptions.CanNotParseMessageException;
@@ -39,14 +34,13 @@ import org.kapott.hbci.passport.HBCIPassportInternal;
 import org.kapott.hbci.passport.HBCIPassportList;
 import org.kapott.hbci.protocol.MSG;
 import org.kapott.hbci.protocol.factory.MSGFactory;
-import org.kapott.hbci.rewrite.Rewrite;
+import org.kapott.hbci.rewrite.RewriteContext;
+import org.kapott.hbci.rewrite.RewriterChain;
 import org.kapott.hbci.security.Crypt;
 import org.kapott.hbci.security.Sig;
 import org.kapott.hbci.security.factory.CryptFactory;
 import org.kapott.hbci.security.factory.SigFactory;
 import org.kapott.hbci.status.HBCIMsgStatus;
-import org.w3c.dom.Element;
-import org.w3c.dom.NodeList;
 
 public final class HBCIKernelImpl implements HBCIKernel
 {
@@ -63,26 +57,26 @@ public final class HBCIKernelImpl implements HBCIKernel
     
     private IHandlerData parentHandlerData;
     
+    // die kernel-parameter der threadgroup, in der der handler erzeugt wurde.
+    // sie gelten fuer alle nachrichten dieses kernels, auch wenn sie aus einem
+    // anderen thread (thread-pool, virtueller thread) heraus verschickt werden
+    private AtomicReference<HBCIConfig> config;
+    
     public HBCIKernelImpl(IHandlerData parentHandlerData,String hbciversion)
     {
         this.parentHandlerData=parentHandlerData;
         this.hbciversion=hbciversion;
+        this.config=HBCIUtils.getConfigRef();
 
+        // die syntax wird nur einmal pro hbci-version geladen und von
+        // allen kernels gemeinsam benutzt
         String xmlpath=HBCIUtils.getParam("kernel.kernel.xmlpath");
-        InputStream syntaxStream=null;
-        if (xmlpath==null) {
-            xmlpath="";
-        }
-
-        ClassLoader cl=this.getClass().getClassLoader();
-        String filename=xmlpath+"hbci-"+hbciversion+".xml";
-        syntaxStream=cl.getResourceAsStream(filename);
-        if (syntaxStream==null)
-            throw new InvalidUserDataException(HBCIUtilsInternal.getLocMsg("EXCMSG_KRNL_CANTLOAD_SYN",filename));
         
         try {
-            gen=new MsgGen(syntaxStream);
+            gen=SyntaxCache.createMsgGen(xmlpath,hbciversion);
             currentMsgName=null;
+        } catch (InvalidUserDataException e) {
+            throw e;
         } catch (Exception e) {
             throw new HBCI_Exception(HBCIUtilsInternal.getLocMsg("EXCMSG_MSGGEN_INIT"),e);
         }
@@ -108,17 +102,9 @@ public final class HBCIKernelImpl implements HBCIKernel
 
     public String getHBCIVersion(int dummy)
     {
-        String   ret="";
-        NodeList nodes=gen.getSyntax().getElementById("MsgHeadUser").getElementsByTagName("value");
-        int      len=nodes.getLength();
-        
-        for (int i=0;i<len;i++) {
-            Element node=(Element)nodes.item(i);
-            if (node.getAttribute("path").equals("hbciversion")) {
-                ret=node.getFirstChild().getNodeValue();
-                break;
-            }
-        }
+        String ret=gen.getSyntaxModel().getDef("MsgHeadUser").getValue("hbciversion");
+        if (ret==null)
+            ret="";
         
         return ret;
     }
@@ -138,7 +124,7 @@ public final class HBCIKernelImpl implements HBCIKernel
             throw new HBCI_Exception(HBCIUtilsInternal.getLocMsg("EXCMSG_EMPTY_MSGNAME"));
 
         currentMsgName=name;
-        HBCIUtils.log("creating new raw message "+name,HBCIUtils.LOG_DEBUG2);
+        HBCIUtils.log("creating new raw message {}",HBCIUtils.LOG_DEBUG2,name);
         gen.reset();
     }
 
@@ -195,6 +181,27 @@ public final class HBCIKernelImpl implements HBCIKernel
         @return A Properties object that contains a path-value-pair for each dataelement of
                 the received message. */
     public HBCIMsgStatus rawDoIt(HBCIPassportList passports,boolean signit,boolean cryptit,boolean needCrypt)
+    {
+        AtomicReference<HBCIConfig> prev=HBCIUtils.bindConfig(config);
+        
+        // es werden nur die geheimen daten der beteiligten passports gefiltert
+        LogFilter filter=LogFilter.getInstance(passports.getMainPassport());
+        if (passports.size()>1) {
+            LogFilter[] scopes=new LogFilter[passports.size()];
+            for (int i=0;i<scopes.length;i++)
+                scopes[i]=LogFilter.getInstance(passports.getPassport(i));
+            filter=LogFilter.union(scopes);
+        }
+        LogFilter prevFilter=LogFilter.bind(filter);
+        try {
+            return doIt(passports,signit,cryptit,needCrypt);
+        } finally {
+            LogFilter.bind(prevFilter);
+            HBCIUtils.bindConfig(prev);
+        }
+    }
+    
+    private HBCIMsgStatus doIt(HBCIPassportList passports,boolean signit,boolean cryptit,boolean needCrypt)
     {
         HBCIMsgStatus ret=new HBCIMsgStatus();
         MSG           msg=null;
@@ -209,36 +216,13 @@ public final class HBCIKernelImpl implements HBCIKernel
             msg=gen.generate(currentMsgName);
             
             // alle daten für den rewriter setzen
-            Rewrite.setData("passports",passports);
-            Rewrite.setData("msgStatus",ret);
-            Rewrite.setData("msgName",currentMsgName);
-            Rewrite.setData("signIt",Boolean.valueOf(signit));
-            Rewrite.setData("cryptIt",Boolean.valueOf(cryptit));
+            RewriteContext ctx=new RewriteContext(passports,ret,currentMsgName,signit,cryptit);
 
-            // liste der rewriter erzeugen
-            String rewriters_st=HBCIUtils.getParam("kernel.rewriter");
-            ArrayList<Rewrite> al=new ArrayList<Rewrite>();
-            StringTokenizer tok=new StringTokenizer(rewriters_st,",");
-            while (tok.hasMoreTokens()) {
-                String rewriterName=tok.nextToken().trim();
-                if (rewriterName.length()!=0) {
-                    Class cl=this.getClass().getClassLoader().loadClass("org.kapott.hbci.rewrite.R"+
-                                                                        rewriterName);
-                    Constructor con=cl.getConstructor((Class[])null);
-                    Rewrite rewriter=(Rewrite)(con.newInstance((Object[])null));
-                    al.add(rewriter);
-                }
-            }
-            Rewrite[] rewriters=al.toArray(new Rewrite[al.size()]);
+            // liste der rewriter holen
+            RewriterChain rewriters=RewriterChain.getInstance();
             
             // alle rewriter durchlaufen und plaintextnachricht patchen
-            for (int i=0;i<rewriters.length;i++) {
-                MSG old=msg;
-                msg=rewriters[i].outgoingClearText(old,gen);
-                if (msg!=old) {
-                    MSGFactory.getInstance().unuseObject(old);
-                }
-            }
+            msg=rewriters.outgoingClearText(msg,gen,ctx);
             
             // HBCIUtils.log("sending msg: "+msg.toString(0));
             
@@ -261,42 +245,25 @@ public final class HBCIKernelImpl implements HBCIKernel
                 }
 
                 // alle rewrites erledigen, die *nach* dem hinzufügen der signatur stattfinden müssen
-                for (int i=0;i<rewriters.length;i++) {
-                    MSG old=msg;
-                    msg=rewriters[i].outgoingSigned(old,gen);
-                    if (msg!=old) {
-                        MSGFactory.getInstance().unuseObject(old);
-                    }
-                }
+                msg=rewriters.outgoingSigned(msg,gen,ctx);
             }
             
-            /* zu jeder SyntaxElement-Referenz (2:3,1)==(SEG:DEG,DE) den Pfad
-               des jeweiligen Elementes speichern */
-            Properties paths=new Properties();
-            msg.getElementPaths(paths,null,null,null);
-            ret.addData(paths);
-            
-            /* für alle Elemente (Pfadnamen) die aktuellen Werte speichern,
-               wie sie bei der ausgehenden Nachricht versandt werden */
-            Hashtable<String,String> current=new Hashtable<String,String>();
-            msg.extractValues(current);
-            Properties origs=new Properties();
-            for (Enumeration<String> e=current.keys();e.hasMoreElements();) {
-                String key= e.nextElement();
-                String value= current.get(key);
-                origs.setProperty("orig_"+key,value);
-            }
-            ret.addData(origs);
+            /* die Pfade der Elemente (SEG:DEG,DE) und die aktuellen Werte, wie
+               sie bei der ausgehenden Nachricht versandt werden, liest das
+               Status-Objekt erst bei Bedarf aus der Nachricht. Sie wird daher
+               nicht mehr wiederverwendet */
+            ret.setSentMessage(msg);
             
             // zu versendene nachricht loggen
-            String outstring=msg.toString(0);
-            HBCIUtils.log("sending message: "+outstring,HBCIUtils.LOG_DEBUG2);
+            if (HBCIUtils.isEnabled(HBCIUtils.LOG_DEBUG2))
+                HBCIUtils.log("sending message: "+msg.toString(0),HBCIUtils.LOG_DEBUG2);
 
             // max. nachrichtengröße aus BPD überprüfen
             int maxmsgsize=mainPassport.getMaxMsgSizeKB();
-            if (maxmsgsize!=0 && (outstring.length()>>10)>maxmsgsize) {
+            int msgsize=msg.getSize();
+            if (maxmsgsize!=0 && (msgsize>>10)>maxmsgsize) {
                 String errmsg=HBCIUtilsInternal.getLocMsg("EXCMSG_MSGTOOLARGE",
-                                                  new Object[] {Integer.toString(outstring.length()>>10),Integer.toString(maxmsgsize)});
+                                                  new Object[] {Integer.toString(msgsize>>10),Integer.toString(maxmsgsize)});
                 if (!HBCIUtilsInternal.ignoreError(null,"client.errors.ignoreMsgSizeErrors",errmsg))
                     throw new HBCI_Exception(errmsg);
             }
@@ -313,7 +280,7 @@ public final class HBCIKernelImpl implements HBCIKernel
                     msg=crypt.cryptIt("Crypted");
                 } finally {
                     CryptFactory.getInstance().unuseObject(crypt);
-                    if (msg!=old) {
+                    if (msg!=old && !ret.uses(old)) {
                         MSGFactory.getInstance().unuseObject(old);
                     }
                 }
@@ -325,15 +292,10 @@ public final class HBCIKernelImpl implements HBCIKernel
                 }
 
                 // verschlüsselte nachricht patchen
-                for (int i=0;i<rewriters.length;i++) {
-                    MSG oldMsg=msg;
-                    msg=rewriters[i].outgoingCrypted(oldMsg,gen);
-                    if (msg!=oldMsg) {
-                        MSGFactory.getInstance().unuseObject(oldMsg);
-                    }
-                }
+                msg=rewriters.outgoingCrypted(msg,gen,ctx);
                 
-                HBCIUtils.log("encrypted message to be sent: "+msg.toString(0),HBCIUtils.LOG_DEBUG2);
+                if (HBCIUtils.isEnabled(HBCIUtils.LOG_DEBUG2))
+                    HBCIUtils.log("encrypted message to be sent: "+msg.toString(0),HBCIUtils.LOG_DEBUG2);
             }
 
             // basic-values der ausgehenden nachricht merken
@@ -345,8 +307,8 @@ public final class HBCIKernelImpl implements HBCIKernel
             // nachricht versenden und antwortnachricht empfangen
             HBCIUtils.log("communicating dialogid/msgnum "+dialogid+"/"+msgnum,HBCIUtils.LOG_DEBUG);
             MSG old=msg;
-            msg=mainPassport.getComm().pingpong(currentMsgName,old);
-            if (msg!=old) {
+            msg=mainPassport.getComm().pingpongAwait(ctx,old);
+            if (msg!=old && !ret.uses(old)) {
                 MSGFactory.getInstance().unuseObject(old);
             }
 
@@ -373,18 +335,16 @@ public final class HBCIKernelImpl implements HBCIKernel
                 
                 // alle patches für die unverschlüsselte nachricht durchlaufen
                 HBCIUtils.log("rewriting message",HBCIUtils.LOG_DEBUG);
-                for (int i=0;i<rewriters.length;i++) {
-                    HBCIUtils.log("applying rewriter " + rewriters[i].getClass().getSimpleName(),HBCIUtils.LOG_DEBUG);
-                    newmsgstring=rewriters[i].incomingClearText(newmsgstring,gen);
-                }
+                newmsgstring=rewriters.incomingClearText(newmsgstring,gen,ctx);
                 HBCIUtils.log("rewriting done",HBCIUtils.LOG_DEBUG);
                 
-                HBCIUtils.log("decrypted message after rewriting: "+newmsgstring,HBCIUtils.LOG_DEBUG2);
+                HBCIUtils.log("decrypted message after rewriting: {}",HBCIUtils.LOG_DEBUG2,newmsgstring);
                 
                 // nachricht als plaintextnachricht parsen
                 try {
                     HBCIUtilsInternal.getCallback().status(mainPassport,HBCICallback.STATUS_MSG_PARSE,currentMsgName+"Res");
-                    HBCIUtils.log("message to pe parsed: "+msg.toString(0),HBCIUtils.LOG_DEBUG2);
+                    if (HBCIUtils.isEnabled(HBCIUtils.LOG_DEBUG2))
+                        HBCIUtils.log("message to pe parsed: "+msg.toString(0),HBCIUtils.LOG_DEBUG2);
                     MSG oldMsg=msg;
                     msg=MSGFactory.getInstance().createMSG(currentMsgName+"Res",newmsgstring,newmsgstring.length(),gen);
                     if (msg!=oldMsg) {
@@ -399,22 +359,16 @@ public final class HBCIKernelImpl implements HBCIKernel
               HBCIUtilsInternal.getCallback().status(mainPassport,HBCICallback.STATUS_MSG_RAW_RECV,msg.toString(0));
             }
             
-            HBCIUtils.log("received message after decryption: "+msg.toString(0),HBCIUtils.LOG_DEBUG2);
+            if (HBCIUtils.isEnabled(HBCIUtils.LOG_DEBUG2))
+                HBCIUtils.log("received message after decryption: "+msg.toString(0),HBCIUtils.LOG_DEBUG2);
 
             // alle patches für die plaintextnachricht durchlaufen
-            for (int i=0;i<rewriters.length;i++) {
-                MSG oldMsg=msg;
-                msg=rewriters[i].incomingData(oldMsg,gen);
-                if (msg!=oldMsg) {
-                    MSGFactory.getInstance().unuseObject(oldMsg);
-                }
-            }
+            msg=rewriters.incomingData(msg,gen,ctx);
             
-            // daten aus nachricht in status-objekt einstellen
+            // nachricht in status-objekt einstellen - die daten werden erst
+            // beim zugriff daraus gelesen
             HBCIUtils.log("extracting data from received message",HBCIUtils.LOG_DEBUG);
-            Properties p=msg.getData();
-            p.setProperty("_msg", gen.get("_origSignedMsg"));
-            ret.addData(p);
+            ret.setReceivedMessage(msg,gen.get("_origSignedMsg"));
             
             // überprüfen einiger constraints, die in einer antwortnachricht eingehalten werden müssen
             msgPath=msg.getPath();
@@ -484,7 +438,11 @@ public final class HBCIKernelImpl implements HBCIKernel
                 ret.addException(e);
             }
         } finally {
-            MSGFactory.getInstance().unuseObject(msg);
+            // die nachrichten, auf die der status verweist, gibt er selbst an
+            // den pool zurück, sobald er die daten daraus kopiert hat
+            ret.adoptMessages();
+            if (!ret.uses(msg))
+                MSGFactory.getInstance().unuseObject(msg);
             currentMsgName=null;
             gen.reset();
         }
@@ -21,6 +21,7 @@
 
 package org.kapott.hbci.manager;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
@@ -29,28 +30,31 @@ import java.io.StringWriter;
 import java.lang.reflect.Method;
 import java.math.BigDecimal;
 import java.math.BigInteger;
+import java.net.URISyntaxException;
+import java.net.URL;
 import java.security.Security;
 import java.text.DateFormat;
 import java.text.DecimalFormat;
 import java.text.DecimalFormatSymbols;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
-import java.util.Collections;
-import java.util.Comparator;
+import java.util.ArrayList;
 import java.util.Date;
-import java.util.HashMap;
-import java.util.Hashtable;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Locale;
-import java.util.Map.Entry;
 import java.util.Properties;
 import java.util.ResourceBundle;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
 
 import org.kapott.cryptalgs.CryptAlgs4JavaProvider;
 import org.kapott.hbci.GV_Result.GVRKUms;
 import org.kapott.hbci.callback.HBCICallback;
 import org.kapott.hbci.comm.Comm;
+import org.kapott.hbci.comm.CommExecutor;
+import org.kapott.hbci.comm.HttpConnectionPool;
 import org.kapott.hbci.exceptions.HBCI_Exception;
 import org.kapott.hbci.exceptions.InvalidArgumentException;
 import org.kapott.hbci.exceptions.InvalidUserDataException;
@@ -306,6 +310,50 @@ import org.kapott.hbci.swift.Swift;
  * (<code>NEED_PROXY_PASS</code>) nach dem Passwort gefragt.
  * </p>
  * </li>
+ * <li><code>client.passport.PinTan.keepalive</code> (für PIN/TAN-Passports)
+ * <p>
+ * Legt fest, ob HTTPS-Verbindungen zum Bank-Server nach einer Nachricht offen
+ * gehalten und für die nächsten Nachrichten wiederverwendet werden
+ * (HTTP/1.1 Keep-Alive). Die Verbindungen werden von allen Passports gemeinsam
+ * verwendet, die mit dem gleichen Server kommunizieren. Bei "<code>0</code>"
+ * wird für jede Nachricht eine neue Verbindung aufgebaut. Wird ein Proxy-Server
+ * verwendet oder ist <code>log.ssl.enable=1</code>, werden Verbindungen
+ * grundsätzlich nicht wiederverwendet. Default ist "<code>0</code>".
+ * </p>
+ * </li>
+ * <li><code>client.passport.PinTan.maxconnections</code> (für PIN/TAN-Passports)
+ * <p>
+ * Maximale Anzahl gleichzeitig offener Verbindungen zu einem Bank-Server, wenn
+ * <code>client.passport.PinTan.keepalive=1</code>. Weitere Nachrichten warten,
+ * bis eine Verbindung frei wird. Default ist "<code>4</code>".
+ * </p>
+ * </li>
+ * <li><code>client.passport.PinTan.keepalive.timeout</code> (für PIN/TAN-Passports)
+ * <p>
+ * Zeit in Sekunden, nach der eine unbenutzte Verbindung geschlossen wird.
+ * Meldet der Server per <code>Keep-Alive</code>-Header ein kürzeres Timeout,
+ * wird dieses verwendet. Default ist "<code>30</code>".
+ * </p>
+ * </li>
+ * <li><code>client.passport.PinTan.async</code> (für PIN/TAN-Passports)
+ * <p>
+ * Bei "<code>1</code>" wird für die Kommunikation mit der Bank eine
+ * nicht-blockierende Implementierung verwendet. Bei einem Aufruf von
+ * <code>Comm.pingpongAsync()</code> wartet dann kein Thread auf die Antwort
+ * der Bank, der Kernel selbst wartet lediglich auf das Ergebnis. Alle
+ * Verbindungen werden von einem gemeinsamen Thread bedient,
+ * die Antworten werden anschließend in einem kleinen Thread-Pool pro
+ * ThreadGroup verarbeitet (siehe <code>client.comm.async.threads</code>).
+ * Wird ein Proxy-Server verwendet oder ist <code>log.ssl.enable=1</code>,
+ * wird weiterhin blockierend kommuniziert. Default ist "<code>0</code>".
+ * </p>
+ * </li>
+ * <li><code>client.comm.async.threads</code>
+ * <p>
+ * Anzahl der Threads pro ThreadGroup, in denen asynchron empfangene
+ * Nachrichten verarbeitet werden. Default ist "<code>2</code>".
+ * </p>
+ * </li>
  * <li><code>client.passport.PinTan.init</code> (für PIN/TAN-Passports)
  * <p>
  * Dieser Parameter ist immer auf "1" zu setzen (wird nur intern anders
@@ -407,6 +455,17 @@ import org.kapott.hbci.swift.Swift;
  * und DDV).
  * </p>
  * </li>
+ * <li><code>comm.standard.nio</code>
+ * <p>
+ * Legt fest, ob "richtige" HBCI-Verbindungen (RDH und DDV) ueber einen
+ * nicht-blockierenden SocketChannel abgewickelt werden. Alle so geoeffneten
+ * Verbindungen werden von einem gemeinsamen Thread bedient, die Antwort der Bank
+ * wird direkt in einen passend grossen Puffer gelesen. Mit einem SOCKS-Server
+ * (siehe <code>comm.standard.socks.server</code>) wird immer ein normaler Socket
+ * verwendet. Mit "1" kann der SocketChannel aktiviert werden. Default-Wert
+ * ist "0".
+ * </p>
+ * </li>
  * <li><code>sepa.schema.validation</code>
  * <p>
  * Kann auf 1 gesetzt werden, wenn das erzeugte XML gegen das Schema validiert
@@ -574,6 +633,13 @@ import org.kapott.hbci.swift.Swift;
  * <ul>
  * <li>
  * <p>
+ * <code>kernel.objpool.enabled</code> -- Mit "<code>0</code>" wird das
+ * Object-Pooling für alle Objekttypen deaktiviert, unabhängig von den
+ * folgenden Größenangaben (1)
+ * </p>
+ * </li>
+ * <li>
+ * <p>
  * <code>kernel.objpool.MSG</code> -- Pool für Nachrichten-Objekte (3)
  * </p>
  * </li>
@@ -700,7 +766,8 @@ public final class HBCIUtils
 	/** Loglevel für devel-Debugging - nicht benutzen! */
 	public static final int								LOG_INTERN	= 6;
 
-	private static Hashtable<ThreadGroup, Properties>	configs;																							// threadgroup->hashtable(paramname->paramvalue)
+	private static ConcurrentHashMap<ThreadGroup, AtomicReference<HBCIConfig>>	configs;																		// threadgroup->aktueller stand der parameter
+	private static final ThreadLocal<AtomicReference<HBCIConfig>>				boundConfig	= new ThreadLocal<AtomicReference<HBCIConfig>>();				// an den thread gebundener stand, hat vorrang vor der threadgroup
 	private static char[]								base64table	= { 'A', 'B', 'C', 'D', 'E', 'F', 'G', 'H', 'I', 'J', 'K', 'L', 'M', 'N', 'O', 'P', 'Q',
 			'R', 'S', 'T', 'U', 'V', 'W', 'X', 'Y', 'Z', 'a', 'b', 'c', 'd', 'e', 'f', 'g', 'h', 'i', 'j', 'k', 'l', 'm', 'n', 'o', 'p', 'q', 'r', 's', 't',
 			'u', 'v', 'w', 'x', 'y', 'z', '0', '1', '2', '3', '4', '5', '6', '7', '8', '9', '+', '/' };
@@ -711,12 +778,11 @@ public final class HBCIUtils
 
 	private static void initDataStructures ( )
 	{
-		configs = new Hashtable<ThreadGroup, Properties>();
-		HBCIUtilsInternal.callbacks = new Hashtable<ThreadGroup, HBCICallback>();
-		HBCIUtilsInternal.blzs = new Properties();
-		HBCIUtilsInternal.banks = new HashMap<String, BankInfo>();
-		HBCIUtilsInternal.locMsgs = new Hashtable<ThreadGroup, ResourceBundle>();
-		HBCIUtilsInternal.locales = new Hashtable<ThreadGroup, Locale>();
+		configs = new ConcurrentHashMap<ThreadGroup, AtomicReference<HBCIConfig>>();
+		HBCIUtilsInternal.callbacks = new ConcurrentHashMap<ThreadGroup, HBCICallback>();
+		HBCIUtilsInternal.directory = BankDirectory.EMPTY;
+		HBCIUtilsInternal.locMsgs = new ConcurrentHashMap<ThreadGroup, ResourceBundle>();
+		HBCIUtilsInternal.locales = new ConcurrentHashMap<ThreadGroup, Locale>();
 	}
 
 	private HBCIUtils ()
@@ -949,21 +1015,13 @@ public final class HBCIUtils
 			try
 			{
 				// initialize kernel params
-				Properties config = new Properties();
-				if (props != null)
-				{
-					config.putAll(props);
-				}
-
-				synchronized (configs)
-				{
-					configs.put(threadgroup, config);
-				}
-				if (getParam("kernel.rewriter") == null)
+				HBCIConfig config = HBCIConfig.create(props);
+				if (config.getRewriter() == null)
 				{
-					setParam(	"kernel.rewriter",
-								"InvalidSegment,WrongStatusSegOrder,WrongSequenceNumbers,MissingMsgRef,HBCIVersion,SigIdLeadingZero,InvalidSuppHBCIVersion,SecTypeTAN,KUmsDelimiters,KUmsEmptyBDateSets");
+					config = config.with(	"kernel.rewriter",
+											"InvalidSegment,WrongStatusSegOrder,WrongSequenceNumbers,MissingMsgRef,HBCIVersion,SigIdLeadingZero,InvalidSuppHBCIVersion,SecTypeTAN,KUmsDelimiters,KUmsEmptyBDateSets");
 				}
+				configs.put(threadgroup, new AtomicReference<HBCIConfig>(config));
 
 				// initialize callback
 				if (callback == null)
@@ -1054,6 +1112,7 @@ public final class HBCIUtils
 		configs.remove(group);
 		HBCIUtilsInternal.locMsgs.remove(group);
 		HBCIUtilsInternal.locales.remove(group);
+		CommExecutor.shutdown();
 	}
 
 	/**
@@ -1065,6 +1124,8 @@ public final class HBCIUtils
 	public static synchronized void done ( )
 	{
 		HBCIUtils.log("destroying all HBCI4Java resources", HBCIUtils.LOG_DEBUG);
+		HttpConnectionPool.closeAll();
+		CommExecutor.shutdownAll();
 		initDataStructures();
 	}
 
@@ -1100,14 +1161,8 @@ public final class HBCIUtils
 		}
 
 		ThreadGroup threadgroup = Thread.currentThread().getThreadGroup();
-		synchronized (HBCIUtilsInternal.locales)
-		{
-			HBCIUtilsInternal.locales.put(threadgroup, locale);
-		}
-		synchronized (HBCIUtilsInternal.locMsgs)
-		{
-			HBCIUtilsInternal.locMsgs.put(threadgroup, ResourceBundle.getBundle("hbci4java-messages", locale));
-		}
+		HBCIUtilsInternal.locales.put(threadgroup, locale);
+		HBCIUtilsInternal.locMsgs.put(threadgroup, ResourceBundle.getBundle("hbci4java-messages", locale));
 	}
 
 	/**
@@ -1134,30 +1189,145 @@ public final class HBCIUtils
 	 */
 	public static String getParam ( String st, String def )
 	{
-		ThreadGroup group = Thread.currentThread().getThreadGroup();
-		Properties config = getParams();
-		if (config == null)
-		{
-			throw new HBCI_Exception(HBCIUtilsInternal.getLocMsg("EXCMSG_THREAD_NOTINIT", group.getName()));
-		}
-		return config.getProperty(st, def);
+		return getConfig().get(st, def);
 	}
 
 	/**
 	 * Gibt eine Map aller in der aktuellen ThreadGroup gesetzten
-	 * Kernel-Parameter zurück.
+	 * Kernel-Parameter zurück. Die Map zeigt immer den aktuellen Stand.
+	 * Änderungen per <code>put()</code>, <code>setProperty()</code> oder
+	 * <code>remove()</code> wirken wie {@link #setParam(String, String)}.
+	 * Für den lesenden Zugriff ist {@link #getConfig()} günstiger.
 	 */
 	public static Properties getParams ( )
 	{
-		Properties params;
-		ThreadGroup threadgroup = Thread.currentThread().getThreadGroup();
+		AtomicReference<HBCIConfig> ref = getConfigRef();
+		return ref != null ? new ConfigProperties(ref) : null;
+	}
+
+	/**
+	 * Gibt den aktuellen Stand der Kernel-Parameter zurück. Der Stand ist
+	 * unveränderlich und kann ohne Synchronisierung gelesen werden. Ist der
+	 * aktuelle Thread an einen Stand gebunden (siehe
+	 * {@link #withConfig(Runnable)}), wird dieser verwendet, sonst der Stand der
+	 * aktuellen ThreadGroup.
+	 *
+	 * @return der Stand der Kernel-Parameter
+	 */
+	public static HBCIConfig getConfig ( )
+	{
+		return getCheckedConfigRef().get();
+	}
+
+	/**
+	 * Liefert einen Runnable, der <code>task</code> mit den Kernel-Parametern
+	 * der aktuellen ThreadGroup ausführt - egal, in welchem Thread er läuft.
+	 * Damit können Aufgaben an Thread-Pools oder virtuelle Threads übergeben
+	 * werden, die nicht zur ThreadGroup gehören. Spätere Änderungen via
+	 * {@link #setParam(String, String)} sind in beiden Richtungen sichtbar.
+	 * Ein an den aktuellen Thread gebundener Bereich des {@link LogFilter}
+	 * wird ebenfalls übernommen.
+	 *
+	 * @param task
+	 *            die auszuführende Aufgabe
+	 * @return die an die Kernel-Parameter gebundene Aufgabe
+	 */
+	public static Runnable withConfig ( final Runnable task )
+	{
+		return bind(getCheckedConfigRef(), LogFilter.getInstance(), task);
+	}
+
+	/**
+	 * Liefert einen Executor, der alle an ihn übergebenen Aufgaben wie
+	 * {@link #withConfig(Runnable)} mit den Kernel-Parametern und dem
+	 * {@link LogFilter}-Bereich ausführt, die beim Aufruf dieser Methode
+	 * gelten. Damit behalten Fortsetzungen von
+	 * {@link java.util.concurrent.CompletableFuture}s die Bindung des
+	 * Aufrufers, auch wenn sie aus einem fremden Thread angestoßen werden.
+	 *
+	 * @param executor
+	 *            der Executor, der die Aufgaben tatsächlich ausführt
+	 * @return der an die Kernel-Parameter gebundene Executor
+	 */
+	public static Executor withConfig ( final Executor executor )
+	{
+		final AtomicReference<HBCIConfig> ref = getCheckedConfigRef();
+		final LogFilter filter = LogFilter.getInstance();
+		return task -> executor.execute(bind(ref, filter, task));
+	}
 
-		synchronized (configs)
+	/**
+	 * Bindet die Aufgabe an den angegebenen Stand der Kernel-Parameter und
+	 * den Bereich des {@link LogFilter}.
+	 */
+	private static Runnable bind ( final AtomicReference<HBCIConfig> ref, final LogFilter filter, final Runnable task )
+	{
+		return () -> {
+			AtomicReference<HBCIConfig> prev = bindConfig(ref);
+			LogFilter prevFilter = LogFilter.bind(filter);
+			try
+			{
+				task.run();
+			}
+			finally
+			{
+				LogFilter.bind(prevFilter);
+				bindConfig(prev);
+			}
+		};
+	}
+
+	/**
+	 * Liefert den veränderlichen Verweis auf den Stand der Kernel-Parameter
+	 * für den aktuellen Thread.
+	 */
+	static AtomicReference<HBCIConfig> getConfigRef ( )
+	{
+		AtomicReference<HBCIConfig> ref = boundConfig.get();
+		if (ref != null)
+		{
+			return ref;
+		}
+		return configs.get(Thread.currentThread().getThreadGroup());
+	}
+
+	/**
+	 * Bindet den aktuellen Thread an den angegebenen Stand der
+	 * Kernel-Parameter.
+	 *
+	 * @param ref
+	 *            der Verweis auf den Stand oder <code>null</code>, um die
+	 *            Bindung aufzuheben
+	 * @return die bisherige Bindung, die anschließend wiederhergestellt werden
+	 *         muss
+	 */
+	static AtomicReference<HBCIConfig> bindConfig ( AtomicReference<HBCIConfig> ref )
+	{
+		AtomicReference<HBCIConfig> prev = boundConfig.get();
+		if (ref != null)
+		{
+			boundConfig.set(ref);
+		}
+		else
 		{
-			params = configs.get(threadgroup);
+			boundConfig.remove();
 		}
+		return prev;
+	}
 
-		return params;
+	/**
+	 * Liefert den Verweis auf den Stand der Kernel-Parameter und wirft eine
+	 * Exception, wenn die aktuelle ThreadGroup nicht initialisiert wurde.
+	 */
+	private static AtomicReference<HBCIConfig> getCheckedConfigRef ( )
+	{
+		AtomicReference<HBCIConfig> ref = getConfigRef();
+		if (ref == null)
+		{
+			ThreadGroup group = Thread.currentThread().getThreadGroup();
+			throw new HBCI_Exception(HBCIUtilsInternal.getLocMsg("EXCMSG_THREAD_NOTINIT", group.getName()));
+		}
+		return ref;
 	}
 
 	/**
@@ -1203,7 +1373,7 @@ public final class HBCIUtils
 	 */
 	public static BankInfo getBankInfo ( String blz )
 	{
-		return HBCIUtilsInternal.banks.get(blz);
+		return HBCIUtilsInternal.directory.get(blz);
 	}
 
 	/**
@@ -1226,72 +1396,12 @@ public final class HBCIUtils
 			query = query.trim();
 		}
 
-		List<BankInfo> list = new LinkedList<BankInfo>();
 		if (query == null || query.length() < 3)
 		{
-			return list;
+			return new ArrayList<BankInfo>();
 		}
 
-		query = query.toLowerCase();
-
-		for (BankInfo info : HBCIUtilsInternal.banks.values())
-		{
-			String blz = info.getBlz();
-			String bic = info.getBic();
-			String name = info.getName();
-			String loc = info.getLocation();
-
-			// Anhand der BLZ?
-			if (blz != null && blz.startsWith(query))
-			{
-				list.add(info);
-				continue;
-			}
-
-			// Anhand der BIC?
-			if (bic != null && bic.toLowerCase().startsWith(query))
-			{
-				list.add(info);
-				continue;
-			}
-
-			// Anhand des Namens?
-			if (name != null && name.toLowerCase().contains(query))
-			{
-				list.add(info);
-				continue;
-			}
-			// Anhand des Orts?
-			if (loc != null && loc.toLowerCase().contains(query))
-			{
-				list.add(info);
-				continue;
-			}
-		}
-
-		Collections.sort(list, new Comparator<BankInfo>()
-		{
-			/**
-			 * @see java.util.Comparator#compare(java.lang.Object,
-			 *      java.lang.Object)
-			 */
-			@Override
-			public int compare ( BankInfo o1, BankInfo o2 )
-			{
-				if (o1 == null || o1.getBlz() == null)
-				{
-					return -1;
-				}
-				if (o2 == null || o2.getBlz() == null)
-				{
-					return 1;
-				}
-
-				return o1.getBlz().compareTo(o2.getBlz());
-			}
-		});
-
-		return list;
+		return HBCIUtilsInternal.directory.getIndex().search(query);
 	}
 
 	/**
@@ -1474,24 +1584,10 @@ public final class HBCIUtils
 	 */
 	public static void setParam ( String key, String value )
 	{
-		ThreadGroup group = Thread.currentThread().getThreadGroup();
-		Properties config = getParams();
-		if (config == null)
-		{
-			throw new HBCI_Exception(HBCIUtilsInternal.getLocMsg("EXCMSG_THREAD_NOTINIT", group.getName()));
-		}
+		AtomicReference<HBCIConfig> ref = getCheckedConfigRef();
 
-		synchronized (config)
-		{
-			if (value != null)
-			{
-				config.setProperty(key, value);
-			}
-			else
-			{
-				config.remove(key);
-			}
-		}
+		// der stand wird nie geaendert, sondern durch eine kopie ersetzt
+		ref.updateAndGet(config -> config.with(key, value));
 	}
 
 	/**
@@ -1509,28 +1605,132 @@ public final class HBCIUtils
 	 *            <li><code>LOG_CHIPCARD</code> (wird nur intern benutzt)</li>
 	 *            </ul>
 	 */
-	public static synchronized void log ( String st, int level )
+	public static void log ( String st, int level )
 	{
-		if (level <= Integer.parseInt(getParam("log.loglevel.default", "2")))
+		if (isEnabled(level))
 		{
-			StackTraceElement trace = null;
-			try
-			{
-				throw new Exception("");
-			}
-			catch (Exception e)
+			doLog(st, level);
+		}
+	}
+
+	/**
+	 * Prüft, ob Meldungen mit dem angegebenen Log-Level ausgegeben werden. Der
+	 * Log-Level wird nicht bei jedem Aufruf neu geparst, die Prüfung ist daher
+	 * so billig, dass sie vor dem Zusammenbauen aufwändiger Meldungen erfolgen
+	 * sollte.
+	 *
+	 * @param level
+	 *            der Log-Level (siehe {@link #log(String,int)})
+	 * @return <code>true</code>, wenn Meldungen mit diesem Level ausgegeben
+	 *         werden
+	 */
+	public static boolean isEnabled ( int level )
+	{
+		return level <= getConfig().getLogLevel();
+	}
+
+	/**
+	 * Ausgabe eines Log-Strings, der erst erzeugt wird, wenn er tatsächlich
+	 * ausgegeben wird.
+	 *
+	 * @param msg
+	 *            liefert den auszugebenden String
+	 * @param level
+	 *            die "Wichtigkeit" dieser Meldung (siehe
+	 *            {@link #log(String,int)})
+	 */
+	public static void log ( Supplier<String> msg, int level )
+	{
+		if (isEnabled(level))
+		{
+			doLog(msg.get(), level);
+		}
+	}
+
+	/**
+	 * Ausgabe eines Log-Strings mit Platzhaltern. Jedes <code>{}</code> in
+	 * <code>format</code> wird der Reihe nach durch
+	 * <code>String.valueOf()</code> des jeweiligen Arguments ersetzt. Der
+	 * String wird nur zusammengebaut, wenn er tatsächlich ausgegeben wird.
+	 *
+	 * @param format
+	 *            der auszugebende String mit Platzhaltern
+	 * @param level
+	 *            die "Wichtigkeit" dieser Meldung (siehe
+	 *            {@link #log(String,int)})
+	 * @param args
+	 *            die Werte für die Platzhalter
+	 */
+	public static void log ( String format, int level, Object... args )
+	{
+		if (isEnabled(level))
+		{
+			doLog(formatLogMessage(format, args), level);
+		}
+	}
+
+	/**
+	 * Ersetzt die Platzhalter <code>{}</code> durch die Argumente.
+	 */
+	private static String formatLogMessage ( String format, Object... args )
+	{
+		if (format == null || args == null || args.length == 0)
+		{
+			return format;
+		}
+
+		StringBuilder sb = new StringBuilder(format.length() + 16 * args.length);
+		int pos = 0;
+		int arg = 0;
+		int idx;
+		while (arg < args.length && (idx = format.indexOf("{}", pos)) != -1)
+		{
+			sb.append(format, pos, idx).append(String.valueOf(args[arg++]));
+			pos = idx + 2;
+		}
+		sb.append(format, pos, format.length());
+		return sb.toString();
+	}
+
+	/**
+	 * Gibt eine Meldung aus, deren Log-Level bereits geprüft wurde. Die
+	 * Aufrufstelle wird nur ermittelt, wenn der Callback sie braucht (siehe
+	 * {@link HBCICallback#needsCallerInfo()}).
+	 */
+	private static void doLog ( String st, int level )
+	{
+		int filterLevel = getConfig().getLogFilter();
+		if (filterLevel != 0)
+		{
+			st = LogFilter.getInstance().filterLine(st, filterLevel);
+		}
+
+		HBCICallback callback = HBCIUtilsInternal.getCallback();
+		StackTraceElement trace = callback.needsCallerInfo() ? getCaller() : null;
+		callback.log(st, level, new Date(), trace);
+	}
+
+	/**
+	 * Ermittelt die Stelle, von der aus geloggt wurde. Die Log-Methoden dieser
+	 * Klasse selbst werden übersprungen.
+	 */
+	private static StackTraceElement getCaller ( )
+	{
+		StackTraceElement[] trace = new Throwable().getStackTrace();
+		String name = HBCIUtils.class.getName();
+		for (StackTraceElement e : trace)
+		{
+			if (!e.getClassName().equals(name))
 			{
-				trace = e.getStackTrace()[1];
+				return e;
 			}
-
-			int filterLevel = Integer.parseInt(HBCIUtils.getParam("log.filter", "2"));
-			if (filterLevel != 0)
+			String method = e.getMethodName();
+			if (!method.equals("log") && !method.equals("doLog") && !method.equals("getCaller"))
 			{
-				st = LogFilter.getInstance().filterLine(st, filterLevel);
+				return e;
 			}
-
-			HBCIUtilsInternal.getCallback().log(st, level, new Date(), trace);
 		}
+		return trace[trace.length - 1];
 	}
 
   /**
@@ -1539,7 +1739,7 @@ public final class HBCIUtils
    *
    * @param exceptions die Exception, deren <code>getMessage()</code>-Meldungen geloggt werden sollen.
    */
-  public static synchronized void log(Exception... exceptions)
+  public static void log(Exception... exceptions)
   {
     if (exceptions == null)
       return;
@@ -1608,9 +1808,12 @@ public final class HBCIUtils
 	 *            der Log-Level, mit dem die Meldungen geloggt werden sollen.
 	 *            Siehe dazu auch {@link #log(String,int)}
 	 */
-	public static synchronized void log ( Exception e, int level )
+	public static void log ( Exception e, int level )
 	{
-		log(exception2String(e), level);
+		if (isEnabled(level))
+		{
+			doLog(exception2String(e), level);
+		}
 	}
 
 	/**
@@ -2363,6 +2566,46 @@ public final class HBCIUtils
 		{
 			blzpath = "";
 		}
+
+		// Ein binäres Verzeichnis hat Vorrang - es sei denn, daneben liegt eine
+		// neuere blz.properties. Liegt es als Datei vor, wird es nur gemappt
+		// statt gelesen
+		URL url = cl.getResource(blzpath + "blz.dat");
+		URL props = cl.getResource(blzpath + "blz.properties");
+		if (url != null && props != null && getLastModified(props) > getLastModified(url))
+		{
+			HBCIUtils.log("{} is newer than {}, ignoring the binary BLZ data", HBCIUtils.LOG_INFO, props, url);
+			url = null;
+		}
+
+		if (url != null)
+		{
+			HBCIUtils.log("loading BLZ data from {}", HBCIUtils.LOG_INFO, url);
+			if ("file".equals(url.getProtocol()))
+			{
+				try
+				{
+					refreshBLZList(new File(url.toURI()));
+					return;
+				}
+				catch (URISyntaxException e)
+				{
+					HBCIUtils.log("unable to map " + url + ", reading it instead", HBCIUtils.LOG_DEBUG);
+				}
+			}
+
+			InputStream f = url.openStream();
+			try
+			{
+				activateBLZList(BankDirectory.read(f));
+			}
+			finally
+			{
+				f.close();
+			}
+			return;
+		}
+
 		blzpath += "blz.properties";
 		InputStream f = cl.getResourceAsStream(blzpath);
 
@@ -2371,10 +2614,36 @@ public final class HBCIUtils
 			throw new InvalidUserDataException(HBCIUtilsInternal.getLocMsg("EXCMSG_BLZLOAD", blzpath));
 		}
 
+		HBCIUtils.log("loading BLZ data from {}", HBCIUtils.LOG_INFO, props != null ? props : blzpath);
 		refreshBLZList(f);
 		f.close();
 	}
 
+	/**
+	 * Liefert den Zeitpunkt der letzten Änderung der Ressource.
+	 *
+	 * @param url
+	 *            die Ressource.
+	 * @return der Zeitpunkt in Millisekunden oder 0, wenn er nicht ermittelt
+	 *         werden kann.
+	 */
+	private static long getLastModified ( URL url )
+	{
+		try
+		{
+			if ("file".equals(url.getProtocol()))
+			{
+				return new File(url.toURI()).lastModified();
+			}
+			return url.openConnection().getLastModified();
+		}
+		catch (Exception e)
+		{
+			HBCIUtils.log("unable to determine modification time of " + url, HBCIUtils.LOG_DEBUG);
+			return 0;
+		}
+	}
+
 	/**
 	 * Aktivieren einer neuen Bankenliste. Diese Methode kann aufgerufen werden,
 	 * um während der Laufzeit einer <em>HBCI4Java</em>-Anwendung eine neue
@@ -2393,19 +2662,39 @@ public final class HBCIUtils
 	{
 		HBCIUtils.log("trying to load BLZ data", HBCIUtils.LOG_DEBUG);
 		InputStreamReader isr = new InputStreamReader(in, "UTF-8");
-		HBCIUtilsInternal.blzs.clear();
-		HBCIUtilsInternal.blzs.load(isr);
+		Properties blzs = new Properties();
+		blzs.load(isr);
+		activateBLZList(BankDirectory.create(blzs));
+	}
 
-		HBCIUtilsInternal.banks.clear();
-		for (Entry<Object, Object> e : HBCIUtilsInternal.blzs.entrySet())
-		{
-			String blz = (String) e.getKey();
-			String value = (String) e.getValue();
+	/**
+	 * Aktivieren einer neuen Bankenliste aus einem binären Verzeichnis, wie es
+	 * von {@link org.kapott.hbci.tools.UpdateBLZProperties} erzeugt wird. Die
+	 * Datei wird nicht gelesen sondern in den Speicher gemappt. Sie darf danach
+	 * nicht mehr verändert werden. Für eine Aktualisierung muss eine neue Datei
+	 * geschrieben und mit dieser Methode aktiviert werden.
+	 *
+	 * @param file
+	 *            die Datei mit dem binären Verzeichnis.
+	 * @throws IOException
+	 */
+	public static synchronized void refreshBLZList ( File file ) throws IOException
+	{
+		HBCIUtils.log("trying to map BLZ data from {}", HBCIUtils.LOG_DEBUG, file);
+		activateBLZList(BankDirectory.load(file));
+	}
 
-			BankInfo info = BankInfo.parse(value);
-			info.setBlz(blz);
-			HBCIUtilsInternal.banks.put(blz, info);
-		}
+	/**
+	 * Ersetzt das aktuelle Bankleitzahlen-Verzeichnis. Laufende Zugriffe
+	 * arbeiten mit dem alten Verzeichnis weiter, es wird nicht blockiert.
+	 *
+	 * @param directory
+	 *            das neue Verzeichnis.
+	 */
+	private static void activateBLZList ( BankDirectory directory )
+	{
+		HBCIUtilsInternal.directory = directory;
+		HBCIUtils.log("activated BLZ data with {} entries", HBCIUtils.LOG_DEBUG, directory.size());
 	}
 
 	/**
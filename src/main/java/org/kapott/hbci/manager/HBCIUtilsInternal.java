@@ -25,12 +25,21 @@ import java.math.BigDecimal;
 import java.text.DecimalFormat;
 import java.text.DecimalFormatSymbols;
 import java.text.MessageFormat;
-import java.util.Hashtable;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Enumeration;
+import java.util.Iterator;
 import java.util.Locale;
 import java.util.Map;
 import java.util.MissingResourceException;
+import java.util.NoSuchElementException;
 import java.util.Properties;
 import java.util.ResourceBundle;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
 
 import org.kapott.hbci.callback.HBCICallback;
 import org.kapott.hbci.passport.HBCIPassport;
@@ -38,11 +47,27 @@ import org.kapott.hbci.passport.HBCIPassport;
 public class HBCIUtilsInternal
 {
 
-    public static Properties blzs;
-    public static Map<String,BankInfo> banks = null;
-    public static Hashtable<ThreadGroup, HBCICallback>  callbacks;  // threadgroup->callbackObject
-    public static Hashtable<ThreadGroup, ResourceBundle>  locMsgs;    // threadgroup->resourceBundle
-    public static Hashtable<ThreadGroup, Locale>  locales;    // threadgroup->Locale
+    /**
+     * Der Inhalt des aktuellen Verzeichnisses im Format der blz.properties.
+     * Die Properties werden erst beim ersten Zugriff befuellt und nach dem
+     * Laden eines neuen Verzeichnisses neu aufgebaut. Aenderungen wirken sich
+     * nicht auf die Bank-Daten aus und gehen beim naechsten Laden verloren.
+     * @deprecated Bitte {@link HBCIUtils#getBankInfo(String)} verwenden.
+     */
+    @Deprecated
+    public static Properties blzs = new BankProperties();
+    /**
+     * Sicht auf das aktuelle Verzeichnis. Jedes put() und remove() erzeugt das
+     * komplette Verzeichnis neu und kostet daher so viel wie das Laden aller
+     * Banken. Mehrere Aenderungen bitte per putAll() gesammelt oder per
+     * {@link HBCIUtils#refreshBLZList(java.io.InputStream)} vornehmen.
+     */
+    public static Map<String,BankInfo> banks = new BankMap();
+    static volatile BankDirectory directory = BankDirectory.EMPTY; // wird beim laden komplett ersetzt
+    // werden bei jeder log-ausgabe gelesen, daher ohne synchronisierung
+    public static ConcurrentHashMap<ThreadGroup, HBCICallback>  callbacks;  // threadgroup->callbackObject
+    public static ConcurrentHashMap<ThreadGroup, ResourceBundle>  locMsgs;    // threadgroup->resourceBundle
+    public static ConcurrentHashMap<ThreadGroup, Locale>  locales;    // threadgroup->Locale
     
     public static String bigDecimal2String(BigDecimal value)
     {
@@ -62,7 +87,8 @@ public class HBCIUtilsInternal
      */
     public static String getBLZData(String blz)
     {
-        return blz!=null?blzs.getProperty(blz,"|||||"):"|||||";
+        String line=directory.getLine(blz);
+        return line!=null?line:"|||||";
     }
 
     /**
@@ -93,7 +119,7 @@ public class HBCIUtilsInternal
      */
     public static String getAlgForBLZ(String blz)
     {
-        BankInfo info = banks.get(blz);
+        BankInfo info = directory.get(blz);
         if (info == null)
             return "";
         return info.getChecksumMethod() != null ? info.getChecksumMethod() : "";
@@ -260,4 +286,343 @@ public class HBCIUtilsInternal
     	return ret;
     }
     
+
+    /**
+     * Map-Sicht auf das jeweils aktuelle Bankleitzahlen-Verzeichnis.
+     * Da das Verzeichnis unveraenderlich ist, wird es bei jeder Aenderung
+     * komplett neu erzeugt. putAll() uebernimmt alle Eintraege in einem Schritt.
+     * Fuer groessere Aenderungen sollte daher putAll() oder
+     * {@link HBCIUtils#refreshBLZList(java.io.InputStream)} verwendet werden.
+     */
+    private static class BankMap extends AbstractMap<String,BankInfo>
+    {
+        /**
+         * @see java.util.AbstractMap#putAll(java.util.Map)
+         */
+        @Override
+        public void putAll(Map<? extends String,? extends BankInfo> m)
+        {
+            if (m.isEmpty())
+                return;
+
+            synchronized (HBCIUtils.class)
+            {
+                Properties p = directory.toProperties();
+                for (Map.Entry<? extends String,? extends BankInfo> e:m.entrySet())
+                    p.setProperty(e.getKey(),e.getValue().toLine());
+                directory = BankDirectory.create(p);
+            }
+        }
+
+        /**
+         * @see java.util.AbstractMap#put(java.lang.Object, java.lang.Object)
+         */
+        @Override
+        public BankInfo put(String key, BankInfo value)
+        {
+            synchronized (HBCIUtils.class)
+            {
+                BankInfo prev = get(key);
+                Properties p = directory.toProperties();
+                p.setProperty(key,value.toLine());
+                directory = BankDirectory.create(p);
+                return prev;
+            }
+        }
+
+        /**
+         * @see java.util.AbstractMap#remove(java.lang.Object)
+         */
+        @Override
+        public BankInfo remove(Object key)
+        {
+            synchronized (HBCIUtils.class)
+            {
+                BankInfo prev = get(key);
+                if (prev != null)
+                {
+                    Properties p = directory.toProperties();
+                    p.remove(key);
+                    directory = BankDirectory.create(p);
+                }
+                return prev;
+            }
+        }
+
+        /**
+         * @see java.util.AbstractMap#clear()
+         */
+        @Override
+        public void clear()
+        {
+            directory = BankDirectory.EMPTY;
+        }
+
+        /**
+         * @see java.util.AbstractMap#get(java.lang.Object)
+         */
+        @Override
+        public BankInfo get(Object key)
+        {
+            return (key instanceof String) ? directory.get((String) key) : null;
+        }
+
+        /**
+         * @see java.util.AbstractMap#containsKey(java.lang.Object)
+         */
+        @Override
+        public boolean containsKey(Object key)
+        {
+            return get(key) != null;
+        }
+
+        /**
+         * @see java.util.AbstractMap#size()
+         */
+        @Override
+        public int size()
+        {
+            return directory.size();
+        }
+
+        /**
+         * @see java.util.AbstractMap#entrySet()
+         */
+        @Override
+        public Set<Map.Entry<String,BankInfo>> entrySet()
+        {
+            return new AbstractSet<Map.Entry<String,BankInfo>>()
+            {
+                @Override
+                public Iterator<Map.Entry<String,BankInfo>> iterator()
+                {
+                    // Ein Iterator bleibt beim Verzeichnis, mit dem er begonnen hat
+                    final BankDirectory d = directory;
+                    return new Iterator<Map.Entry<String,BankInfo>>()
+                    {
+                        private int pos = 0;
+
+                        @Override
+                        public boolean hasNext()
+                        {
+                            return this.pos < d.size();
+                        }
+
+                        private String last = null;
+
+                        @Override
+                        public Map.Entry<String,BankInfo> next()
+                        {
+                            if (!hasNext())
+                                throw new NoSuchElementException();
+                            BankInfo info = d.get(this.pos++);
+                            this.last = info.getBlz();
+                            return new AbstractMap.SimpleImmutableEntry<String,BankInfo>(info.getBlz(),info);
+                        }
+
+                        @Override
+                        public void remove()
+                        {
+                            if (this.last == null)
+                                throw new IllegalStateException();
+                            BankMap.this.remove(this.last);
+                            this.last = null;
+                        }
+                    };
+                }
+
+                @Override
+                public int size()
+                {
+                    return directory.size();
+                }
+            };
+        }
+    }
+
+    /**
+     * Properties mit dem Inhalt des jeweils aktuellen Verzeichnisses.
+     * Sie werden bei jedem Zugriff mit dem Verzeichnis abgeglichen und nur
+     * dann neu befuellt, wenn inzwischen ein anderes Verzeichnis geladen wurde.
+     */
+    private static class BankProperties extends Properties
+    {
+        private static final long serialVersionUID = 1L;
+
+        private transient volatile BankDirectory loaded = null;
+
+        /**
+         * Befuellt die Properties, wenn sich das Verzeichnis geaendert hat.
+         */
+        private void sync()
+        {
+            BankDirectory d = directory;
+            if (d == this.loaded)
+                return;
+
+            synchronized (this)
+            {
+                d = directory;
+                if (d == this.loaded)
+                    return;
+
+                // Die Properties werden nie geleert, sondern nur die geaenderten
+                // Eintraege ersetzt. Lesende Zugriffe ohne Lock sehen daher pro
+                // BLZ die alte oder die neue Zeile. Erst danach gilt das
+                // Verzeichnis als geladen
+                Properties p = d.toProperties();
+                for (Object key:new ArrayList<Object>(super.keySet()))
+                {
+                    if (!p.containsKey(key))
+                        super.remove(key);
+                }
+                for (Map.Entry<Object,Object> e:p.entrySet())
+                {
+                    if (!e.getValue().equals(super.get(e.getKey())))
+                        super.put(e.getKey(),e.getValue());
+                }
+                this.loaded = d;
+            }
+        }
+
+        @Override
+        public String getProperty(String key)
+        {
+            sync();
+            return super.getProperty(key);
+        }
+
+        @Override
+        public Object get(Object key)
+        {
+            sync();
+            return super.get(key);
+        }
+
+        @Override
+        public Object getOrDefault(Object key, Object defaultValue)
+        {
+            sync();
+            return super.getOrDefault(key,defaultValue);
+        }
+
+        @Override
+        public boolean containsKey(Object key)
+        {
+            sync();
+            return super.containsKey(key);
+        }
+
+        @Override
+        public boolean containsValue(Object value)
+        {
+            sync();
+            return super.containsValue(value);
+        }
+
+        @Override
+        public boolean contains(Object value)
+        {
+            sync();
+            return super.contains(value);
+        }
+
+        @Override
+        public int size()
+        {
+            sync();
+            return super.size();
+        }
+
+        @Override
+        public boolean isEmpty()
+        {
+            sync();
+            return super.isEmpty();
+        }
+
+        @Override
+        public Enumeration<Object> keys()
+        {
+            sync();
+            return super.keys();
+        }
+
+        @Override
+        public Enumeration<Object> elements()
+        {
+            sync();
+            return super.elements();
+        }
+
+        @Override
+        public Set<Object> keySet()
+        {
+            sync();
+            return super.keySet();
+        }
+
+        @Override
+        public Set<Map.Entry<Object,Object>> entrySet()
+        {
+            sync();
+            return super.entrySet();
+        }
+
+        @Override
+        public Collection<Object> values()
+        {
+            sync();
+            return super.values();
+        }
+
+        @Override
+        public void forEach(BiConsumer<? super Object,? super Object> action)
+        {
+            sync();
+            super.forEach(action);
+        }
+
+        @Override
+        public Object put(Object key, Object value)
+        {
+            sync();
+            return super.put(key,value);
+        }
+
+        @Override
+        public Object remove(Object key)
+        {
+            sync();
+            return super.remove(key);
+        }
+
+        @Override
+        public void clear()
+        {
+            sync();
+            super.clear();
+        }
+
+        @Override
+        public String toString()
+        {
+            sync();
+            return super.toString();
+        }
+
+        @Override
+        public boolean equals(Object o)
+        {
+            sync();
+            return super.equals(o);
+        }
+
+        @Override
+        public int hashCode()
+        {
+            sync();
+            return super.hashCode();
+        }
+    }
 }
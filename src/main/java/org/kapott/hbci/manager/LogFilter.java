@@ -21,122 +21,461 @@
 
 package org.kapott.hbci.manager;
 
+import java.lang.ref.WeakReference;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Hashtable;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
-// TODO: doku fehlt
-public class LogFilter 
+import org.kapott.hbci.passport.AbstractHBCIPassport;
+import org.kapott.hbci.passport.HBCIPassport;
+
+/** Entfernt geheime Daten (PINs, Kennungen, Kontonummern, ...) aus Log-Ausgaben.
+ * <p>Die geheimen Daten werden pro Filter-Level zu einem Aho-Corasick-Automaten
+ * zusammengefasst, so dass eine Zeile unabhaengig von der Anzahl der Geheimnisse
+ * in einem Durchlauf gefiltert wird. Der Automat wird erst beim Filtern erzeugt
+ * und bis zur naechsten Aenderung wiederverwendet. Gefiltert wird ohne Lock.</p>
+ * <p>Neben dem globalen Filter gibt es pro Passport einen eigenen Bereich
+ * (siehe {@link #getInstance(HBCIPassport)}). Solange ein Passport erzeugt
+ * oder eine seiner Nachrichten verarbeitet wird, ist dessen Bereich an
+ * den Thread gebunden (siehe {@link #bind(LogFilter)}) - es werden dann nur
+ * die globalen und die eigenen Geheimnisse gesucht. Ist kein Bereich gebunden
+ * (z.Bsp. bei Aufrufen der Anwendung direkt am Job oder Passport), filtert der
+ * globale Filter die Geheimnisse aller noch lebenden Bereiche. Sein Automat
+ * wird nur dann neu erzeugt, wenn ausserhalb eines Bereiches gefiltert wird.</p> */
+public class LogFilter
 {
     public static final int FILTER_NONE=0;
     public static final int FILTER_SECRETS=1;
     public static final int FILTER_IDS=2;
     public static final int FILTER_MOST=3;
 
-	private static LogFilter _instance;
-	
-	private Map<Integer,List<String[]>> secretDataByLevel;
-	
-	public static synchronized LogFilter getInstance()
+	private static final LogFilter _instance=new LogFilter();
+
+	// der bereich, der gerade an den thread gebunden ist
+	private static final ThreadLocal<LogFilter> bound=new ThreadLocal<LogFilter>();
+
+	// alle bereiche - schwach referenziert, damit sie mit ihrem passport verschwinden
+	private static final ConcurrentLinkedQueue<WeakReference<LogFilter>> scopes=new ConcurrentLinkedQueue<WeakReference<LogFilter>>();
+
+	// die filter, deren geheimnisse zusaetzlich zu den eigenen gesucht werden
+	private final LogFilter[] includes;
+	private volatile Secrets secrets=Secrets.EMPTY;
+	private final Map<Integer,Cached> matchers=new ConcurrentHashMap<Integer,Cached>();
+
+	/** Liefert den Filter fuer den aktuellen Thread. Ist gerade der Bereich
+	 * eines Passports gebunden, wird dieser geliefert, sonst der globale Filter. */
+	public static LogFilter getInstance()
+	{
+		LogFilter scope=bound.get();
+		return (scope!=null)?scope:_instance;
+	}
+
+	/** Liefert den Bereich des angegebenen Passports. Fuer Passports ohne eigenen
+	 * Bereich wird {@link #getInstance()} geliefert. */
+	public static LogFilter getInstance(HBCIPassport passport)
 	{
-		if (_instance==null) {
-			_instance=new LogFilter();
+		if (passport instanceof AbstractHBCIPassport) {
+			return ((AbstractHBCIPassport)passport).getLogFilter();
 		}
-		return _instance;
+		return getInstance();
 	}
-	
-	private LogFilter()
+
+	/** Erzeugt einen neuen Bereich fuer geheime Daten. Er filtert die eigenen und
+	 * die globalen Geheimnisse. Solange er lebt, werden seine Geheimnisse auch
+	 * vom globalen Filter gefiltert. */
+	public static LogFilter createScope()
 	{
-		this.secretDataByLevel = new Hashtable<Integer, List<String[]>>();
+		LogFilter scope=new LogFilter(_instance);
+		scopes.add(new WeakReference<LogFilter>(scope));
+		return scope;
 	}
-	
+
+	/** Erzeugt einen Bereich, der die Geheimnisse aller angegebenen Bereiche
+	 * und die globalen Geheimnisse filtert. Wird fuer Nachrichten mit mehreren
+	 * Passports benutzt. */
+	static LogFilter union(LogFilter... scopes)
+	{
+		LogFilter[] includes=Arrays.copyOf(scopes,scopes.length+1);
+		includes[scopes.length]=_instance;
+		return new LogFilter(includes);
+	}
+
+	/** Bindet den Bereich an den aktuellen Thread. Bis zum Wiederherstellen
+	 * liefert {@link #getInstance()} in diesem Thread den Bereich. Mit <code>null</code>
+	 * oder dem globalen Filter wird die Bindung aufgehoben.
+	 * <pre>
+	 * LogFilter prev=LogFilter.bind(scope);
+	 * try {
+	 *     ...
+	 * } finally {
+	 *     LogFilter.bind(prev);
+	 * }
+	 * </pre>
+	 * @param scope der Bereich.
+	 * @return der bisher gebundene Bereich oder <code>null</code>. Er muss
+	 * anschliessend wiederhergestellt werden. */
+	public static LogFilter bind(LogFilter scope)
+	{
+		LogFilter prev=bound.get();
+		if (scope!=null && scope!=_instance) {
+			bound.set(scope);
+		} else {
+			bound.remove();
+		}
+		return prev;
+	}
+
+	private LogFilter(LogFilter... includes)
+	{
+		this.includes=includes;
+	}
+
 	public synchronized void clearSecretData()
 	{
-		this.secretDataByLevel.clear();
+		this.secrets=Secrets.EMPTY;
 	}
-	
+
 	public synchronized void addSecretData(String secret, String replacement, int level)
 	{
 	    if (secret!=null && secret.length()!=0) {
-	        // liste der secrets im gewählten level holen bzw. erzeugen
-	        List<String[]> secretData= secretDataByLevel.get(new Integer(level));
-	        if (secretData==null) {
-	            secretData=new ArrayList<String[]>();
-	            secretDataByLevel.put(new Integer(level),secretData);
-	        }
-
-	        // duplikats-check für "secret"
-	        boolean found=false;
-	        for (Iterator<String[]> i=secretData.iterator();i.hasNext();) {
-	            String[] entry= i.next();
-	            if (entry[0].equals(secret)) {
-	                found=true;
-	                break;
-	            }
-	        }
-
-	        if (!found) {
-	            // secret noch nicht in filterliste
-
-	            if (replacement==null || replacement.length()<2) {
-	                // wenn der replacement-string kein vollständiger String ist,
-	                // diesen mit einem Filler auf die länge des secrets bringen 
-	                char filler;
-
-	                if (replacement!=null && replacement.length()==1) {
-	                    // der replacement-string besteht aus genau einem zeichen,
-	                    // also dieses zeichen als filler verwenden
-	                    filler=replacement.charAt(0);
-	                } else {
-	                    // ansonsten default-filler "X" verwenden
-	                    filler='X';
-	                }
-
-	                char[] ca=new char[secret.length()];
-	                Arrays.fill(ca,filler);
-	                replacement=new String(ca);
-	            }
-
-	            secretData.add(new String[] {secret,replacement});
-	        }
+	        Secrets s=this.secrets.with(secret,replacement,level);
+	        this.secrets=s;
 	    }
 	}
-	
-	public synchronized String filterLine(String line, int filterLevel)
+
+	public String filterLine(String line, int filterLevel)
 	{
-		String ret=null;
-		if (line!=null) {
-			StringBuffer line2=new StringBuffer(line);
+		if (line==null || line.length()==0 || filterLevel<=0) {
+			return line;
+		}
+		return getMatcher(filterLevel).filter(line);
+	}
 
-			for (int level=filterLevel; level>0; level--) {
-				List<String[]> secretData= secretDataByLevel.get(new Integer(level));
-				if (secretData==null) {
-					continue;
+	/* liefert den automaten fuer den filter-level. er wird neu erzeugt, wenn sich
+	 * seit dem letzten mal eines der enthaltenen geheimnisse geaendert hat */
+	private Matcher getMatcher(int filterLevel)
+	{
+		Secrets[] all;
+		if (this==_instance) {
+			all=collect();
+		} else {
+			all=new Secrets[this.includes.length+1];
+			all[0]=this.secrets;
+			for (int i=0;i<this.includes.length;i++) {
+				all[i+1]=this.includes[i].secrets;
+			}
+		}
+
+		Cached cached=this.matchers.get(filterLevel);
+		if (cached!=null && cached.isFor(all)) {
+			return cached.matcher;
+		}
+
+		Matcher matcher=Matcher.create(Arrays.asList(all),filterLevel);
+		this.matchers.put(filterLevel,new Cached(all,matcher));
+		return matcher;
+	}
+
+	/* die globalen geheimnisse und die aller lebenden bereiche. leere bereiche
+	 * werden uebersprungen, damit neue passports keinen neuen automaten erzwingen */
+	private static Secrets[] collect()
+	{
+		List<Secrets> ret=new ArrayList<Secrets>();
+		ret.add(_instance.secrets);
+		for (Iterator<WeakReference<LogFilter>> i=scopes.iterator();i.hasNext();) {
+			LogFilter scope=i.next().get();
+			if (scope==null) {
+				i.remove();
+			} else if (scope.secrets!=Secrets.EMPTY) {
+				ret.add(scope.secrets);
+			}
+		}
+		return ret.toArray(new Secrets[ret.size()]);
+	}
+
+	/* ein zwischengespeicherter automat und der stand, aus dem er erzeugt wurde */
+	private static final class Cached
+	{
+		private final Secrets[] secrets;
+		private final Matcher   matcher;
+
+		private Cached(Secrets[] secrets,Matcher matcher)
+		{
+			this.secrets=secrets;
+			this.matcher=matcher;
+		}
+
+		/* die geheimnisse sind unveraenderlich, es genuegt also der vergleich der referenzen */
+		private boolean isFor(Secrets[] current)
+		{
+			if (this.secrets.length!=current.length) {
+				return false;
+			}
+			for (int i=0;i<current.length;i++) {
+				if (this.secrets[i]!=current[i]) {
+					return false;
 				}
-				
-				for (Iterator<String[]> i = secretData.iterator(); i.hasNext();) {
-					String[] entry = i.next();
+			}
+			return true;
+		}
+	}
 
-					String secret=entry[0];
-					String replacement=entry[1];
+	/* unveraenderliche liste der geheimnisse, pro level in der reihenfolge,
+	 * in der sie hinzugefuegt wurden. geheimnis -> ersatz */
+	private static final class Secrets
+	{
+		private static final Secrets EMPTY=new Secrets(new TreeMap<Integer,Map<String,String>>());
 
-					if (secret.isEmpty()) {
-						continue;
+		private final TreeMap<Integer,Map<String,String>> byLevel;
+
+		private Secrets(TreeMap<Integer,Map<String,String>> byLevel)
+		{
+			this.byLevel=byLevel;
+		}
+
+		private Secrets with(String secret,String replacement,int level)
+		{
+			Map<String,String> old=this.byLevel.get(level);
+			if (old!=null && old.containsKey(secret)) {
+				// duplikat - der erste ersatz bleibt
+				return this;
+			}
+
+			if (replacement==null || replacement.length()<2) {
+				// wenn der replacement-string kein vollständiger String ist,
+				// diesen mit einem Filler auf die länge des secrets bringen
+				char filler=(replacement!=null && replacement.length()==1)?replacement.charAt(0):'X';
+				char[] ca=new char[secret.length()];
+				Arrays.fill(ca,filler);
+				replacement=new String(ca);
+			}
+
+			TreeMap<Integer,Map<String,String>> map=new TreeMap<Integer,Map<String,String>>(this.byLevel);
+			Map<String,String> entries=(old!=null)?new LinkedHashMap<String,String>(old):new LinkedHashMap<String,String>();
+			entries.put(secret,replacement);
+			map.put(level,Collections.unmodifiableMap(entries));
+			return new Secrets(map);
+		}
+	}
+
+	/* Aho-Corasick-automat ueber alle geheimnisse bis zu einem filter-level.
+	 * fuer jede position der zeile wird nur das laengste geheimnis gebraucht,
+	 * das dort endet - alle kuerzeren liegen innerhalb davon. die gefundenen
+	 * bereiche werden vereinigt, ueberlappende geheimnisse werden also
+	 * vollstaendig maskiert */
+	private static final class Matcher
+	{
+		private static final Matcher EMPTY=new Matcher(new char[1][0],new int[1][0],new int[1],new int[1],new String[1]);
+
+		private final char[][] keys;     // pro zustand die sortierten zeichen der uebergaenge
+		private final int[][]  targets;  // pro zustand die zielzustaende dazu
+		private final int[]    fail;     // pro zustand der fehler-uebergang
+		private final int[]    longest;  // pro zustand laenge des laengsten dort endenden geheimnisses oder 0
+		private final String[] repl;     // pro zustand der ersatz fuer dieses geheimnis
+
+		private Matcher(char[][] keys,int[][] targets,int[] fail,int[] longest,String[] repl)
+		{
+			this.keys=keys;
+			this.targets=targets;
+			this.fail=fail;
+			this.longest=longest;
+			this.repl=repl;
+		}
+
+		private static Matcher create(List<Secrets> all,int filterLevel)
+		{
+			// trie aufbauen. hoehere level zuerst, bei gleichen geheimnissen
+			// gewinnt wie bisher der ersatz aus dem hoeheren level
+			List<Map<Character,Integer>> edges=new ArrayList<Map<Character,Integer>>();
+			List<String> replacement=new ArrayList<String>();
+			edges.add(new HashMap<Character,Integer>());
+			replacement.add(null);
+
+			for (Secrets s:all) {
+				for (Map<String,String> entries:s.byLevel.subMap(1,true,filterLevel,true).descendingMap().values()) {
+					for (Map.Entry<String,String> e:entries.entrySet()) {
+						String secret=e.getKey();
+						int    state=0;
+						for (int i=0;i<secret.length();i++) {
+							Character c=Character.valueOf(secret.charAt(i));
+							Integer   next=edges.get(state).get(c);
+							if (next==null) {
+								next=Integer.valueOf(edges.size());
+								edges.add(new HashMap<Character,Integer>());
+								replacement.add(null);
+								edges.get(state).put(c,next);
+							}
+							state=next.intValue();
+						}
+						if (replacement.get(state)==null) {
+							replacement.set(state,e.getValue());
+						}
+					}
+				}
+			}
+
+			int size=edges.size();
+			if (size==1) {
+				return EMPTY;
+			}
+
+			char[][] keys=new char[size][];
+			int[][]  targets=new int[size][];
+			int[]    depth=new int[size];
+			int[]    fail=new int[size];
+			int[]    longest=new int[size];
+			String[] repl=new String[size];
+
+			for (int s=0;s<size;s++) {
+				Map<Character,Integer> m=edges.get(s);
+				char[] k=new char[m.size()];
+				int    n=0;
+				for (Character c:m.keySet()) {
+					k[n++]=c.charValue();
+				}
+				Arrays.sort(k);
+				int[] t=new int[k.length];
+				for (int i=0;i<k.length;i++) {
+					t[i]=m.get(Character.valueOf(k[i])).intValue();
+				}
+				keys[s]=k;
+				targets[s]=t;
+			}
+
+			// fehler-uebergaenge in breitensuche bestimmen
+			ArrayDeque<Integer> queue=new ArrayDeque<Integer>();
+			queue.add(Integer.valueOf(0));
+			while (!queue.isEmpty()) {
+				int s=queue.poll().intValue();
+
+				if (replacement.get(s)!=null) {
+					longest[s]=depth[s];
+					repl[s]=replacement.get(s);
+				} else if (s!=0) {
+					longest[s]=longest[fail[s]];
+					repl[s]=repl[fail[s]];
+				}
+
+				for (int i=0;i<keys[s].length;i++) {
+					char c=keys[s][i];
+					int  t=targets[s][i];
+					depth[t]=depth[s]+1;
+					if (s!=0) {
+						int f=fail[s];
+						int next;
+						while ((next=step(keys,targets,f,c))==-1 && f!=0) {
+							f=fail[f];
+						}
+						fail[t]=(next!=-1)?next:0;
 					}
+					queue.add(Integer.valueOf(t));
+				}
+			}
 
-					int posi=0;
-					while ((posi=line2.indexOf(secret,posi))!=-1) {
-						line2.replace(posi,posi+secret.length(),replacement);
-						posi+=replacement.length();
+			return new Matcher(keys,targets,fail,longest,repl);
+		}
+
+		private static boolean isFree(boolean[] hit,int from,int to)
+		{
+			for (int p=from;p<=to;p++) {
+				if (hit[p]) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		private static int step(char[][] keys,int[][] targets,int state,char c)
+		{
+			int i=Arrays.binarySearch(keys[state],c);
+			return (i>=0)?targets[state][i]:-1;
+		}
+
+		private String filter(String line)
+		{
+			if (this==EMPTY) {
+				return line;
+			}
+
+			char[]       out=null;     // maskierte zeile, erst beim ersten treffer angelegt
+			boolean[]    hit=null;     // bereits maskierte stellen
+			boolean[]    drop=null;    // stellen, die durch einen eigenen ersatz entfallen
+			List<Object> custom=null;  // position und ersatz, wenn er nicht gleich lang ist
+			int          len=line.length();
+			int          state=0;
+
+			for (int i=0;i<len;i++) {
+				char c=line.charAt(i);
+				int  next;
+				while ((next=step(this.keys,this.targets,state,c))==-1 && state!=0) {
+					state=this.fail[state];
+				}
+				state=(next!=-1)?next:0;
+
+				int l=this.longest[state];
+				if (l==0) {
+					continue;
+				}
+
+				if (out==null) {
+					out=line.toCharArray();
+					hit=new boolean[len];
+				}
+
+				// das laengste hier endende geheimnis kann auch vor bereits
+				// maskierten stellen beginnen
+				String r=this.repl[state];
+				int    start=i-l+1;
+				if (r.length()!=l && isFree(hit,start,i)) {
+					// eigener ersatz - wird erst beim zusammensetzen eingefuegt
+					if (custom==null) {
+						custom=new ArrayList<Object>();
+						drop=new boolean[len];
+					}
+					custom.add(Integer.valueOf(start));
+					custom.add(r);
+					Arrays.fill(drop,start,i+1,true);
+					Arrays.fill(hit,start,i+1,true);
+				} else {
+					// ueberlappt das geheimnis einen eigenen ersatz, wird der
+					// rest mit dem default-filler maskiert
+					for (int p=start;p<=i;p++) {
+						if (!hit[p]) {
+							out[p]=(r.length()==l)?r.charAt(p-start):'X';
+							hit[p]=true;
+						}
 					}
 				}
 			}
-		
-			ret=line2.toString();
+
+			if (out==null) {
+				return line;
+			}
+			if (custom==null) {
+				return new String(out);
+			}
+
+			StringBuilder ret=new StringBuilder(len);
+			int           k=0;
+			for (int i=0;i<len;i++) {
+				if (k<custom.size() && ((Integer)custom.get(k)).intValue()==i) {
+					ret.append((String)custom.get(k+1));
+					k+=2;
+				}
+				if (!drop[i]) {
+					ret.append(out[i]);
+				}
+			}
+			return ret.toString();
 		}
-		return ret;
 	}
 }
@@ -25,6 +25,8 @@ import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Hashtable;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
 
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
@@ -32,12 +34,13 @@ import javax.xml.parsers.FactoryConfigurationError;
 import javax.xml.parsers.ParserConfigurationException;
 
 import org.kapott.hbci.exceptions.HBCI_Exception;
+import org.kapott.hbci.exceptions.NoSuchElementException;
 import org.kapott.hbci.protocol.MSG;
 import org.kapott.hbci.protocol.factory.MSGFactory;
+import org.kapott.hbci.protocol.syntax.SyntaxDef;
+import org.kapott.hbci.protocol.syntax.SyntaxModel;
+import org.kapott.hbci.protocol.syntax.SyntaxRef;
 import org.w3c.dom.Document;
-import org.w3c.dom.Element;
-import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
 
 /* Message-Generator-Klasse. Diese Klasse verwaltet die Syntax-Spezifikation
  * für die zu verwendende HBCI-Version. Hiermit wird das Erzeugen von
@@ -57,15 +60,30 @@ import org.w3c.dom.NodeList;
  *      mit "<msgName>." beginnen).*/
 public final class MsgGen
 {
-    private Document syntax;         /**< @internal @brief The representation of the syntax used by this generator */
+    private Supplier<Document> syntax; /**< @internal @brief The representation of the syntax used by this generator, loaded on demand */
+    private SyntaxModel syntaxModel; /**< @internal @brief The compiled syntax used for generating and parsing messages */
     private Hashtable<String, String> clientValues;  /**< @internal @brief A table of properties set by the user to specify the message to be generated */
     
     // Wird vom Server-Code benutzt. Wenn ein Dialog reinkommt mit einer HBCI-
     // Version, die schon mal benutzt wurde, dann wird nicht das entsprechende
     // XML-Document nochmal erzeugt, sondern das alte wiederbenutzt.
-    public MsgGen(Document syntax)
+    public MsgGen(final Document syntax)
+    {
+        this.syntax=() -> syntax;
+        this.syntaxModel=SyntaxModel.compile(syntax);
+        this.clientValues=new Hashtable<String, String>();
+    }
+
+    /* Erzeugt einen Message-Generator mit einer bereits geladenen und
+     * kompilierten Syntax. Wird von SyntaxCache verwendet, damit alle
+     * Generatoren fuer die gleiche HBCI-Version die Syntax gemeinsam nutzen.
+     * Nur die zu setzenden Werte (clientValues) gehoeren dem Generator allein.
+     * Das DOM wird erst bei Bedarf geholt, da es nur fuer die Lowlevel-
+     * Informationen benoetigt wird. */
+    MsgGen(Supplier<Document> syntax, SyntaxModel syntaxModel)
     {
         this.syntax=syntax;
+        this.syntaxModel=syntaxModel;
         this.clientValues=new Hashtable<String, String>();
     }
 
@@ -73,6 +91,16 @@ public final class MsgGen
      * Stream, mit dem eine XML-Datei mit einer HBCI-Syntaxspezifikation
      * eingelesen wird */
     public MsgGen(InputStream syntaxFileStream)
+    {
+        final Document doc=parse(syntaxFileStream);
+        this.syntax=() -> doc;
+        this.syntaxModel=SyntaxModel.compile(doc);
+        this.clientValues=new Hashtable<String, String>();
+    }
+    
+    /* Liest die XML-Datei mit der HBCI-Syntaxspezifikation ein. Der Stream
+     * wird danach geschlossen */
+    static Document parse(InputStream syntaxFileStream)
     {
         try {
             // Siehe https://github.com/hbci4j/hbci4java/issues/31 - in Android wird das System-Property nicht ausgewertet
@@ -83,10 +111,9 @@ public final class MsgGen
             dbf.setValidating(true);
 
             DocumentBuilder db=dbf.newDocumentBuilder();
-            syntax=db.parse(syntaxFileStream);
+            Document syntax=db.parse(syntaxFileStream);
             syntaxFileStream.close();
-
-            clientValues=new Hashtable<String, String>();
+            return syntax;
         } catch (FactoryConfigurationError e) {
             throw new HBCI_Exception(HBCIUtilsInternal.getLocMsg("EXCMSG_MSGGEN_DBFAC"),e);
         } catch (ParserConfigurationException e) {
@@ -133,46 +160,35 @@ public final class MsgGen
 
     /** @internal @brief Returns the representation of the HBCI syntax used by this generator 
 
-        @return The internally used representation of a HBCI syntax description.
+        Every call returns a separate copy of the DOM, because the shared one
+        may not be accessed by several threads. To generate or parse messages
+        use getSyntaxModel() instead.
+
+        @return A copy of the HBCI syntax description.
      */
     public Document getSyntax()
     {
-        return syntax;
+        return syntax.get();
+    }
+    
+    /** @internal @brief Returns the compiled syntax used to generate and parse messages 
+
+        @return The immutable, thread-safe representation of the HBCI syntax.
+     */
+    public SyntaxModel getSyntaxModel()
+    {
+        return syntaxModel;
     }
     
+    /* liefert alle lowlevel-gvs mit ihren versionen. die liste wird einmal
+     * pro syntax aus dem kompilierten modell ermittelt, dafür wird weder das
+     * DOM noch ein lock benötigt */
     public Hashtable<String, List<String>> getLowlevelGVs()
     {
         Hashtable<String, List<String>> result=new Hashtable<String, List<String>>();
-        
-        Element      gvlist=syntax.getElementById("GV");
-        NodeList     gvs=gvlist.getChildNodes();
-        int          len=gvs.getLength();
-        StringBuffer type=new StringBuffer();
-        
-        for (int i=0;i<len;i++) {
-            Node gvref=gvs.item(i);
-            if (gvref.getNodeType()==Node.ELEMENT_NODE) {
-                type.setLength(0);
-                type.append(((Element)gvref).getAttribute("type"));
-                
-                int  pos=type.length()-1;
-                char ch;
-                
-                while ((ch=type.charAt(pos))>='0' && ch<='9') {
-                    pos--;
-                }
-                
-                String gvname=type.substring(0,pos+1);
-                List<String>   entry= result.get(gvname);
-                
-                if (entry==null) {
-                    entry=new ArrayList<String>();
-                    result.put(gvname,entry);
-                }
-                entry.add(type.substring(pos+1));
-            }
+        for (Map.Entry<String, List<String>> e:syntaxModel.getLowlevelGVs().entrySet()) {
+            result.put(e.getKey(),new ArrayList<String>(e.getValue()));
         }
-        
         return result;
     }
     
@@ -197,21 +213,12 @@ public final class MsgGen
     public List<String> getGVParameterNames(String gvname,String version)
     {
         ArrayList<String> ret=new ArrayList<String>();
-        Element   gvdef=syntax.getElementById(gvname+version);
-        NodeList  gvcontent=gvdef.getChildNodes();
-        int       len=gvcontent.getLength();
-
-        boolean first=true;
-        for (int i=0;i<len;i++) {
-            Node contentref=gvcontent.item(i);
+        SyntaxDef gvdef=getDef(gvname+version);
 
-            if (contentref.getNodeType()==Node.ELEMENT_NODE) {
-                // skip seghead
-                if (first) {
-                    first=false;
-                } else {
-                    addLowlevelProperties(ret,"",(Element)contentref);
-                }
+        for (SyntaxRef ref:gvdef.getRefs()) {
+            // skip seghead
+            if (ref.getIndex()!=0) {
+                addLowlevelProperties(ret,"",ref);
             }
         }
 
@@ -239,22 +246,12 @@ public final class MsgGen
     public List<String> getGVResultNames(String gvname,String version)
     {
         ArrayList<String> ret=new ArrayList<String>();
-        Element   gvdef=syntax.getElementById(gvname+"Res"+version);
+        SyntaxDef gvdef=syntaxModel.getDef(gvname+"Res"+version);
         
         if (gvdef!=null) {
-            NodeList gvcontent=gvdef.getChildNodes();
-            int len=gvcontent.getLength();
-
-            boolean first=true;
-            for (int i=0;i<len;i++) {
-                Node contentref=gvcontent.item(i);
-
-                if (contentref.getNodeType()==Node.ELEMENT_NODE) {
-                    if (first) {
-                        first=false;
-                    } else {
-                        addLowlevelProperties(ret,"",(Element)contentref);
-                    }
+            for (SyntaxRef ref:gvdef.getRefs()) {
+                if (ref.getIndex()!=0) {
+                    addLowlevelProperties(ret,"",ref);
                 }
             }
         }
@@ -285,42 +282,20 @@ public final class MsgGen
         ArrayList<String> ret=new ArrayList<String>();
         
         // SEGdef id="TermUebPar1" finden
-        Element   gvdef=syntax.getElementById(gvname+"Par"+version);
+        SyntaxDef gvdef=syntaxModel.getDef(gvname+"Par"+version);
         
         if (gvdef!=null) {
             // alle darin enthaltenen elemente durchlaufen, bis ein element
-            // DEG type="ParTermUeb1" gefunden ist
-            NodeList gvcontent=gvdef.getChildNodes();
-            int len=gvcontent.getLength();
-
-            for (int i=0;i<len;i++) {
-                Node contentref=gvcontent.item(i);
-
-                if (contentref.getNodeType()==Node.ELEMENT_NODE) {
-                    String type=((Element)contentref).getAttribute("type");
-                    if (type.startsWith("Par")) {
-                        // wenn ein DEG type="ParTermUeb" gefunden ist, können
-                        // alle umgebenenden schleifenvariablen wiederverwendet
-                        // werden, weil es nur *ein* solches element geben kann
-                        // und die umgebende schleife demzufolge abgebrochen werden
-                        // kann, nachdem das gefundenen element bearbeitet wurde
-                        
-                        // DEGdef id="ParTermUeb1" finden
-                        gvdef=syntax.getElementById(type);
-                        gvcontent=gvdef.getChildNodes();
-                        len=gvcontent.getLength();
-                        
-                        // darin alle elemente durchlaufen und deren namen
-                        // zur ergebnisliste hinzufügen
-                        for (i=0;i<len;i++) {
-                            contentref=gvcontent.item(i);
-
-                            if (contentref.getNodeType()==Node.ELEMENT_NODE) {
-                                addLowlevelProperties(ret,"",(Element)contentref);
-                            }
-                        }
-                        break;
+            // DEG type="ParTermUeb1" gefunden ist. es kann nur *ein* solches
+            // element geben
+            for (SyntaxRef ref:gvdef.getRefs()) {
+                if (ref.getType().startsWith("Par")) {
+                    // DEGdef id="ParTermUeb1" finden und darin alle elemente
+                    // zur ergebnisliste hinzufügen
+                    for (SyntaxRef content:getDef(ref.getType()).getRefs()) {
+                        addLowlevelProperties(ret,"",content);
                     }
+                    break;
                 }
             }
         }
@@ -328,30 +303,28 @@ public final class MsgGen
         return ret;
     }
 
-    private void addLowlevelProperties(ArrayList<String> result,String path,Element ref)
+    private void addLowlevelProperties(ArrayList<String> result,String path,SyntaxRef ref)
     {
-        if (ref.getAttribute("type").length()!=0) {
-            if (ref.getNodeName().equals("DE")) {
-                String name=ref.getAttribute("name");
-                result.add(pathWithDot(path)+name);
+        if (ref.getType().length()!=0) {
+            if (ref.getKind()==SyntaxRef.Kind.DE) {
+                result.add(pathWithDot(path)+ref.getName());
             } else {
-                String name=ref.getAttribute("name");
-                if (name.length()==0)
-                    name=ref.getAttribute("type");
-
-                Element  def=syntax.getElementById(ref.getAttribute("type"));
-                NodeList defcontent=def.getChildNodes();
-                int len=defcontent.getLength();
-
-                for (int i=0;i<len;i++) {
-                    Node content=defcontent.item(i);
-                    if (content.getNodeType()==Node.ELEMENT_NODE)
-                        addLowlevelProperties(result,pathWithDot(path)+name,(Element)content);
+                for (SyntaxRef content:getDef(ref.getType()).getRefs()) {
+                    addLowlevelProperties(result,pathWithDot(path)+ref.getName(),content);
                 }
             }
         }
     }
 
+    /* liefert die definition mit der angegebenen id */
+    private SyntaxDef getDef(String id)
+    {
+        SyntaxDef def=syntaxModel.getDef(id);
+        if (def==null)
+            throw new NoSuchElementException("Syntax-Element",id);
+        return def;
+    }
+
     private static String pathWithDot(String path)
     {
         return (path.length()==0)?path:(path+".");
@@ -0,0 +1,234 @@
+/**********************************************************************
+ *
+ * This file is part of HBCI4Java.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ **********************************************************************/
+
+package org.kapott.hbci.manager;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+
+import org.kapott.hbci.exceptions.InvalidUserDataException;
+import org.kapott.hbci.protocol.syntax.SyntaxModel;
+import org.kapott.hbci.protocol.syntax.SyntaxSerializer;
+import org.kapott.hbci.tools.IOUtils;
+import org.w3c.dom.Document;
+
+/**
+ * Prozessweiter Cache fuer die geladenen HBCI-Syntax-Spezifikationen.
+ * Frueher hat jeder neue HBCIHandler die XML-Datei der HBCI-Version erneut
+ * geladen, mit DTD-Validierung geparst und kompiliert. Die Spezifikation
+ * wird jetzt pro Datei (also pro "kernel.kernel.xmlpath" und HBCI-Version)
+ * nur einmal geladen und von allen {@link MsgGen}-Instanzen gemeinsam verwendet.
+ * Die von den Handlern gesetzten Werte liegen weiterhin in der jeweiligen
+ * MsgGen-Instanz.
+ */
+public final class SyntaxCache
+{
+    private final static ConcurrentMap<String,Entry> cache = new ConcurrentHashMap<String,Entry>();
+
+    /**
+     * ct.
+     */
+    private SyntaxCache()
+    {
+    }
+
+    /**
+     * Liefert einen neuen Message-Generator fuer die angegebene HBCI-Version.
+     * Die Syntax wird beim ersten Aufruf geladen und danach aus dem Cache geliefert.
+     * @param xmlpath optionaler Pfad im Classpath, in dem die XML-Datei liegt. Kann NULL sein.
+     * @param hbciversion die HBCI-Version.
+     * @return der neue Message-Generator.
+     */
+    public static MsgGen createMsgGen(String xmlpath, String hbciversion)
+    {
+        Entry e = get(getFilename(xmlpath,hbciversion));
+        return new MsgGen(e,e.syntaxModel);
+    }
+
+    /**
+     * Liefert die kompilierte Syntax fuer die angegebene HBCI-Version.
+     * @param xmlpath optionaler Pfad im Classpath, in dem die XML-Datei liegt. Kann NULL sein.
+     * @param hbciversion die HBCI-Version.
+     * @return die kompilierte Syntax.
+     */
+    public static SyntaxModel getSyntaxModel(String xmlpath, String hbciversion)
+    {
+        return get(getFilename(xmlpath,hbciversion)).syntaxModel;
+    }
+
+    /**
+     * Prueft, ob das DOM der Spezifikation bereits geparst wurde.
+     * Wurde die Binaerform geladen, passiert das erst beim ersten Aufruf von
+     * {@link MsgGen#getSyntax()}. Fuer das Erzeugen und Parsen von Nachrichten
+     * wird es nicht benoetigt.
+     * @param xmlpath optionaler Pfad im Classpath, in dem die XML-Datei liegt. Kann NULL sein.
+     * @param hbciversion die HBCI-Version.
+     * @return true, wenn das DOM geparst wurde. False auch dann, wenn die
+     * Spezifikation noch gar nicht geladen wurde.
+     */
+    public static boolean isParsed(String xmlpath, String hbciversion)
+    {
+        Entry e = cache.get(getFilename(xmlpath,hbciversion));
+        return e != null && e.isParsed();
+    }
+
+    /**
+     * Leert den Cache. Danach werden die Spezifikationen beim naechsten Zugriff neu geladen.
+     */
+    public static void clear()
+    {
+        cache.clear();
+    }
+
+    /**
+     * Liefert den Dateinamen der Spezifikation.
+     * @param xmlpath optionaler Pfad.
+     * @param hbciversion die HBCI-Version.
+     * @return der Dateiname.
+     */
+    private static String getFilename(String xmlpath, String hbciversion)
+    {
+        return (xmlpath != null ? xmlpath : "") + "hbci-" + hbciversion + ".xml";
+    }
+
+    /**
+     * Liefert den Cache-Eintrag fuer die Datei und laedt ihn bei Bedarf.
+     * Paralleles Laden der gleichen Datei findet nicht statt.
+     * @param filename der Dateiname.
+     * @return der Cache-Eintrag.
+     */
+    private static Entry get(final String filename)
+    {
+        Entry e = cache.get(filename);
+        if (e != null)
+            return e;
+
+        return cache.computeIfAbsent(filename,SyntaxCache::load);
+    }
+
+    /**
+     * Laedt die Spezifikation.
+     * Wenn vorhanden, wird die beim Build erzeugte Binaerform geladen. Sie wird
+     * aber nur verwendet, wenn sie aus genau der XML-Datei erzeugt wurde, die
+     * im Classpath liegt. Andernfalls wird das XML geparst und kompiliert.
+     * Liegt das XML im Jar, wird es fuer diesen Vergleich nicht gelesen, sondern
+     * die im Jar gespeicherte Pruefsumme verwendet.
+     * @param filename der Dateiname.
+     * @return der Cache-Eintrag.
+     */
+    private static Entry load(String filename)
+    {
+        ClassLoader cl = SyntaxCache.class.getClassLoader();
+        URL url = cl.getResource(filename);
+        if (url == null)
+            throw new InvalidUserDataException(HBCIUtilsInternal.getLocMsg("EXCMSG_KRNL_CANTLOAD_SYN",filename));
+
+        String binname = filename.replaceAll("\\.xml$","") + SyntaxSerializer.SUFFIX;
+        InputStream bin = cl.getResourceAsStream(binname);
+        if (bin != null)
+        {
+            try
+            {
+                SyntaxModel model = SyntaxSerializer.read(bin,SyntaxSerializer.checksum(url));
+                if (model != null)
+                {
+                    HBCIUtils.log("loaded precompiled syntax specification " + binname,HBCIUtils.LOG_DEBUG);
+                    return new Entry(filename,null,model);
+                }
+                HBCIUtils.log(binname + " does not match " + filename + ", ignoring it",HBCIUtils.LOG_WARN);
+            }
+            catch (IOException e)
+            {
+                HBCIUtils.log("unable to read " + binname + ", ignoring it: " + e.getMessage(),HBCIUtils.LOG_WARN);
+            }
+            finally
+            {
+                IOUtils.close(bin);
+            }
+        }
+
+        HBCIUtils.log("loading syntax specification " + filename,HBCIUtils.LOG_DEBUG);
+        InputStream is = null;
+        try
+        {
+            is = url.openStream();
+        }
+        catch (IOException e)
+        {
+            throw new InvalidUserDataException(HBCIUtilsInternal.getLocMsg("EXCMSG_KRNL_CANTLOAD_SYN",filename),e);
+        }
+        Document syntax = MsgGen.parse(is);
+        return new Entry(filename,syntax,SyntaxModel.compile(syntax));
+    }
+
+    /**
+     * Ein Eintrag im Cache.
+     * Das DOM wird nur fuer die Lowlevel-Informationen in {@link MsgGen} benoetigt.
+     * Wurde die Binaerform geladen, wird es erst beim ersten Zugriff geparst.
+     * Da ein DOM auch beim Lesen nicht threadsicher ist, erhaelt jeder Aufrufer
+     * eine eigene Kopie.
+     */
+    private final static class Entry implements Supplier<Document>
+    {
+        private final String filename;
+        private final SyntaxModel syntaxModel;
+        private Document syntax;
+
+        /**
+         * ct.
+         * @param filename der Dateiname der XML-Datei.
+         * @param syntax das DOM der Spezifikation. Kann NULL sein.
+         * @param syntaxModel die kompilierte Syntax.
+         */
+        private Entry(String filename, Document syntax, SyntaxModel syntaxModel)
+        {
+            this.filename = filename;
+            this.syntax = syntax;
+            this.syntaxModel = syntaxModel;
+        }
+
+        /**
+         * Prueft, ob das DOM bereits vorhanden ist.
+         * @return true, wenn das DOM vorhanden ist.
+         */
+        private synchronized boolean isParsed()
+        {
+            return this.syntax != null;
+        }
+
+        /**
+         * Liefert eine Kopie des DOM und laedt es bei Bedarf.
+         * @see java.util.function.Supplier#get()
+         */
+        public synchronized Document get()
+        {
+            if (this.syntax == null)
+            {
+                HBCIUtils.log("loading syntax specification " + this.filename,HBCIUtils.LOG_DEBUG);
+                this.syntax = MsgGen.parse(SyntaxCache.class.getClassLoader().getResourceAsStream(this.filename));
+            }
+            return (Document) this.syntax.cloneNode(true);
+        }
+    }
+}
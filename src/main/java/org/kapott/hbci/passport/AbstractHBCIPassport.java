@@ -74,11 +74,29 @@ public abstract class AbstractHBCIPassport
 
     private IHandlerData parentHandlerData;
     
+    // bereich des log-filters fuer die geheimen daten dieses passports
+    private transient LogFilter logFilter;
+    
+    // bereich fuer den passport, der in getInstance() gerade erzeugt wird
+    private static final ThreadLocal<LogFilter> pendingLogFilter=new ThreadLocal<LogFilter>();
+    
     public AbstractHBCIPassport(Object init)
     {
+        logFilter=pendingLogFilter.get();
+        pendingLogFilter.remove();
         persistentData=new Hashtable<String, Object>();
         setClientData("init",init);
     }
+    
+    /** Liefert den Bereich des Log-Filters, in dem die geheimen Daten dieses
+        Passports (BLZ, Kennungen, PIN, ...) abgelegt werden. Andere Passports
+        werden dadurch beim Filtern ihrer Log-Ausgaben nicht ausgebremst. */
+    public synchronized LogFilter getLogFilter()
+    {
+        if (logFilter==null)
+            logFilter=LogFilter.createScope();
+        return logFilter;
+    }
 
     protected boolean askForMissingData(boolean needCountry,boolean needBLZ,
                                         boolean needHost,boolean needPort,
@@ -613,7 +631,7 @@ public abstract class AbstractHBCIPassport
 
     public final void setBLZ(String blz)
     {
-      	LogFilter.getInstance().addSecretData(blz,"X",LogFilter.FILTER_MOST);
+      	getLogFilter().addSecretData(blz,"X",LogFilter.FILTER_MOST);
         this.blz=blz;
     }
 
@@ -634,13 +652,13 @@ public abstract class AbstractHBCIPassport
     
     public final void setUserId(String userid)
     {
-      	LogFilter.getInstance().addSecretData(userid,"X",LogFilter.FILTER_IDS);
+      	getLogFilter().addSecretData(userid,"X",LogFilter.FILTER_IDS);
         this.userid=userid;
     }
 
     public final void setCustomerId(String customerid)
     {
-      	LogFilter.getInstance().addSecretData(customerid,"X",LogFilter.FILTER_IDS);
+      	getLogFilter().addSecretData(customerid,"X",LogFilter.FILTER_IDS);
         this.customerid=customerid;
     }    
 
@@ -656,7 +674,7 @@ public abstract class AbstractHBCIPassport
 
     public final void setCID(String cid)
     {
-    	LogFilter.getInstance().addSecretData(cid,"X",LogFilter.FILTER_IDS);
+    	getLogFilter().addSecretData(cid,"X",LogFilter.FILTER_IDS);
         this.cid=cid;
     }
 
@@ -721,8 +739,20 @@ public abstract class AbstractHBCIPassport
             HBCIUtils.log("creating new instance of a "+name+" passport",HBCIUtils.LOG_DEBUG);
             Class cl=Class.forName(className);
             Constructor con=cl.getConstructor(new Class[] {Object.class});
-            HBCIPassport p=(HBCIPassport)(con.newInstance(new Object[] {init}));
-            return p;
+            
+            // der bereich des passports wird schon waehrend des erzeugens
+            // gebunden, damit die beim einlesen anfallenden geheimen daten
+            // (passwort, kennungen, ...) dort landen und gefiltert werden
+            LogFilter scope=LogFilter.createScope();
+            LogFilter prevFilter=LogFilter.bind(scope);
+            pendingLogFilter.set(scope);
+            try {
+                HBCIPassport p=(HBCIPassport)(con.newInstance(new Object[] {init}));
+                return p;
+            } finally {
+                pendingLogFilter.remove();
+                LogFilter.bind(prevFilter);
+            }
         }
         catch (ClassNotFoundException e)
         {
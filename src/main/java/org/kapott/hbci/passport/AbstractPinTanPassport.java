@@ -658,6 +658,9 @@ public abstract class AbstractPinTanPassport extends AbstractHBCIPassport
      */
     public Comm getCommInstance()
     {
+        // nicht-blockierende variante nur auf wunsch
+        if (HBCIUtils.getParam("client.passport.PinTan.async","0").equals("1"))
+            return Comm.getInstance("PinTanAsync",this);
         return Comm.getInstance("PinTan",this);
     }
     
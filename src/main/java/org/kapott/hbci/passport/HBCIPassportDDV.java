@@ -275,7 +275,7 @@ public class HBCIPassportDDV extends AbstractDDVPassport
 
     public void setSoftPin(byte[] softPin)
     {
-    	LogFilter.getInstance().addSecretData(new String(softPin),"X",LogFilter.FILTER_SECRETS);
+    	getLogFilter().addSecretData(new String(softPin),"X",LogFilter.FILTER_SECRETS);
         this.softPin=softPin;
     }
     
@@ -490,7 +490,7 @@ public class HBCIPassportDDV extends AbstractDDVPassport
                         if (temppin.length()==0)
                             throw new HBCI_Exception(HBCIUtilsInternal.getLocMsg("EXCMSG_PINZERO"));
                         pin=temppin.toString();
-                        LogFilter.getInstance().addSecretData(pin,"X",LogFilter.FILTER_SECRETS);
+                        getLogFilter().addSecretData(pin,"X",LogFilter.FILTER_SECRETS);
                     }
 
                     setSoftPin(pin.getBytes("ISO-8859-1"));
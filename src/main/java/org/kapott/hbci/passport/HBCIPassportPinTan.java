@@ -269,7 +269,7 @@ public class HBCIPassportPinTan extends AbstractPinTanPassport
                     throw new HBCI_Exception(HBCIUtilsInternal.getLocMsg("EXCMSG_PINZERO"));
                 }
                 setPIN(s.toString());
-                LogFilter.getInstance().addSecretData(getPIN(),"X",LogFilter.FILTER_SECRETS);
+                getLogFilter().addSecretData(getPIN(),"X",LogFilter.FILTER_SECRETS);
             }
             
             String tan="";
@@ -421,7 +421,7 @@ public class HBCIPassportPinTan extends AbstractPinTanPassport
                 }
             }
             if (tan.length()!=0) {
-            	LogFilter.getInstance().addSecretData(tan,"X",LogFilter.FILTER_SECRETS);
+            	getLogFilter().addSecretData(tan,"X",LogFilter.FILTER_SECRETS);
             }
 
             return (getPIN()+"|"+tan).getBytes("ISO-8859-1");
@@ -100,7 +100,7 @@ public class HBCIPassportRDHXFile
                             HBCIUtilsInternal.getLocMsg("CALLB_NEED_PASS"),
                             HBCICallback.TYPE_SECRET,
                             retData);
-                    LogFilter.getInstance().addSecretData(retData.toString(),"X",LogFilter.FILTER_SECRETS);
+                    getLogFilter().addSecretData(retData.toString(),"X",LogFilter.FILTER_SECRETS);
                     setPassphrase(retData.toString().getBytes());
                 }
             	
@@ -192,7 +192,7 @@ public class HBCIPassportRDHXFile
                         HBCIUtilsInternal.getLocMsg("CALLB_NEED_PASS"),
                         HBCICallback.TYPE_SECRET, retData);
                 // TODO: passwort-bedingungen nach spez. prüfen
-                LogFilter.getInstance().addSecretData(retData.toString(),"X",LogFilter.FILTER_SECRETS);
+                getLogFilter().addSecretData(retData.toString(),"X",LogFilter.FILTER_SECRETS);
                 setPassphrase(retData.toString().getBytes());
             }
 
@@ -282,7 +282,7 @@ public class HBCIPassportRSA extends AbstractRDHPassport implements HBCIPassport
      * @param softPin die ueber die Tastatur eingegebene PIN.
      */
     public void setSoftPin(byte[] softPin) {
-        LogFilter.getInstance().addSecretData(new String(softPin), "X", LogFilter.FILTER_SECRETS);
+        getLogFilter().addSecretData(new String(softPin), "X", LogFilter.FILTER_SECRETS);
         this.softPin = softPin;
     }
     
@@ -907,7 +907,7 @@ public class HBCIPassportRSA extends AbstractRDHPassport implements HBCIPassport
                         if (temppin.length() == 0)
                             throw new HBCI_Exception(HBCIUtilsInternal.getLocMsg("EXCMSG_PINZERO"));
                         pin = temppin.toString();
-                        LogFilter.getInstance().addSecretData(pin, "X", LogFilter.FILTER_SECRETS);
+                        getLogFilter().addSecretData(pin, "X", LogFilter.FILTER_SECRETS);
                     }
                     
                     setSoftPin(pin.getBytes("ISO-8859-1"));
@@ -42,6 +42,7 @@ import org.kapott.hbci.datatypes.SyntaxCtr;
 import org.kapott.hbci.exceptions.HBCI_Exception;
 import org.kapott.hbci.manager.HBCIKey;
 import org.kapott.hbci.manager.HBCIUtils;
+import org.kapott.hbci.protocol.ParseCursor;
 import org.kapott.hbci.tools.CryptUtils;
 
 
@@ -96,7 +97,7 @@ public class HBCIAccount
         
         public String getCountry()
         {
-            return new SyntaxCtr(new StringBuffer(countrycode),1,0).toString();
+            return new SyntaxCtr(new ParseCursor(countrycode),1,0).toString();
         }
         
         public void setCountry(String country)
@@ -22,10 +22,10 @@
 package org.kapott.hbci.protocol;
 
 import java.util.ArrayList;
-import java.util.Enumeration;
 import java.util.Hashtable;
 import java.util.List;
 import java.util.Properties;
+import java.util.function.BiConsumer;
 
 import org.kapott.hbci.datatypes.SyntaxDE;
 import org.kapott.hbci.datatypes.factory.SyntaxDEFactory;
@@ -35,9 +35,8 @@ import org.kapott.hbci.exceptions.OverwriteException;
 import org.kapott.hbci.exceptions.ParseErrorException;
 import org.kapott.hbci.exceptions.PredelimErrorException;
 import org.kapott.hbci.manager.HBCIUtilsInternal;
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
-import org.w3c.dom.Node;
+import org.kapott.hbci.protocol.syntax.SyntaxModel;
+import org.kapott.hbci.protocol.syntax.SyntaxRef;
 
 public final class DE
     extends SyntaxElement
@@ -47,7 +46,7 @@ public final class DE
     private int maxsize;
     private List<String> valids;
 
-    protected MultipleSyntaxElements createNewChildContainer(Node dedef, Document syntax)
+    protected MultipleSyntaxElements createNewChildContainer(SyntaxRef dedef, SyntaxModel syntax)
     {
         return null;
     }
@@ -103,33 +102,24 @@ public final class DE
         return ret;
     }
 
-    private void initData(Node dedef, String name, String path, int idx, Document syntax)
+    private void initData(SyntaxRef dedef, String name, String path, int idx, SyntaxModel syntax)
     {
         this.value=null;
         this.valids=new ArrayList<String>();
 
-        String st;
-
-        minsize = 1;
-        st = ((Element)dedef).getAttribute("minsize");
-        if (st.length() != 0)
-            minsize = Integer.parseInt(st);
-
-        maxsize = 0;
-        st = ((Element)dedef).getAttribute("maxsize");
-        if (st.length() != 0)
-            maxsize = Integer.parseInt(st);
+        minsize = dedef.getMinSize();
+        maxsize = dedef.getMaxSize();
     }
     
-    public DE(Node dedef, String name, String path, int idx, Document syntax)
+    public DE(SyntaxRef dedef, String name, String path, int idx, SyntaxModel syntax)
     {
-        super(((Element)dedef).getAttribute("type"),name,path,idx,null);
+        super(dedef.getType(),name,path,idx,null);
         initData(dedef,name,path,idx,syntax);
     }
 
-    public void init(Node dedef, String name, String path, int idx, Document syntax)
+    public void init(SyntaxRef dedef, String name, String path, int idx, SyntaxModel syntax)
     {
-        super.init(((Element)dedef).getAttribute("type"),name,path,idx,null);
+        super.init(dedef.getType(),name,path,idx,null);
         initData(dedef,name,path,idx,syntax);
     }
 
@@ -181,6 +171,7 @@ public final class DE
     public void setValue(String st)
     {
         this.value=SyntaxDEFactory.getInstance().createSyntaxDE(getType(),getPath(),st,minsize,maxsize);
+        changed();
     }
     
     public SyntaxDE getValue()
@@ -190,7 +181,7 @@ public final class DE
 
     // ---------------------------------------------------------------------------------------------------------------
 
-    protected MultipleSyntaxElements parseNewChildContainer(Node deref, char predelim0, char predelim1, StringBuffer res, int fullResLen,Document syntax, Hashtable<String, String> predefs,Hashtable<String, String> valids)
+    protected MultipleSyntaxElements parseNewChildContainer(SyntaxRef deref, char predelim0, char predelim1, ParseCursor res,SyntaxModel syntax, Hashtable<String, String> predefs,Hashtable<String,List<String>> valids)
     {
         return null;
     }
@@ -202,21 +193,21 @@ public final class DE
 
     /** anlegen eines de beim parsen funktioniert analog zum
         anlegen eines de bei der message-synthese */
-    private void parseValue(StringBuffer res,Hashtable<String,String> predefs,Hashtable<String,String> valids)
+    private void parseValue(ParseCursor res,Hashtable<String,String> predefs,Hashtable<String,List<String>> valids)
     {
-        String temp=res.toString();
-        int len=temp.length();
         char preDelim=getPreDelim();
-        
-        if (preDelim!=(char)0 && temp.charAt(0)!=preDelim) {
-            if (len==0) {
+
+        if (preDelim!=(char)0) {
+            if (res.remaining()==0) {
                 throw new ParseErrorException(HBCIUtilsInternal.getLocMsg("EXCMSG_ENDOFSTRG",getPath()));
-            } 
+            }
 
-            // HBCIUtils.log("error string: "+res.toString(),HBCIUtils.LOG_ERR);
-            // HBCIUtils.log("current: "+getPath()+":"+type+"("+minsize+","+maxsize+")="+value,HBCIUtils.LOG_ERR);
-            // HBCIUtils.log("predelimiter mismatch (required:"+getPreDelim()+" found:"+temp.charAt(0)+")",HBCIUtils.LOG_ERR);
-            throw new PredelimErrorException(getPath(),Character.toString(preDelim),Character.toString(temp.charAt(0)));
+            char found=res.charAt(res.getPos());
+            if (found!=preDelim) {
+                // HBCIUtils.log("current: "+getPath()+":"+type+"("+minsize+","+maxsize+")="+value,HBCIUtils.LOG_ERR);
+                // HBCIUtils.log("predelimiter mismatch (required:"+getPreDelim()+" found:"+found+")",HBCIUtils.LOG_ERR);
+                throw new PredelimErrorException(getPath(),Character.toString(preDelim),Character.toString(found));
+            }
         }
 
         this.value=SyntaxDEFactory.getInstance().createSyntaxDE(getType(),getPath(),res,minsize,maxsize);
@@ -230,25 +221,9 @@ public final class DE
             }
         }
 
-        boolean atLeastOne=false;
-        boolean ok=false;
-        if (valids!=null) {
-            String header=getPath()+".value";
-            for (Enumeration<String> e=valids.keys();e.hasMoreElements();) {
-                String key= e.nextElement();
-                
-                if (key.startsWith(header) && 
-                        key.indexOf(".",header.length())==-1) {
-                    
-                    atLeastOne=true;
-                    String validValue= valids.get(key);
-                    if (valueString.equals(validValue)) {
-                        ok=true;
-                        break;
-                    }
-                }
-            }
-        }
+        List<String> validValues=(valids!=null)?valids.get(getPath()):null;
+        boolean      atLeastOne=(validValues!=null && validValues.size()!=0);
+        boolean      ok=atLeastOne && validValues.contains(valueString);
         
         if (atLeastOne && !ok) {
             if (!HBCIUtilsInternal.ignoreError(null,"client.errors.ignoreValidValueErrors","*** invalid value for "+getPath()+": "+valueString))
@@ -256,24 +231,15 @@ public final class DE
         }
     }
 
-    private void initData(Node dedef, String name, String path, char predelim, int idx, StringBuffer res, int fullResLen, Document syntax, Hashtable<String,String> predefs,Hashtable<String,String> valids)
+    private void initData(SyntaxRef dedef, String name, String path, char predelim, int idx, ParseCursor res, SyntaxModel syntax, Hashtable<String,String> predefs,Hashtable<String,List<String>> valids)
     {
         setValid(false);
 
         value = null;
         this.valids=new ArrayList<String>();
 
-        String st;
-
-        minsize = 1;
-        st = ((Element)dedef).getAttribute("minsize");
-        if (st.length() != 0)
-            minsize = Integer.parseInt(st);
-
-        maxsize = 0;
-        st = ((Element)dedef).getAttribute("maxsize");
-        if (st.length() != 0)
-            maxsize = Integer.parseInt(st);
+        minsize = dedef.getMinSize();
+        maxsize = dedef.getMaxSize();
 
         try {
             parseValue(res,predefs,valids);
@@ -284,22 +250,22 @@ public final class DE
         }
     }
     
-    public DE(Node dedef, String name, String path, char predelim, int idx, StringBuffer res, int fullResLen, Document syntax, Hashtable<String, String> predefs,Hashtable<String, String> valids)
+    public DE(SyntaxRef dedef, String name, String path, char predelim, int idx, ParseCursor res, SyntaxModel syntax, Hashtable<String, String> predefs,Hashtable<String,List<String>> valids)
     {
-        super(((Element)dedef).getAttribute("type"),name,path,predelim,idx,res,fullResLen,null,predefs,valids);
-        initData(dedef,name,path,predelim,idx,res,fullResLen,syntax,predefs,valids);
+        super(dedef.getType(),name,path,predelim,idx,res,null,predefs,valids);
+        initData(dedef,name,path,predelim,idx,res,syntax,predefs,valids);
     }
 
-    public void init(Node dedef, String name, String path, char predelim, int idx, StringBuffer res, int fullResLen, Document syntax, Hashtable<String, String> predefs,Hashtable<String, String> valids)
+    public void init(SyntaxRef dedef, String name, String path, char predelim, int idx, ParseCursor res, SyntaxModel syntax, Hashtable<String, String> predefs,Hashtable<String,List<String>> valids)
     {
-        super.init(((Element)dedef).getAttribute("type"),name,path,predelim,idx,res,fullResLen,null,predefs,valids);
-        initData(dedef,name,path,predelim,idx,res,fullResLen,syntax,predefs,valids);
+        super.init(dedef.getType(),name,path,predelim,idx,res,null,predefs,valids);
+        initData(dedef,name,path,predelim,idx,res,syntax,predefs,valids);
     }
 
-    public void extractValues(Hashtable<String,String> values)
+    public void extractValues(BiConsumer<String,String> values)
     {
         if (isValid())
-            values.put(getPath(),value.toString());
+            values.accept(getPath(),value.toString());
     }
 
     public String toString(int zero)
@@ -307,6 +273,12 @@ public final class DE
         return isValid()?value.toString(0):"";
     }
 
+    protected void appendTo(StringBuffer ret)
+    {
+        if (isValid())
+            ret.append(value.toString(0));
+    }
+
     public void getElementPaths(Properties p,int[] segref,int[] degref,int[] deref)
     {
         if (deref==null) {
@@ -21,13 +21,18 @@
 
 package org.kapott.hbci.protocol;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
 import java.text.DecimalFormat;
 import java.util.Arrays;
 import java.util.Enumeration;
+import java.util.HashMap;
 import java.util.Hashtable;
 import java.util.Iterator;
 import java.util.List;
 import java.util.ListIterator;
+import java.util.Map;
 import java.util.Properties;
 
 import org.kapott.hbci.exceptions.NoSuchPathException;
@@ -35,8 +40,8 @@ import org.kapott.hbci.manager.HBCIUtils;
 import org.kapott.hbci.manager.MsgGen;
 import org.kapott.hbci.protocol.factory.MultipleSEGsFactory;
 import org.kapott.hbci.protocol.factory.MultipleSFsFactory;
-import org.w3c.dom.Document;
-import org.w3c.dom.Node;
+import org.kapott.hbci.protocol.syntax.SyntaxModel;
+import org.kapott.hbci.protocol.syntax.SyntaxRef;
 
 public final class MSG
     extends SyntaxElement
@@ -45,14 +50,28 @@ public final class MSG
     public final static boolean DONT_CHECK_SEQ=false;
     public final static boolean CHECK_VALIDS=true;
     public final static boolean DONT_CHECK_VALIDS=false;
+
+    /** index pfad -> syntaxelement ueber den gesamten nachrichtenbaum; wird
+        erst beim ersten zugriff aufgebaut und danach bei jedem neu angelegten
+        element ergaenzt. damit kosten propagateValue(), getElement() und
+        getValueOfDE() nur noch einen hash-lookup statt eines baumdurchlaufes */
+    private Map<String,SyntaxElement> index;
+
+    /** die nachricht in der form, in der sie versendet wird (ISO-8859-1); wird
+        beim ersten zugriff erzeugt und verworfen, sobald sich die nachricht aendert */
+    private byte[] wire;
+    
+    /** true, wenn der index mit getValueOrNull() komplett neu aufgebaut wurde
+        und die nachricht seitdem nur noch gelesen wird */
+    private boolean frozen;
     
-    protected MultipleSyntaxElements createNewChildContainer(Node ref, Document syntax)
+    protected MultipleSyntaxElements createNewChildContainer(SyntaxRef ref, SyntaxModel syntax)
     {
         MultipleSyntaxElements ret=null;
         
-        if ((ref.getNodeName()).equals("SEG"))
+        if (ref.getKind()==SyntaxRef.Kind.SEG)
             ret=MultipleSEGsFactory.getInstance().createMultipleSEGs(ref, getPath(), syntax);
-        else if ((ref.getNodeName()).equals("SF"))
+        else if (ref.getKind()==SyntaxRef.Kind.SF)
             ret=MultipleSFsFactory.getInstance().createMultipleSFs(ref, getPath(), syntax);
         
         return ret;
@@ -107,24 +126,89 @@ public final class MSG
 
     public void autoSetMsgSize(MsgGen gen)
     {
-        setMsgSizeValue(gen, toString(0).length(),ALLOW_OVERWRITE);
+        byte[] data=toBytes();
+        setMsgSizeValue(gen,data.length,ALLOW_OVERWRITE);
+
+        // die nachrichtengroesse hat eine feste laenge - deshalb kann sie
+        // direkt in der bereits erzeugten form ersetzt werden, statt die
+        // nachricht nochmal komplett zu serialisieren
+        wire=patchMsgSize(data);
+    }
+
+    /** ersetzt die nachrichtengroesse in der serialisierten nachricht. sie steht
+        im ersten segment (nachrichtenkopf) direkt hinter dem segmentkopf. wenn
+        die daten nicht so aussehen wie erwartet, wird null zurueckgegeben */
+    private byte[] patchMsgSize(byte[] data)
+    {
+        String size=getValueOfDE(getPath()+".MsgHead.msgsize");
+        int    len=size.length();
+        int    pos=0;
+
+        while (pos<data.length && data[pos]!='+')
+            pos++;
+        pos++;
+
+        if (pos+len>=data.length || data[pos+len]!='+')
+            return null;
+
+        for (int i=0;i<len;i++) {
+            byte b=data[pos+i];
+            if (b<'0' || b>'9')
+                return null;
+            data[pos+i]=(byte)size.charAt(i);
+        }
+        return data;
+    }
+
+    /** @return die nachricht in der form, in der sie versendet wird (ISO-8859-1).
+        das ergebnis wird zwischengespeichert, bis sich die nachricht aendert, und
+        darf deshalb nicht veraendert werden */
+    public byte[] toBytes()
+    {
+        if (wire==null) {
+            StringBuffer ret=new StringBuffer(1024);
+            appendTo(ret);
+            wire=ret.toString().getBytes(StandardCharsets.ISO_8859_1);
+        }
+        return wire;
+    }
+
+    /** @return die laenge der nachricht in bytes */
+    public int getSize()
+    {
+        return toBytes().length;
+    }
+
+    /** schreibt die nachricht in der form, in der sie versendet wird, in den stream */
+    public void writeTo(OutputStream out) throws IOException
+    {
+        out.write(toBytes());
+    }
+
+    protected void changed()
+    {
+        wire=null;
     }
     
     /** @brief erstellen eines neuen nachrichten-syntaxelements */
     public MSG(String type, MsgGen gen, Hashtable<String,String> clientValues)
     {
-        super(type,type,null,0,gen.getSyntax());
+        super(type,type,null,0,gen.getSyntaxModel());
         initData(type,gen,clientValues);
     }
     
     public void init(String type,MsgGen gen,Hashtable<String,String> clientValues)
     {
-        super.init(type,type,null,0,gen.getSyntax());
+        this.index=null;
+        this.wire=null;
+        super.init(type,type,null,0,gen.getSyntaxModel());
         initData(type,gen,clientValues);
     }
     
     private void initData(String type,MsgGen gen,Hashtable<String,String> clientValues)
     {
+        this.index=null;
+        this.wire=null;
         propagateUserData(getName(), clientValues);
 
         enumerateSegs(0,DONT_ALLOW_OVERWRITE);
@@ -136,42 +220,47 @@ public final class MSG
 
     public String toString(int zero)
     {
-        StringBuffer ret = new StringBuffer(1024);
+        return new String(toBytes(),StandardCharsets.ISO_8859_1);
+    }
 
+    protected void appendTo(StringBuffer ret)
+    {
         if (isValid())
             for (Iterator<MultipleSyntaxElements> i = getChildContainers().listIterator(); i.hasNext(); ) {
                 MultipleSyntaxElements list = i.next();
 
                 if (list != null)
-                    ret.append(list.toString(0));
+                    list.appendTo(ret);
             }
-
-        return ret.toString();
     }
 
     // -------------------------------------------------------------------------------------------
     
-    private void initData(String type,String res,int fullResLen,MsgGen gen,boolean checkSeq,boolean checkValids)
+    private void initData(String type,MsgGen gen,boolean checkSeq,boolean checkValids)
     {
+        this.index=null;
+        this.wire=null;
         if (checkSeq)
             checkSegSeq(1);
     }
 
     public MSG(String type,String res,int fullResLen,MsgGen gen,boolean checkSeq,boolean checkValids)
     {
-        super(type,type,null,(char)0,0,new StringBuffer(res),fullResLen,
-                gen.getSyntax(),
+        super(type,type,null,(char)0,0,new ParseCursor(res,fullResLen-res.length()),
+                gen.getSyntaxModel(),
                 new Hashtable<String, String>(),
-                checkValids?new Hashtable<String, String>():null);
-        initData(type,res,fullResLen,gen,checkSeq,checkValids);
+                checkValids?new Hashtable<String, List<String>>():null);
+        initData(type,gen,checkSeq,checkValids);
     }
     
     public void init(String type,String res,int fullResLen,MsgGen gen,boolean checkSeq,boolean checkValids)
     {
-        super.init(type,type,null,(char)0,0,new StringBuffer(res),fullResLen,
-                gen.getSyntax(),new Hashtable<String, String>(),
-                checkValids?new Hashtable<String, String>():null);
-        initData(type,res,fullResLen,gen,checkSeq,checkValids);
+        this.index=null;
+        this.wire=null;
+        super.init(type,type,null,(char)0,0,new ParseCursor(res,fullResLen-res.length()),
+                gen.getSyntaxModel(),new Hashtable<String, String>(),
+                checkValids?new Hashtable<String, List<String>>():null);
+        initData(type,gen,checkSeq,checkValids);
     }
 
     protected char getInDelim()
@@ -179,29 +268,145 @@ public final class MSG
         return '\'';
     }
 
-    protected MultipleSyntaxElements parseNewChildContainer(Node segref, char predelim0, char predelim1, StringBuffer res, int fullResLen, Document syntax, Hashtable<String, String> predefs,Hashtable<String, String> valids)
+    protected MultipleSyntaxElements parseNewChildContainer(SyntaxRef segref, char predelim0, char predelim1, ParseCursor res, SyntaxModel syntax, Hashtable<String, String> predefs,Hashtable<String,List<String>> valids)
     {
         MultipleSyntaxElements ret=null;
 
-        if ((segref.getNodeName()).equals("SEG"))
-            ret=MultipleSEGsFactory.getInstance().createMultipleSEGs(segref, getPath(), predelim0, predelim1, res, fullResLen, syntax, predefs,valids);
-        else if ((segref.getNodeName()).equals("SF"))
-            ret=MultipleSFsFactory.getInstance().createMultipleSFs(segref, getPath(), predelim0, predelim1, res, fullResLen, syntax, predefs,valids);
+        if (segref.getKind()==SyntaxRef.Kind.SEG)
+            ret=MultipleSEGsFactory.getInstance().createMultipleSEGs(segref, getPath(), predelim0, predelim1, res, syntax, predefs,valids);
+        else if (segref.getKind()==SyntaxRef.Kind.SF)
+            ret=MultipleSFsFactory.getInstance().createMultipleSFs(segref, getPath(), predelim0, predelim1, res, syntax, predefs,valids);
         
         return ret;
     }
 
+    /** liefert den index aller elemente der nachricht und baut ihn bei bedarf auf */
+    private Map<String,SyntaxElement> getIndex()
+    {
+        if (index==null) {
+            index=new HashMap<String,SyntaxElement>(256);
+            addToIndex(this);
+        }
+        return index;
+    }
+
+    /** nimmt das element und alle darin enthaltenen elemente in den index auf.
+        bereits vorhandene eintraege bleiben erhalten, so dass bei gleichen pfaden
+        (wie beim baumdurchlauf) das aeussere element gefunden wird */
+    private void addToIndex(SyntaxElement elem)
+    {
+        String path=elem.getPath();
+        if (!index.containsKey(path))
+            index.put(path,elem);
+
+        List<MultipleSyntaxElements> containers=elem.getChildContainers();
+        if (containers!=null) {
+            for (Iterator<MultipleSyntaxElements> i=containers.iterator();i.hasNext();) {
+                MultipleSyntaxElements l=i.next();
+                if (l!=null) {
+                    for (Iterator<SyntaxElement> j=l.getElements().iterator();j.hasNext();) {
+                        SyntaxElement child=j.next();
+                        if (child!=null)
+                            addToIndex(child);
+                    }
+                }
+            }
+        }
+    }
+
+    /** liefert das element mit dem pfad aus dem index. da einzelne elemente
+        (z.b. beim signieren) auch direkt in der baumstruktur ausgetauscht werden,
+        wird geprueft, ob das element noch an dieser stelle in der nachricht
+        haengt (aufwand: tiefe des elementes). ist das nicht der fall, wird der
+        index verworfen und null geliefert */
+    private SyntaxElement lookup(String path)
+    {
+        SyntaxElement elem=getIndex().get(path);
+        if (elem==null || elem==this)
+            return elem;
+
+        if (path.equals(elem.getPath())) {
+            SyntaxElement e=elem;
+            while (e!=null && e!=this) {
+                MultipleSyntaxElements p=e.getParent();
+                e=(p!=null)?p.getParent():null;
+            }
+            if (e==this)
+                return elem;
+        }
+
+        index=null;
+        return null;
+    }
+
+    /** sucht das element mit dem laengsten pfad, der (bis zu einem '.') ein
+        praefix von 'path' ist */
+    private SyntaxElement getIndexedAncestor(String path)
+    {
+        SyntaxElement ret=null;
+        int           dotPos=path.length();
+
+        while (ret==null && (dotPos=path.lastIndexOf('.',dotPos-1))!=-1) {
+            ret=lookup(path.substring(0,dotPos));
+        }
+        return ret;
+    }
+
+    /** setzt den wert ueber den index. existiert das ziel-element noch nicht,
+        wird der wert an das naechste existierende uebergeordnete element
+        uebergeben, welches fehlende elemente bei bedarf anlegt. nur dessen
+        teilbaum wird danach neu indiziert */
+    public boolean propagateValue(String destPath, String value, boolean tryToCreate,boolean allowOverwrite)
+    {
+        SyntaxElement elem=lookup(destPath);
+        if (elem==this)
+            return super.propagateValue(destPath,value,tryToCreate,allowOverwrite);
+        if (elem!=null)
+            return elem.propagateValue(destPath,value,tryToCreate,allowOverwrite);
+
+        elem=getIndexedAncestor(destPath);
+        if (elem==null || elem==this) {
+            boolean ret=super.propagateValue(destPath,value,tryToCreate,allowOverwrite);
+            if (ret && tryToCreate)
+                index=null;
+            return ret;
+        }
+
+        boolean ret=elem.propagateValue(destPath,value,tryToCreate,allowOverwrite);
+        if (ret && tryToCreate && index!=null)
+            addToIndex(elem);
+        return ret;
+    }
+
+    public SyntaxElement getElement(String path)
+    {
+        SyntaxElement ret=lookup(path);
+        if (ret==null) {
+            // das element koennte am index vorbei angelegt worden sein
+            ret=super.getElement(path);
+            if (ret!=null)
+                index=null;
+        }
+        return ret;
+    }
+
     public String getValueOfDE(String path)
     {
-        String ret = null;
+        String        ret = null;
+        SyntaxElement elem = lookup(path);
 
-        for (ListIterator<MultipleSyntaxElements> i = getChildContainers().listIterator(); i.hasNext(); ) {
-            MultipleSyntaxElements l = i.next();
+        if (elem != null) {
+            ret = elem.getValueOfDE(path);
+        } else {
+            for (ListIterator<MultipleSyntaxElements> i = getChildContainers().listIterator(); i.hasNext(); ) {
+                MultipleSyntaxElements l = i.next();
 
-            String temp = l.getValueOfDE(path);
-            if (temp != null) {
-                ret = temp;
-                break;
+                String temp = l.getValueOfDE(path);
+                if (temp != null) {
+                    ret = temp;
+                    index = null;
+                    break;
+                }
             }
         }
 
@@ -211,6 +416,32 @@ public final class MSG
         return ret;
     }
 
+    /** liefert den wert eines datenelementes so, wie er in getData() bzw.
+        extractValues() enthalten waere - also nur fuer gueltige DEs, sonst null.
+        anders als getValueOfDE() wird keine exception geworfen und bei einem
+        unbekannten pfad nicht der ganze baum durchsucht. das ist fuer nachrichten
+        gedacht, die danach nicht mehr veraendert werden: beim ersten aufruf wird
+        der index neu aufgebaut, damit auch am index vorbei angelegte elemente
+        enthalten sind */
+    public String getValueOrNull(String path)
+    {
+        if (!frozen) {
+            index=null;
+            frozen=true;
+        }
+        
+        SyntaxElement elem=lookup(path);
+        if (elem==null && index==null) {
+            // index wurde verworfen, weil sich die nachricht doch geaendert hat
+            frozen=false;
+            elem=super.getElement(path);
+        }
+        
+        if (!(elem instanceof DE) || !elem.isValid())
+            return null;
+        return ((DE)elem).getValue().toString();
+    }
+
     // -------------------------------------------------------------------------------------------
 
     public Properties getData()
@@ -244,6 +475,10 @@ public final class MSG
     
     public void destroy()
     {
+        index=null;
+        wire=null;
+        frozen=false;
+
         List<MultipleSyntaxElements> childContainers=getChildContainers();
         if (childContainers != null)
         {
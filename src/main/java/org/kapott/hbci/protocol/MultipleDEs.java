@@ -22,7 +22,6 @@
 package org.kapott.hbci.protocol;
 
 import java.util.ArrayList;
-import java.util.Enumeration;
 import java.util.Hashtable;
 import java.util.Iterator;
 import java.util.List;
@@ -31,8 +30,8 @@ import java.util.Properties;
 
 import org.kapott.hbci.manager.HBCIUtilsInternal;
 import org.kapott.hbci.protocol.factory.DEFactory;
-import org.w3c.dom.Document;
-import org.w3c.dom.Node;
+import org.kapott.hbci.protocol.syntax.SyntaxModel;
+import org.kapott.hbci.protocol.syntax.SyntaxRef;
 
 public final class MultipleDEs
      extends MultipleSyntaxElements
@@ -40,26 +39,26 @@ public final class MultipleDEs
     private char delimiter;
     private List<String> valids;
 
-    protected SyntaxElement createAndAppendNewElement(Node deref, String path, int idx, Document syntax)
+    protected SyntaxElement createAndAppendNewElement(SyntaxRef deref, String path, int idx, SyntaxModel syntax)
     {
         SyntaxElement ret=null;
         addElement((ret=DEFactory.getInstance().createDE(deref, getName(), path, idx, syntax)));
         return ret;
     }
     
-    private void initData(Node dedef, char delimiter, String path, Document syntax)
+    private void initData(SyntaxRef dedef, char delimiter, String path, SyntaxModel syntax)
     {
         this.delimiter = delimiter;
         this.valids=new ArrayList<String>();
     }
 
-    public MultipleDEs(Node dedef, char delimiter, String path, Document syntax)
+    public MultipleDEs(SyntaxRef dedef, char delimiter, String path, SyntaxModel syntax)
     {
         super(dedef, path, syntax);
         initData(dedef,delimiter,path,syntax);
     }
 
-    public void init(Node dedef, char delimiter, String path, Document syntax)
+    public void init(SyntaxRef dedef, char delimiter, String path, SyntaxModel syntax)
     {
         super.init(dedef, path, syntax);
         initData(dedef,delimiter,path,syntax);
@@ -84,9 +83,29 @@ public final class MultipleDEs
         super.validateOneElement(elem,idx);
     }
 
+    /**
+     * Ein DE kann selbst keine Delimiter enthalten. Daher ist hier auch
+     * ein direkt folgendes ":" ein sicheres Zeichen fuer ein leeres Element.
+     * @see org.kapott.hbci.protocol.MultipleSyntaxElements#isEmptyElement(org.kapott.hbci.protocol.ParseCursor, int, char)
+     */
+    protected boolean isEmptyElement(ParseCursor res, int pos, char predelim)
+    {
+        if (pos+1>=res.length() || res.charAt(pos)!=predelim)
+            return false;
+        
+        char next=res.charAt(pos+1);
+        return next=='+' || next==':' || next=='\'';
+    }
+
     public String toString(int zero)
     {
         StringBuffer ret = new StringBuffer(128);
+        appendTo(ret);
+        return ret.toString();
+    }
+
+    protected void appendTo(StringBuffer ret)
+    {
         boolean first=true;
 
         for (ListIterator<SyntaxElement> i = getElements().listIterator(); i.hasNext(); ) {
@@ -96,55 +115,43 @@ public final class MultipleDEs
 
             DE de = (DE)(i.next());
             if (de != null)
-                ret.append(de.toString(0));
+                de.appendTo(ret);
         }
-
-        return ret.toString();
     }
 
     // -------------------------------------------------------------------------------------------------------
 
-    protected SyntaxElement parseAndAppendNewElement(Node ref, String path, char predelim, int idx, StringBuffer res, int fullResLen,Document syntax, Hashtable<String, String> predefs,Hashtable<String, String> valids)
+    protected SyntaxElement parseAndAppendNewElement(SyntaxRef ref, String path, char predelim, int idx, ParseCursor res,SyntaxModel syntax, Hashtable<String, String> predefs,Hashtable<String,List<String>> valids)
     {
         SyntaxElement ret=null;
         
         if (idx!=0 && valids!=null) {
-            String header=getPath()+".value";
-            for (Enumeration<String> e=valids.keys();e.hasMoreElements();) {
-                String key=(e.nextElement());
-                
-                if (key.startsWith(header) &&    
-                        key.indexOf(".",header.length())==-1) {
-                    
-                    int dotPos=key.lastIndexOf('.');
-                    String newkey=key.substring(0,dotPos)+
-                                  HBCIUtilsInternal.withCounter("",idx)+
-                                  key.substring(dotPos);
-                    valids.put(newkey,valids.get(key));
-                }
-            }
+            // die gueltigen werte gelten fuer alle wiederholungen des DE
+            List<String> validValues=valids.get(getPath());
+            if (validValues!=null)
+                valids.put(getPath()+HBCIUtilsInternal.withCounter("",idx),validValues);
         }
         
-        addElement((ret=DEFactory.getInstance().createDE(ref, getName(), path, predelim, idx, res, fullResLen, syntax, predefs,valids)));
+        addElement((ret=DEFactory.getInstance().createDE(ref, getName(), path, predelim, idx, res, syntax, predefs,valids)));
         return ret;
     }
     
-    private void initData(Node deref, char delimiter, String path, char predelim0, char predelim1, StringBuffer res, int fullResLen,Document syntax, Hashtable<?, ?> predefs,Hashtable<?, ?> valids)
+    private void initData(SyntaxRef deref, char delimiter, String path, char predelim0, char predelim1, ParseCursor res,SyntaxModel syntax, Hashtable<?, ?> predefs,Hashtable<?, ?> valids)
     {
         this.delimiter=delimiter;
         this.valids=new ArrayList<String>();
     }
 
-    public MultipleDEs(Node deref, char delimiter, String path, char predelim0, char predelim1, StringBuffer res, int fullResLen, Document syntax, Hashtable<String, String> predefs,Hashtable<String, String> valids)
+    public MultipleDEs(SyntaxRef deref, char delimiter, String path, char predelim0, char predelim1, ParseCursor res, SyntaxModel syntax, Hashtable<String, String> predefs,Hashtable<String,List<String>> valids)
     {
-        super(deref, path, predelim0, predelim1, res, fullResLen, syntax, predefs,valids);
-        initData(deref,delimiter,path,predelim0,predelim1,res,fullResLen,syntax,predefs,valids);
+        super(deref, path, predelim0, predelim1, res, syntax, predefs,valids);
+        initData(deref,delimiter,path,predelim0,predelim1,res,syntax,predefs,valids);
     }
 
-    public void init(Node deref, char delimiter, String path, char predelim0, char predelim1, StringBuffer res, int fullResLen, Document syntax, Hashtable<String, String> predefs,Hashtable<String, String> valids)
+    public void init(SyntaxRef deref, char delimiter, String path, char predelim0, char predelim1, ParseCursor res, SyntaxModel syntax, Hashtable<String, String> predefs,Hashtable<String,List<String>> valids)
     {
-        super.init(deref, path, predelim0, predelim1, res, fullResLen, syntax, predefs,valids);
-        initData(deref,delimiter,path,predelim0,predelim1,res,fullResLen,syntax,predefs,valids);
+        super.init(deref, path, predelim0, predelim1, res, syntax, predefs,valids);
+        initData(deref,delimiter,path,predelim0,predelim1,res,syntax,predefs,valids);
     }
 
     public void getElementPaths(Properties p,int[] segref,int[] degref,int[] deref)
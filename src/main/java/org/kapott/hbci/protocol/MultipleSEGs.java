@@ -28,25 +28,25 @@ import java.util.ListIterator;
 import java.util.Properties;
 
 import org.kapott.hbci.protocol.factory.SEGFactory;
-import org.w3c.dom.Document;
-import org.w3c.dom.Node;
+import org.kapott.hbci.protocol.syntax.SyntaxModel;
+import org.kapott.hbci.protocol.syntax.SyntaxRef;
 
 public final class MultipleSEGs
      extends MultipleSyntaxElements
 {
-    protected SyntaxElement createAndAppendNewElement(Node ref, String path, int idx, Document syntax)
+    protected SyntaxElement createAndAppendNewElement(SyntaxRef ref, String path, int idx, SyntaxModel syntax)
     {
         SyntaxElement ret=null;
         addElement((ret=SEGFactory.getInstance().createSEG(getType(), getName(), path, idx, syntax)));
         return ret;
     }
 
-    public MultipleSEGs(Node segref, String path, Document syntax)
+    public MultipleSEGs(SyntaxRef segref, String path, SyntaxModel syntax)
     {
         super(segref, path, syntax);
     }
 
-    public void init(Node segref, String path, Document syntax)
+    public void init(SyntaxRef segref, String path, SyntaxModel syntax)
     {
         super.init(segref, path, syntax);
     }
@@ -54,32 +54,35 @@ public final class MultipleSEGs
     public String toString(int zero)
     {
         StringBuffer ret = new StringBuffer(256);
+        appendTo(ret);
+        return ret.toString();
+    }
 
+    protected void appendTo(StringBuffer ret)
+    {
         for (ListIterator<SyntaxElement> i = getElements().listIterator(); i.hasNext(); ) {
             SEG seg = (SEG)(i.next());
             if (seg != null)
-                ret.append(seg.toString(0));
+                seg.appendTo(ret);
         }
-
-        return ret.toString();
     }
 
     // ---------------------------------------------------------------------------------------------------------------
 
-    public MultipleSEGs(Node segref, String path, char predelim0, char predelim1, StringBuffer res, int fullResLen, Document syntax, Hashtable<String,String> predefs,Hashtable<String,String> valids)
+    public MultipleSEGs(SyntaxRef segref, String path, char predelim0, char predelim1, ParseCursor res, SyntaxModel syntax, Hashtable<String,String> predefs,Hashtable<String,List<String>> valids)
     {
-        super(segref, path, predelim0, predelim1, res, fullResLen, syntax, predefs,valids);
+        super(segref, path, predelim0, predelim1, res, syntax, predefs,valids);
     }
 
-    public void init(Node segref, String path, char predelim0, char predelim1, StringBuffer res, int fullResLen, Document syntax, Hashtable<String,String> predefs,Hashtable<String,String> valids)
+    public void init(SyntaxRef segref, String path, char predelim0, char predelim1, ParseCursor res, SyntaxModel syntax, Hashtable<String,String> predefs,Hashtable<String,List<String>> valids)
     {
-        super.init(segref, path, predelim0, predelim1, res, fullResLen, syntax, predefs,valids);
+        super.init(segref, path, predelim0, predelim1, res, syntax, predefs,valids);
     }
 
-    protected SyntaxElement parseAndAppendNewElement(Node ref, String path, char predelim, int idx, StringBuffer res, int fullResLen, Document syntax, Hashtable<String,String> predefs,Hashtable<String,String> valids)
+    protected SyntaxElement parseAndAppendNewElement(SyntaxRef ref, String path, char predelim, int idx, ParseCursor res, SyntaxModel syntax, Hashtable<String,String> predefs,Hashtable<String,List<String>> valids)
     {
         SyntaxElement ret=null;
-        addElement((ret=SEGFactory.getInstance().createSEG(getType(), getName(), path, predelim, idx, res, fullResLen, syntax, predefs,valids)));
+        addElement((ret=SEGFactory.getInstance().createSEG(getType(), getName(), path, predelim, idx, res, syntax, predefs,valids)));
         return ret;
     }
 
@@ -27,6 +27,7 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.ListIterator;
 import java.util.Properties;
+import java.util.function.BiConsumer;
 
 import org.kapott.hbci.exceptions.NoValueGivenException;
 import org.kapott.hbci.exceptions.ParseErrorException;
@@ -37,9 +38,9 @@ import org.kapott.hbci.protocol.factory.DEFactory;
 import org.kapott.hbci.protocol.factory.DEGFactory;
 import org.kapott.hbci.protocol.factory.SEGFactory;
 import org.kapott.hbci.protocol.factory.SFFactory;
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
-import org.w3c.dom.Node;
+import org.kapott.hbci.protocol.syntax.SyntaxModel;
+import org.kapott.hbci.protocol.syntax.SyntaxRef;
+import org.kapott.hbci.tools.PoolableObject;
 
 /* die child-elemente von strukturierten syntaxelementen (msg, seg, sg, deg)
     werden nicht direkt als listenelemente der uebergeordneten
@@ -56,7 +57,11 @@ import org.w3c.dom.Node;
     auftreten des eigentlichen syntaxelementes) ist. ein syntaxelementarray 
     enthaelt eine menge (1 oder mehr) von syntaxelementen des gleichen typs */
 public abstract class MultipleSyntaxElements
+    extends PoolableObject
 {
+    /** Maximale Laenge des Reststrings in Fehlermeldungen. */
+    private final static int REST_PREVIEW_LEN=100;
+
     private List<SyntaxElement> elements;
     private String path;
     private String name;
@@ -65,26 +70,23 @@ public abstract class MultipleSyntaxElements
     private int maxnum;
     private int syntaxIdx; // die Position dieses Container innerhalb
                            // der Syntax-Definition des Eltern-Elementes
-    private Document syntax;
-    private Node ref;
+    private SyntaxModel syntax;
+    private SyntaxRef ref;
     private SyntaxElement parent;
 
     /** erzeugt einen neuen eintrag in der elements liste; dabei wird ein
         syntaxelement erzeugt, das im xml-node ref referenziert wird;
         idx ist die indexnummer des zu erzeugenden syntaxelementes
         innerhalb der elementlist */
-    protected abstract SyntaxElement createAndAppendNewElement(Node ref, String path, int idx, Document syntax);
+    protected abstract SyntaxElement createAndAppendNewElement(SyntaxRef ref, String path, int idx, SyntaxModel syntax);
 
     /** siehe SyntaxElement::parseElementList() */
-    protected abstract SyntaxElement parseAndAppendNewElement(Node ref, String path, char predelim, int idx, StringBuffer res, int fullResLen,Document syntax, Hashtable<String,String> predefs,Hashtable<String,String> valids);
+    protected abstract SyntaxElement parseAndAppendNewElement(SyntaxRef ref, String path, char predelim, int idx, ParseCursor res,SyntaxModel syntax, Hashtable<String,String> predefs,Hashtable<String,List<String>> valids);
 
-    private void initData(Node ref, String path, Document syntax)
+    private void initData(SyntaxRef ref, String path, SyntaxModel syntax)
     {
-        type=((Element)ref).getAttribute("type");
-        name=((Element)ref).getAttribute("name");
-        if (name.length()==0) {
-            name=type;
-        }
+        type=ref.getType();
+        name=ref.getName();
         
         this.elements=new ArrayList<SyntaxElement>();
         this.parent=null;
@@ -98,17 +100,8 @@ public abstract class MultipleSyntaxElements
         temppath.append(name);
         this.path=temppath.toString();
 
-        String st;
-
-        minnum = 1;
-        st = ((Element)ref).getAttribute("minnum");
-        if (st.length() != 0)
-            minnum = Integer.parseInt(st);
-
-        maxnum = 1;
-        st = ((Element)ref).getAttribute("maxnum");
-        if (st.length() != 0)
-            maxnum = Integer.parseInt(st);
+        minnum = ref.getMinNum();
+        maxnum = ref.getMaxNum();
 
         try {
             // anlegen mindestens eines syntaxelementes
@@ -147,12 +140,12 @@ public abstract class MultipleSyntaxElements
     
     /** anlegen eines neuen syntaxelementarrays fuer ein syntaxelement;
         ref ist eine xml-node-referenz auf das syntaxelement */
-    protected MultipleSyntaxElements(Node ref, String path, Document syntax)
+    protected MultipleSyntaxElements(SyntaxRef ref, String path, SyntaxModel syntax)
     {
         initData(ref,path,syntax);
     }
 
-    protected void init(Node ref, String path, Document syntax)
+    protected void init(SyntaxRef ref, String path, SyntaxModel syntax)
     {
         initData(ref,path,syntax);
     }
@@ -183,6 +176,8 @@ public abstract class MultipleSyntaxElements
                         if (child!=null)
                             child.setParent(this);
                     }
+                    if (parent!=null)
+                        parent.changed();
                 }
             }
         }
@@ -351,17 +346,14 @@ public abstract class MultipleSyntaxElements
 
     // ---------------------------------------------------------------------------------------------------------------
 
-    private void initData(Node ref, String path, char predelim0, char predelim1, StringBuffer res, int fullResLen,Document syntax, Hashtable<String,String> predefs,Hashtable<String,String> valids)
+    private void initData(SyntaxRef ref, String path, char predelim0, char predelim1, ParseCursor res,SyntaxModel syntax, Hashtable<String,String> predefs,Hashtable<String,List<String>> valids)
     {
         this.ref=null;
         this.syntax=null;
         this.syntaxIdx=-1;
         this.elements = new ArrayList<SyntaxElement>();
-        this.type = ((Element)ref).getAttribute("type");
-        this.name = ((Element)ref).getAttribute("name");
-        if (name.length()==0) {
-            this.name=this.type;
-        }
+        this.type = ref.getType();
+        this.name = ref.getName();
         this.parent=null;
 
         StringBuffer temppath=new StringBuffer(128);
@@ -370,32 +362,24 @@ public abstract class MultipleSyntaxElements
         temppath.append(name);
         this.path=temppath.toString();
 
-        String st;
-
-        minnum = 1;
-        st = ((Element)ref).getAttribute("minnum");
-        if (st.length() != 0)
-            minnum = Integer.parseInt(st);
-
-        maxnum = 1;
-        st = ((Element)ref).getAttribute("maxnum");
-        if (st.length() != 0)
-            maxnum = Integer.parseInt(st);
+        minnum = ref.getMinNum();
+        maxnum = ref.getMaxNum();
 
         int     idx = 0;
         boolean ready = false;
 
         try {
             while (!ready) {
-                // sichern des reststrings
-                StringBuffer save=new StringBuffer(res.toString());
-                boolean      emptyElementFound=false;
+                // sichern der lese-position
+                int     save=res.getPos();
+                boolean emptyElementFound=false;
+                boolean delimSkipped=false;
 
                 try {
                     // versuch, ein weiteres syntaxelement zu erzeugen
                     SyntaxElement child=parseAndAppendNewElement(ref,path, 
                             (idx==0)?predelim0:predelim1, 
-                            idx,res,fullResLen,syntax,predefs,valids);
+                            idx,res,syntax,predefs,valids);
                     if (child!=null)
                         child.setParent(this);
                 } catch (ParseErrorException e) {
@@ -423,43 +407,16 @@ public abstract class MultipleSyntaxElements
                     // leerer elemente geworfen wurden, als OK akzeptiert werden, solange die
                     // mindestanzahl bereits gefuellter elemente erreicht ist
                     
-                    if (save.length()>1) {
-                        
-                        //////////////////////////////////////////////////////////////////////
-                        // Dirty-Hack fuer Sonderfall optionale MultipleDEGs. Also eine Liste vieler DEGs,
-                        // die alle optional sein koennen. bei den "AllowedGV" koennen das 999 sein.
-                        // Wir wuerden hier jedes einzeln parsen - nur um festzustellen, dass
-                        // nichts drin steht und wir ein AllowedGV-DEG ohne GV-Code erzeugen,
-                        // weil da eigentlich nur noch sowas steht: "++++++++++++++++++++ usw".
-                        // Das verlaengert das Parsen enorm. Wir kuerzen daher hier ab.
-                        // Wenn this ein MultiDEGs mit minnum = 0 und maxnum > 1 ist, dann checken
-                        // wir, ob auf dem Substring von "save(0,maxnum-idx)" nur noch "+"-Zeichen
-                        // kommen. Wenn das der Fall ist, koennen wir hier abbrechen
-                        // Siehe http://www.onlinebanking-forum.de/forum/topic.php?t=19879&page=last#last_post
-                        if ((this instanceof MultipleDEGs) && this.minnum == 0 && this.maxnum > 1 && idx > 1)
-                        {
-                            int size = this.maxnum-idx;
-                            if (size > save.length())
-                                size = save.length();
-                            String rest = save.substring(0,size);
-                            if (containsOnly(rest,'+'))
-                            {
-                                HBCIUtils.log("applying shortcut for optional MultipleDEGs, have no more content in according range",HBCIUtils.LOG_DEBUG);
-                                res.replace(0,res.length(),res.substring(size-1)); // Wir schneiden die "+++++..." alle weg
-                                ready = true;
-                                continue;
-                            }
-                        }
-                        //////////////////////////////////////////////////////////////////////
-                        
-                        char secondChar=save.charAt(1);
+                    if (res.length()-save>1) {
+                        char secondChar=res.charAt(save+1);
 
                         if (secondChar=='+' || secondChar==':' || secondChar=='\'') {
                             // nur wenn der Fehler nicht durch einen predelimiter-error
                             // verursacht wurde, darf der delimiter (der also offensichtlich richtig
                             // und erwartet war) geloescht werden
                             if (!(e instanceof PredelimErrorException)) { 
-                                save.deleteCharAt(0);
+                                save++;
+                                delimSkipped=true;
                             }
 
                             emptyElementFound=true;
@@ -468,12 +425,32 @@ public abstract class MultipleSyntaxElements
                         emptyElementFound=true;
                     }
                     
-                    res.replace(0,res.length(),save.toString());
+                    res.setPos(save);
 
                     /* wenn bisher weniger als die mindestanzahl geklappt hat,
                      dann exception werfen */
                     if (idx<minnum)
-                        throw new ParseErrorException("reststring in "+getPath()+": "+res.toString(),e);
+                        throw new ParseErrorException("reststring in "+getPath()+": "+res.preview(REST_PREVIEW_LEN),e);
+
+                    // Wenn das leere Element tatsaechlich uebersprungen wurde, dann scheitern die
+                    // direkt folgenden leeren Elemente auf genau die gleiche Weise. Statt fuer jedes
+                    // davon erneut einen Parse-Versuch (samt Exception) zu starten, werden sie hier
+                    // in einem Rutsch uebersprungen. Das betrifft z.Bsp. die bis zu 999 optionalen
+                    // "AllowedGV"-DEGs in der UPD, bei denen oft nur noch "+++++...'" folgt.
+                    // Siehe http://www.onlinebanking-forum.de/forum/topic.php?t=19879&page=last#last_post
+                    if (delimSkipped && (idx>0 || predelim0==predelim1)) {
+                        int limit=(maxnum!=0)?maxnum-idx-1:Integer.MAX_VALUE;
+                        int skipped=0;
+                        int pos=res.getPos();
+                        while (skipped<limit && isEmptyElement(res,pos,predelim1)) {
+                            pos++;
+                            skipped++;
+                        }
+                        if (skipped!=0) {
+                            res.setPos(pos);
+                            idx+=skipped;
+                        }
+                    }
 
                     // es wird nur dann aufgehoert, weitere elemente dem aktuellen container hinzu-
                     // zufuegen, wenn ein element gefunden wurde, was offentsichlich nicht mehr dazu-
@@ -495,7 +472,7 @@ public abstract class MultipleSyntaxElements
                  reststring gleich sind; minnum ist aber erreicht),
                  dann diesen container normal beenden */
                 if ((maxnum!=0 && idx>=maxnum) ||
-                        (maxnum==0 && save.toString().equals(res.toString()) && !emptyElementFound))
+                        (maxnum==0 && save==res.getPos() && !emptyElementFound))
                 {
                     ready = true;
                 }
@@ -529,18 +506,18 @@ public abstract class MultipleSyntaxElements
           propagiert wird (z.b. wenn die syntaxelementlist selbst das erste syntaxelement 
           einer msg repraesentiert), predelim1 ist allerdings immer der delimiter, 
           der fuer das aktuell uebergeordnete syntaxelement zu verwenden ist) */
-    protected MultipleSyntaxElements(Node ref, String path, char predelim0, char predelim1, StringBuffer res, int fullResLen, Document syntax, Hashtable<String,String> predefs,Hashtable<String,String> valids)
+    protected MultipleSyntaxElements(SyntaxRef ref, String path, char predelim0, char predelim1, ParseCursor res, SyntaxModel syntax, Hashtable<String,String> predefs,Hashtable<String,List<String>> valids)
     {
-        initData(ref,path,predelim0,predelim1,res,fullResLen,syntax,predefs,valids);
+        initData(ref,path,predelim0,predelim1,res,syntax,predefs,valids);
     }
     
-    protected void init(Node ref, String path, char predelim0, char predelim1, StringBuffer res, int fullResLen, Document syntax, Hashtable<String,String> predefs,Hashtable<String,String> valids)
+    protected void init(SyntaxRef ref, String path, char predelim0, char predelim1, ParseCursor res, SyntaxModel syntax, Hashtable<String,String> predefs,Hashtable<String,List<String>> valids)
     {
-        initData(ref,path,predelim0,predelim1,res,fullResLen,syntax,predefs,valids);
+        initData(ref,path,predelim0,predelim1,res,syntax,predefs,valids);
     }
     
     /** siehe SyntaxElement.fillValues() */
-    protected void extractValues(Hashtable<String,String> values)
+    protected void extractValues(BiConsumer<String,String> values)
     {
         for (Iterator<SyntaxElement> i = elements.listIterator(); i.hasNext(); ) {
             SyntaxElement e = i.next();
@@ -563,25 +540,34 @@ public abstract class MultipleSyntaxElements
         return toString();
     }
 
+    /** siehe SyntaxElement::appendTo() */
+    protected void appendTo(StringBuffer ret)
+    {
+        ret.append(toString(0));
+    }
+
     public void getElementPaths(Properties p,int[] segref,int[] degref,int[] deref)
     {
     }
     
     /**
-     * Prueft, ob der Text s nur aus dem Zeichen c besteht.
-     * @param s der Text.
-     * @param c das Zeichen.
-     * @return true, wenn der Text nur dieses Zeichen enthaelt.
+     * Prueft, ob an der absoluten Position pos ein leeres Element dieses Containers steht.
+     * Das ist der Fall, wenn dort der Predelimiter steht und direkt danach ein Delimiter,
+     * der das Element in jedem Fall beendet - also ein DEG- oder Segment-Ende.
+     * Ein folgendes ":" reicht nicht, da das auch der Beginn eines DEG mit leerem
+     * ersten Datenelement sein kann.
+     * @param res der Parse-Cursor.
+     * @param pos die absolute Position.
+     * @param predelim der erwartete Predelimiter.
+     * @return true, wenn an der Position ein leeres Element steht.
      */
-    private boolean containsOnly(String s, char c)
+    protected boolean isEmptyElement(ParseCursor res, int pos, char predelim)
     {
-        for (char c2:s.toCharArray())
-        {
-            if (c != c2)
-                return false;
-        }
+        if (pos+1>=res.length() || res.charAt(pos)!=predelim)
+            return false;
         
-        return true;
+        char next=res.charAt(pos+1);
+        return next=='+' || next=='\'';
     }
     
     protected void destroy()
@@ -0,0 +1,172 @@
+/**********************************************************************
+ *
+ * This file is part of HBCI4Java.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ **********************************************************************/
+
+package org.kapott.hbci.protocol;
+
+/**
+ * Lese-Position beim Parsen einer HBCI-Nachricht.
+ * Frueher wurde die Nachricht als StringBuffer durch alle Syntax-Elemente
+ * gereicht, die den bereits geparsten Teil jeweils mit "delete(0,endidx)"
+ * vorn abgeschnitten haben. Dabei wurde fuer jedes einzelne Datenelement
+ * der komplette Rest der Nachricht nach links kopiert - bei grossen
+ * Umsatzabrufen wurde das Parsen dadurch quadratisch.
+ * Der Cursor haelt stattdessen die unveraenderliche Nachricht und nur
+ * die aktuelle Position. Vorruecken und Zuruecksetzen sind damit O(1).
+ */
+public final class ParseCursor
+{
+    private final String data;
+    private final int    offset;
+    private int          pos;
+
+    /**
+     * ct.
+     * @param data die zu parsende Nachricht.
+     */
+    public ParseCursor(String data)
+    {
+        this(data,0);
+    }
+
+    /**
+     * ct.
+     * @param data die zu parsende Nachricht.
+     * @param offset Position des ersten Zeichens von "data" in der Original-Nachricht.
+     * Wird nur fuer {@link #getPosInMsg()} benoetigt.
+     */
+    public ParseCursor(String data, int offset)
+    {
+        this.data   = data;
+        this.offset = offset;
+        this.pos    = 0;
+    }
+
+    /**
+     * Liefert die aktuelle Lese-Position.
+     * @return die aktuelle Lese-Position.
+     */
+    public int getPos()
+    {
+        return this.pos;
+    }
+
+    /**
+     * Setzt die Lese-Position. Wird zum Vorruecken nach dem Lesen eines
+     * Tokens sowie zum Zuruecksetzen nach einem fehlgeschlagenen Parse-Versuch verwendet.
+     * @param pos die neue Lese-Position.
+     */
+    public void setPos(int pos)
+    {
+        this.pos = pos;
+    }
+
+    /**
+     * Liefert die aktuelle Lese-Position bezogen auf die Original-Nachricht.
+     * @return die Position in der Original-Nachricht.
+     */
+    public int getPosInMsg()
+    {
+        return this.offset + this.pos;
+    }
+
+    /**
+     * Liefert die Gesamtlaenge der Nachricht.
+     * @return die Gesamtlaenge der Nachricht.
+     */
+    public int length()
+    {
+        return this.data.length();
+    }
+
+    /**
+     * Liefert die Anzahl der noch nicht gelesenen Zeichen.
+     * @return die Anzahl der noch nicht gelesenen Zeichen.
+     */
+    public int remaining()
+    {
+        return this.data.length() - this.pos;
+    }
+
+    /**
+     * Liefert das Zeichen an der absoluten Position idx.
+     * @param idx die absolute Position.
+     * @return das Zeichen.
+     */
+    public char charAt(int idx)
+    {
+        return this.data.charAt(idx);
+    }
+
+    /**
+     * Liefert den Text zwischen den absoluten Positionen start und end.
+     * @param start Start-Position (inklusive).
+     * @param end End-Position (exklusive).
+     * @return der Text.
+     */
+    public String substring(int start, int end)
+    {
+        return this.data.substring(start,end);
+    }
+
+    /**
+     * Sucht ab der absoluten Position from nach dem Zeichen ch.
+     * @param ch das gesuchte Zeichen.
+     * @param from absolute Start-Position.
+     * @return absolute Position des Zeichens oder -1.
+     */
+    public int indexOf(char ch, int from)
+    {
+        return this.data.indexOf(ch,from);
+    }
+
+    /**
+     * Liefert die Nachricht, auf der der Cursor arbeitet.
+     * @return die Nachricht.
+     */
+    public String getData()
+    {
+        return this.data;
+    }
+
+    /**
+     * Liefert maximal maxLen Zeichen des noch nicht gelesenen Rests der Nachricht.
+     * Fuer Fehlermeldungen, die beim Backtracking sehr oft erzeugt werden - damit
+     * nicht jedes Mal der komplette Rest der Nachricht kopiert wird.
+     * @param maxLen maximale Anzahl der Zeichen.
+     * @return der Anfang des Rests der Nachricht.
+     */
+    public String preview(int maxLen)
+    {
+        int len = this.data.length();
+        if (len - this.pos <= maxLen)
+            return this.data.substring(this.pos);
+        return this.data.substring(this.pos,this.pos + maxLen) + "...";
+    }
+
+    /**
+     * Liefert den noch nicht gelesenen Rest der Nachricht.
+     * Achtung: Erzeugt eine Kopie. Nur fuer Fehlermeldungen und Logausgaben verwenden.
+     * @see java.lang.Object#toString()
+     */
+    public String toString()
+    {
+        return this.data.substring(this.pos);
+    }
+}
@@ -33,8 +33,8 @@ import org.kapott.hbci.manager.HBCIUtilsInternal;
 import org.kapott.hbci.manager.MsgGen;
 import org.kapott.hbci.protocol.factory.MultipleDEGsFactory;
 import org.kapott.hbci.protocol.factory.MultipleDEsFactory;
-import org.w3c.dom.Document;
-import org.w3c.dom.Node;
+import org.kapott.hbci.protocol.syntax.SyntaxModel;
+import org.kapott.hbci.protocol.syntax.SyntaxRef;
 
 public final class SEG
      extends SyntaxElement
@@ -44,24 +44,24 @@ public final class SEG
         return "SEG";
     }
 
-    protected MultipleSyntaxElements createNewChildContainer(Node ref, Document syntax)
+    protected MultipleSyntaxElements createNewChildContainer(SyntaxRef ref, SyntaxModel syntax)
     {
         MultipleSyntaxElements ret=null;
 
-        if ((ref.getNodeName()).equals("DE"))
+        if (ref.getKind()==SyntaxRef.Kind.DE)
             ret=MultipleDEsFactory.getInstance().createMultipleDEs(ref, '+', getPath(), syntax);
-        else if ((ref.getNodeName()).equals("DEG"))
+        else if (ref.getKind()==SyntaxRef.Kind.DEG)
             ret=MultipleDEGsFactory.getInstance().createMultipleDEGs(ref, '+', getPath(), syntax);
 
         return ret;
     }
 
-    public SEG(String type, String name, String path, int idx, Document syntax)
+    public SEG(String type, String name, String path, int idx, SyntaxModel syntax)
     {
         super(type, name, path, idx, syntax);
     }
 
-    public void init(String type, String name, String path, int idx, Document syntax)
+    public void init(String type, String name, String path, int idx, SyntaxModel syntax)
     {
         super.init(type, name, path, idx, syntax);
     }
@@ -69,6 +69,12 @@ public final class SEG
     public String toString(int zero)
     {
         StringBuffer ret = new StringBuffer(256);
+        appendTo(ret);
+        return ret.toString();
+    }
+
+    protected void appendTo(StringBuffer ret)
+    {
         boolean first=true;
 
         if (isValid()) {
@@ -81,7 +87,7 @@ public final class SEG
                 saveLen=ret.length();
                 MultipleSyntaxElements dataList = i.next();
                 if (dataList != null)
-                    ret.append(dataList.toString(0));
+                    dataList.appendTo(ret);
                 
                 if (ret.length()==saveLen && !first) {
                     tooMuch++;
@@ -91,12 +97,9 @@ public final class SEG
                 first=false;
             }
 
-            int retlen = ret.length();
-            ret.delete(retlen-tooMuch,retlen);
+            ret.setLength(ret.length()-tooMuch);
             ret.append('\'');
         }
-
-        return ret.toString();
     }
 
     public void setSeq(int idx,boolean allowOverwrite)
@@ -132,14 +135,14 @@ public final class SEG
 
     // ---------------------------------------------------------------------------------------------------------------
 
-    protected MultipleSyntaxElements parseNewChildContainer(Node dataref, char predelim0, char predelim1, StringBuffer res, int fullResLen, Document syntax, Hashtable<String, String> predefs,Hashtable<String, String> valids)
+    protected MultipleSyntaxElements parseNewChildContainer(SyntaxRef dataref, char predelim0, char predelim1, ParseCursor res, SyntaxModel syntax, Hashtable<String, String> predefs,Hashtable<String,List<String>> valids)
     {
         MultipleSyntaxElements ret=null;
 
-        if ((dataref.getNodeName()).equals("DEG"))
-            ret=MultipleDEGsFactory.getInstance().createMultipleDEGs(dataref, '+', getPath(), predelim0, predelim1, res, fullResLen, syntax, predefs,valids);
-        else if ((dataref.getNodeName()).equals("DE"))
-            ret=MultipleDEsFactory.getInstance().createMultipleDEs(dataref, '+', getPath(), predelim0, predelim1, res, fullResLen, syntax, predefs,valids);
+        if (dataref.getKind()==SyntaxRef.Kind.DEG)
+            ret=MultipleDEGsFactory.getInstance().createMultipleDEGs(dataref, '+', getPath(), predelim0, predelim1, res, syntax, predefs,valids);
+        else if (dataref.getKind()==SyntaxRef.Kind.DE)
+            ret=MultipleDEsFactory.getInstance().createMultipleDEs(dataref, '+', getPath(), predelim0, predelim1, res, syntax, predefs,valids);
 
         return ret;
     }
@@ -149,14 +152,14 @@ public final class SEG
         return '+';
     }
 
-    public SEG(String type, String name, String path, char predelim, int idx, StringBuffer res, int fullResLen,Document syntax, Hashtable<String,String> predefs,Hashtable<String,String> valids)
+    public SEG(String type, String name, String path, char predelim, int idx, ParseCursor res,SyntaxModel syntax, Hashtable<String,String> predefs,Hashtable<String,List<String>> valids)
     {
-        super(type, name, path, predelim, idx, res, fullResLen, syntax, predefs,valids);
+        super(type, name, path, predelim, idx, res, syntax, predefs,valids);
     }
 
-    public void init(String type, String name, String path, char predelim, int idx, StringBuffer res, int fullResLen, Document syntax, Hashtable<String,String> predefs,Hashtable<String,String> valids)
+    public void init(String type, String name, String path, char predelim, int idx, ParseCursor res, SyntaxModel syntax, Hashtable<String,String> predefs,Hashtable<String,List<String>> valids)
     {
-        super.init(type, name, path, predelim, idx, res, fullResLen, syntax, predefs,valids);
+        super.init(type, name, path, predelim, idx, res, syntax, predefs,valids);
     }
 
     public int checkSegSeq(int value)
@@ -27,6 +27,7 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.ListIterator;
 import java.util.Properties;
+import java.util.function.BiConsumer;
 
 import org.kapott.hbci.exceptions.HBCI_Exception;
 import org.kapott.hbci.exceptions.NoSuchPathException;
@@ -36,15 +37,18 @@ import org.kapott.hbci.protocol.factory.MultipleDEGsFactory;
 import org.kapott.hbci.protocol.factory.MultipleDEsFactory;
 import org.kapott.hbci.protocol.factory.MultipleSEGsFactory;
 import org.kapott.hbci.protocol.factory.MultipleSFsFactory;
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
-import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
+import org.kapott.hbci.protocol.syntax.SyntaxDef;
+import org.kapott.hbci.protocol.syntax.SyntaxModel;
+import org.kapott.hbci.protocol.syntax.SyntaxRef;
+import org.kapott.hbci.protocol.syntax.SyntaxValids;
+import org.kapott.hbci.protocol.syntax.SyntaxValue;
+import org.kapott.hbci.tools.PoolableObject;
 
 /* ein syntaxelement ist ein strukturelement einer hbci-nachricht (die nachricht
     selbst, eine segmentfolge, ein einzelnes segment, eine deg oder 
     ein einzelnes de) */
 public abstract class SyntaxElement
+    extends PoolableObject
 {
     private List<MultipleSyntaxElements> childContainers;  /**< @internal @brief alle in diesem element enthaltenen unterelemente */
     private String name;   /**< @internal @brief bezeichner fuer dieses element */
@@ -64,8 +68,8 @@ public abstract class SyntaxElement
     // Verändern ein neues MSG-Objekt erzeugt).
     private int posInMsg;
     
-    private Document syntax;
-    private Node     def;
+    private SyntaxModel syntax;
+    private SyntaxDef   def;
     
     public final static boolean TRY_TO_CREATE=true;
     public final static boolean DONT_TRY_TO_CREATE=false;
@@ -84,7 +88,7 @@ public abstract class SyntaxElement
     /** erzeugt einen neuen Child-Container, welcher durch den
     xml-knoten 'ref' identifiziert wird; wird beim erzeugen von elementen
     benutzt */
-    protected abstract MultipleSyntaxElements createNewChildContainer(Node ref, Document syntax);
+    protected abstract MultipleSyntaxElements createNewChildContainer(SyntaxRef ref, SyntaxModel syntax);
     
     // TODO: aus konsistenz-gründen auch in MultipleSyntaxElements create und
     // createAndAdd trennen
@@ -96,7 +100,7 @@ public abstract class SyntaxElement
      auftauchen mueste (optional; z.b. fuer segmentcodes); 'predelim*' geben
      die delimiter an, die direkt vor dem zu erzeugenden syntaxelement
      auftauchen muessten */
-    protected abstract MultipleSyntaxElements parseNewChildContainer(Node ref, char predelim0, char predelim1, StringBuffer res, int fullResLen, Document syntax, Hashtable<String,String> predefs,Hashtable<String,String> valids);
+    protected abstract MultipleSyntaxElements parseNewChildContainer(SyntaxRef ref, char predelim0, char predelim1, ParseCursor res, SyntaxModel syntax, Hashtable<String,String> predefs,Hashtable<String,List<String>> valids);
     
     
     /** wird fuer datenelemente benoetigt, die sonst unbeabsichtigt generiert werden koennten.
@@ -146,10 +150,10 @@ public abstract class SyntaxElement
     private boolean needsRequestTag;
     private boolean haveRequestTag;
     
-    private void initData(String type, String name, String ppath, int idx, Document syntax)
+    private void initData(String type, String name, String ppath, int idx, SyntaxModel syntax)
     {
         if (getElementTypeName().equals("SEG"))
-            HBCIUtils.log("creating segment "+ppath+" -> "+name+"("+idx+")", HBCIUtils.LOG_INTERN);
+            HBCIUtils.log("creating segment {} -> {}({})", HBCIUtils.LOG_INTERN, ppath, name, idx);
         
         this.type = type;
         this.name = name;
@@ -176,26 +180,20 @@ public abstract class SyntaxElement
             this.def=getSyntaxDef(type,syntax);
             
             // erzeugen der child-elemente
-            String requestTag=((Element)def).getAttribute("needsRequestTag");
-            if (requestTag!=null && requestTag.equals("1"))
-                needsRequestTag=true;
+            needsRequestTag=def.isNeedsRequestTag();
 
             try {
-                int syntaxIdx=0;
-                for (Node ref=def.getFirstChild(); ref!=null; ref=ref.getNextSibling()) {
-                    if (ref.getNodeType()==Node.ELEMENT_NODE) {
-                        MultipleSyntaxElements child=createAndAppendNewChildContainer(ref, syntax);
-                        if (child!=null) {
-                            child.setParent(this);
-                            // TODO: überprüfen, ob noch an anderen Stellen Container
-                            // erzeugt werden - diese müssten dann auch die richtige
-                            // syntaxIdx bekommen
-                            child.setSyntaxIdx(syntaxIdx);
-                            
-                            if (getElementTypeName().equals("MSG"))
-                                HBCIUtils.log("child container "+child.getPath()+" has syntaxIdx="+child.getSyntaxIdx(), HBCIUtils.LOG_INTERN);
-                        }
-                        syntaxIdx++;
+                for (SyntaxRef ref:def.getRefs()) {
+                    MultipleSyntaxElements child=createAndAppendNewChildContainer(ref, syntax);
+                    if (child!=null) {
+                        child.setParent(this);
+                        // TODO: überprüfen, ob noch an anderen Stellen Container
+                        // erzeugt werden - diese müssten dann auch die richtige
+                        // syntaxIdx bekommen
+                        child.setSyntaxIdx(ref.getIndex());
+                        
+                        if (getElementTypeName().equals("MSG"))
+                            HBCIUtils.log("child container {} has syntaxIdx={}", HBCIUtils.LOG_INTERN, child.getPath(), child.getSyntaxIdx());
                     }
                 }
 
@@ -211,35 +209,20 @@ public abstract class SyntaxElement
                 // wird nur für Segmentfolgen angewendet. Und in Segmentfolgen-
                 // Definitionen sind keine values oder valids angegeben, so dass
                 // dieser Code hier gar keine Relevanz für Segmentfolgen hat
-                NodeList valueNodes = ((Element)def).getElementsByTagName("value");
-                int      len=valueNodes.getLength();
-                String   dottedPath = this.path+".";
-                for (int i=0; i<len; i++) {
-                    Node   valueNode = valueNodes.item(i);
-                    String valuePath = ((Element)valueNode).getAttribute("path");
-                    String value     = (valueNode.getFirstChild()).getNodeValue();
-                    String destpath  = dottedPath+valuePath;
+                String dottedPath = this.path+".";
+                for (SyntaxValue v:def.getValues()) {
+                    String destpath = dottedPath+v.getPath();
                     
-                    if (!propagateValue(destpath,value,TRY_TO_CREATE,DONT_ALLOW_OVERWRITE))
+                    if (!propagateValue(destpath,v.getValue(),TRY_TO_CREATE,DONT_ALLOW_OVERWRITE))
                         throw new NoSuchPathException(destpath);
                 }
 
                 /* durchlaufen aller "valids"-knoten und speichern der valid-values */
                 // TODO: das hier ebenfalls später machen, siehe "values"
-                NodeList validNodes=((Element)def).getElementsByTagName("valids");
-                len = validNodes.getLength();
                 dottedPath = getPath()+".";
-                for (int i=0;i<len;i++) {
-                    Node validNode=validNodes.item(i);
-                    String valuePath=((Element)(validNode)).getAttribute("path");
-                    String absPath=dottedPath+valuePath;
-
-                    NodeList validvalueNodes=((Element)(validNode)).getElementsByTagName("validvalue");
-                    int len2=validvalueNodes.getLength();
-                    for (int j=0;j<len2;j++) {
-                        Node validvalue=validvalueNodes.item(j);
-                        String value=(validvalue.getFirstChild()).getNodeValue();
-
+                for (SyntaxValids v:def.getValids()) {
+                    String absPath=dottedPath+v.getPath();
+                    for (String value:v.getValues()) {
                         storeValidValueInDE(absPath,value);
                     }
                 }
@@ -265,17 +248,17 @@ public abstract class SyntaxElement
         diesem element wird in 'path' uebergeben; 'idx' ist die nummer dieses
         elementes innerhalb der syntaxelementliste fuer dieses element (falls ein
         bestimmtes syntaxelement mehr als einmal auftreten kann) */
-    protected SyntaxElement(String type, String name, String path, int idx, Document syntax)
+    protected SyntaxElement(String type, String name, String path, int idx, SyntaxModel syntax)
     {
         initData(type,name,path,idx,syntax);
     }
 
-    protected void init(String type, String name, String path, int idx, Document syntax)
+    protected void init(String type, String name, String path, int idx, SyntaxModel syntax)
     {
         initData(type,name,path,idx,syntax);
     }
     
-    protected MultipleSyntaxElements createAndAppendNewChildContainer(Node ref, Document syntax)
+    protected MultipleSyntaxElements createAndAppendNewChildContainer(SyntaxRef ref, SyntaxModel syntax)
     {
         MultipleSyntaxElements ret=createNewChildContainer(ref,syntax);
         if (ret!=null)
@@ -320,7 +303,7 @@ public abstract class SyntaxElement
 
     // -------------------------------------------------------------------------------------------
     
-    private void initData(String type, String name, String ppath, char predelim, int idx, StringBuffer res, int fullResLen,Document syntax, Hashtable<String,String> predefs,Hashtable<String,String> valids)
+    private void initData(String type, String name, String ppath, char predelim, int idx, ParseCursor res,SyntaxModel syntax, Hashtable<String,String> predefs,Hashtable<String,List<String>> valids)
     {
         this.type=type;
         this.name=name;
@@ -331,11 +314,9 @@ public abstract class SyntaxElement
         this.haveRequestTag=false;
         this.syntax=syntax;
         this.def=null;
-        /* position des aktuellen datenelementes berechnet sich aus der
-         * gesamtlänge des ursprünglichen msg-strings minus der länge des
-         * reststrings, der jetzt zu parsen ist, und der mit dem aktuellen
-         * datenelement beginnt */
-        this.posInMsg=fullResLen-res.length(); 
+        /* position des aktuellen datenelementes ist die aktuelle
+         * lese-position des cursors in der ursprünglichen msg */
+        this.posInMsg=res.getPosInMsg();
 
         StringBuffer temppath=new StringBuffer(128);
         if (ppath!=null && ppath.length()!=0)
@@ -350,67 +331,48 @@ public abstract class SyntaxElement
             
             /* fuellen der 'predefs'-tabelle mit den in der
              syntaxbeschreibung vorgegebenen werten */
-            NodeList valueNodes = ((Element)def).getElementsByTagName("value");
             String dottedPath = getPath() + ".";
-            int len=valueNodes.getLength();
-            for (int i = 0; i < len; i++) {
-                Node valueNode = valueNodes.item(i);
-                String valuePath = ((Element)valueNode).getAttribute("path");
-                String value = (valueNode.getFirstChild()).getNodeValue();
-
-                predefs.put(dottedPath + valuePath, value);
+            for (SyntaxValue v:def.getValues()) {
+                predefs.put(dottedPath + v.getPath(), v.getValue());
             }
 
             if (valids!=null) {
-                /* durchlaufen aller "valids"-knoten und speichern der valid-values */
-                NodeList validNodes=((Element)def).getElementsByTagName("valids");
-                len=validNodes.getLength();
-                for (int i=0;i<len;i++) {
-                    Node validNode=validNodes.item(i);
-                    String valuePath=((Element)(validNode)).getAttribute("path");
-                    String absPath=dottedPath+valuePath;
-                    
-                    NodeList validvalueNodes=((Element)(validNode)).getElementsByTagName("validvalue");
-                    int len2=validvalueNodes.getLength();
-                    for (int j=0;j<len2;j++) {
-                        Node validvalue=validvalueNodes.item(j);
-                        String value=(validvalue.getFirstChild()).getNodeValue();
-                        valids.put(HBCIUtilsInternal.withCounter(absPath+".value",j),value);
-                    }
+                /* speichern der valid-values. die listen aus der syntax-
+                 * definition sind unveraenderlich und werden nicht kopiert */
+                for (SyntaxValids v:def.getValids()) {
+                    valids.put(dottedPath+v.getPath(),v.getValues());
                 }
             }
 
             try {
                 // anlegen der child-elemente
                 int counter=0;
-                for (Node ref=def.getFirstChild();ref!=null;ref=ref.getNextSibling()) {
-                	if (ref.getNodeType()==Node.ELEMENT_NODE) {
-                		MultipleSyntaxElements child=parseAndAppendNewChildContainer(ref,
-                				((counter++)==0)?predelim:getInDelim(),
-                						getInDelim(),
-                						res,fullResLen,syntax,predefs,valids);
-
-                		if (child!=null) {
-                			child.setParent(this);
-
-                			// TODO: this is a very very dirty hack to fix the problem with the params-template;
-                			// bei der SF "Params", die mit <SF type="Params" maxnum="0"/> referenziert wird, 
-                			// soll nach jedem erfolgreich in die SF aufgenommenen Param-Segment eine neue
-                			// SF begonnen werden, damit das Problem mit dem am Ende der SF stehenden Template-
-                			// Param-Segment nicht mehr auftritt
-                			// dazu wird beim hinzufuegen von segmenten zur sf ueberprueft, ob diese evtl. bereits
-                			// segmente enthaelt (hasValidChilds()). falls das der fall ist, so wird
-                			// kein neues segment hinzugefuegt
-                			// analoges gilt für die SF "GVRes" - hier muss dafür gesorgt werden, dass jede
-                			// antwort in ein eigenes GVRes kommt, damit die zuordnung reihenfolge-erkennung
-                			// der empfangenen GVRes-segmente funktioniert (in HBCIJobImpl.fillJobResult())
-                			if ((this instanceof SF) && 
-                					(getName().equals("Params") || getName().equals("GVRes")) &&
-                					((MultipleSEGs)child).hasValidChilds()) {
-                				break;
-                			}
-                		}
-                	}
+                for (SyntaxRef ref:def.getRefs()) {
+                    MultipleSyntaxElements child=parseAndAppendNewChildContainer(ref,
+                            ((counter++)==0)?predelim:getInDelim(),
+                                    getInDelim(),
+                                    res,syntax,predefs,valids);
+
+                    if (child!=null) {
+                        child.setParent(this);
+
+                        // TODO: this is a very very dirty hack to fix the problem with the params-template;
+                        // bei der SF "Params", die mit <SF type="Params" maxnum="0"/> referenziert wird, 
+                        // soll nach jedem erfolgreich in die SF aufgenommenen Param-Segment eine neue
+                        // SF begonnen werden, damit das Problem mit dem am Ende der SF stehenden Template-
+                        // Param-Segment nicht mehr auftritt
+                        // dazu wird beim hinzufuegen von segmenten zur sf ueberprueft, ob diese evtl. bereits
+                        // segmente enthaelt (hasValidChilds()). falls das der fall ist, so wird
+                        // kein neues segment hinzugefuegt
+                        // analoges gilt für die SF "GVRes" - hier muss dafür gesorgt werden, dass jede
+                        // antwort in ein eigenes GVRes kommt, damit die zuordnung reihenfolge-erkennung
+                        // der empfangenen GVRes-segmente funktioniert (in HBCIJobImpl.fillJobResult())
+                        if ((this instanceof SF) && 
+                                (getName().equals("Params") || getName().equals("GVRes")) &&
+                                ((MultipleSEGs)child).hasValidChilds()) {
+                            break;
+                        }
+                    }
                 }
             } catch (RuntimeException e) {
                 for (Iterator<MultipleSyntaxElements> i=getChildContainers().iterator();i.hasNext();) {
@@ -442,19 +404,19 @@ public abstract class SyntaxElement
         der zu parsende String 'predefs' soll eine menge von pfad-wert-paaren
         enthalten, die fuer einige syntaxelemente den wert angeben, den diese
         elemente zwingend haben muessen (z.b. ein bestimmter segmentcode o.ae.) */
-    protected SyntaxElement(String type, String name, String path, char predelim, int idx, StringBuffer res, int fullResLen,Document syntax, Hashtable<String,String> predefs,Hashtable<String,String> valids)
+    protected SyntaxElement(String type, String name, String path, char predelim, int idx, ParseCursor res,SyntaxModel syntax, Hashtable<String,String> predefs,Hashtable<String,List<String>> valids)
     {
-        initData(type,name,path,predelim,idx,res,fullResLen,syntax,predefs,valids);
+        initData(type,name,path,predelim,idx,res,syntax,predefs,valids);
     }
     
-    protected void init(String type, String name, String path, char predelim, int idx, StringBuffer res, int fullResLen,Document syntax, Hashtable<String,String> predefs,Hashtable<String,String> valids)
+    protected void init(String type, String name, String path, char predelim, int idx, ParseCursor res,SyntaxModel syntax, Hashtable<String,String> predefs,Hashtable<String,List<String>> valids)
     {
-        initData(type,name,path,predelim,idx,res,fullResLen,syntax,predefs,valids);
+        initData(type,name,path,predelim,idx,res,syntax,predefs,valids);
     }
 
-    protected MultipleSyntaxElements parseAndAppendNewChildContainer(Node ref, char predelim0, char predelim1, StringBuffer res, int fullResLen, Document syntax, Hashtable<String,String> predefs,Hashtable<String,String> valids)
+    protected MultipleSyntaxElements parseAndAppendNewChildContainer(SyntaxRef ref, char predelim0, char predelim1, ParseCursor res, SyntaxModel syntax, Hashtable<String,String> predefs,Hashtable<String,List<String>> valids)
     {
-        MultipleSyntaxElements ret=parseNewChildContainer(ref,predelim0,predelim1,res,fullResLen,syntax,predefs,valids);
+        MultipleSyntaxElements ret=parseNewChildContainer(ref,predelim0,predelim1,res,syntax,predefs,valids);
         if (ret!=null)
             addChildContainer(ret);
         return ret;
@@ -464,6 +426,13 @@ public abstract class SyntaxElement
      wird in allen anderen typen von syntaxelementen die liste der
      child-elemente durchlaufen und deren 'fillValues' methode aufgerufen */
     public void extractValues(Hashtable<String,String> values)
+    {
+        extractValues(values::put);
+    }
+    
+    /** wie extractValues(Hashtable), uebergibt pfad und wert aber direkt an
+     'values', ohne sie in einer hashtable zu sammeln */
+    public void extractValues(BiConsumer<String,String> values)
     {
         for (Iterator<MultipleSyntaxElements> i = childContainers.listIterator(); i.hasNext(); ) {
             MultipleSyntaxElements l = i.next();
@@ -496,9 +465,10 @@ public abstract class SyntaxElement
         boolean ret = false;
         
         if (destPath.equals(getPath())) {
-            if (value!=null && value.equals("requested"))
+            if (value!=null && value.equals("requested")) {
                 this.haveRequestTag=true;
-            else
+                changed();
+            } else
                 throw new HBCI_Exception(HBCIUtilsInternal.getLocMsg("EXCMSG_INVVALUE",new Object[] {destPath,value}));
             ret=true;
         } else {
@@ -517,22 +487,22 @@ public abstract class SyntaxElement
                     // der Wert konnte nicht gesetzt werden -> möglicherweise
                     // existiert ja nur der entsprechende child-container noch
                     // nicht
-                    HBCIUtils.log(getPath()+": could not set value for "+destPath, HBCIUtils.LOG_INTERN);
+                    HBCIUtils.log("{}: could not set value for {}", HBCIUtils.LOG_INTERN, getPath(), destPath);
                     
                     // Namen des fehlenden Elementes ermitteln
                     String subPath=destPath.substring(getPath().length()+1);
-                    HBCIUtils.log("  subpath is "+subPath, HBCIUtils.LOG_INTERN);
+                    HBCIUtils.log("  subpath is {}", HBCIUtils.LOG_INTERN, subPath);
                     int dotPos=subPath.indexOf('.');
                     if (dotPos==-1) {
                         dotPos=subPath.length();
                     }
                     String subType=subPath.substring(0,dotPos);
-                    HBCIUtils.log("  subname is "+subType, HBCIUtils.LOG_INTERN);
+                    HBCIUtils.log("  subname is {}", HBCIUtils.LOG_INTERN, subType);
                     int counterPos=subType.indexOf('_');
                     if (counterPos!=-1) {
                         subType=subType.substring(0,counterPos);
                     }
-                    HBCIUtils.log("  subType is "+subType, HBCIUtils.LOG_INTERN);
+                    HBCIUtils.log("  subType is {}", HBCIUtils.LOG_INTERN, subType);
                     
                     // hier überprüfen, ob es wirklich noch keinen child-container
                     // mit diesem Namen gibt. Wenn z.B. der pfad msg.gv.ueb.kik.blz
@@ -555,21 +525,13 @@ public abstract class SyntaxElement
                         // jetzt durch alle child-elemente des definierenden XML-Knotens
                         // loopen und den ref-Knoten suchen, der das fehlende Element
                         // beschreibt
-                        int     newChildIdx=0;
-                        Node    ref=null;
+                        SyntaxRef ref=null;
                         found=false;
-                        for (ref=def.getFirstChild(); ref!=null; ref=ref.getNextSibling()) {
-                            if (ref.getNodeType()==Node.ELEMENT_NODE) {
-                                String type=((Element)ref).getAttribute("type");
-                                String name=((Element)ref).getAttribute("name");
-                                if (name.length()==0) {
-                                    name=type;
-                                }
-                                if (name.equals(subType)) {
-                                    found=true;
-                                    break;
-                                }
-                                newChildIdx++;
+                        for (SyntaxRef r:def.getRefs()) {
+                            if (r.getName().equals(subType)) {
+                                ref=r;
+                                found=true;
+                                break;
                             }
                         }
 
@@ -577,6 +539,7 @@ public abstract class SyntaxElement
                             // entsprechenden child-container erzeugen
                             MultipleSyntaxElements child=createNewChildContainer(ref,syntax);
                             child.setParent(this);
+                            int newChildIdx=ref.getIndex();
                             child.setSyntaxIdx(newChildIdx);
 
                             if (getElementTypeName().equals("MSG"))
@@ -599,6 +562,7 @@ public abstract class SyntaxElement
                             HBCIUtils.log("  inserting child container with syntaxIdx "+newChildIdx+" at position "+newPosi,
                                     HBCIUtils.LOG_INTERN);
                             childContainers.add(newPosi,child);
+                            changed();
                             
                             // now try to propagate the value to the newly created child
                             ret=child.propagateValue(destPath,value,tryToCreate,allowOverwrite);
@@ -707,10 +671,10 @@ public abstract class SyntaxElement
     
     /** @param type the name of the syntaxelement to be returned
         @param syntax the structure containing the current syntaxdefinition
-        @return a XML-node with the definition of the requested syntaxelement */
-    public final Node getSyntaxDef(String type, Document syntax)
+        @return the definition of the requested syntaxelement */
+    public final SyntaxDef getSyntaxDef(String type, SyntaxModel syntax)
     {
-        Node ret = syntax.getElementById(type);
+        SyntaxDef ret = syntax.getDef(type);
         if (ret == null)
             throw new org.kapott.hbci.exceptions.NoSuchElementException(getElementTypeName(), type);
         return ret;
@@ -724,9 +688,34 @@ public abstract class SyntaxElement
         return toString();
     }
 
+    /** haengt die hbci-form dieses elementes an 'ret' an. die syntaxelemente,
+        aus denen nachrichten bestehen, ueberschreiben diese methode, so dass
+        die gesamte nachricht in einem einzigen puffer erzeugt wird, statt in
+        jeder ebene einen eigenen string zu bauen */
+    protected void appendTo(StringBuffer ret)
+    {
+        ret.append(toString(0));
+    }
+
+    /** wird aufgerufen, wenn sich der inhalt dieses elementes oder eines seiner
+        unterelemente geaendert hat. die meldung wird bis zur wurzel (der
+        nachricht) durchgereicht, die daraufhin ihre zwischengespeicherte
+        serialisierte form verwirft */
+    protected void changed()
+    {
+        if (parent!=null) {
+            SyntaxElement p=parent.getParent();
+            if (p!=null)
+                p.changed();
+        }
+    }
+
     protected final void setValid(boolean valid)
     {
-        this.valid = valid;
+        if (this.valid!=valid) {
+            this.valid = valid;
+            changed();
+        }
     }
 
     public boolean isValid()
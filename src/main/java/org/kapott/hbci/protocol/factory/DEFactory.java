@@ -22,12 +22,13 @@
 package org.kapott.hbci.protocol.factory;
 
 import java.util.Hashtable;
+import java.util.List;
 
-import org.kapott.hbci.manager.HBCIUtils;
 import org.kapott.hbci.protocol.DE;
+import org.kapott.hbci.protocol.ParseCursor;
+import org.kapott.hbci.protocol.syntax.SyntaxModel;
+import org.kapott.hbci.protocol.syntax.SyntaxRef;
 import org.kapott.hbci.tools.ObjectFactory;
-import org.w3c.dom.Document;
-import org.w3c.dom.Node;
 
 public class DEFactory 
     extends ObjectFactory 
@@ -44,22 +45,20 @@ public class DEFactory
     
     private DEFactory()
     {
-        super(Integer.parseInt(HBCIUtils.getParam("kernel.objpool.DE","1024")));
+        super(getPoolSize("DE",1024));
     }
     
-    public DE createDE(Node dedef, String name, String path, char predelim, int idx, StringBuffer res, int fullResLen, Document syntax, Hashtable<String, String> predefs,Hashtable<String, String> valids)
+    public DE createDE(SyntaxRef dedef, String name, String path, char predelim, int idx, ParseCursor res, SyntaxModel syntax, Hashtable<String, String> predefs,Hashtable<String,List<String>> valids)
     {
         DE ret=(DE)getFreeObject();
         
         if (ret==null) {
             // HBCIUtils.log("creating new DE object",HBCIUtils.LOG_DEBUG);
-            ret=new DE(dedef,name,path,predelim,idx,res,fullResLen,syntax,predefs,valids);
-            addToUsedPool(ret);
+            ret=new DE(dedef,name,path,predelim,idx,res,syntax,predefs,valids);
         } else {
             // HBCIUtils.log("reusing DE object",HBCIUtils.LOG_DEBUG);
             try {
-                ret.init(dedef,name,path,predelim,idx,res,fullResLen,syntax,predefs,valids);
-                addToUsedPool(ret);
+                ret.init(dedef,name,path,predelim,idx,res,syntax,predefs,valids);
             } catch (RuntimeException e) {
                 addToFreePool(ret);
                 throw e;
@@ -69,19 +68,17 @@ public class DEFactory
         return ret;
     }
     
-    public DE createDE(Node dedef, String name, String path, int idx, Document syntax)
+    public DE createDE(SyntaxRef dedef, String name, String path, int idx, SyntaxModel syntax)
     {
         DE ret=(DE)getFreeObject();
         
         if (ret==null) {
             // HBCIUtils.log("creating new DE object",HBCIUtils.LOG_DEBUG);
             ret=new DE(dedef, name, path, idx, syntax);
-            addToUsedPool(ret);
         } else {
             // HBCIUtils.log("reusing DE object",HBCIUtils.LOG_DEBUG);
             try {
                 ret.init(dedef, name, path, idx, syntax);
-                addToUsedPool(ret);
             } catch (RuntimeException e) {
                 addToFreePool(ret);
                 throw e;
@@ -91,11 +88,8 @@ public class DEFactory
         return ret;
     }
     
-    public void unuseObject(Object o)
+    protected void destroyObject(Object o)
     {
-        if (o!=null) {
-            ((DE)o).destroy();
-            super.unuseObject(o);
-        }
+        ((DE)o).destroy();
     }
 }
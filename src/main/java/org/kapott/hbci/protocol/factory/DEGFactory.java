@@ -22,11 +22,12 @@
 package org.kapott.hbci.protocol.factory;
 
 import java.util.Hashtable;
+import java.util.List;
 
-import org.kapott.hbci.manager.HBCIUtils;
 import org.kapott.hbci.protocol.DEG;
+import org.kapott.hbci.protocol.ParseCursor;
+import org.kapott.hbci.protocol.syntax.SyntaxModel;
 import org.kapott.hbci.tools.ObjectFactory;
-import org.w3c.dom.Document;
 
 public class DEGFactory 
     extends ObjectFactory 
@@ -43,22 +44,20 @@ public class DEGFactory
     
     private DEGFactory()
     {
-    	super(Integer.parseInt(HBCIUtils.getParam("kernel.objpool.DEG","512")));
+    	super(getPoolSize("DEG",512));
     }
     
-    public DEG createDEG(String type, String name, String path, char predelim, int idx, StringBuffer res, int fullResLen, Document syntax, Hashtable<String, String> predefs,Hashtable<String, String> valids)
+    public DEG createDEG(String type, String name, String path, char predelim, int idx, ParseCursor res, SyntaxModel syntax, Hashtable<String, String> predefs,Hashtable<String,List<String>> valids)
     {
         DEG ret=(DEG)getFreeObject();
         
         if (ret==null) {
             // HBCIUtils.log("creating new DEG object",HBCIUtils.LOG_DEBUG);
-            ret=new DEG(type,name,path,predelim,idx,res,fullResLen,syntax,predefs,valids);
-            addToUsedPool(ret);
+            ret=new DEG(type,name,path,predelim,idx,res,syntax,predefs,valids);
         } else {
             // HBCIUtils.log("reusing DEG object",HBCIUtils.LOG_DEBUG);
             try {
-                ret.init(type,name,path,predelim,idx,res,fullResLen,syntax,predefs,valids);
-                addToUsedPool(ret);
+                ret.init(type,name,path,predelim,idx,res,syntax,predefs,valids);
             } catch (RuntimeException e) {
                 addToFreePool(ret);
                 throw e;
@@ -68,19 +67,17 @@ public class DEGFactory
         return ret;
     }
     
-    public DEG createDEG(String type, String name, String path, int idx, Document syntax)
+    public DEG createDEG(String type, String name, String path, int idx, SyntaxModel syntax)
     {
         DEG ret=(DEG)getFreeObject();
         
         if (ret==null) {
             // HBCIUtils.log("creating new DEG object",HBCIUtils.LOG_DEBUG);
             ret=new DEG(type, name, path, idx, syntax);
-            addToUsedPool(ret);
         } else {
             // HBCIUtils.log("reusing DEG object",HBCIUtils.LOG_DEBUG);
             try {
                 ret.init(type, name, path, idx, syntax);
-                addToUsedPool(ret);
             } catch (RuntimeException e) {
                 addToFreePool(ret);
                 throw e;
@@ -90,11 +87,8 @@ public class DEGFactory
         return ret;
     }
     
-    public void unuseObject(Object o)
+    protected void destroyObject(Object o)
     {
-        if (o!=null) {
-            ((DEG)o).destroy();
-            super.unuseObject(o);
-        }
+        ((DEG)o).destroy();
     }
 }
@@ -23,7 +23,6 @@ package org.kapott.hbci.protocol.factory;
 
 import java.util.Hashtable;
 
-import org.kapott.hbci.manager.HBCIUtils;
 import org.kapott.hbci.manager.MsgGen;
 import org.kapott.hbci.protocol.MSG;
 import org.kapott.hbci.tools.ObjectFactory;
@@ -43,7 +42,7 @@ public class MSGFactory
     
     private MSGFactory()
     {
-    	super(Integer.parseInt(HBCIUtils.getParam("kernel.objpool.MSG","8")));
+    	super(getPoolSize("MSG",8));
     }
     
     public MSG createMSG(String type,MsgGen gen,Hashtable<String,String> clientValues)
@@ -53,12 +52,10 @@ public class MSGFactory
         if (ret==null) {
             // HBCIUtils.log("creating new MSG object",HBCIUtils.LOG_DEBUG);
             ret=new MSG(type,gen,clientValues);
-            addToUsedPool(ret);
         } else {
             // HBCIUtils.log("resuing MSG object",HBCIUtils.LOG_DEBUG);
             try {
                 ret.init(type,gen,clientValues);
-                addToUsedPool(ret);
             } catch (Exception e) {
                 addToFreePool(ret);
                 throw (RuntimeException)e;
@@ -85,12 +82,10 @@ public class MSGFactory
         if (ret==null) {
             // HBCIUtils.log("creating new MSG object",HBCIUtils.LOG_DEBUG);
             ret=new MSG(type,res,fullResLen,gen,checkSeq,checkValids);
-            addToUsedPool(ret);
         } else {
             // HBCIUtils.log("reusing MSG object",HBCIUtils.LOG_DEBUG);
             try {
                 ret.init(type,res,fullResLen,gen,checkSeq,checkValids);
-                addToUsedPool(ret);
             } catch (Exception e) {
                 addToFreePool(ret);
                 throw (RuntimeException)e;
@@ -100,11 +95,8 @@ public class MSGFactory
         return ret;
     }
     
-    public void unuseObject(Object o)
+    protected void destroyObject(Object o)
     {
-        if (o!=null) {
-            ((MSG)o).destroy();
-            super.unuseObject(o);
-        }
+        ((MSG)o).destroy();
     }
 }
@@ -22,12 +22,13 @@
 package org.kapott.hbci.protocol.factory;
 
 import java.util.Hashtable;
+import java.util.List;
 
-import org.kapott.hbci.manager.HBCIUtils;
 import org.kapott.hbci.protocol.MultipleDEGs;
+import org.kapott.hbci.protocol.ParseCursor;
+import org.kapott.hbci.protocol.syntax.SyntaxModel;
+import org.kapott.hbci.protocol.syntax.SyntaxRef;
 import org.kapott.hbci.tools.ObjectFactory;
-import org.w3c.dom.Document;
-import org.w3c.dom.Node;
 
 public class MultipleDEGsFactory 
     extends ObjectFactory 
@@ -44,22 +45,20 @@ public class MultipleDEGsFactory
     
     private MultipleDEGsFactory()
     {
-    	super(Integer.parseInt(HBCIUtils.getParam("kernel.objpool.DEG","512")));
+    	super(getPoolSize("DEG",512));
     }
     
-    public MultipleDEGs createMultipleDEGs(Node sfref, char delimiter, String path, char predelim0, char predelim1, StringBuffer res, int fullResLen,Document syntax, Hashtable<String, String> predefs,Hashtable<String, String> valids)
+    public MultipleDEGs createMultipleDEGs(SyntaxRef sfref, char delimiter, String path, char predelim0, char predelim1, ParseCursor res,SyntaxModel syntax, Hashtable<String, String> predefs,Hashtable<String,List<String>> valids)
     {
         MultipleDEGs ret=(MultipleDEGs)getFreeObject();
         
         if (ret==null) {
             // HBCIUtils.log("creating new multi DEG object",HBCIUtils.LOG_DEBUG);
-            ret=new MultipleDEGs(sfref,delimiter,path,predelim0,predelim1,res,fullResLen,syntax,predefs,valids);
-            addToUsedPool(ret);
+            ret=new MultipleDEGs(sfref,delimiter,path,predelim0,predelim1,res,syntax,predefs,valids);
         } else {
             // HBCIUtils.log("reusing multi DEG object",HBCIUtils.LOG_DEBUG);
             try {
-                ret.init(sfref,delimiter,path,predelim0,predelim1,res,fullResLen,syntax,predefs,valids);
-                addToUsedPool(ret);
+                ret.init(sfref,delimiter,path,predelim0,predelim1,res,syntax,predefs,valids);
             } catch (RuntimeException e) {
                 addToFreePool(ret);
                 throw e;
@@ -69,19 +68,17 @@ public class MultipleDEGsFactory
         return ret;
     }
 
-    public MultipleDEGs createMultipleDEGs(Node sfref, char delimiter,String path, Document syntax)
+    public MultipleDEGs createMultipleDEGs(SyntaxRef sfref, char delimiter,String path, SyntaxModel syntax)
     {
         MultipleDEGs ret=(MultipleDEGs)getFreeObject();
         
         if (ret==null) {
             // HBCIUtils.log("creating new multi DEG object",HBCIUtils.LOG_DEBUG);
             ret=new MultipleDEGs(sfref,delimiter,path,syntax);
-            addToUsedPool(ret);
         } else {
             // HBCIUtils.log("reusing multi DEG object",HBCIUtils.LOG_DEBUG);
             try {
                 ret.init(sfref,delimiter,path,syntax);
-                addToUsedPool(ret);
             } catch (RuntimeException e) {
                 addToFreePool(ret);
                 throw e;
@@ -91,11 +88,8 @@ public class MultipleDEGsFactory
         return ret;
     }
 
-    public void unuseObject(Object o)
+    protected void destroyObject(Object o)
     {
-        if (o!=null) {
-            ((MultipleDEGs)o).destroy();
-            super.unuseObject(o);
-        }
+        ((MultipleDEGs)o).destroy();
     }
 }
@@ -22,12 +22,13 @@
 package org.kapott.hbci.protocol.factory;
 
 import java.util.Hashtable;
+import java.util.List;
 
-import org.kapott.hbci.manager.HBCIUtils;
 import org.kapott.hbci.protocol.MultipleDEs;
+import org.kapott.hbci.protocol.ParseCursor;
+import org.kapott.hbci.protocol.syntax.SyntaxModel;
+import org.kapott.hbci.protocol.syntax.SyntaxRef;
 import org.kapott.hbci.tools.ObjectFactory;
-import org.w3c.dom.Document;
-import org.w3c.dom.Node;
 
 public class MultipleDEsFactory 
     extends ObjectFactory 
@@ -44,22 +45,20 @@ public class MultipleDEsFactory
     
     private MultipleDEsFactory()
     {
-    	super(Integer.parseInt(HBCIUtils.getParam("kernel.objpool.DE","1024")));
+    	super(getPoolSize("DE",1024));
     }
     
-    public MultipleDEs createMultipleDEs(Node sfref, char delimiter, String path, char predelim0, char predelim1, StringBuffer res, int fullResLen, Document syntax, Hashtable<String, String> predefs,Hashtable<String, String> valids)
+    public MultipleDEs createMultipleDEs(SyntaxRef sfref, char delimiter, String path, char predelim0, char predelim1, ParseCursor res, SyntaxModel syntax, Hashtable<String, String> predefs,Hashtable<String,List<String>> valids)
     {
         MultipleDEs ret=(MultipleDEs)getFreeObject();
         
         if (ret==null) {
             // HBCIUtils.log("creating new multi DE object",HBCIUtils.LOG_DEBUG);
-            ret=new MultipleDEs(sfref,delimiter,path,predelim0,predelim1,res,fullResLen,syntax,predefs,valids);
-            addToUsedPool(ret);
+            ret=new MultipleDEs(sfref,delimiter,path,predelim0,predelim1,res,syntax,predefs,valids);
         } else {
             // HBCIUtils.log("reusing multi DE object",HBCIUtils.LOG_DEBUG);
             try {
-                ret.init(sfref,delimiter,path,predelim0,predelim1,res,fullResLen,syntax,predefs,valids);
-                addToUsedPool(ret);
+                ret.init(sfref,delimiter,path,predelim0,predelim1,res,syntax,predefs,valids);
             } catch (RuntimeException e) {
                 addToFreePool(ret);
                 throw e;
@@ -69,19 +68,17 @@ public class MultipleDEsFactory
         return ret;
     }
 
-    public MultipleDEs createMultipleDEs(Node sfref, char delimiter,String path, Document syntax)
+    public MultipleDEs createMultipleDEs(SyntaxRef sfref, char delimiter,String path, SyntaxModel syntax)
     {
         MultipleDEs ret=(MultipleDEs)getFreeObject();
         
         if (ret==null) {
             // HBCIUtils.log("creating new multi DE object",HBCIUtils.LOG_DEBUG);
             ret=new MultipleDEs(sfref,delimiter,path,syntax);
-            addToUsedPool(ret);
         } else {
             // HBCIUtils.log("reusing multi DE object",HBCIUtils.LOG_DEBUG);
             try {
                 ret.init(sfref,delimiter,path,syntax);
-                addToUsedPool(ret);
             } catch (RuntimeException e) {
                 addToFreePool(ret);
                 throw e;
@@ -91,11 +88,8 @@ public class MultipleDEsFactory
         return ret;
     }
 
-    public void unuseObject(Object o)
+    protected void destroyObject(Object o)
     {
-        if (o!=null) {
-            ((MultipleDEs)o).destroy();
-            super.unuseObject(o);
-        }
+        ((MultipleDEs)o).destroy();
     }
 }
@@ -22,12 +22,13 @@
 package org.kapott.hbci.protocol.factory;
 
 import java.util.Hashtable;
+import java.util.List;
 
-import org.kapott.hbci.manager.HBCIUtils;
 import org.kapott.hbci.protocol.MultipleSFs;
+import org.kapott.hbci.protocol.ParseCursor;
+import org.kapott.hbci.protocol.syntax.SyntaxModel;
+import org.kapott.hbci.protocol.syntax.SyntaxRef;
 import org.kapott.hbci.tools.ObjectFactory;
-import org.w3c.dom.Document;
-import org.w3c.dom.Node;
 
 public class MultipleSFsFactory 
     extends ObjectFactory 
@@ -44,22 +45,20 @@ public class MultipleSFsFactory
     
     private MultipleSFsFactory()
     {
-    	super(Integer.parseInt(HBCIUtils.getParam("kernel.objpool.SF","128")));
+    	super(getPoolSize("SF",128));
     }
  
-    public MultipleSFs createMultipleSFs(Node sfref, String path, char predelim0, char predelim1, StringBuffer res, int fullResLen, Document syntax, Hashtable<String,String> predefs,Hashtable<String,String> valids)
+    public MultipleSFs createMultipleSFs(SyntaxRef sfref, String path, char predelim0, char predelim1, ParseCursor res, SyntaxModel syntax, Hashtable<String,String> predefs,Hashtable<String,List<String>> valids)
     {
         MultipleSFs ret=(MultipleSFs)getFreeObject();
         
         if (ret==null) {
             // HBCIUtils.log("creating new multi SF object",HBCIUtils.LOG_DEBUG);
-            ret=new MultipleSFs(sfref,path,predelim0,predelim1,res,fullResLen,syntax,predefs,valids);
-            addToUsedPool(ret);
+            ret=new MultipleSFs(sfref,path,predelim0,predelim1,res,syntax,predefs,valids);
         } else {
             // HBCIUtils.log("reusing multi SF object",HBCIUtils.LOG_DEBUG);
             try {
-                ret.init(sfref,path,predelim0,predelim1,res,fullResLen,syntax,predefs,valids);
-                addToUsedPool(ret);
+                ret.init(sfref,path,predelim0,predelim1,res,syntax,predefs,valids);
             } catch (RuntimeException e) {
                 addToFreePool(ret);
                 throw e;
@@ -69,19 +68,17 @@ public class MultipleSFsFactory
         return ret;
     }
 
-    public MultipleSFs createMultipleSFs(Node sfref, String path, Document syntax)
+    public MultipleSFs createMultipleSFs(SyntaxRef sfref, String path, SyntaxModel syntax)
     {
         MultipleSFs ret=(MultipleSFs)getFreeObject();
         
         if (ret==null) {
             // HBCIUtils.log("creating new multi SF object",HBCIUtils.LOG_DEBUG);
             ret=new MultipleSFs(sfref,path,syntax);
-            addToUsedPool(ret);
         } else {
             // HBCIUtils.log("reusing multi SF object",HBCIUtils.LOG_DEBUG);
             try {
                 ret.init(sfref,path,syntax);
-                addToUsedPool(ret);
             } catch (RuntimeException e) {
                 addToFreePool(ret);
                 throw e;
@@ -91,11 +88,8 @@ public class MultipleSFsFactory
         return ret;
     }
 
-    public void unuseObject(Object o)
+    protected void destroyObject(Object o)
     {
-        if (o!=null) {
-            ((MultipleSFs)o).destroy();
-            super.unuseObject(o);
-        }
+        ((MultipleSFs)o).destroy();
     }
 }
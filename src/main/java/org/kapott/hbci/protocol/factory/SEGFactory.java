@@ -22,11 +22,12 @@
 package org.kapott.hbci.protocol.factory;
 
 import java.util.Hashtable;
+import java.util.List;
 
-import org.kapott.hbci.manager.HBCIUtils;
+import org.kapott.hbci.protocol.ParseCursor;
 import org.kapott.hbci.protocol.SEG;
+import org.kapott.hbci.protocol.syntax.SyntaxModel;
 import org.kapott.hbci.tools.ObjectFactory;
-import org.w3c.dom.Document;
 
 public class SEGFactory 
     extends ObjectFactory 
@@ -43,22 +44,20 @@ public class SEGFactory
     
     private SEGFactory()
     {
-    	super(Integer.parseInt(HBCIUtils.getParam("kernel.objpool.SEG","128")));
+    	super(getPoolSize("SEG",128));
     }
     
-    public SEG createSEG(String type, String name, String path, char predelim, int idx, StringBuffer res, int fullResLen, Document syntax, Hashtable<String, String> predefs,Hashtable<String, String> valids)
+    public SEG createSEG(String type, String name, String path, char predelim, int idx, ParseCursor res, SyntaxModel syntax, Hashtable<String, String> predefs,Hashtable<String,List<String>> valids)
     {
         SEG ret=(SEG)getFreeObject();
         
         if (ret==null) {
             // HBCIUtils.log("creating new SEG object",HBCIUtils.LOG_DEBUG);
-            ret=new SEG(type,name,path,predelim,idx,res,fullResLen,syntax,predefs,valids);
-            addToUsedPool(ret);
+            ret=new SEG(type,name,path,predelim,idx,res,syntax,predefs,valids);
         } else {
             // HBCIUtils.log("reusing SEG object",HBCIUtils.LOG_DEBUG);
             try {
-                ret.init(type,name,path,predelim,idx,res,fullResLen,syntax,predefs,valids);
-                addToUsedPool(ret);
+                ret.init(type,name,path,predelim,idx,res,syntax,predefs,valids);
             } catch (RuntimeException e) {
                 addToFreePool(ret);
                 throw e;
@@ -68,19 +67,17 @@ public class SEGFactory
         return ret;
     }
     
-    public SEG createSEG(String type, String name, String path, int idx, Document syntax)
+    public SEG createSEG(String type, String name, String path, int idx, SyntaxModel syntax)
     {
         SEG ret=(SEG)getFreeObject();
         
         if (ret==null) {
             // HBCIUtils.log("creating new SEG object",HBCIUtils.LOG_DEBUG);
             ret=new SEG(type, name, path, idx, syntax);
-            addToUsedPool(ret);
         } else {
             // HBCIUtils.log("reusing SEG object",HBCIUtils.LOG_DEBUG);
             try {
                 ret.init(type, name, path, idx, syntax);
-                addToUsedPool(ret);
             } catch (RuntimeException e) {
                 addToFreePool(ret);
                 throw e;
@@ -90,11 +87,8 @@ public class SEGFactory
         return ret;
     }
     
-    public void unuseObject(Object o)
+    protected void destroyObject(Object o)
     {
-        if (o!=null) {
-            ((SEG)o).destroy();
-            super.unuseObject(o);
-        }
+        ((SEG)o).destroy();
     }
 }
@@ -22,11 +22,12 @@
 package org.kapott.hbci.protocol.factory;
 
 import java.util.Hashtable;
+import java.util.List;
 
-import org.kapott.hbci.manager.HBCIUtils;
+import org.kapott.hbci.protocol.ParseCursor;
 import org.kapott.hbci.protocol.SF;
+import org.kapott.hbci.protocol.syntax.SyntaxModel;
 import org.kapott.hbci.tools.ObjectFactory;
-import org.w3c.dom.Document;
 
 public class SFFactory 
     extends ObjectFactory 
@@ -43,22 +44,20 @@ public class SFFactory
     
     private SFFactory()
     {
-    	super(Integer.parseInt(HBCIUtils.getParam("kernel.objpool.SF","128")));
+    	super(getPoolSize("SF",128));
     }
     
-    public SF createSF(String type, String name, String path, char predelim, int idx, StringBuffer res, int fullResLen, Document syntax, Hashtable<String,String> predefs,Hashtable<String,String> valids)
+    public SF createSF(String type, String name, String path, char predelim, int idx, ParseCursor res, SyntaxModel syntax, Hashtable<String,String> predefs,Hashtable<String,List<String>> valids)
     {
         SF ret=(SF)getFreeObject();
         
         if (ret==null) {
             // HBCIUtils.log("creating new SF object",HBCIUtils.LOG_DEBUG);
-            ret=new SF(type,name,path,predelim,idx,res,fullResLen,syntax,predefs,valids);
-            addToUsedPool(ret);
+            ret=new SF(type,name,path,predelim,idx,res,syntax,predefs,valids);
         } else {
             // HBCIUtils.log("reusing SF object",HBCIUtils.LOG_DEBUG);
             try {
-                ret.init(type,name,path,predelim,idx,res,fullResLen,syntax,predefs,valids);
-                addToUsedPool(ret);
+                ret.init(type,name,path,predelim,idx,res,syntax,predefs,valids);
             } catch (RuntimeException e) {
                 addToFreePool(ret);
                 throw e;
@@ -68,19 +67,17 @@ public class SFFactory
         return ret;
     }
     
-    public SF createSF(String type, String name, String path, int idx, Document syntax)
+    public SF createSF(String type, String name, String path, int idx, SyntaxModel syntax)
     {
         SF ret=(SF)getFreeObject();
         
         if (ret==null) {
             // HBCIUtils.log("creating new SF object",HBCIUtils.LOG_DEBUG);
             ret=new SF(type, name, path, idx, syntax);
-            addToUsedPool(ret);
         } else {
             // HBCIUtils.log("reusing SF object",HBCIUtils.LOG_DEBUG);
             try {
                 ret.init(type, name, path, idx, syntax);
-                addToUsedPool(ret);
             } catch (RuntimeException e) {
                 addToFreePool(ret);
                 throw e;
@@ -90,11 +87,8 @@ public class SFFactory
         return ret;
     }
     
-    public void unuseObject(Object o)
+    protected void destroyObject(Object o)
     {
-        if (o!=null) {
-            ((SF)o).destroy();
-            super.unuseObject(o);
-        }
+        ((SF)o).destroy();
     }
 }
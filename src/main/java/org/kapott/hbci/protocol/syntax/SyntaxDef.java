@@ -0,0 +1,162 @@
+/**********************************************************************
+ *
+ * This file is part of HBCI4Java.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ **********************************************************************/
+
+package org.kapott.hbci.protocol.syntax;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Die Definition eines Syntax-Elements.
+ * Entspricht einem der Knoten "MSGdef", "SFdef", "SEGdef" oder "DEGdef"
+ * in der XML-Spezifikation. Die Instanzen sind unveraenderlich.
+ */
+public final class SyntaxDef
+{
+    private final String             id;
+    private final String             element;
+    private final boolean            needsRequestTag;
+    private final boolean            dontSign;
+    private final boolean            dontCrypt;
+    private final List<SyntaxRef>    refs;
+    private final List<SyntaxValue>  values;
+    private final List<SyntaxValids> valids;
+
+    /**
+     * ct.
+     * @param id die ID der Definition.
+     * @param element der Name des XML-Elements ("MSGdef", "SFdef", "SEGdef", "DEGdef").
+     * @param needsRequestTag true, wenn das Element nur erzeugt wird, wenn es explizit angefordert wurde.
+     * @param dontSign true, wenn die Nachricht nicht signiert wird.
+     * @param dontCrypt true, wenn die Nachricht nicht verschluesselt wird.
+     * @param refs die Kind-Elemente.
+     * @param values die vorgegebenen Werte.
+     * @param valids die Listen der gueltigen Werte.
+     */
+    public SyntaxDef(String id, String element, boolean needsRequestTag, boolean dontSign, boolean dontCrypt,
+                     List<SyntaxRef> refs, List<SyntaxValue> values, List<SyntaxValids> valids)
+    {
+        this.id              = id;
+        this.element         = element;
+        this.needsRequestTag = needsRequestTag;
+        this.dontSign        = dontSign;
+        this.dontCrypt       = dontCrypt;
+        this.refs            = Collections.unmodifiableList(new ArrayList<SyntaxRef>(refs));
+        this.values          = Collections.unmodifiableList(new ArrayList<SyntaxValue>(values));
+        this.valids          = Collections.unmodifiableList(new ArrayList<SyntaxValids>(valids));
+    }
+
+    /**
+     * Liefert die ID der Definition.
+     * @return die ID der Definition.
+     */
+    public String getId()
+    {
+        return this.id;
+    }
+
+    /**
+     * Liefert den Namen des XML-Elements, aus dem die Definition stammt.
+     * @return "MSGdef", "SFdef", "SEGdef" oder "DEGdef".
+     */
+    public String getElement()
+    {
+        return this.element;
+    }
+
+    /**
+     * Liefert true, wenn das Element nur erzeugt werden darf, wenn es explizit
+     * mit dem Wert "requested" angefordert wurde.
+     * @return true, wenn ein Request-Tag noetig ist.
+     */
+    public boolean isNeedsRequestTag()
+    {
+        return this.needsRequestTag;
+    }
+
+    /**
+     * Liefert true, wenn die Nachricht nicht signiert wird.
+     * @return true, wenn die Nachricht nicht signiert wird.
+     */
+    public boolean isDontSign()
+    {
+        return this.dontSign;
+    }
+
+    /**
+     * Liefert true, wenn die Nachricht nicht verschluesselt wird.
+     * @return true, wenn die Nachricht nicht verschluesselt wird.
+     */
+    public boolean isDontCrypt()
+    {
+        return this.dontCrypt;
+    }
+
+    /**
+     * Liefert die Kind-Elemente in der Reihenfolge der Spezifikation.
+     * @return die unveraenderliche Liste der Kind-Elemente.
+     */
+    public List<SyntaxRef> getRefs()
+    {
+        return this.refs;
+    }
+
+    /**
+     * Liefert die vorgegebenen Werte.
+     * @return die unveraenderliche Liste der vorgegebenen Werte.
+     */
+    public List<SyntaxValue> getValues()
+    {
+        return this.values;
+    }
+
+    /**
+     * Liefert den vorgegebenen Wert fuer den angegebenen relativen Pfad.
+     * @param path der relative Pfad.
+     * @return der Wert oder NULL, wenn keiner vorgegeben ist.
+     */
+    public String getValue(String path)
+    {
+        for (SyntaxValue v:this.values)
+        {
+            if (v.getPath().equals(path))
+                return v.getValue();
+        }
+        return null;
+    }
+
+    /**
+     * Liefert die Listen der gueltigen Werte.
+     * @return die unveraenderliche Liste der gueltigen Werte.
+     */
+    public List<SyntaxValids> getValids()
+    {
+        return this.valids;
+    }
+
+    /**
+     * @see java.lang.Object#toString()
+     */
+    public String toString()
+    {
+        return this.element + "[" + this.id + "]";
+    }
+}
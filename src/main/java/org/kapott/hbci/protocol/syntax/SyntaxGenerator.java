@@ -0,0 +1,101 @@
+/**********************************************************************
+ *
+ * This file is part of HBCI4Java.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ **********************************************************************/
+
+package org.kapott.hbci.protocol.syntax;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import org.w3c.dom.Document;
+
+/**
+ * Erzeugt beim Build die Binaerform der Syntax-Spezifikationen.
+ * Das Programm wird nur beim Build ausgefuehrt - im Maven-Build per
+ * TestSyntaxGenerator vor den eigentlichen Tests (siehe pom.xml, "compile-syntax"),
+ * im Ant-Build per Target "syntax" - und ist nicht im Jar enthalten. Es liest alle hbci-*.xml
+ * aus dem angegebenen Verzeichnis, kompiliert sie und schreibt die Binaerform
+ * als hbci-*.syntax in das Ausgabe-Verzeichnis der Klassen.
+ */
+public class SyntaxGenerator
+{
+    /**
+     * Erzeugt die Binaerform.
+     * @param args Verzeichnis der XML-Dateien und Ausgabe-Verzeichnis.
+     * @throws Exception wenn eine der Dateien nicht kompiliert werden konnte.
+     */
+    public static void main(String[] args) throws Exception
+    {
+        if (args.length != 2)
+            throw new IllegalArgumentException("usage: SyntaxGenerator <xml-dir> <output-dir>");
+
+        File[] files = new File(args[0]).listFiles(new FilenameFilter() {
+            public boolean accept(File d, String name)
+            {
+                return name.startsWith("hbci-") && name.endsWith(".xml");
+            }
+        });
+
+        if (files == null)
+            throw new IOException("directory " + args[0] + " not found");
+
+        File target = new File(args[1]);
+        target.mkdirs();
+        for (File f:files)
+        {
+            String name = f.getName();
+            name = name.substring(0,name.length() - 4) + SyntaxSerializer.SUFFIX;
+            generate(f,new File(target,name));
+            System.out.println("generated " + name + " from " + f.getName());
+        }
+    }
+
+    /**
+     * Kompiliert eine XML-Datei und schreibt die Binaerform.
+     * @param xml die XML-Datei.
+     * @param target die zu erzeugende Datei.
+     * @throws Exception
+     */
+    private static void generate(File xml, File target) throws Exception
+    {
+        DocumentBuilderFactory dbf = DocumentBuilderFactory.newInstance();
+        dbf.setIgnoringComments(true);
+        dbf.setValidating(true);
+        Document doc = dbf.newDocumentBuilder().parse(xml);
+
+        SyntaxModel model = SyntaxModel.compile(doc);
+        long crc = SyntaxSerializer.checksum(new FileInputStream(xml));
+
+        OutputStream os = new FileOutputStream(target);
+        try
+        {
+            SyntaxSerializer.write(model,crc,os);
+        }
+        finally
+        {
+            os.close();
+        }
+    }
+}
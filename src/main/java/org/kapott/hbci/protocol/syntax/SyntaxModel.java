@@ -0,0 +1,226 @@
+/**********************************************************************
+ *
+ * This file is part of HBCI4Java.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ **********************************************************************/
+
+package org.kapott.hbci.protocol.syntax;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+/**
+ * Die kompilierte Form einer HBCI-Syntax-Spezifikation (hbci-*.xml).
+ * Das XML-Dokument wird einmalig in unveraenderliche Objekte uebersetzt.
+ * Beim Erzeugen und Parsen von Nachrichten wird danach nur noch mit diesem
+ * Modell gearbeitet und nicht mehr mit dem DOM-Baum. Da das Modell nach
+ * dem Erzeugen nicht mehr geaendert wird, kann es von beliebig vielen
+ * Threads und Handlern gemeinsam verwendet werden.
+ */
+public final class SyntaxModel
+{
+    /**
+     * Die XML-Elemente, die eine Definition enthalten.
+     */
+    private final static String[] DEF_ELEMENTS = new String[]{"MSGdef","SFdef","SEGdef","DEGdef"};
+
+    private final Map<String,SyntaxDef> defs;
+    private volatile Map<String,List<String>> gvs;
+
+    /**
+     * ct.
+     * @param defs die Definitionen.
+     */
+    public SyntaxModel(Collection<SyntaxDef> defs)
+    {
+        Map<String,SyntaxDef> map = new HashMap<String,SyntaxDef>(defs.size() * 2);
+        for (SyntaxDef def:defs)
+        {
+            map.put(def.getId(),def);
+        }
+        this.defs = Collections.unmodifiableMap(map);
+    }
+
+    /**
+     * Liefert die Definition mit der angegebenen ID.
+     * @param id die ID.
+     * @return die Definition oder NULL, wenn sie nicht existiert.
+     */
+    public SyntaxDef getDef(String id)
+    {
+        return this.defs.get(id);
+    }
+
+    /**
+     * Liefert alle Definitionen.
+     * @return die unveraenderliche Liste aller Definitionen.
+     */
+    public Collection<SyntaxDef> getDefs()
+    {
+        return this.defs.values();
+    }
+
+    /**
+     * Liefert die Lowlevel-Namen aller Geschaeftsvorfaelle mit ihren Versionen.
+     * Sie stammen aus der Segmentfolge "GV" und werden beim ersten Aufruf ermittelt.
+     * @return unveraenderliche Map mit dem Lowlevel-Namen ("Saldo") als Schluessel
+     * und der Liste der Versionen ("5", "6", ...) als Wert.
+     */
+    public Map<String,List<String>> getLowlevelGVs()
+    {
+        // Kann parallel mehrfach ermittelt werden, das Ergebnis ist immer gleich
+        Map<String,List<String>> result = this.gvs;
+        if (result != null)
+            return result;
+
+        Map<String,List<String>> map = new LinkedHashMap<String,List<String>>();
+        SyntaxDef gv = this.getDef("GV");
+        if (gv != null)
+        {
+            for (SyntaxRef ref:gv.getRefs())
+            {
+                String type = ref.getType();
+                int pos = type.length() - 1;
+                while (pos >= 0 && type.charAt(pos) >= '0' && type.charAt(pos) <= '9')
+                {
+                    pos--;
+                }
+
+                String name = type.substring(0,pos + 1);
+                List<String> versions = map.get(name);
+                if (versions == null)
+                {
+                    versions = new ArrayList<String>();
+                    map.put(name,versions);
+                }
+                versions.add(type.substring(pos + 1));
+            }
+        }
+
+        for (Map.Entry<String,List<String>> e:map.entrySet())
+        {
+            e.setValue(Collections.unmodifiableList(e.getValue()));
+        }
+        result = Collections.unmodifiableMap(map);
+        this.gvs = result;
+        return result;
+    }
+
+    /**
+     * Uebersetzt das XML-Dokument mit der Syntax-Spezifikation.
+     * @param syntax das XML-Dokument.
+     * @return das kompilierte Modell.
+     */
+    public static SyntaxModel compile(Document syntax)
+    {
+        List<SyntaxDef> result = new ArrayList<SyntaxDef>();
+
+        for (String name:DEF_ELEMENTS)
+        {
+            NodeList list = syntax.getElementsByTagName(name);
+            int len = list.getLength();
+            for (int i=0;i<len;i++)
+            {
+                result.add(compileDef((Element) list.item(i)));
+            }
+        }
+
+        return new SyntaxModel(result);
+    }
+
+    /**
+     * Uebersetzt eine einzelne Definition.
+     * @param def das XML-Element mit der Definition.
+     * @return die Definition.
+     */
+    private static SyntaxDef compileDef(Element def)
+    {
+        List<SyntaxRef> refs     = new ArrayList<SyntaxRef>();
+        List<SyntaxValue> values = new ArrayList<SyntaxValue>();
+        List<SyntaxValids> valids = new ArrayList<SyntaxValids>();
+
+        // Der Index zaehlt - wie frueher beim Durchlaufen des DOM-Baums - alle
+        // Element-Knoten unterhalb der Definition.
+        int index = 0;
+        for (Node child=def.getFirstChild();child!=null;child=child.getNextSibling())
+        {
+            if (child.getNodeType() != Node.ELEMENT_NODE)
+                continue;
+
+            Element e = (Element) child;
+            String nodeName = e.getNodeName();
+
+            if (nodeName.equals("value"))
+            {
+                values.add(new SyntaxValue(e.getAttribute("path"),e.getFirstChild().getNodeValue()));
+            }
+            else if (nodeName.equals("valids"))
+            {
+                List<String> list = new ArrayList<String>();
+                NodeList validvalues = e.getElementsByTagName("validvalue");
+                int len = validvalues.getLength();
+                for (int i=0;i<len;i++)
+                {
+                    list.add(validvalues.item(i).getFirstChild().getNodeValue());
+                }
+                valids.add(new SyntaxValids(e.getAttribute("path"),list));
+            }
+            else
+            {
+                refs.add(new SyntaxRef(SyntaxRef.Kind.valueOf(nodeName),
+                                       e.getAttribute("type"),
+                                       e.getAttribute("name"),
+                                       getInt(e,"minnum",1),
+                                       getInt(e,"maxnum",1),
+                                       getInt(e,"minsize",1),
+                                       getInt(e,"maxsize",0),
+                                       index));
+            }
+            index++;
+        }
+
+        return new SyntaxDef(def.getAttribute("id"),
+                             def.getNodeName(),
+                             "1".equals(def.getAttribute("needsRequestTag")),
+                             "1".equals(def.getAttribute("dontsign")),
+                             "1".equals(def.getAttribute("dontcrypt")),
+                             refs,values,valids);
+    }
+
+    /**
+     * Liest ein numerisches Attribut.
+     * @param e das XML-Element.
+     * @param name der Name des Attributs.
+     * @param def Default-Wert, wenn das Attribut fehlt.
+     * @return der Wert des Attributs.
+     */
+    private static int getInt(Element e, String name, int def)
+    {
+        String s = e.getAttribute(name);
+        return s.length() != 0 ? Integer.parseInt(s) : def;
+    }
+}
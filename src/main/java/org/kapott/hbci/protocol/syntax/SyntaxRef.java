@@ -0,0 +1,161 @@
+/**********************************************************************
+ *
+ * This file is part of HBCI4Java.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ **********************************************************************/
+
+package org.kapott.hbci.protocol.syntax;
+
+/**
+ * Referenz auf ein Kind-Element innerhalb einer Syntax-Definition.
+ * Entspricht einem der Knoten "DE", "DEG", "SEG" oder "SF" innerhalb eines
+ * "MSGdef", "SFdef", "SEGdef" oder "DEGdef" in der XML-Spezifikation.
+ * Die Instanzen sind unveraenderlich und koennen daher von beliebig vielen
+ * Threads gleichzeitig verwendet werden.
+ */
+public final class SyntaxRef
+{
+    /**
+     * Die Art des referenzierten Elements.
+     */
+    public enum Kind
+    {
+        /** Datenelement. */
+        DE,
+
+        /** Datenelementgruppe. */
+        DEG,
+
+        /** Segment. */
+        SEG,
+
+        /** Segmentfolge. */
+        SF,
+    }
+
+    private final Kind   kind;
+    private final String type;
+    private final String name;
+    private final int    minnum;
+    private final int    maxnum;
+    private final int    minsize;
+    private final int    maxsize;
+    private final int    index;
+
+    /**
+     * ct.
+     * @param kind die Art des Elements.
+     * @param type der Typ. Bei DEGs, SEGs und SFs die ID der Definition, bei DEs der Datentyp.
+     * @param name der Name. Wenn er leer ist, wird der Typ verwendet.
+     * @param minnum Mindestanzahl des Elements.
+     * @param maxnum Maximalanzahl des Elements. 0 steht fuer beliebig viele.
+     * @param minsize nur bei DEs: Mindestlaenge des Wertes.
+     * @param maxsize nur bei DEs: Maximallaenge des Wertes. 0 steht fuer unbegrenzt.
+     * @param index die Position des Elements innerhalb der Eltern-Definition.
+     */
+    public SyntaxRef(Kind kind, String type, String name, int minnum, int maxnum, int minsize, int maxsize, int index)
+    {
+        this.kind    = kind;
+        this.type    = type;
+        this.name    = (name == null || name.length() == 0) ? type : name;
+        this.minnum  = minnum;
+        this.maxnum  = maxnum;
+        this.minsize = minsize;
+        this.maxsize = maxsize;
+        this.index   = index;
+    }
+
+    /**
+     * Liefert die Art des Elements.
+     * @return die Art des Elements.
+     */
+    public Kind getKind()
+    {
+        return this.kind;
+    }
+
+    /**
+     * Liefert den Typ des Elements.
+     * @return der Typ des Elements.
+     */
+    public String getType()
+    {
+        return this.type;
+    }
+
+    /**
+     * Liefert den Namen des Elements.
+     * @return der Name des Elements. Ist im XML kein Name angegeben, wird der Typ geliefert.
+     */
+    public String getName()
+    {
+        return this.name;
+    }
+
+    /**
+     * Liefert die Mindestanzahl.
+     * @return die Mindestanzahl.
+     */
+    public int getMinNum()
+    {
+        return this.minnum;
+    }
+
+    /**
+     * Liefert die Maximalanzahl.
+     * @return die Maximalanzahl. 0 steht fuer beliebig viele.
+     */
+    public int getMaxNum()
+    {
+        return this.maxnum;
+    }
+
+    /**
+     * Liefert die Mindestlaenge des Wertes.
+     * @return die Mindestlaenge des Wertes. Nur bei DEs relevant.
+     */
+    public int getMinSize()
+    {
+        return this.minsize;
+    }
+
+    /**
+     * Liefert die Maximallaenge des Wertes.
+     * @return die Maximallaenge des Wertes. Nur bei DEs relevant.
+     */
+    public int getMaxSize()
+    {
+        return this.maxsize;
+    }
+
+    /**
+     * Liefert die Position des Elements innerhalb der Eltern-Definition.
+     * @return die Position des Elements.
+     */
+    public int getIndex()
+    {
+        return this.index;
+    }
+
+    /**
+     * @see java.lang.Object#toString()
+     */
+    public String toString()
+    {
+        return this.kind + "[" + this.name + ":" + this.type + "]";
+    }
+}
@@ -0,0 +1,307 @@
+/**********************************************************************
+ *
+ * This file is part of HBCI4Java.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ **********************************************************************/
+
+package org.kapott.hbci.protocol.syntax;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.JarURLConnection;
+import java.net.URL;
+import java.net.URLConnection;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.jar.JarEntry;
+import java.util.zip.CRC32;
+
+/**
+ * Liest und schreibt die Binaerform einer kompilierten Syntax.
+ * Die Binaerform wird beim Build aus den hbci-*.xml erzeugt (siehe {@link SyntaxGenerator})
+ * und zur Laufzeit anstelle des XML geladen. Damit entfaellt beim Start das Parsen
+ * und Validieren des XML.
+ * Die Datei enthaelt die Pruefsumme der XML-Datei, aus der sie erzeugt wurde.
+ * Passt die Pruefsumme nicht mehr zur XML-Datei, wird die Binaerform ignoriert.
+ * Das XML bleibt damit das fuehrende Format.
+ * Als Pruefsumme dient die CRC32 der XML-Datei. Das ist die gleiche Pruefsumme,
+ * die auch im Jar zu jedem Eintrag gespeichert ist. Liegt das XML im Jar, muss
+ * es zur Laufzeit daher nicht gelesen werden (siehe {@link #checksum(URL)}).
+ *
+ * Aufbau: Magic, Format-Version, Pruefsumme, String-Tabelle, Definitionen.
+ * Alle Strings werden nur einmal in der String-Tabelle gespeichert und
+ * danach ueber ihren Index referenziert.
+ */
+public final class SyntaxSerializer
+{
+    /**
+     * Dateiendung der Binaerform.
+     */
+    public final static String SUFFIX = ".syntax";
+
+    private final static int MAGIC   = 0x48424353; // "HBCS"
+    private final static int VERSION = 1;
+
+    private final static int FLAG_NEEDS_REQUEST_TAG = 1;
+    private final static int FLAG_DONT_SIGN         = 2;
+    private final static int FLAG_DONT_CRYPT        = 4;
+
+    /**
+     * ct.
+     */
+    private SyntaxSerializer()
+    {
+    }
+
+    /**
+     * Berechnet die Pruefsumme der XML-Datei.
+     * @param is Stream mit der XML-Datei. Er wird nach dem Lesen geschlossen.
+     * @return die Pruefsumme.
+     * @throws IOException
+     */
+    public static long checksum(InputStream is) throws IOException
+    {
+        try
+        {
+            CRC32 crc = new CRC32();
+            byte[] buf = new byte[8192];
+            int read = 0;
+            while ((read = is.read(buf)) != -1)
+            {
+                crc.update(buf,0,read);
+            }
+            return crc.getValue();
+        }
+        finally
+        {
+            is.close();
+        }
+    }
+
+    /**
+     * Liefert die Pruefsumme der XML-Datei.
+     * Liegt die Datei in einem Jar, wird die dort gespeicherte CRC32 des
+     * Eintrages verwendet, ohne die Datei selbst zu lesen. Andernfalls (z.Bsp.
+     * bei einem entpackten Classpath) wird die Datei gelesen.
+     * @param url die URL der XML-Datei.
+     * @return die Pruefsumme.
+     * @throws IOException
+     */
+    public static long checksum(URL url) throws IOException
+    {
+        URLConnection conn = url.openConnection();
+        if (conn instanceof JarURLConnection)
+        {
+            JarEntry entry = ((JarURLConnection) conn).getJarEntry();
+            if (entry != null && entry.getCrc() != -1)
+                return entry.getCrc();
+        }
+        return checksum(conn.getInputStream());
+    }
+
+    /**
+     * Schreibt die Binaerform der Syntax.
+     * @param model die Syntax.
+     * @param checksum die Pruefsumme der XML-Datei.
+     * @param os der Stream, in den geschrieben wird. Er wird nicht geschlossen.
+     * @throws IOException
+     */
+    public static void write(SyntaxModel model, long checksum, OutputStream os) throws IOException
+    {
+        // Sortieren, damit die Datei bei jedem Build gleich aussieht
+        List<SyntaxDef> defs = new ArrayList<SyntaxDef>(model.getDefs());
+        Collections.sort(defs,new Comparator<SyntaxDef>() {
+            public int compare(SyntaxDef o1, SyntaxDef o2)
+            {
+                return o1.getId().compareTo(o2.getId());
+            }
+        });
+
+        // String-Tabelle aufbauen
+        Map<String,Integer> strings = new LinkedHashMap<String,Integer>();
+        for (SyntaxDef def:defs)
+        {
+            index(strings,def.getId());
+            index(strings,def.getElement());
+            for (SyntaxRef ref:def.getRefs())
+            {
+                index(strings,ref.getType());
+                index(strings,ref.getName());
+            }
+            for (SyntaxValue v:def.getValues())
+            {
+                index(strings,v.getPath());
+                index(strings,v.getValue());
+            }
+            for (SyntaxValids v:def.getValids())
+            {
+                index(strings,v.getPath());
+                for (String s:v.getValues())
+                    index(strings,s);
+            }
+        }
+
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(os));
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeLong(checksum);
+
+        out.writeInt(strings.size());
+        for (String s:strings.keySet())
+        {
+            out.writeUTF(s);
+        }
+
+        out.writeInt(defs.size());
+        for (SyntaxDef def:defs)
+        {
+            out.writeInt(strings.get(def.getId()));
+            out.writeInt(strings.get(def.getElement()));
+
+            int flags = 0;
+            if (def.isNeedsRequestTag()) flags |= FLAG_NEEDS_REQUEST_TAG;
+            if (def.isDontSign())        flags |= FLAG_DONT_SIGN;
+            if (def.isDontCrypt())       flags |= FLAG_DONT_CRYPT;
+            out.writeByte(flags);
+
+            out.writeInt(def.getRefs().size());
+            for (SyntaxRef ref:def.getRefs())
+            {
+                out.writeByte(ref.getKind().ordinal());
+                out.writeInt(strings.get(ref.getType()));
+                out.writeInt(strings.get(ref.getName()));
+                out.writeInt(ref.getMinNum());
+                out.writeInt(ref.getMaxNum());
+                out.writeInt(ref.getMinSize());
+                out.writeInt(ref.getMaxSize());
+                out.writeInt(ref.getIndex());
+            }
+
+            out.writeInt(def.getValues().size());
+            for (SyntaxValue v:def.getValues())
+            {
+                out.writeInt(strings.get(v.getPath()));
+                out.writeInt(strings.get(v.getValue()));
+            }
+
+            out.writeInt(def.getValids().size());
+            for (SyntaxValids v:def.getValids())
+            {
+                out.writeInt(strings.get(v.getPath()));
+                out.writeInt(v.getValues().size());
+                for (String s:v.getValues())
+                    out.writeInt(strings.get(s));
+            }
+        }
+        out.flush();
+    }
+
+    /**
+     * Liest die Binaerform der Syntax.
+     * @param is der Stream mit der Binaerform. Er wird nicht geschlossen.
+     * @param checksum die Pruefsumme der aktuellen XML-Datei.
+     * @return die Syntax oder NULL, wenn die Binaerform nicht zur XML-Datei oder
+     * nicht zu dieser Version von HBCI4Java passt.
+     * @throws IOException
+     */
+    public static SyntaxModel read(InputStream is, long checksum) throws IOException
+    {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(is));
+        if (in.readInt() != MAGIC || in.readInt() != VERSION || in.readLong() != checksum)
+            return null;
+
+        String[] strings = new String[in.readInt()];
+        for (int i=0;i<strings.length;i++)
+        {
+            strings[i] = in.readUTF();
+        }
+
+        SyntaxRef.Kind[] kinds = SyntaxRef.Kind.values();
+
+        int count = in.readInt();
+        List<SyntaxDef> defs = new ArrayList<SyntaxDef>(count);
+        for (int i=0;i<count;i++)
+        {
+            String id      = strings[in.readInt()];
+            String element = strings[in.readInt()];
+            int flags      = in.readByte();
+
+            int n = in.readInt();
+            List<SyntaxRef> refs = new ArrayList<SyntaxRef>(n);
+            for (int k=0;k<n;k++)
+            {
+                refs.add(new SyntaxRef(kinds[in.readByte()],
+                                       strings[in.readInt()],
+                                       strings[in.readInt()],
+                                       in.readInt(),
+                                       in.readInt(),
+                                       in.readInt(),
+                                       in.readInt(),
+                                       in.readInt()));
+            }
+
+            n = in.readInt();
+            List<SyntaxValue> values = new ArrayList<SyntaxValue>(n);
+            for (int k=0;k<n;k++)
+            {
+                values.add(new SyntaxValue(strings[in.readInt()],strings[in.readInt()]));
+            }
+
+            n = in.readInt();
+            List<SyntaxValids> valids = new ArrayList<SyntaxValids>(n);
+            for (int k=0;k<n;k++)
+            {
+                String path = strings[in.readInt()];
+                int m = in.readInt();
+                List<String> list = new ArrayList<String>(m);
+                for (int j=0;j<m;j++)
+                {
+                    list.add(strings[in.readInt()]);
+                }
+                valids.add(new SyntaxValids(path,list));
+            }
+
+            defs.add(new SyntaxDef(id,element,
+                                   (flags & FLAG_NEEDS_REQUEST_TAG) != 0,
+                                   (flags & FLAG_DONT_SIGN) != 0,
+                                   (flags & FLAG_DONT_CRYPT) != 0,
+                                   refs,values,valids));
+        }
+
+        return new SyntaxModel(defs);
+    }
+
+    /**
+     * Nimmt den String in die String-Tabelle auf, falls er noch nicht enthalten ist.
+     * @param strings die String-Tabelle.
+     * @param s der String.
+     */
+    private static void index(Map<String,Integer> strings, String s)
+    {
+        if (!strings.containsKey(s))
+            strings.put(s,strings.size());
+    }
+}
@@ -0,0 +1,64 @@
+/**********************************************************************
+ *
+ * This file is part of HBCI4Java.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ **********************************************************************/
+
+package org.kapott.hbci.protocol.syntax;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Liste der gueltigen Werte fuer ein Datenelement.
+ * Entspricht einem Knoten "valids" mit seinen "validvalue"-Kindern.
+ */
+public final class SyntaxValids
+{
+    private final String       path;
+    private final List<String> values;
+
+    /**
+     * ct.
+     * @param path der Pfad des Datenelements relativ zur Definition.
+     * @param values die gueltigen Werte.
+     */
+    public SyntaxValids(String path, List<String> values)
+    {
+        this.path   = path;
+        this.values = Collections.unmodifiableList(new ArrayList<String>(values));
+    }
+
+    /**
+     * Liefert den Pfad des Datenelements relativ zur Definition.
+     * @return der relative Pfad.
+     */
+    public String getPath()
+    {
+        return this.path;
+    }
+
+    /**
+     * Liefert die unveraenderliche Liste der gueltigen Werte.
+     * @return die gueltigen Werte.
+     */
+    public List<String> getValues()
+    {
+        return this.values;
+    }
+}
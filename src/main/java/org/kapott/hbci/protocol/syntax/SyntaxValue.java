@@ -0,0 +1,60 @@
+/**********************************************************************
+ *
+ * This file is part of HBCI4Java.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ **********************************************************************/
+
+package org.kapott.hbci.protocol.syntax;
+
+/**
+ * Ein in der Syntax-Definition fest vorgegebener Wert.
+ * Entspricht einem Knoten "value".
+ */
+public final class SyntaxValue
+{
+    private final String path;
+    private final String value;
+
+    /**
+     * ct.
+     * @param path der Pfad des Datenelements relativ zur Definition.
+     * @param value der Wert.
+     */
+    public SyntaxValue(String path, String value)
+    {
+        this.path  = path;
+        this.value = value;
+    }
+
+    /**
+     * Liefert den Pfad des Datenelements relativ zur Definition.
+     * @return der relative Pfad.
+     */
+    public String getPath()
+    {
+        return this.path;
+    }
+
+    /**
+     * Liefert den vorgegebenen Wert.
+     * @return der Wert.
+     */
+    public String getValue()
+    {
+        return this.value;
+    }
+}
@@ -23,7 +23,6 @@ package org.kapott.hbci.rewrite;
 
 import org.kapott.hbci.manager.HBCIUtils;
 import org.kapott.hbci.manager.MsgGen;
-import org.kapott.hbci.status.HBCIMsgStatus;
 
 /** <p>Korrektur fehlender HBCI-Versionsnummern. Einige HBCI-Server
     übermitteln in Fehlernachrichten, die "globale" Fehler in der
@@ -38,29 +37,29 @@ import org.kapott.hbci.status.HBCIMsgStatus;
     werden (siehe dazu Beschreibung in 
     {@link org.kapott.hbci.manager.HBCIUtils})</p>*/
 public class RHBCIVersion 
-    extends Rewrite
+    extends SegmentRewrite
 {
-    public String incomingCrypted(String st,MsgGen gen)
+    public Stage createCryptedStage(MsgGen gen,final RewriteContext ctx)
     {
-        int idx=st.indexOf("+");
-        if (idx!=-1) { // + after SegHead found
-            idx=st.indexOf("+",idx+1);
-            if (idx!=-1) { // + after msgsize found
-                int idx2=st.indexOf("+",idx+1);
-                if (idx2!=-1) { // + after hbciversion found
-                    HBCIMsgStatus msgStatus=(HBCIMsgStatus)getData("msgStatus");
-                    String        msgName=(String)getData("msgName");
-                    String        version=st.substring(idx+1,idx2);
-                    String        origVersion=msgStatus.getData().getProperty("orig_"+msgName+".MsgHead.hbciversion");
-                    
-                    if (version.length()==0 || version.equals("0")) {
+        return new Stage() {
+            private boolean first=true;
+            
+            public void process(Segment seg,Sink out)
+            {
+                // die hbciversion steht im nachrichtenkopf, also im ersten segment
+                if (first) {
+                    first=false;
+                    String version=seg.getDE(2);
+                    if (version!=null && seg.getDECount()>3 && (version.length()==0 || version.equals("0"))) {
+                        String origVersion=ctx.getOrigValue("MsgHead.hbciversion");
+                        
                         HBCIUtils.log("received HBCI version of message ('"+version+"') is incorrect - replacing it with "+origVersion,
                                       HBCIUtils.LOG_WARN);
-                        st=new StringBuffer(st).replace(idx+1,idx2,origVersion).toString();
+                        seg=seg.setDE(2,origVersion);
                     }
                 }
+                out.write(seg);
             }
-        }
-        return st;
+        };
     }
 }
@@ -25,20 +25,22 @@ import org.kapott.hbci.manager.HBCIUtils;
 import org.kapott.hbci.manager.MsgGen;
 
 public class RInvalidSegment
-    extends Rewrite
+    extends SegmentRewrite
 {
-    // TODO: msgsize muss angepasst werden
-    public String incomingClearText(String st,MsgGen gen) 
-    {
-        StringBuffer sb=new StringBuffer(st);
-
-        int idx=sb.indexOf("'IIDIA:");
-        if (idx!=-1) {
-            int idx2=sb.indexOf("'",idx+1);
-            HBCIUtils.log("removing invalid segment '"+sb.substring(idx+1,idx2+1)+"'",HBCIUtils.LOG_WARN);
-            sb.delete(idx+1,idx2+1);
+    private final static Stage stage=new Stage() {
+        public void process(Segment seg,Sink out)
+        {
+            if (seg.getCode().equals("IIDIA")) {
+                HBCIUtils.log("removing invalid segment '"+seg+"'",HBCIUtils.LOG_WARN);
+                return;
+            }
+            out.write(seg);
         }
+    };
 
-        return sb.toString();
+    // TODO: msgsize muss angepasst werden
+    public Stage createClearTextStage(MsgGen gen,RewriteContext ctx) 
+    {
+        return stage;
     }
 }
@@ -35,9 +35,9 @@ import org.kapott.hbci.protocol.factory.MSGFactory;
 public class RInvalidSuppHBCIVersion extends Rewrite
 {
   /**
-   * @see org.kapott.hbci.rewrite.Rewrite#incomingClearText(java.lang.String, org.kapott.hbci.manager.MsgGen)
+   * @see org.kapott.hbci.rewrite.Rewrite#incomingClearText(java.lang.String, org.kapott.hbci.manager.MsgGen, org.kapott.hbci.rewrite.RewriteContext)
    */
-  public String incomingClearText(String st, MsgGen gen)
+  public String incomingClearText(String st, MsgGen gen, RewriteContext ctx)
   {
     // Wir packen das Rewrite in ein try/catch, weil wir hier keine reinen String-Operationen
     // verwenden und nicht 100%ig sichergestellt ist, ob die Nachricht zu diesem Zeitpunkt schon
@@ -49,7 +49,7 @@ public class RInvalidSuppHBCIVersion extends Rewrite
     try
     {
       // empfangene Nachricht parsen, dabei die validvalues-Überprüfung weglassen
-      String myMsgName = (String) getData("msgName") + "Res";
+      String myMsgName = ctx.getMsgName() + "Res";
       msg = MSGFactory.getInstance().createMSG(myMsgName, st, st.length(), gen, MSG.DONT_CHECK_SEQ, MSG.DONT_CHECK_VALIDS);
 
       // in einer Schleife durch alle SuppVersions-Datensätze laufen
@@ -24,39 +24,39 @@ package org.kapott.hbci.rewrite;
 import org.kapott.hbci.exceptions.HBCI_Exception;
 import org.kapott.hbci.manager.HBCIUtils;
 import org.kapott.hbci.manager.MsgGen;
-import org.kapott.hbci.status.HBCIMsgStatus;
 
 public class RMissingMsgRef
-    extends Rewrite
+    extends SegmentRewrite
 {
     // TODO: msgsize muss angepasst werden
-    public String incomingCrypted(String st, MsgGen gen) 
+    public Stage createCryptedStage(MsgGen gen,final RewriteContext ctx) 
     {
-        int idx=st.indexOf("'");
-        if (idx!=-1) {
-            try {
-                String msghead_st=st.substring(0,idx);
-                int plusidx=0;
-                for (int i=0;i<5;i++)
-                    plusidx=msghead_st.indexOf("+",plusidx+1);
-                if (plusidx==-1) {
-                    HBCIUtils.log("MsgRef is missing, adding it", HBCIUtils.LOG_WARN);
-                    String[] des={"dialogid","msgnum"};
-                    for (int i=0;i<2;i++) {
-                        HBCIMsgStatus msgStatus=(HBCIMsgStatus)getData("msgStatus");
-                        String        msgName=(String)getData("msgName");
-                        String        temp=(msgStatus.getData().getProperty("orig_"+msgName+".MsgHead."+des[i]));
-                        HBCIUtils.log("setting MsgRef."+des[i]+" to "+temp,HBCIUtils.LOG_WARN);
-                        msghead_st+=(i==0?"+":":");
-                        msghead_st+=temp;
+        return new Stage() {
+            private boolean first=true;
+            
+            public void process(Segment seg,Sink out)
+            {
+                // die MsgRef ist das sechste datenelement im nachrichtenkopf
+                if (first && seg.getDECount()<6) {
+                    try {
+                        HBCIUtils.log("MsgRef is missing, adding it", HBCIUtils.LOG_WARN);
+                        StringBuffer  msgnum=new StringBuffer(seg.getDE(seg.getDECount()-1));
+                        String[]      des={"dialogid","msgnum"};
+                        for (int i=0;i<2;i++) {
+                            String temp=ctx.getOrigValue("MsgHead."+des[i]);
+                            HBCIUtils.log("setting MsgRef."+des[i]+" to "+temp,HBCIUtils.LOG_WARN);
+                            msgnum.append(i==0?"+":":");
+                            msgnum.append(temp);
+                        }
+                        seg=seg.setDE(seg.getDECount()-1,msgnum.toString());
+                    } catch (Exception ex) {
+                        throw new HBCI_Exception("*** error while fixing missing MsgRef",ex);
                     }
-                    st=new StringBuffer(st).replace(0,idx,msghead_st).toString();
                 }
-            } catch (Exception ex) {
-                throw new HBCI_Exception("*** error while fixing missing MsgRef",ex);
+                first=false;
+                out.write(seg);
             }
-        }
-        return st;
+        };
     }
 
 }
@@ -41,9 +41,9 @@ import org.kapott.hbci.protocol.factory.MSGFactory;
 public class RSecTypeTAN extends Rewrite 
 {
     /**
-     * @see org.kapott.hbci.rewrite.Rewrite#incomingClearText(java.lang.String, org.kapott.hbci.manager.MsgGen)
+     * @see org.kapott.hbci.rewrite.Rewrite#incomingClearText(java.lang.String, org.kapott.hbci.manager.MsgGen, org.kapott.hbci.rewrite.RewriteContext)
      */
-    public String incomingClearText(String st,MsgGen gen) 
+    public String incomingClearText(String st,MsgGen gen,RewriteContext ctx)
     {
       // Wir packen das Rewrite in ein try/catch, weil wir hier keine reinen String-Operationen
       // verwenden und nicht 100%ig sichergestellt ist, ob die Nachricht zu diesem Zeitpunkt schon
@@ -55,7 +55,7 @@ public class RSecTypeTAN extends Rewrite
       try
       {
         // empfangene Nachricht parsen, dabei die validvalues-Überprüfung weglassen
-        String myMsgName = (String)getData("msgName")+"Res";
+        String myMsgName = ctx.getMsgName()+"Res";
         msg = MSGFactory.getInstance().createMSG(myMsgName,st,st.length(),gen,MSG.CHECK_SEQ,MSG.DONT_CHECK_VALIDS);
         
         // in einer Schleife durch alle SuppSecMethods-Datensätze laufen
@@ -117,8 +117,6 @@ public class RSecTypeTAN extends Rewrite
                 break;
             }
         }
-        
-        MSGFactory.getInstance().unuseObject(msg);
       }
       catch (Exception e)
       {
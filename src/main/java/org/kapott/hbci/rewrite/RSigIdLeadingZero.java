@@ -25,26 +25,15 @@ import org.kapott.hbci.manager.HBCIUtils;
 import org.kapott.hbci.manager.MsgGen;
 
 public class RSigIdLeadingZero 
-    extends Rewrite
+    extends SegmentRewrite
 {
-    public String incomingClearText(String st,MsgGen gen)
-    {
-        StringBuffer ret=new StringBuffer(st); 
-        int          firstPlus=st.indexOf("HNSHK");
-        
-        if (firstPlus!=-1) {
-            for (int i=0;i<6;i++) {
-                firstPlus=st.indexOf("+",firstPlus+1);
-                if (firstPlus==-1) {
-                    break;
-                }
-            }
-            
-            if (firstPlus!=-1) {
-                int secondPlus=st.indexOf("+",firstPlus+1);
-                
-                if (secondPlus!=-1) {
-                    StringBuffer value=new StringBuffer(st.substring(firstPlus+1,secondPlus));
+    private final static Stage stage=new Stage() {
+        public void process(Segment seg,Sink out)
+        {
+            if (seg.getCode().equals("HNSHK")) {
+                // die sigid ist das siebte datenelement im signaturkopf
+                if (seg.getDECount()>6) {
+                    StringBuffer value=new StringBuffer(seg.getDE(6));
                     
                     if (value.length()>1 && value.charAt(0)=='0') {
                         HBCIUtils.log("RSigIdLeadingZero: found leading zero ("+value+"), removing it",HBCIUtils.LOG_WARN);
@@ -52,17 +41,19 @@ public class RSigIdLeadingZero
                             value.deleteCharAt(0);
                         }
                         
-                        ret.replace(firstPlus+1,secondPlus,value.toString());
+                        seg=seg.setDE(6,value.toString());
                         HBCIUtils.log("RSigIdLeadingZero: setting new sigid: "+value,HBCIUtils.LOG_WARN);
                     }
                 } else {
-                    HBCIUtils.log("RSigIdLeadingZero: can not find end of sigid in segment",HBCIUtils.LOG_WARN);
+                    HBCIUtils.log("RSigIdLeadingZero: can not find sigid in segment",HBCIUtils.LOG_WARN);
                 }
-            } else {
-                HBCIUtils.log("RSigIdLeadingZero: can not find sigid in segment",HBCIUtils.LOG_WARN);
             }
+            out.write(seg);
         }
-        
-        return ret.toString();
+    };
+
+    public Stage createClearTextStage(MsgGen gen,RewriteContext ctx)
+    {
+        return stage;
     }
 }
@@ -25,40 +25,23 @@ import org.kapott.hbci.manager.HBCIUtils;
 import org.kapott.hbci.manager.MsgGen;
 
 public final class RWrongSequenceNumbers
-    extends Rewrite
+    extends SegmentRewrite
 {
-    public String incomingClearText(String st,MsgGen gen) 
+    public Stage createClearTextStage(MsgGen gen,RewriteContext ctx) 
     {
-        StringBuffer sb=new StringBuffer(st);
-
-        int     idx;
-        boolean quoteNext=false;
-        int     correctSeq=1;
-        
-        for (int i=0;i<sb.length();i++) {
-            char ch=sb.charAt(i);
+        return new Stage() {
+            private int correctSeq=1;
             
-            if (!quoteNext && ch=='@') {
-                // skip binary values
-                idx=sb.indexOf("@",i+1);
-                String len_st=sb.substring(i+1,idx);
-                i+=Integer.parseInt(len_st)+1+len_st.length();
-            } else if (!quoteNext && ch=='\'' || i==0) {
-                idx=sb.indexOf(":",i+1);
-                if (idx!=-1) {
-                    int idx2=sb.indexOf(":",idx+1);
-                    int seq=Integer.parseInt(sb.substring(idx+1,idx2));
-                    if (seq!=correctSeq) {
-                        HBCIUtils.log("found wrong sequence number "+seq+"; replacing with "+correctSeq,HBCIUtils.LOG_WARN);
-                        sb.replace(idx+1,idx2,Integer.toString(correctSeq));
-                    }
-                    i=idx2;
+            public void process(Segment seg,Sink out)
+            {
+                int seq=seg.getSeq();
+                if (seq!=-1 && seq!=correctSeq) {
+                    HBCIUtils.log("found wrong sequence number "+seq+"; replacing with "+correctSeq,HBCIUtils.LOG_WARN);
+                    seg=seg.setSeq(correctSeq);
                 }
                 correctSeq++;
+                out.write(seg);
             }
-            quoteNext=!quoteNext && ch=='?';
-        }
-        
-        return sb.toString();
+        };
     }
 }
@@ -21,34 +21,83 @@
 
 package org.kapott.hbci.rewrite;
 
-import java.util.Hashtable;
-
 import org.kapott.hbci.manager.MsgGen;
 import org.kapott.hbci.protocol.MSG;
 
 public abstract class Rewrite
 {
-    private static Hashtable<String,Object> kernelData;
-    
-    static {
-        kernelData=new Hashtable<String, Object>();
-    }
+    /* der kontext des gerade laufenden nachrichtenaustauschs. er wird von
+       der RewriterChain nur fuer die dauer eines hooks gesetzt, damit auch
+       rewriter, die noch getData() verwenden, die daten finden */
+    private final static ThreadLocal<RewriteContext> current=new ThreadLocal<RewriteContext>();
     
     protected Rewrite()
     {
     }
     
-    public static synchronized void setData(String name,Object value)
+    /**
+     * Speichert einen Wert im Kontext des aktuellen Threads.
+     * Der Kontext ist nur waehrend eines Hooks der {@link RewriterChain} gesetzt.
+     * Ausserhalb davon wird der Wert ignoriert.
+     * @param name der Name des Wertes.
+     * @param value der Wert.
+     * @deprecated Der Kontext wird per {@link RewriterChain} an die Rewriter uebergeben.
+     */
+    @Deprecated
+    public static void setData(String name,Object value)
     {
-        ThreadGroup threadgroup=Thread.currentThread().getThreadGroup();
-        kernelData.put(threadgroup.getName()+"_"+name,
-                       value);
+        RewriteContext ctx=current.get();
+        if (ctx!=null)
+            ctx.setData(name,value);
     }
 
-    public static synchronized Object getData(String name)
+    /**
+     * Liefert einen Wert aus dem Kontext des aktuellen Threads.
+     * @param name der Name des Wertes.
+     * @return der Wert oder NULL.
+     * @deprecated Bitte {@link #getContext()} verwenden.
+     */
+    @Deprecated
+    public static Object getData(String name)
+    {
+        RewriteContext ctx=current.get();
+        return ctx!=null?ctx.getData(name):null;
+    }
+    
+    /**
+     * Liefert den Kontext des gerade laufenden Nachrichtenaustauschs.
+     * @return der Kontext. Niemals NULL.
+     */
+    protected static RewriteContext getContext()
+    {
+        RewriteContext ctx=current.get();
+        return ctx!=null?ctx:new RewriteContext();
+    }
+    
+    /**
+     * Setzt den Kontext fuer den aktuellen Thread.
+     * @param ctx der Kontext.
+     * @return der bisherige Kontext des Threads. Er muss per {@link #unbind(RewriteContext)}
+     * wiederhergestellt werden.
+     */
+    static RewriteContext bind(RewriteContext ctx)
+    {
+        RewriteContext prev=current.get();
+        current.set(ctx);
+        return prev;
+    }
+    
+    /**
+     * Stellt den bisherigen Kontext des Threads wieder her.
+     * @param prev der bisherige Kontext.
+     */
+    static void unbind(RewriteContext prev)
     {
-        ThreadGroup threadgroup=Thread.currentThread().getThreadGroup();
-        return kernelData.get(threadgroup.getName()+"_"+name);
+        if (prev==null) {
+            current.remove();
+        } else {
+            current.set(prev);
+        }
     }
 
     public MSG outgoingClearText(MSG msg,MsgGen gen)
@@ -82,4 +131,39 @@ public abstract class Rewrite
     {
         return msg;
     }
+    
+    /* die folgenden hooks erhalten zusaetzlich den kontext des nachrichten-
+       austauschs. per default rufen sie die hooks ohne kontext auf, die ihn
+       bei bedarf per getContext() holen. die RewriterChain ruft nur diese
+       hooks auf */
+    
+    public MSG outgoingClearText(MSG msg,MsgGen gen,RewriteContext ctx)
+    {
+        return outgoingClearText(msg,gen);
+    }
+    
+    public MSG outgoingSigned(MSG msg,MsgGen gen,RewriteContext ctx)
+    {
+        return outgoingSigned(msg,gen);
+    }
+    
+    public MSG outgoingCrypted(MSG msg,MsgGen gen,RewriteContext ctx)
+    {
+        return outgoingCrypted(msg,gen);
+    }
+    
+    public String incomingCrypted(String st,MsgGen gen,RewriteContext ctx)
+    {
+        return incomingCrypted(st,gen);
+    }
+    
+    public String incomingClearText(String st,MsgGen gen,RewriteContext ctx)
+    {
+        return incomingClearText(st,gen);
+    }
+    
+    public MSG incomingData(MSG msg,MsgGen gen,RewriteContext ctx)
+    {
+        return incomingData(msg,gen);
+    }
 }
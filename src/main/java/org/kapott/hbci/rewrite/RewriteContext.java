@@ -0,0 +1,170 @@
+/**********************************************************************
+ *
+ * This file is part of HBCI4Java.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ **********************************************************************/
+
+package org.kapott.hbci.rewrite;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.kapott.hbci.passport.HBCIPassportList;
+import org.kapott.hbci.status.HBCIMsgStatus;
+
+/**
+ * Die Daten des aktuellen Nachrichtenaustauschs eines Dialogs, die die Rewriter benoetigen.
+ * Der Kontext wird vom Kernel pro Nachricht erzeugt und explizit durch die
+ * {@link RewriterChain} gereicht. Er ersetzt die frueher prozessweit in
+ * {@link Rewrite#setData(String, Object)} abgelegten Daten. Parallele Dialoge
+ * haben dadurch jeweils ihren eigenen Kontext, und nach dem Nachrichtenaustausch
+ * bleibt nichts zurueck.
+ * Ein Kontext gehoert zu genau einem Nachrichtenaustausch und ist nicht threadsicher.
+ */
+public final class RewriteContext
+{
+    /**
+     * Name fuer die Liste der Passports.
+     */
+    public final static String PASSPORTS = "passports";
+
+    /**
+     * Name fuer den Status der Nachricht.
+     */
+    public final static String MSGSTATUS = "msgStatus";
+
+    /**
+     * Name fuer den Namen der gesendeten Nachricht.
+     */
+    public final static String MSGNAME = "msgName";
+
+    /**
+     * Name fuer das Flag, ob die Nachricht signiert wird.
+     */
+    public final static String SIGNIT = "signIt";
+
+    /**
+     * Name fuer das Flag, ob die Nachricht verschluesselt wird.
+     */
+    public final static String CRYPTIT = "cryptIt";
+
+    private final Map<String,Object> data = new HashMap<String,Object>();
+
+    /**
+     * ct.
+     * Erzeugt einen leeren Kontext.
+     */
+    public RewriteContext()
+    {
+    }
+
+    /**
+     * ct.
+     * @param passports die Passports der Nachricht.
+     * @param msgStatus der Status der Nachricht.
+     * @param msgName der Name der gesendeten Nachricht.
+     * @param signIt true, wenn die Nachricht signiert wird.
+     * @param cryptIt true, wenn die Nachricht verschluesselt wird.
+     */
+    public RewriteContext(HBCIPassportList passports, HBCIMsgStatus msgStatus, String msgName, boolean signIt, boolean cryptIt)
+    {
+        this.data.put(PASSPORTS,passports);
+        this.data.put(MSGSTATUS,msgStatus);
+        this.data.put(MSGNAME,msgName);
+        this.data.put(SIGNIT,Boolean.valueOf(signIt));
+        this.data.put(CRYPTIT,Boolean.valueOf(cryptIt));
+    }
+
+    /**
+     * Liefert die Passports der Nachricht.
+     * @return die Passports der Nachricht.
+     */
+    public HBCIPassportList getPassports()
+    {
+        return (HBCIPassportList) this.data.get(PASSPORTS);
+    }
+
+    /**
+     * Liefert den Status der Nachricht.
+     * @return der Status der Nachricht.
+     */
+    public HBCIMsgStatus getMsgStatus()
+    {
+        return (HBCIMsgStatus) this.data.get(MSGSTATUS);
+    }
+
+    /**
+     * Liefert den Namen der gesendeten Nachricht.
+     * @return der Name der gesendeten Nachricht.
+     */
+    public String getMsgName()
+    {
+        return (String) this.data.get(MSGNAME);
+    }
+
+    /**
+     * Prueft, ob die Nachricht signiert wird.
+     * @return true, wenn die Nachricht signiert wird.
+     */
+    public boolean isSignIt()
+    {
+        return Boolean.TRUE.equals(this.data.get(SIGNIT));
+    }
+
+    /**
+     * Prueft, ob die Nachricht verschluesselt wird.
+     * @return true, wenn die Nachricht verschluesselt wird.
+     */
+    public boolean isCryptIt()
+    {
+        return Boolean.TRUE.equals(this.data.get(CRYPTIT));
+    }
+
+    /**
+     * Liefert den Wert aus dem Nachrichtenstatus, mit dem das Element in der
+     * gesendeten Nachricht verschickt wurde.
+     * @param path Pfad des Elements unterhalb der Nachricht, z.Bsp. "MsgHead.dialogid".
+     * @return der Wert oder NULL, wenn er nicht existiert.
+     */
+    public String getOrigValue(String path)
+    {
+        HBCIMsgStatus status = this.getMsgStatus();
+        if (status == null)
+            return null;
+        return status.getValue("orig_" + this.getMsgName() + "." + path);
+    }
+
+    /**
+     * Liefert einen beliebigen Wert aus dem Kontext.
+     * @param name der Name des Wertes.
+     * @return der Wert oder NULL.
+     */
+    public Object getData(String name)
+    {
+        return this.data.get(name);
+    }
+
+    /**
+     * Speichert einen beliebigen Wert im Kontext.
+     * @param name der Name des Wertes.
+     * @param value der Wert.
+     */
+    public void setData(String name, Object value)
+    {
+        this.data.put(name,value);
+    }
+}
@@ -0,0 +1,423 @@
+/**********************************************************************
+ *
+ * This file is part of HBCI4Java.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ **********************************************************************/
+
+package org.kapott.hbci.rewrite;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.StringTokenizer;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.kapott.hbci.exceptions.HBCI_Exception;
+import org.kapott.hbci.manager.HBCIUtils;
+import org.kapott.hbci.manager.MsgGen;
+import org.kapott.hbci.protocol.MSG;
+import org.kapott.hbci.protocol.factory.MSGFactory;
+import org.kapott.hbci.rewrite.SegmentRewrite.Stage;
+
+/**
+ * Unveraenderliche Liste der Rewriter, die im Parameter "kernel.rewriter"
+ * konfiguriert sind.
+ * Frueher wurde der Parameter fuer jede Nachricht neu zerlegt und die Rewriter
+ * per Reflection neu erzeugt. Die Kette wird jetzt pro Parameter-Wert nur einmal
+ * erzeugt und von allen Nachrichten und Threads gemeinsam verwendet. Die Rewriter
+ * selbst duerfen daher keinen Zustand besitzen.
+ * Pro Hook enthaelt die Kette nur die Rewriter, die den Hook auch ueberschreiben.
+ * Aufeinanderfolgende {@link SegmentRewrite}s werden in einem gemeinsamen
+ * Durchlauf ueber die Segmente der Nachricht ausgefuehrt.
+ * Der {@link RewriteContext} des Nachrichtenaustauschs wird explizit an jeden
+ * Hook uebergeben.
+ */
+public final class RewriterChain
+{
+    private final static String PACKAGE = Rewrite.class.getPackage().getName() + ".R";
+    private final static ConcurrentMap<String,RewriterChain> cache = new ConcurrentHashMap<String,RewriterChain>();
+
+    private final Rewrite[] all;
+    private final Rewrite[] outgoingClearText;
+    private final Rewrite[] outgoingSigned;
+    private final Rewrite[] outgoingCrypted;
+    private final Rewrite[][] incomingCrypted;
+    private final Rewrite[][] incomingClearText;
+    private final Rewrite[] incomingData;
+
+    /**
+     * ct.
+     * @param rewriters die Rewriter in der konfigurierten Reihenfolge.
+     */
+    private RewriterChain(List<Rewrite> rewriters)
+    {
+        this.all               = rewriters.toArray(new Rewrite[rewriters.size()]);
+        this.outgoingClearText = filter(rewriters,"outgoingClearText",MSG.class,null);
+        this.outgoingSigned    = filter(rewriters,"outgoingSigned",MSG.class,null);
+        this.outgoingCrypted   = filter(rewriters,"outgoingCrypted",MSG.class,null);
+        this.incomingCrypted   = group(filter(rewriters,"incomingCrypted",String.class,"createCryptedStage"));
+        this.incomingClearText = group(filter(rewriters,"incomingClearText",String.class,"createClearTextStage"));
+        this.incomingData      = filter(rewriters,"incomingData",MSG.class,null);
+    }
+
+    /**
+     * Liefert die Kette fuer den aktuellen Wert des Parameters "kernel.rewriter".
+     * @return die Kette.
+     */
+    public static RewriterChain getInstance()
+    {
+        return getInstance(HBCIUtils.getConfig().getRewriter());
+    }
+
+    /**
+     * Liefert die Kette fuer die angegebene Liste von Rewritern.
+     * @param names kommaseparierte Liste der Rewriter-Namen ohne das Praefix "R".
+     * Kann NULL sein.
+     * @return die Kette.
+     */
+    public static RewriterChain getInstance(String names)
+    {
+        if (names == null)
+            names = "";
+
+        RewriterChain chain = cache.get(names);
+        if (chain != null)
+            return chain;
+
+        return cache.computeIfAbsent(names,RewriterChain::create);
+    }
+
+    /**
+     * Erzeugt die Kette.
+     * @param names kommaseparierte Liste der Rewriter-Namen.
+     * @return die Kette.
+     */
+    private static RewriterChain create(String names)
+    {
+        List<Rewrite> list = new ArrayList<Rewrite>();
+        StringTokenizer tok = new StringTokenizer(names,",");
+        while (tok.hasMoreTokens())
+        {
+            String name = tok.nextToken().trim();
+            if (name.length() == 0)
+                continue;
+
+            try
+            {
+                Class<?> cl = RewriterChain.class.getClassLoader().loadClass(PACKAGE + name);
+                list.add((Rewrite) cl.getConstructor().newInstance());
+            }
+            catch (Exception e)
+            {
+                throw new HBCI_Exception("unable to create rewriter " + name,e);
+            }
+        }
+        HBCIUtils.log("created rewriter chain " + names,HBCIUtils.LOG_DEBUG);
+        return new RewriterChain(list);
+    }
+
+    /**
+     * Liefert die Rewriter, die den angegebenen Hook ueberschreiben.
+     * Bei einem {@link SegmentRewrite} zaehlt stattdessen, ob er die Bearbeitungsstufe liefert.
+     * @param rewriters alle Rewriter.
+     * @param hook Name des Hooks.
+     * @param type Typ des ersten Parameters des Hooks.
+     * @param stage Name der Methode, die die Bearbeitungsstufe fuer den Hook liefert. Kann NULL sein.
+     * @return die Rewriter, die den Hook ueberschreiben.
+     */
+    private static Rewrite[] filter(List<Rewrite> rewriters, String hook, Class<?> type, String stage)
+    {
+        List<Rewrite> result = new ArrayList<Rewrite>();
+        for (Rewrite r:rewriters)
+        {
+            try
+            {
+                // Der Hook kann mit oder ohne Kontext ueberschrieben sein
+                Class<?> c = r.getClass().getMethod(hook,type,MsgGen.class,RewriteContext.class).getDeclaringClass();
+                if (c == Rewrite.class)
+                    c = r.getClass().getMethod(hook,type,MsgGen.class).getDeclaringClass();
+                if (c == SegmentRewrite.class && stage != null)
+                    c = r.getClass().getMethod(stage,MsgGen.class,RewriteContext.class).getDeclaringClass();
+
+                if (c != Rewrite.class && c != SegmentRewrite.class)
+                    result.add(r);
+            }
+            catch (NoSuchMethodException e)
+            {
+                // Kann nicht passieren, die Methode ist in Rewrite definiert
+                throw new HBCI_Exception(e);
+            }
+        }
+        return result.toArray(new Rewrite[result.size()]);
+    }
+
+    /**
+     * Fasst aufeinanderfolgende {@link SegmentRewrite}s zu einer Gruppe zusammen,
+     * die in einem einzigen Durchlauf ueber die Nachricht ausgefuehrt wird.
+     * Alle anderen Rewriter bilden jeweils eine eigene Gruppe.
+     * @param rewriters die Rewriter.
+     * @return die Gruppen.
+     */
+    private static Rewrite[][] group(Rewrite[] rewriters)
+    {
+        List<Rewrite[]> result = new ArrayList<Rewrite[]>();
+        List<Rewrite> current = new ArrayList<Rewrite>();
+        for (Rewrite r:rewriters)
+        {
+            if (r instanceof SegmentRewrite)
+            {
+                current.add(r);
+                continue;
+            }
+            if (current.size() > 0)
+            {
+                result.add(current.toArray(new Rewrite[current.size()]));
+                current.clear();
+            }
+            result.add(new Rewrite[]{r});
+        }
+        if (current.size() > 0)
+            result.add(current.toArray(new Rewrite[current.size()]));
+        return result.toArray(new Rewrite[result.size()][]);
+    }
+
+    /**
+     * Liefert alle Rewriter der Kette in der konfigurierten Reihenfolge.
+     * @return alle Rewriter der Kette.
+     */
+    public Rewrite[] getRewriters()
+    {
+        return this.all.clone();
+    }
+
+    /**
+     * Prueft, ob die Kette fuer den Hook ueberhaupt einen Rewriter enthaelt.
+     * @param hook Name des Hooks.
+     * @return true, wenn mindestens ein Rewriter den Hook ueberschreibt.
+     */
+    public boolean hasHook(String hook)
+    {
+        switch (hook)
+        {
+            case "outgoingClearText": return this.outgoingClearText.length > 0;
+            case "outgoingSigned":    return this.outgoingSigned.length > 0;
+            case "outgoingCrypted":   return this.outgoingCrypted.length > 0;
+            case "incomingCrypted":   return this.incomingCrypted.length > 0;
+            case "incomingClearText": return this.incomingClearText.length > 0;
+            case "incomingData":      return this.incomingData.length > 0;
+            default: throw new IllegalArgumentException("unknown hook " + hook);
+        }
+    }
+
+    /**
+     * Wendet den Hook auf die Nachricht an. Ersetzte Nachrichten werden freigegeben.
+     * @param msg die Nachricht.
+     * @param gen der Message-Generator.
+     * @param ctx der Kontext des Nachrichtenaustauschs.
+     * @return die ggf. ersetzte Nachricht.
+     * @see Rewrite#outgoingClearText(MSG, MsgGen, RewriteContext)
+     */
+    public MSG outgoingClearText(MSG msg, MsgGen gen, RewriteContext ctx)
+    {
+        return rewrite(this.outgoingClearText,Rewrite::outgoingClearText,msg,gen,ctx);
+    }
+
+    /**
+     * Wendet den Hook auf die Nachricht an. Ersetzte Nachrichten werden freigegeben.
+     * @param msg die Nachricht.
+     * @param gen der Message-Generator.
+     * @param ctx der Kontext des Nachrichtenaustauschs.
+     * @return die ggf. ersetzte Nachricht.
+     * @see Rewrite#outgoingSigned(MSG, MsgGen, RewriteContext)
+     */
+    public MSG outgoingSigned(MSG msg, MsgGen gen, RewriteContext ctx)
+    {
+        return rewrite(this.outgoingSigned,Rewrite::outgoingSigned,msg,gen,ctx);
+    }
+
+    /**
+     * Wendet den Hook auf die Nachricht an. Ersetzte Nachrichten werden freigegeben.
+     * @param msg die Nachricht.
+     * @param gen der Message-Generator.
+     * @param ctx der Kontext des Nachrichtenaustauschs.
+     * @return die ggf. ersetzte Nachricht.
+     * @see Rewrite#outgoingCrypted(MSG, MsgGen, RewriteContext)
+     */
+    public MSG outgoingCrypted(MSG msg, MsgGen gen, RewriteContext ctx)
+    {
+        return rewrite(this.outgoingCrypted,Rewrite::outgoingCrypted,msg,gen,ctx);
+    }
+
+    /**
+     * Wendet den Hook auf die Nachricht an.
+     * @param st die Nachricht.
+     * @param gen der Message-Generator.
+     * @param ctx der Kontext des Nachrichtenaustauschs.
+     * @return die ggf. geaenderte Nachricht.
+     * @see Rewrite#incomingCrypted(String, MsgGen, RewriteContext)
+     */
+    public String incomingCrypted(String st, MsgGen gen, RewriteContext ctx)
+    {
+        if (this.incomingCrypted.length == 0)
+            return st;
+
+        RewriteContext prev = Rewrite.bind(ctx);
+        try
+        {
+            return incoming(this.incomingCrypted,st,gen,ctx,true);
+        }
+        finally
+        {
+            Rewrite.unbind(prev);
+        }
+    }
+
+    /**
+     * Wendet den Hook auf die Nachricht an.
+     * @param st die Nachricht.
+     * @param gen der Message-Generator.
+     * @param ctx der Kontext des Nachrichtenaustauschs.
+     * @return die ggf. geaenderte Nachricht.
+     * @see Rewrite#incomingClearText(String, MsgGen, RewriteContext)
+     */
+    public String incomingClearText(String st, MsgGen gen, RewriteContext ctx)
+    {
+        if (this.incomingClearText.length == 0)
+            return st;
+
+        RewriteContext prev = Rewrite.bind(ctx);
+        try
+        {
+            return incoming(this.incomingClearText,st,gen,ctx,false);
+        }
+        finally
+        {
+            Rewrite.unbind(prev);
+        }
+    }
+
+    /**
+     * Wendet die Gruppen von Rewritern auf die empfangene Nachricht an.
+     * @param groups die Gruppen.
+     * @param st die Nachricht.
+     * @param gen der Message-Generator.
+     * @param ctx der Kontext des Nachrichtenaustauschs.
+     * @param crypted true, wenn die verschluesselte Nachricht bearbeitet wird.
+     * @return die ggf. geaenderte Nachricht.
+     */
+    private static String incoming(Rewrite[][] groups, String st, MsgGen gen, RewriteContext ctx, boolean crypted)
+    {
+        for (Rewrite[] group:groups)
+        {
+            if (!(group[0] instanceof SegmentRewrite))
+            {
+                Rewrite r = group[0];
+                if (crypted)
+                    st = r.incomingCrypted(st,gen,ctx);
+                else
+                {
+                    HBCIUtils.log("applying rewriter " + r.getClass().getSimpleName(),HBCIUtils.LOG_DEBUG);
+                    st = r.incomingClearText(st,gen,ctx);
+                }
+                continue;
+            }
+
+            List<Stage> stages = new ArrayList<Stage>(group.length);
+            for (Rewrite r:group)
+            {
+                SegmentRewrite sr = (SegmentRewrite) r;
+                Stage stage = crypted ? sr.createCryptedStage(gen,ctx) : sr.createClearTextStage(gen,ctx);
+                if (stage == null)
+                    continue;
+                if (!crypted)
+                    HBCIUtils.log("applying rewriter " + r.getClass().getSimpleName(),HBCIUtils.LOG_DEBUG);
+                stages.add(stage);
+            }
+            st = SegmentPipeline.run(st,stages.toArray(new Stage[stages.size()]));
+        }
+        return st;
+    }
+
+    /**
+     * Wendet den Hook auf die Nachricht an. Ersetzte Nachrichten werden freigegeben.
+     * @param msg die Nachricht.
+     * @param gen der Message-Generator.
+     * @param ctx der Kontext des Nachrichtenaustauschs.
+     * @return die ggf. ersetzte Nachricht.
+     * @see Rewrite#incomingData(MSG, MsgGen, RewriteContext)
+     */
+    public MSG incomingData(MSG msg, MsgGen gen, RewriteContext ctx)
+    {
+        return rewrite(this.incomingData,Rewrite::incomingData,msg,gen,ctx);
+    }
+
+    /**
+     * Wendet einen Hook der Rewriter auf die Nachricht an.
+     * @param rewriters die Rewriter, die den Hook ueberschreiben.
+     * @param hook der Hook.
+     * @param msg die Nachricht.
+     * @param gen der Message-Generator.
+     * @param ctx der Kontext des Nachrichtenaustauschs.
+     * @return die ggf. ersetzte Nachricht.
+     */
+    private static MSG rewrite(Rewrite[] rewriters, MsgHook hook, MSG msg, MsgGen gen, RewriteContext ctx)
+    {
+        if (rewriters.length == 0)
+            return msg;
+
+        RewriteContext prev = Rewrite.bind(ctx);
+        try
+        {
+            for (Rewrite r:rewriters)
+                msg = replace(msg,hook.apply(r,msg,gen,ctx));
+            return msg;
+        }
+        finally
+        {
+            Rewrite.unbind(prev);
+        }
+    }
+
+    /**
+     * Gibt die alte Nachricht frei, wenn der Rewriter sie ersetzt hat.
+     * @param old die alte Nachricht.
+     * @param msg die vom Rewriter gelieferte Nachricht.
+     * @return die vom Rewriter gelieferte Nachricht.
+     */
+    private static MSG replace(MSG old, MSG msg)
+    {
+        if (msg != old)
+            MSGFactory.getInstance().unuseObject(old);
+        return msg;
+    }
+
+    /**
+     * Einer der Hooks aus {@link Rewrite}, die eine Nachricht bearbeiten.
+     */
+    private interface MsgHook
+    {
+        /**
+         * Wendet den Hook an.
+         * @param r der Rewriter.
+         * @param msg die Nachricht.
+         * @param gen der Message-Generator.
+         * @param ctx der Kontext des Nachrichtenaustauschs.
+         * @return die ggf. ersetzte Nachricht.
+         */
+        public MSG apply(Rewrite r, MSG msg, MsgGen gen, RewriteContext ctx);
+    }
+}
@@ -0,0 +1,253 @@
+/**********************************************************************
+ *
+ * This file is part of HBCI4Java.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ **********************************************************************/
+
+package org.kapott.hbci.rewrite;
+
+import java.util.Arrays;
+
+/**
+ * Ein Segment einer empfangenen Nachricht.
+ * Das Segment ist nur eine Sicht auf einen Bereich der Nachricht. Die Daten
+ * werden nicht kopiert. Aenderungen erzeugen ein neues Segment.
+ * Die Datenelemente werden so geliefert, wie sie in der Nachricht stehen,
+ * also inclusive Escape-Zeichen.
+ */
+public final class Segment
+{
+    private final String data;
+    private final int start;
+    private final int end;
+    private final boolean terminated;
+
+    private int[] bounds = null;
+
+    /**
+     * ct.
+     * @param data die Nachricht.
+     * @param start Beginn des Segments in der Nachricht.
+     * @param end Ende des Segments (exklusive) in der Nachricht, inclusive Segment-Ende-Zeichen.
+     * @param terminated true, wenn das Segment mit dem Segment-Ende-Zeichen endet.
+     */
+    Segment(String data, int start, int end, boolean terminated)
+    {
+        this.data = data;
+        this.start = start;
+        this.end = end;
+        this.terminated = terminated;
+    }
+
+    /**
+     * Liefert den Segment-Code, z.Bsp. "HNHBK".
+     * @return der Segment-Code.
+     */
+    public String getCode()
+    {
+        String head = this.getDE(0);
+        int idx = head.indexOf(':');
+        return idx != -1 ? head.substring(0,idx) : head;
+    }
+
+    /**
+     * Liefert die Segment-Nummer aus dem Segment-Kopf.
+     * @return die Segment-Nummer oder -1, wenn sie nicht lesbar ist.
+     */
+    public int getSeq()
+    {
+        String head = this.getDE(0);
+        int idx = head.indexOf(':');
+        if (idx == -1)
+            return -1;
+        int idx2 = head.indexOf(':',idx+1);
+        try
+        {
+            return Integer.parseInt(idx2 != -1 ? head.substring(idx+1,idx2) : head.substring(idx+1));
+        }
+        catch (NumberFormatException e)
+        {
+            return -1;
+        }
+    }
+
+    /**
+     * Liefert ein neues Segment mit geaenderter Segment-Nummer.
+     * @param seq die neue Segment-Nummer.
+     * @return das neue Segment.
+     */
+    public Segment setSeq(int seq)
+    {
+        String head = this.getDE(0);
+        int idx = head.indexOf(':');
+        if (idx == -1)
+            return this;
+        int idx2 = head.indexOf(':',idx+1);
+        return this.setDE(0,head.substring(0,idx+1) + seq + (idx2 != -1 ? head.substring(idx2) : ""));
+    }
+
+    /**
+     * Liefert die Anzahl der Datenelemente bzw. Datenelement-Gruppen incl. Segment-Kopf.
+     * @return die Anzahl der Datenelemente.
+     */
+    public int getDECount()
+    {
+        return this.getBounds().length - 1;
+    }
+
+    /**
+     * Liefert das Datenelement bzw. die Datenelement-Gruppe.
+     * @param i Index des Datenelements. Der Segment-Kopf hat den Index 0.
+     * @return der Wert des Datenelements oder NULL, wenn es nicht existiert.
+     */
+    public String getDE(int i)
+    {
+        int[] b = this.getBounds();
+        if (i < 0 || i >= b.length-1)
+            return null;
+        return this.data.substring(b[i] + (i > 0 ? 1 : 0),b[i+1]);
+    }
+
+    /**
+     * Liefert ein neues Segment, in dem das Datenelement ersetzt wurde.
+     * @param i Index des Datenelements. Der Segment-Kopf hat den Index 0.
+     * @param value der neue Wert des Datenelements.
+     * @return das neue Segment.
+     */
+    public Segment setDE(int i, String value)
+    {
+        int[] b = this.getBounds();
+        if (i < 0 || i >= b.length-1)
+            throw new IndexOutOfBoundsException("segment " + this.getCode() + " has no data element " + i);
+
+        int from = b[i] + (i > 0 ? 1 : 0);
+        int to = b[i+1];
+        StringBuilder sb = new StringBuilder(this.length() - (to - from) + value.length());
+        sb.append(this.data,this.start,from).append(value).append(this.data,to,this.end);
+        String s = sb.toString();
+        return new Segment(s,0,s.length(),this.terminated);
+    }
+
+    /**
+     * Liefert die Laenge des Segments incl. Segment-Ende-Zeichen.
+     * @return die Laenge des Segments.
+     */
+    public int length()
+    {
+        return this.end - this.start;
+    }
+
+    /**
+     * Haengt das Segment an.
+     * @param sb der Puffer, an den das Segment angehaengt wird.
+     */
+    public void appendTo(StringBuilder sb)
+    {
+        sb.append(this.data,this.start,this.end);
+    }
+
+    /**
+     * Prueft, ob das Segment unveraendert an der angegebenen Position der Nachricht steht.
+     * @param msg die Nachricht.
+     * @param pos die Position.
+     * @return true, wenn das Segment unveraendert an der Position steht.
+     */
+    boolean isAt(String msg, int pos)
+    {
+        return this.data == msg && this.start == pos;
+    }
+
+    /**
+     * Liefert das Ende des Segments in der Nachricht.
+     * @return das Ende des Segments (exklusive).
+     */
+    int getEnd()
+    {
+        return this.end;
+    }
+
+    /**
+     * @see java.lang.Object#toString()
+     */
+    public String toString()
+    {
+        return this.data.substring(this.start,this.end);
+    }
+
+    /**
+     * Liefert die Grenzen der Datenelemente.
+     * Das Array enthaelt den Beginn des Segments, die Positionen der Trennzeichen
+     * zwischen den Datenelementen und das Ende des letzten Datenelements.
+     * @return die Grenzen der Datenelemente.
+     */
+    private int[] getBounds()
+    {
+        if (this.bounds != null)
+            return this.bounds;
+
+        int limit = this.terminated ? this.end-1 : this.end;
+        int[] b = new int[8];
+        int count = 0;
+        b[count++] = this.start;
+
+        for (int i=this.start;i<limit;i++)
+        {
+            char ch = this.data.charAt(i);
+            if (ch == '?')
+            {
+                i++;
+            }
+            else if (ch == '@')
+            {
+                i = skipBinary(this.data,i,limit) - 1;
+            }
+            else if (ch == '+')
+            {
+                if (count == b.length-1)
+                    b = Arrays.copyOf(b,b.length*2);
+                b[count++] = i;
+            }
+        }
+        b[count++] = limit;
+        this.bounds = Arrays.copyOf(b,count);
+        return this.bounds;
+    }
+
+    /**
+     * Ueberspringt Binaerdaten der Form "@laenge@daten".
+     * @param s die Nachricht.
+     * @param i Position des ersten "@".
+     * @param limit Ende des zu pruefenden Bereiches.
+     * @return Position nach den Binaerdaten oder i+1, wenn an der Position keine Binaerdaten beginnen.
+     */
+    static int skipBinary(String s, int i, int limit)
+    {
+        int idx = s.indexOf('@',i+1);
+        if (idx == -1 || idx == i+1 || idx >= limit)
+            return i+1;
+
+        int len = 0;
+        for (int j=i+1;j<idx;j++)
+        {
+            char ch = s.charAt(j);
+            if (ch < '0' || ch > '9' || len > 100000000)
+                return i+1;
+            len = len*10 + (ch-'0');
+        }
+        return Math.min(idx+1+len,limit);
+    }
+}
@@ -0,0 +1,139 @@
+/**********************************************************************
+ *
+ * This file is part of HBCI4Java.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ **********************************************************************/
+
+package org.kapott.hbci.rewrite;
+
+import org.kapott.hbci.rewrite.SegmentRewrite.Sink;
+import org.kapott.hbci.rewrite.SegmentRewrite.Stage;
+
+/**
+ * Zerlegt eine Nachricht in einem Durchlauf in Segmente und schickt sie
+ * nacheinander durch die Bearbeitungsstufen.
+ * Aendert keine Stufe etwas, wird die originale Nachricht ohne Kopie
+ * zurueckgeliefert. Andernfalls wird das Ergebnis in genau einem Puffer erzeugt.
+ */
+final class SegmentPipeline
+{
+    /**
+     * ct.
+     */
+    private SegmentPipeline()
+    {
+    }
+
+    /**
+     * Bearbeitet die Nachricht.
+     * @param msg die Nachricht.
+     * @param stages die Bearbeitungsstufen in der Reihenfolge der Ausfuehrung.
+     * @return die bearbeitete Nachricht.
+     */
+    static String run(String msg, Stage... stages)
+    {
+        if (stages.length == 0)
+            return msg;
+
+        Output out = new Output(msg);
+        Sink[] sinks = new Sink[stages.length+1];
+        sinks[stages.length] = out;
+        for (int i=stages.length-1;i>=0;i--)
+        {
+            final Stage stage = stages[i];
+            final Sink next = sinks[i+1];
+            sinks[i] = seg -> stage.process(seg,next);
+        }
+
+        Sink first = sinks[0];
+        int len = msg.length();
+        int start = 0;
+        for (int i=0;i<len;i++)
+        {
+            char ch = msg.charAt(i);
+            if (ch == '?')
+            {
+                i++;
+            }
+            else if (ch == '@')
+            {
+                i = Segment.skipBinary(msg,i,len) - 1;
+            }
+            else if (ch == '\'')
+            {
+                first.write(new Segment(msg,start,i+1,true));
+                start = i+1;
+            }
+        }
+        if (start < len)
+            first.write(new Segment(msg,start,len,false));
+
+        for (int i=0;i<stages.length;i++)
+            stages[i].finish(sinks[i+1]);
+
+        return out.toString();
+    }
+
+    /**
+     * Sammelt die bearbeiteten Segmente.
+     * Solange die Segmente unveraendert und in der originalen Reihenfolge
+     * ankommen, wird nichts kopiert.
+     */
+    private final static class Output implements Sink
+    {
+        private final String msg;
+        private int pos = 0;
+        private StringBuilder sb = null;
+
+        /**
+         * ct.
+         * @param msg die originale Nachricht.
+         */
+        private Output(String msg)
+        {
+            this.msg = msg;
+        }
+
+        /**
+         * @see org.kapott.hbci.rewrite.SegmentRewrite.Sink#write(org.kapott.hbci.rewrite.Segment)
+         */
+        public void write(Segment seg)
+        {
+            if (this.sb == null)
+            {
+                if (seg.isAt(this.msg,this.pos))
+                {
+                    this.pos = seg.getEnd();
+                    return;
+                }
+                this.sb = new StringBuilder(this.msg.length() + 64);
+                this.sb.append(this.msg,0,this.pos);
+            }
+            seg.appendTo(this.sb);
+        }
+
+        /**
+         * @see java.lang.Object#toString()
+         */
+        public String toString()
+        {
+            if (this.sb != null)
+                return this.sb.toString();
+            return this.pos == this.msg.length() ? this.msg : this.msg.substring(0,this.pos);
+        }
+    }
+}
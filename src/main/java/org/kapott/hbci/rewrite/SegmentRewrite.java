@@ -0,0 +1,126 @@
+/**********************************************************************
+ *
+ * This file is part of HBCI4Java.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ **********************************************************************/
+
+package org.kapott.hbci.rewrite;
+
+import org.kapott.hbci.manager.MsgGen;
+
+/**
+ * Basisklasse fuer Rewriter, die eine empfangene Nachricht segmentweise bearbeiten.
+ * Statt die komplette Nachricht als String zu erhalten und zu kopieren, liefert
+ * der Rewriter pro Nachricht eine {@link Stage}, die jedes Segment genau einmal
+ * sieht und es unveraendert, geaendert oder gar nicht weiterreicht.
+ * Aufeinanderfolgende Rewriter dieser Art werden von der {@link RewriterChain}
+ * zu einem einzigen Durchlauf ueber die Nachricht zusammengefasst.
+ * Die String-basierten Methoden aus {@link Rewrite} funktionieren weiterhin
+ * und bearbeiten die Nachricht nur mit diesem einen Rewriter.
+ */
+public abstract class SegmentRewrite extends Rewrite
+{
+    /**
+     * Nimmt die Segmente einer Bearbeitungsstufe entgegen.
+     */
+    public interface Sink
+    {
+        /**
+         * Uebernimmt das Segment.
+         * @param seg das Segment.
+         */
+        public void write(Segment seg);
+    }
+
+    /**
+     * Die Bearbeitungsstufe eines Rewriters fuer genau eine Nachricht.
+     * Sie darf daher Zustand fuer die Nachricht besitzen.
+     */
+    public interface Stage
+    {
+        /**
+         * Bearbeitet ein Segment.
+         * @param seg das Segment.
+         * @param out hierhin werden die Segmente weitergereicht.
+         */
+        public void process(Segment seg, Sink out);
+
+        /**
+         * Wird nach dem letzten Segment der Nachricht aufgerufen.
+         * @param out hierhin werden noch zurueckgehaltene Segmente weitergereicht.
+         */
+        public default void finish(Sink out)
+        {
+        }
+    }
+
+    /**
+     * Liefert die Bearbeitungsstufe fuer eine verschluesselte Nachricht.
+     * @param gen der Message-Generator.
+     * @param ctx der Kontext des Nachrichtenaustauschs.
+     * @return die Bearbeitungsstufe oder NULL, wenn der Rewriter die Nachricht nicht bearbeitet.
+     */
+    public Stage createCryptedStage(MsgGen gen, RewriteContext ctx)
+    {
+        return null;
+    }
+
+    /**
+     * Liefert die Bearbeitungsstufe fuer eine unverschluesselte Nachricht.
+     * @param gen der Message-Generator.
+     * @param ctx der Kontext des Nachrichtenaustauschs.
+     * @return die Bearbeitungsstufe oder NULL, wenn der Rewriter die Nachricht nicht bearbeitet.
+     */
+    public Stage createClearTextStage(MsgGen gen, RewriteContext ctx)
+    {
+        return null;
+    }
+
+    /**
+     * @see org.kapott.hbci.rewrite.Rewrite#incomingCrypted(java.lang.String, org.kapott.hbci.manager.MsgGen)
+     */
+    public String incomingCrypted(String st, MsgGen gen)
+    {
+        return this.incomingCrypted(st,gen,getContext());
+    }
+
+    /**
+     * @see org.kapott.hbci.rewrite.Rewrite#incomingClearText(java.lang.String, org.kapott.hbci.manager.MsgGen)
+     */
+    public String incomingClearText(String st, MsgGen gen)
+    {
+        return this.incomingClearText(st,gen,getContext());
+    }
+
+    /**
+     * @see org.kapott.hbci.rewrite.Rewrite#incomingCrypted(java.lang.String, org.kapott.hbci.manager.MsgGen, org.kapott.hbci.rewrite.RewriteContext)
+     */
+    public String incomingCrypted(String st, MsgGen gen, RewriteContext ctx)
+    {
+        Stage stage = this.createCryptedStage(gen,ctx);
+        return stage != null ? SegmentPipeline.run(st,stage) : st;
+    }
+
+    /**
+     * @see org.kapott.hbci.rewrite.Rewrite#incomingClearText(java.lang.String, org.kapott.hbci.manager.MsgGen, org.kapott.hbci.rewrite.RewriteContext)
+     */
+    public String incomingClearText(String st, MsgGen gen, RewriteContext ctx)
+    {
+        Stage stage = this.createClearTextStage(gen,ctx);
+        return stage != null ? SegmentPipeline.run(st,stage) : st;
+    }
+}
@@ -37,10 +37,11 @@ import org.kapott.hbci.protocol.MultipleSEGs;
 import org.kapott.hbci.protocol.MultipleSyntaxElements;
 import org.kapott.hbci.protocol.SEG;
 import org.kapott.hbci.protocol.SyntaxElement;
-import org.w3c.dom.Element;
-import org.w3c.dom.Node;
+import org.kapott.hbci.protocol.syntax.SyntaxDef;
+import org.kapott.hbci.tools.PoolableObject;
 
 public final class Crypt
+    extends PoolableObject
 {
     public final static String SECFUNC_ENC="4";
     public final static String SECFUNC_ENC_PLAIN="998";
@@ -133,10 +134,9 @@ public final class Crypt
         if (passport.hasInstEncKey()) {
             String msgName = msg.getName();
             MsgGen gen=handlerdata.getMsgGen();
-            Node msgNode = msg.getSyntaxDef(msgName, gen.getSyntax());
-            String dontcryptAttr = ((Element)msgNode).getAttribute("dontcrypt");
+            SyntaxDef msgDef = msg.getSyntaxDef(msgName, gen.getSyntaxModel());
 
-            if (dontcryptAttr.length() == 0) {
+            if (!msgDef.isDontCrypt()) {
                 try {
                     setParam("secfunc",passport.getCryptFunction());
                     setParam("keytype",passport.getCryptKeyType());
@@ -334,7 +334,7 @@ public final class Crypt
                         append(new String(plainMsg,0,plainMsg.length-padLength,Comm.ENCODING)).
                         append(msgtail.toString(0));
                     
-                    HBCIUtils.log("decrypted message: "+ret,HBCIUtils.LOG_DEBUG2);
+                    HBCIUtils.log("decrypted message: {}",HBCIUtils.LOG_DEBUG2,ret);
                 } catch (Exception ex) {
                     throw new HBCI_Exception("*** error while decrypting",ex);
                 }
@@ -41,10 +41,11 @@ import org.kapott.hbci.protocol.MultipleSyntaxElements;
 import org.kapott.hbci.protocol.SEG;
 import org.kapott.hbci.protocol.SyntaxElement;
 import org.kapott.hbci.protocol.factory.SEGFactory;
-import org.w3c.dom.Element;
-import org.w3c.dom.Node;
+import org.kapott.hbci.protocol.syntax.SyntaxDef;
+import org.kapott.hbci.tools.PoolableObject;
 
 public final class Sig
+    extends PoolableObject
 {
     public final static String SECFUNC_HBCI_SIG_RDH="1";
     public final static String SECFUNC_HBCI_SIG_DDV="2";
@@ -244,17 +245,16 @@ public final class Sig
         if (mainPassport.hasMySigKey()) {
             String msgName = msg.getName();
             MsgGen gen=handlerdata.getMsgGen();
-            Node   msgNode = msg.getSyntaxDef(msgName, gen.getSyntax());
-            String dontsignAttr = ((Element)msgNode).getAttribute("dontsign");
+            SyntaxDef msgDef = msg.getSyntaxDef(msgName, gen.getSyntaxModel());
 
-            if (dontsignAttr.length()==0) {
+            if (!msgDef.isDontSign()) {
                 try {
                     int numOfPassports=passports.size();
                     
                     // create an empty sighead and sigtail segment for each required signature
                     for (int idx=0;idx<numOfPassports;idx++) {
-                        SEG sighead=SEGFactory.getInstance().createSEG("SigHeadUser","SigHead",msgName,numOfPassports-1-idx,gen.getSyntax());
-                        SEG sigtail=SEGFactory.getInstance().createSEG("SigTailUser","SigTail",msgName,idx,gen.getSyntax());
+                        SEG sighead=SEGFactory.getInstance().createSEG("SigHeadUser","SigHead",msgName,numOfPassports-1-idx,gen.getSyntaxModel());
+                        SEG sigtail=SEGFactory.getInstance().createSEG("SigTailUser","SigTail",msgName,idx,gen.getSyntaxModel());
                         
                         List<MultipleSyntaxElements> msgelements=msg.getChildContainers();
                         List<SyntaxElement> sigheads=((MultipleSEGs)(msgelements.get(1))).getElements();
@@ -269,6 +269,7 @@ public final class Sig
                             }
                         }
                         sigheads.set(numOfPassports-1-idx,sighead);
+                        sighead.setParent(msgelements.get(1));
                         
                         // insert sigtail segment in message
                         if (idx<sigtails.size()) {
@@ -279,6 +280,7 @@ public final class Sig
                             }
                         }
                         sigtails.set(idx,sigtail);
+                        sigtail.setParent(msgelements.get(msgelements.size()-2));
                     }
                     
                     // fill all sighead and sigtail segments
@@ -509,10 +511,9 @@ public final class Sig
         if (mainPassport.hasInstSigKey()) {
             String msgName = msg.getName();
             MsgGen gen=handlerdata.getMsgGen();
-            Node msgNode = msg.getSyntaxDef(msgName, gen.getSyntax());
-            String dontsignAttr = ((Element)msgNode).getAttribute("dontsign");
+            SyntaxDef msgDef = msg.getSyntaxDef(msgName, gen.getSyntaxModel());
 
-            if (dontsignAttr.length()==0) {
+            if (!msgDef.isDontSign()) {
                 if (hasSig()) {
                     readSigHead();
                     try {
@@ -43,7 +43,7 @@ public class CryptFactory
     
     private CryptFactory()
     {
-    	super(Integer.parseInt(HBCIUtils.getParam("kernel.objpool.Crypt","8")));
+    	super(getPoolSize("Crypt",8));
     }
     
     public Crypt createCrypt(IHandlerData handlerdata, MSG msg)
@@ -54,14 +54,10 @@ public class CryptFactory
         if (ret==null) {
             HBCIUtils.log("no, creating new crypt",HBCIUtils.LOG_DEBUG);
             ret=new Crypt(handlerdata,msg);
-            HBCIUtils.log("adding to used pool",HBCIUtils.LOG_DEBUG);
-            addToUsedPool(ret);
         } else {
             try {
                 HBCIUtils.log("yes, initializing with handlerdata + message",HBCIUtils.LOG_DEBUG);
                 ret.init(handlerdata,msg);
-                HBCIUtils.log("adding to used pool",HBCIUtils.LOG_DEBUG);
-                addToUsedPool(ret);
             } catch (RuntimeException e) {
                 addToFreePool(ret);
                 throw e;
@@ -72,11 +68,8 @@ public class CryptFactory
         return ret;
     }
     
-    public void unuseObject(Object o)
+    protected void destroyObject(Object o)
     {
-        if (o!=null) {
-            ((Crypt)o).destroy();
-            super.unuseObject(o);
-        }
+        ((Crypt)o).destroy();
     }
 }
@@ -21,7 +21,6 @@
 
 package org.kapott.hbci.security.factory;
 
-import org.kapott.hbci.manager.HBCIUtils;
 import org.kapott.hbci.manager.IHandlerData;
 import org.kapott.hbci.passport.HBCIPassportList;
 import org.kapott.hbci.protocol.MSG;
@@ -43,7 +42,7 @@ public class SigFactory
     
     private SigFactory()
     {
-    	super(Integer.parseInt(HBCIUtils.getParam("kernel.objpool.Sig","8")));
+    	super(getPoolSize("Sig",8));
     }
     
     public Sig createSig(IHandlerData handlerdata, MSG msg, HBCIPassportList passports)
@@ -52,11 +51,9 @@ public class SigFactory
         
         if (ret==null) {
             ret=new Sig(handlerdata,msg,passports);
-            addToUsedPool(ret);
         } else {
             try {
                 ret.init(handlerdata,msg,passports);
-                addToUsedPool(ret);
             } catch (RuntimeException e) {
                 addToFreePool(ret);
                 throw e;
@@ -66,11 +63,8 @@ public class SigFactory
         return ret;
     }
     
-    public void unuseObject(Object o)
+    protected void destroyObject(Object o)
     {
-        if (o!=null) {
-            ((Sig)o).destroy();
-            super.unuseObject(o);
-        }
+        ((Sig)o).destroy();
     }
 }
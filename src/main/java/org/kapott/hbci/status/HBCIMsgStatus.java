@@ -23,12 +23,22 @@ package org.kapott.hbci.status;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.Hashtable;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
+import java.util.TreeMap;
 
 import org.kapott.hbci.dialog.KnownReturncode;
 import org.kapott.hbci.manager.HBCIUtilsInternal;
+import org.kapott.hbci.protocol.MSG;
+import org.kapott.hbci.protocol.MultipleSyntaxElements;
+import org.kapott.hbci.protocol.SyntaxElement;
+import org.kapott.hbci.protocol.factory.MSGFactory;
 
 /** <p>Enthält alle Status-Informationen zu genau einem Nachrichtenaustausch.
     Es ist zu beachten, dass in einer Nachricht Informationen zu
@@ -50,8 +60,26 @@ public final class HBCIMsgStatus
         einzelne Segmente der gesendeten Nachricht beziehen. */
     public HBCIStatus segStatus;
     
+    /* die explizit gesetzten bzw. bereits materialisierten daten */
     private Properties data;
     
+    /* die gesendete und die empfangene nachricht. die werte daraus werden
+       erst beim zugriff gelesen und erst von getData() komplett in die
+       properties kopiert. bis dahin bleiben die nachrichten hier referenziert */
+    private MSG        sent;
+    private Properties paths;
+    private MSG        received;
+    private String     receivedRaw;
+    
+    /* true, wenn die nachrichten nach dem kopieren an den pool zurueckgehen */
+    private boolean    owner;
+    
+    /* index der antwortsegmente: segment-referenz -> header der antwortsegmente
+       (in der reihenfolge des eintreffens) und header -> daten des segmentes.
+       wird beim ersten zugriff aufgebaut */
+    private Map<Integer,List<String>> responseHeaders;
+    private Map<String,Properties>    responseData;
+    
     public HBCIMsgStatus()
     {
         this.globStatus=new HBCIStatus();
@@ -66,16 +94,79 @@ public final class HBCIMsgStatus
     }
     
     /** Wird von der <em>HBCI4Java</em>-Dialog-Engine aufgerufen */
-    public void setData(Properties data)
+    public synchronized void setData(Properties data)
     {
         this.data=data;
+        release();
+        this.responseHeaders=null;
+        this.responseData=null;
         extractStatusData();
     }
     
+    /** Wird von der <em>HBCI4Java</em>-Dialog-Engine aufgerufen. Die Werte
+        der gesendeten Nachricht werden erst beim Zugriff gelesen. Die Nachricht
+        darf daher nicht veraendert oder wiederverwendet werden, solange
+        {@link #uses(MSG)} <code>true</code> liefert. */
+    public synchronized void setSentMessage(MSG msg)
+    {
+        this.sent=msg;
+        this.paths=null;
+    }
+    
+    /** Wird von der <em>HBCI4Java</em>-Dialog-Engine aufgerufen. Die Werte
+        der empfangenen Nachricht werden erst beim Zugriff gelesen. Die Nachricht
+        darf daher nicht veraendert oder wiederverwendet werden, solange
+        {@link #uses(MSG)} <code>true</code> liefert.
+        @param msg die empfangene Nachricht
+        @param raw die empfangene Nachricht, wie sie signiert wurde */
+    public synchronized void setReceivedMessage(MSG msg,String raw)
+    {
+        this.received=msg;
+        this.receivedRaw=raw;
+        this.responseHeaders=null;
+        this.responseData=null;
+        extractStatusData();
+    }
+    
+    /** Prueft, ob die Nachricht von diesem Objekt verwendet wird und daher
+        nicht wiederverwendet werden darf.
+        @param msg die Nachricht
+        @return <code>true</code>, wenn die Nachricht verwendet wird */
+    public synchronized boolean uses(MSG msg)
+    {
+        return msg!=null && (msg==this.sent || msg==this.received);
+    }
+    
+    /** Wird von der <em>HBCI4Java</em>-Dialog-Engine am Ende des
+        Nachrichtenaustauschs aufgerufen. Die Nachrichten bleiben weiter in
+        diesem Objekt, es gibt sie aber selbst an den Pool zurueck, sobald
+        {@link #getData()} ihre Werte kopiert hat. Wird das nie benoetigt,
+        werden sie zusammen mit diesem Objekt verworfen. */
+    public synchronized void adoptMessages()
+    {
+        this.owner=true;
+    }
+    
+    private void release()
+    {
+        if (owner) {
+            if (sent!=null)
+                MSGFactory.getInstance().unuseObject(sent);
+            if (received!=null && received!=sent)
+                MSGFactory.getInstance().unuseObject(received);
+        }
+        this.sent=null;
+        this.paths=null;
+        this.received=null;
+        this.receivedRaw=null;
+    }
+    
     /** Wird von der <em>HBCI4Java</em>-Dialog-Engine aufgerufen */
-    public void addData(Properties _data)
+    public synchronized void addData(Properties _data)
     {
         this.data.putAll(_data);
+        this.responseHeaders=null;
+        this.responseData=null;
         extractStatusData();
     }
      
@@ -88,8 +179,9 @@ public final class HBCIMsgStatus
         for (int i=0;true;i++) {
             HBCIRetVal rv=null;
             try {
-                rv=new HBCIRetVal(data,
-                                  HBCIUtilsInternal.withCounter("RetGlob.RetVal",i));
+                rv=new HBCIRetVal(this::getValue,
+                                  HBCIUtilsInternal.withCounter("RetGlob.RetVal",i),
+                                  null);
             } catch (Exception e) {
                 break;
             }
@@ -100,7 +192,7 @@ public final class HBCIMsgStatus
         // segment-codes extrahieren
         for (int i=0;true;i++) {
             String segheader=HBCIUtilsInternal.withCounter("RetSeg",i);
-            String segref=data.getProperty(segheader+".SegHead.ref");
+            String segref=getValue(segheader+".SegHead.ref");
             if (segref==null) {
                 break;
             }
@@ -108,7 +200,7 @@ public final class HBCIMsgStatus
             for (int j=0;true;j++) {
                 HBCIRetVal rv=null;
                 try {
-                    rv=new HBCIRetVal(data,
+                    rv=new HBCIRetVal(this::getValue,
                                       HBCIUtilsInternal.withCounter(segheader+".RetVal",j),
                                       segref);
                 } catch (Exception e) {
@@ -126,12 +218,165 @@ public final class HBCIMsgStatus
         <em>values</em> enthalten jeweils den Wert des entsprechenden Datenelementes.
         Die Bezeichnungen der Datenelemente der <em>gesendeten</em> Nachricht tragen
         zur Unterscheidung mit den Datenelementen der empfangenen Nachricht das
-        Prefix "<code>orig_</code>".</p> */
-    public Properties getData()
+        Prefix "<code>orig_</code>".</p>
+        <p>Die Properties werden beim ersten Aufruf aus den Nachrichten erzeugt.
+        Werden nur einzelne Werte benoetigt, ist {@link #getValue(String)}
+        guenstiger.</p> */
+    public synchronized Properties getData()
     {
+        if (sent!=null || received!=null) {
+            Properties p=new Properties();
+            
+            // zu jeder SyntaxElement-Referenz (2:3,1)==(SEG:DEG,DE) der pfad
+            // des elementes und die werte, wie sie versandt wurden
+            if (sent!=null) {
+                p.putAll(getPaths());
+                sent.extractValues((key,value) -> p.setProperty("orig_"+key,value));
+            }
+            
+            if (received!=null) {
+                p.putAll(received.getData());
+                if (receivedRaw!=null)
+                    p.setProperty("_msg",receivedRaw);
+            }
+            
+            p.putAll(data);
+            this.data=p;
+            release();
+        }
         return data;
     }
     
+    /** <p>Gibt den Wert eines einzelnen Datenelementes zurück. Die Namen
+        entsprechen den <em>keys</em> in {@link #getData()}. Anders als dort
+        wird der Wert direkt in der Nachricht gesucht, ohne zuvor alle Daten
+        zu kopieren.</p>
+        @param key der Lowlevelname des Datenelementes
+        @return der Wert oder <code>null</code>, wenn es nicht existiert */
+    public synchronized String getValue(String key)
+    {
+        String ret=data.getProperty(key);
+        if (ret!=null || (sent==null && received==null))
+            return ret;
+        
+        if (key.startsWith("orig_"))
+            return (sent!=null)?sent.getValueOrNull(key.substring(5)):null;
+        if (key.length()!=0 && Character.isDigit(key.charAt(0)))
+            return (sent!=null)?getPaths().getProperty(key):null;
+        if (key.equals("_msg"))
+            return receivedRaw;
+        return (received!=null)?received.getValueOrNull(received.getName()+"."+key):null;
+    }
+    
+    /** Gibt die Namen der Antwortsegmente zurück, die sich auf das angegebene
+        Segment der gesendeten Nachricht beziehen (z.B. <code>GVRes_2.SaldoRes5</code>).
+        Die Reihenfolge entspricht der des Eintreffens.
+        @param segref die Nummer des Segmentes in der gesendeten Nachricht
+        @return die Namen der Antwortsegmente, niemals <code>null</code> */
+    public synchronized List<String> getResponseHeaders(int segref)
+    {
+        buildResponseIndex();
+        List<String> ret=responseHeaders.get(segref);
+        return (ret!=null)?ret:Collections.<String>emptyList();
+    }
+    
+    /** Gibt die Daten eines Antwortsegmentes zurück. Die <em>keys</em> sind
+        relativ zum Namen des Segmentes, also ohne "<code>header.</code>".
+        @param header der Name des Antwortsegmentes, wie er von
+               {@link #getResponseHeaders(int)} geliefert wird
+        @return die Daten des Segmentes, niemals <code>null</code> */
+    public synchronized Properties getResponseData(String header)
+    {
+        buildResponseIndex();
+        Properties ret=responseData.get(header);
+        return (ret!=null)?ret:new Properties();
+    }
+    
+    /* baut den index der antwortsegmente in einem durchlauf auf. solange die
+       daten noch nicht materialisiert sind, werden nur die GVRes-teilbaeume der
+       empfangenen nachricht gelesen */
+    private void buildResponseIndex()
+    {
+        if (responseData!=null)
+            return;
+        
+        Hashtable<String,String> values=new Hashtable<String,String>();
+        if (received!=null) {
+            int nameskip=received.getName().length()+1;
+            for (MultipleSyntaxElements l:received.getChildContainers()) {
+                if (l==null)
+                    continue;
+                for (SyntaxElement e:l.getElements()) {
+                    if (e!=null && e.getPath().startsWith("GVRes",nameskip)) {
+                        Hashtable<String,String> h=new Hashtable<String,String>();
+                        e.extractValues(h);
+                        for (Map.Entry<String,String> entry:h.entrySet())
+                            values.put(entry.getKey().substring(nameskip),entry.getValue());
+                    }
+                }
+            }
+        }
+        for (Enumeration<?> e=data.propertyNames();e.hasMoreElements();) {
+            String key=(String)e.nextElement();
+            if (key.startsWith("GVRes"))
+                values.put(key,data.getProperty(key));
+        }
+        
+        // header der antwortsegmente und deren segment-referenz; sortiert
+        // nach der nummer des antwortsegmentes (GVRes=0, GVRes_2=2 usw.)
+        String                               suffix=".SegHead.ref";
+        Map<Integer,TreeMap<Integer,String>> sorted=new HashMap<Integer,TreeMap<Integer,String>>();
+        Map<String,Properties>               segments=new HashMap<String,Properties>();
+        for (Map.Entry<String,String> entry:values.entrySet()) {
+            String key=entry.getKey();
+            if (!key.endsWith(suffix))
+                continue;
+            
+            String header=key.substring(0,key.length()-suffix.length());
+            int    resnum=0;
+            if (key.startsWith("GVRes_"))
+                resnum=Integer.parseInt(key.substring(key.indexOf('_')+1,key.indexOf('.')));
+            
+            Integer segref=Integer.valueOf(Integer.parseInt(entry.getValue()));
+            TreeMap<Integer,String> headers=sorted.get(segref);
+            if (headers==null) {
+                headers=new TreeMap<Integer,String>();
+                sorted.put(segref,headers);
+            }
+            headers.put(resnum,header);
+            segments.put(header,new Properties());
+        }
+        
+        // jeden wert seinem antwortsegment zuordnen (i.d.R. sind das die
+        // ersten beiden teile des pfades, z.B. GVRes_2.SaldoRes5)
+        for (Map.Entry<String,String> entry:values.entrySet()) {
+            String key=entry.getKey();
+            for (int dot=key.indexOf('.');dot!=-1;dot=key.indexOf('.',dot+1)) {
+                Properties p=segments.get(key.substring(0,dot));
+                if (p!=null) {
+                    p.setProperty(key.substring(dot+1),entry.getValue());
+                    break;
+                }
+            }
+        }
+        
+        Map<Integer,List<String>> headers=new HashMap<Integer,List<String>>();
+        for (Map.Entry<Integer,TreeMap<Integer,String>> entry:sorted.entrySet())
+            headers.put(entry.getKey(),Collections.unmodifiableList(new ArrayList<String>(entry.getValue().values())));
+        
+        this.responseHeaders=headers;
+        this.responseData=segments;
+    }
+    
+    private Properties getPaths()
+    {
+        if (paths==null) {
+            paths=new Properties();
+            sent.getElementPaths(paths,null,null,null);
+        }
+        return paths;
+    }
+    
     /** Gibt zurück, ob bei der Ausführung eines Nachrichtenaustauschs Exceptions
         aufgetreten sind. Diese Exceptions können entweder beim Erzeugen bzw.
         Versenden der Kundennachricht oder aber beim Empfangen und Auswerten
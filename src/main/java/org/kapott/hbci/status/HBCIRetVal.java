@@ -24,6 +24,7 @@ package org.kapott.hbci.status;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Properties;
+import java.util.function.Function;
 
 import org.kapott.hbci.exceptions.HBCI_Exception;
 import org.kapott.hbci.manager.HBCIUtilsInternal;
@@ -92,19 +93,26 @@ public final class HBCIRetVal
 
     /** Wird von der <em>HBCI4Java</em>-Dialog-Engine aufgerufen */
     public HBCIRetVal(Properties result,String header,String segref)
+    {
+        this(result::getProperty,header,segref);
+    }
+
+    /* liest die daten ueber die angegebene funktion - damit kann der wert direkt
+       aus der nachricht gelesen werden, ohne vorher alle daten zu kopieren */
+    HBCIRetVal(Function<String,String> result,String header,String segref)
     {
         this.segref=segref;
 
-        code=result.getProperty(header+".code");
+        code=result.apply(header+".code");
         if (code==null)
             throw new HBCI_Exception("*** no valid error");
-        deref=result.getProperty(header+".ref");
-        text=result.getProperty(header+".text");
+        deref=result.apply(header+".ref");
+        text=result.apply(header+".text");
 
         element=null;
         if (segref!=null) {
-            String path=result.getProperty(segref+((deref!=null)?":"+deref:""));
-            String value=(path!=null)?result.getProperty("orig_"+path):null;
+            String path=result.apply(segref+((deref!=null)?":"+deref:""));
+            String value=(path!=null)?result.apply("orig_"+path):null;
             element=path+((value!=null)?("="+value):"");
         }
                 
@@ -112,7 +120,7 @@ public final class HBCIRetVal
         int i=0;
         String parm;
 
-        while ((parm=result.getProperty(HBCIUtilsInternal.withCounter(header+".parm",i)))!=null) {
+        while ((parm=result.apply(HBCIUtilsInternal.withCounter(header+".parm",i)))!=null) {
             a.add(parm);
             i++;
         }
@@ -21,15 +21,53 @@
 
 package org.kapott.hbci.tools;
 
+import java.lang.ref.Cleaner;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
 
+import org.kapott.hbci.manager.HBCIUtils;
+
+/* Object-Pool fuer haeufig benutzte Objekte. Freigegebene Objekte landen
+   zunaechst in einem kleinen Cache des freigebenden Threads. Laeuft der
+   ueber, wird die Haelfte davon als Block auf einen gemeinsamen, lock-freien
+   Stack gelegt, von dem leere Thread-Caches wieder blockweise nachgefuellt
+   werden. Entnehmen und Freigeben sind damit O(1) und kommen im Normalfall
+   ohne Synchronisation aus.
+   
+   Die maximale Groesse gilt fuer den gesamten Pool, also fuer den
+   gemeinsamen Stack und die Caches aller Threads zusammen. Dazu reserviert
+   ein Thread-Cache blockweise Plaetze aus der maximalen Groesse; die Plaetze
+   wandern mit den Bloecken zwischen Cache und Stack. Ist keine Reservierung
+   mehr moeglich, wird das freigegebene Objekt verworfen. Endet ein Thread,
+   werden die Plaetze seines Caches wieder freigegeben.
+   
+   Die Objekte werden nicht mehr als "benutzt" registriert. Objekte, die von
+   PoolableObject abgeleitet sind, merken sich stattdessen selbst, ob sie
+   gerade im Pool liegen. Eine doppelte Freigabe wird damit erkannt und
+   ignoriert, statt dasselbe Objekt spaeter an zwei Benutzer auszugeben. Bei
+   anderen Objekten findet diese Pruefung nicht statt. */
 public class ObjectFactory 
 {
-    protected final Collection<Object> freeObjects;
-    protected final Collection<Object> usedObjects;
-    private   final int        maxPoolSize;
-    protected int              currentPoolSize;
+    /** maximale groesse des caches pro thread */
+    private final static int LOCAL_SIZE=32;
+    
+    /** gibt die plaetze der caches beendeter threads frei */
+    private final static Cleaner CLEANER=Cleaner.create();
+    
+    private final int                     maxPoolSize;
+    private final int                     localSize;
+    private final int                     batchSize;
+    private final ThreadLocal<LocalCache> local;
+    private final AtomicReference<Batch>  shared;
+    private final AtomicInteger           sharedSize;
+    private final AtomicInteger           reserved;
+    private final LongAdder               hits;
+    private final LongAdder               misses;
     
     public ObjectFactory()
     {
@@ -38,83 +76,296 @@ public class ObjectFactory
     
     public ObjectFactory(int maxPoolSize)
     {
-        this.freeObjects=new ArrayList<Object>();
-        this.usedObjects=new ArrayList<Object>();
-        this.maxPoolSize=maxPoolSize;
-        this.currentPoolSize=0;
+        this.maxPoolSize=Math.max(0,maxPoolSize);
+        this.localSize=Math.min(LOCAL_SIZE,this.maxPoolSize);
+        this.batchSize=(this.localSize+1)/2;
+        this.local=new ThreadLocal<LocalCache>();
+        this.shared=new AtomicReference<Batch>();
+        this.sharedSize=new AtomicInteger();
+        this.reserved=new AtomicInteger();
+        this.hits=new LongAdder();
+        this.misses=new LongAdder();
+    }
+    
+    /** liefert die groesse des pools fuer den angegebenen objekttyp aus
+        dem kernel-parameter "kernel.objpool.<type>". ist
+        "kernel.objpool.enabled" auf "0" gesetzt, wird 0 (= kein pooling)
+        zurueckgegeben */
+    public static int getPoolSize(String type,int def)
+    {
+        return HBCIUtils.getConfig().getPoolSize(type,def);
+    }
+    
+    public Object getFreeObject()
+    {
+        if (localSize!=0) {
+            LocalCache cache=getLocalCache();
+            if (cache.size==0) {
+                // thread-cache leer - einen block vom gemeinsamen stack holen
+                // die plaetze der objekte kommen mit dem block mit
+                Batch batch=popBatch();
+                if (batch!=null) {
+                    System.arraycopy(batch.objects,0,cache.objects,0,batch.objects.length);
+                    cache.size=batch.objects.length;
+                    cache.slots.add(batch.objects.length);
+                    release(cache,cache.slots.count-localSize);
+                }
+            }
+            
+            if (cache.size!=0) {
+                Object ret=cache.objects[--cache.size];
+                cache.objects[cache.size]=null;
+                setPooled(ret,false);
+                if (cache.size==0) {
+                    // ein leerer cache haelt hoechstens einen block freier plaetze
+                    release(cache,cache.slots.count-batchSize);
+                }
+                hits.increment();
+                return ret;
+            }
+        }
+        
+        misses.increment();
+        return null;
+    }
+    
+    /** @deprecated benutzte objekte werden nicht mehr verwaltet, die methode
+        tut nichts mehr */
+    @Deprecated
+    public void addToUsedPool(Object o)
+    {
+    }
+    
+    public void addToFreePool(Object o)
+    {
+        if (o==null || localSize==0) {
+            return;
+        }
+        
+        if (isPooled(o)) {
+            HBCIUtils.log("object "+o.getClass().getName()+" is already in pool - ignoring",HBCIUtils.LOG_WARN);
+            return;
+        }
+        
+        LocalCache cache=getLocalCache();
+        if (cache.size==cache.slots.count) {
+            if (cache.size==localSize) {
+                // thread-cache voll - die haelfte mitsamt ihren plaetzen auf
+                // den gemeinsamen stack legen
+                Object[] objects=new Object[batchSize];
+                cache.size-=batchSize;
+                System.arraycopy(cache.objects,cache.size,objects,0,batchSize);
+                Arrays.fill(cache.objects,cache.size,localSize,null);
+                cache.slots.add(-batchSize);
+                pushBatch(objects);
+            }
+            
+            if (reserve(cache)==0) {
+                // der pool ist voll - das objekt wird verworfen
+                return;
+            }
+        }
+        setPooled(o,true);
+        cache.objects[cache.size++]=o;
     }
     
-    public synchronized Object getFreeObject()
+    /** gibt ein benutztes objekt frei. liegt es bereits im pool, wird
+        es nicht noch einmal aufgenommen und auch nicht zerstoert */
+    public void unuseObject(Object o)
     {
-    	if (freeObjects.isEmpty()) {
-    	    return null;
+        if (o==null) {
+            return;
+        }
+        
+        if (isPooled(o)) {
+            HBCIUtils.log("object "+o.getClass().getName()+" released twice - ignoring",HBCIUtils.LOG_WARN);
+            return;
         }
         
-    	Object ret=freeObjects.iterator().next();
-    	freeObjects.remove(ret);
-    	currentPoolSize--;
-    	// HBCIUtils.log("returning unused object, new: "+toString(),HBCIUtils.LOG_DEBUG);
-    	return ret;
+        destroyObject(o);
+        addToFreePool(o);
+    }
+    
+    /** gibt die ressourcen eines freigegebenen objektes frei, bevor es in
+        den pool gelegt wird. wird von den abgeleiteten factories
+        ueberschrieben */
+    protected void destroyObject(Object o)
+    {
     }
     
-    public synchronized void addToUsedPool(Object o)
+    /** anzahl der aufrufe von getFreeObject(), die ein objekt aus dem pool
+        liefern konnten */
+    public long getHits()
     {
-    	// HBCIUtils.log("trying to add object to used pool",HBCIUtils.LOG_DEBUG);
-    	if (o!=null && currentPoolSize<maxPoolSize) {
-    		usedObjects.add(o);
-    		currentPoolSize++;
-    		// HBCIUtils.log("ok; new: "+toString(),HBCIUtils.LOG_DEBUG);
-    	}
+        return hits.sum();
     }
     
-    public synchronized void addToFreePool(Object o)
+    /** anzahl der aufrufe von getFreeObject(), bei denen ein neues objekt
+        erzeugt werden musste */
+    public long getMisses()
     {
-    	// HBCIUtils.log("trying to add object to free pool",HBCIUtils.LOG_DEBUG);
-    	if (o!=null && currentPoolSize<maxPoolSize) {
-    		freeObjects.add(o);
-    		currentPoolSize++;
-    		// HBCIUtils.log("ok; new: "+toString(),HBCIUtils.LOG_DEBUG);
-    	}
+        return misses.sum();
     }
     
-    public synchronized void unuseObject(Object o)
+    /** anzahl der plaetze, die im pool gerade belegt oder von den caches
+        der threads reserviert sind. das ist eine obergrenze fuer die anzahl
+        der objekte im pool und nie groesser als die maximale groesse */
+    public int getSize()
     {
-    	if (usedObjects.remove(o)) {
-    		freeObjects.add(o);
-    		// HBCIUtils.log("removed an object from used pool; new: "+toString(),HBCIUtils.LOG_DEBUG);
-    	}
+        return reserved.get();
     }
     
     public String toString()
     {
         StringBuffer ret=new StringBuffer();
         
-        ret.append("used:").append(usedObjects.size()).append(" free:").append(freeObjects.size()).append(" maxsize:").append(maxPoolSize);
+        ret.append("hits:").append(getHits()).append(" misses:").append(getMisses());
+        ret.append(" shared:").append(sharedSize.get()).append(" size:").append(getSize());
+        ret.append(" maxsize:").append(maxPoolSize);
         
-        /*
-        for (Iterator i=usedObjects.iterator();i.hasNext();) {
-            ret.append(System.getProperty("line.separator"));
+        return ret.toString();
+    }
+    
+    /** @deprecated benutzte objekte werden nicht mehr verwaltet, es wird
+        immer eine leere liste zurueckgegeben */
+    @Deprecated
+    public Collection<Object> getUsedObjects() 
+    {
+        return Collections.emptyList();
+    }
+    
+    /** @deprecated liefert nur noch eine momentaufnahme der objekte im
+        gemeinsamen pool, die caches der einzelnen threads fehlen darin */
+    @Deprecated
+    public Collection<Object> getFreeObjects()
+    {
+        Collection<Object> ret=new ArrayList<Object>();
+        for (Batch b=shared.get();b!=null;b=b.next) {
+            Collections.addAll(ret,b.objects);
+        }
+        return ret;
+    }
+    
+    private LocalCache getLocalCache()
+    {
+        LocalCache ret=local.get();
+        if (ret==null) {
+            ret=new LocalCache(localSize);
+            local.set(ret);
             
-            Object o=i.next();
-            if (o instanceof SyntaxElement)
-                ret.append("used: "+((SyntaxElement)o).toString(0));
-            else if (o instanceof MultipleSyntaxElements)
-                ret.append("used: "+((MultipleSyntaxElements)o).toString(0));
-            else 
-                ret.append("used: "+o.toString());
+            // endet der thread, sind cache und objekte nicht mehr erreichbar,
+            // die reservierten plaetze muessen aber zurueckgegeben werden
+            final Slots         slots=ret.slots;
+            final AtomicInteger reserved=this.reserved;
+            CLEANER.register(ret,() -> reserved.addAndGet(-slots.count));
         }
-        */
+        return ret;
+    }
+    
+    /** reserviert bis zu einem block weiterer plaetze fuer den cache.
+        liefert die anzahl der reservierten plaetze, 0 wenn der pool voll ist */
+    private int reserve(LocalCache cache)
+    {
+        int want=Math.min(batchSize,localSize-cache.slots.count);
+        int size;
+        int num;
+        do {
+            size=reserved.get();
+            num=Math.min(want,maxPoolSize-size);
+            if (num<=0) {
+                return 0;
+            }
+        } while (!reserved.compareAndSet(size,size+num));
         
-        return ret.toString();
+        cache.slots.add(num);
+        return num;
+    }
+    
+    /** gibt freie plaetze des caches zurueck */
+    private void release(LocalCache cache,int num)
+    {
+        if (num>0) {
+            cache.slots.add(-num);
+            reserved.addAndGet(-num);
+        }
+    }
+    
+    private void pushBatch(Object[] objects)
+    {
+        // die plaetze der objekte sind bereits reserviert, der stack kann
+        // daher nicht ueber die maximale groesse hinaus wachsen
+        sharedSize.addAndGet(objects.length);
+        
+        Batch batch=new Batch(objects);
+        do {
+            batch.next=shared.get();
+        } while (!shared.compareAndSet(batch.next,batch));
+    }
+    
+    private Batch popBatch()
+    {
+        Batch batch;
+        do {
+            batch=shared.get();
+            if (batch==null) {
+                return null;
+            }
+        } while (!shared.compareAndSet(batch,batch.next));
+        
+        sharedSize.addAndGet(-batch.objects.length);
+        return batch;
+    }
+    
+    private static boolean isPooled(Object o)
+    {
+        return (o instanceof PoolableObject) && ((PoolableObject)o).pooled;
+    }
+    
+    private static void setPooled(Object o,boolean pooled)
+    {
+        if (o instanceof PoolableObject) {
+            ((PoolableObject)o).pooled=pooled;
+        }
     }
     
-    public synchronized Collection<Object> getUsedObjects() 
+    /* cache eines threads. slots.count ist die anzahl der reservierten
+       plaetze, davon sind size mit objekten belegt */
+    private final static class LocalCache
     {
-        return usedObjects;
+        private final Object[] objects;
+        private final Slots    slots;
+        private int            size;
+        
+        private LocalCache(int size)
+        {
+            this.objects=new Object[size];
+            this.slots=new Slots();
+        }
     }
     
-    public synchronized Collection<Object> getFreeObjects()
+    /* die reservierten plaetze eines caches. liegen getrennt vom cache, damit
+       der cleaner sie nach dem ende des threads noch lesen kann. geschrieben
+       wird nur vom eigenen thread */
+    private final static class Slots
     {
-        return freeObjects;
+        private volatile int count;
+        
+        private void add(int num)
+        {
+            count+=num;
+        }
+    }
+    
+    /* block von objekten auf dem gemeinsamen stack. die knoten werden nie
+       wiederverwendet, deshalb gibt es beim compareAndSet kein ABA-problem */
+    private final static class Batch
+    {
+        private final Object[] objects;
+        private Batch          next;
+        
+        private Batch(Object[] objects)
+        {
+            this.objects=objects;
+        }
     }
 }
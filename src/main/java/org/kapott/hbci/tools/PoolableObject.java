@@ -0,0 +1,33 @@
+/**********************************************************************
+ *
+ * This file is part of HBCI4Java.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ **********************************************************************/
+
+package org.kapott.hbci.tools;
+
+/* Basisklasse fuer Objekte, die von einer ObjectFactory verwaltet werden.
+   Das Objekt merkt sich selbst, ob es gerade im Pool liegt. Damit kann die
+   ObjectFactory eine doppelte Freigabe ohne zusaetzliche Verwaltungsdaten
+   erkennen. */
+public abstract class PoolableObject
+{
+    /* true, solange das objekt im pool liegt. wird nur von der ObjectFactory
+       geaendert. die sichtbarkeit zwischen threads ergibt sich aus der
+       uebergabe ueber den gemeinsamen stack des pools */
+    boolean pooled;
+}
@@ -21,25 +21,33 @@
 
 package org.kapott.hbci.tools;
 
+import java.io.BufferedOutputStream;
 import java.io.BufferedReader;
 import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
+import java.io.IOException;
 import java.io.InputStreamReader;
+import java.io.OutputStream;
 import java.io.OutputStreamWriter;
+import java.io.Reader;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Properties;
+
+import org.kapott.hbci.manager.BankDirectory;
 
 /**
  * Util-Klasse, welche die FinTS-Bankenliste im CSV-Format (kann von
  * http://www.hbci-zka.de/institute/institut_hersteller.htm bezogen werden)
  * parst, un die aktualisierten Daten in die blz.properties von HBCI4Java
- * uebernimmt.
+ * uebernimmt. Zusaetzlich wird daraus das binaere Verzeichnis
+ * ({@link BankDirectory}) erzeugt.
  */
 public class UpdateBLZProperties
 {
@@ -52,7 +60,9 @@ public class UpdateBLZProperties
 	 *            zu "blz.properties". 3. Pfad/Dateiname zur neuen
 	 *            "blz.properties". 4. optional: Pfad/Dateiname zur BLZ-Datei
 	 *            der Bundesbank. Falls angegeben, werden die eventuell
-	 *            vorhandene BIC-Updates übernommen
+	 *            vorhandene BIC-Updates übernommen. Neben der neuen
+	 *            "blz.properties" wird zusätzlich das binäre Verzeichnis
+	 *            "blz.dat" geschrieben.
 	 * @throws Exception
 	 */
 	public static void main ( String[] args ) throws Exception
@@ -201,6 +211,39 @@ public class UpdateBLZProperties
 				f4.close();
 			}
 		}
+
+		writeDirectory(new File(args[2]));
+	}
+
+	/**
+	 * Schreibt das binäre Bankleitzahlen-Verzeichnis zur angegebenen
+	 * blz.properties in dasselbe Verzeichnis.
+	 *
+	 * @param properties
+	 *            die blz.properties.
+	 * @throws IOException
+	 */
+	private static void writeDirectory ( File properties ) throws IOException
+	{
+		String name = properties.getName();
+		if (name.endsWith(".properties"))
+		{
+			name = name.substring(0, name.length() - ".properties".length());
+		}
+		File target = new File(properties.getAbsoluteFile().getParentFile(), name + ".dat");
+
+		Properties blzs = new Properties();
+		try (Reader in = new InputStreamReader(new FileInputStream(properties), CHARSET_OUTPUT))
+		{
+			blzs.load(in);
+		}
+
+		BankDirectory directory = BankDirectory.create(blzs);
+		try (OutputStream out = new BufferedOutputStream(new FileOutputStream(target)))
+		{
+			directory.write(out);
+		}
+		System.out.println(directory.size() + " Banken nach " + target + " geschrieben");
 	}
 
 	/**
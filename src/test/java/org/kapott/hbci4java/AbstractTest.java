@@ -35,7 +35,11 @@ import java.util.concurrent.atomic.AtomicBoolean;
 import org.junit.AfterClass;
 import org.junit.BeforeClass;
 import org.kapott.hbci.callback.HBCICallbackConsole;
+import org.kapott.hbci.manager.HBCIKernelImpl;
 import org.kapott.hbci.manager.HBCIUtils;
+import org.kapott.hbci.manager.MsgGen;
+import org.kapott.hbci.protocol.MSG;
+import org.kapott.hbci.protocol.factory.MSGFactory;
 
 /**
  * Abstrakte Basis-Klasse fuer HBCI4Java-Tests.
@@ -135,6 +139,43 @@ public abstract class AbstractTest
     }
   }
 
+  /**
+   * Parst die Antwort mit der Dauerauftragsliste aus "bugzilla-1129.txt".
+   * Die Datei wird im Package der Test-Klasse gesucht.
+   * @return die geparste Nachricht.
+   * @throws Exception
+   */
+  public MSG parseBug1129() throws Exception
+  {
+    String data = this.getFile("bugzilla-1129.txt");
+    HBCIKernelImpl kernel = new HBCIKernelImpl(null,"plus");
+    kernel.rawNewMsg("DauerList");
+    return MSGFactory.getInstance().createMSG("CustomMsgRes",data,data.length(),kernel.getMsgGen());
+  }
+
+  /**
+   * Erzeugt eine anonyme Dialog-Initialisierung.
+   * @param gen der MsgGen, in dem die Werte der Nachricht gesetzt werden.
+   * @return die Nachricht. Sie muss per {@link MSGFactory#unuseObject(Object)} wieder freigegeben werden.
+   */
+  public static MSG createDialogInitAnon(MsgGen gen)
+  {
+    gen.set("DialogInitAnon.MsgHead.dialogid","0");
+    gen.set("DialogInitAnon.MsgHead.msgnum","1");
+    gen.set("DialogInitAnon.Idn.KIK.country","DE");
+    gen.set("DialogInitAnon.Idn.KIK.blz","12345678");
+    gen.set("DialogInitAnon.Idn.customerid","9999999999");
+    gen.set("DialogInitAnon.Idn.sysid","0");
+    gen.set("DialogInitAnon.Idn.sysStatus","0");
+    gen.set("DialogInitAnon.ProcPrep.BPD","0");
+    gen.set("DialogInitAnon.ProcPrep.UPD","0");
+    gen.set("DialogInitAnon.ProcPrep.lang","1");
+    gen.set("DialogInitAnon.ProcPrep.prodName","HBCI4Java");
+    gen.set("DialogInitAnon.ProcPrep.prodVersion","3.0");
+    gen.set("DialogInitAnon.MsgTail.msgnum","1");
+    return gen.generate("DialogInitAnon");
+  }
+
   /**
    * Initialisiert HBCI4Java.
    * @throws Exception
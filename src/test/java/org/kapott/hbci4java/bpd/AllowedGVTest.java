@@ -15,6 +15,7 @@ import org.kapott.hbci.manager.MsgGen;
 import org.kapott.hbci.protocol.MSG;
 import org.kapott.hbci.protocol.factory.MSGFactory;
 import org.kapott.hbci.rewrite.Rewrite;
+import org.kapott.hbci.rewrite.RewriteContext;
 import org.kapott.hbci4java.AbstractTest;
 
 /**
@@ -32,7 +33,7 @@ public class AllowedGVTest extends AbstractTest
     String data = getFile("bpd-allowedgv.txt");
     HBCIKernelImpl kernel = new HBCIKernelImpl(null, "plus");
 
-    Rewrite.setData("msgName", "Synch");
+    RewriteContext ctx = new RewriteContext(null, null, "Synch", false, false);
     // liste der rewriter erzeugen
     String rewriters_st = HBCIUtils.getParam("kernel.rewriter");
     ArrayList<Rewrite> al = new ArrayList<Rewrite>();
@@ -58,7 +59,7 @@ public class AllowedGVTest extends AbstractTest
     String newmsgstring = data;
     for (int i = 0; i < rewriters.length; i++)
     {
-      newmsgstring = rewriters[i].incomingClearText(newmsgstring, gen);
+      newmsgstring = rewriters[i].incomingClearText(newmsgstring, gen, ctx);
     }
 
     MSG msg = MSGFactory.getInstance().createMSG("SynchRes", newmsgstring, newmsgstring.length(), gen);
@@ -75,7 +76,7 @@ public class AllowedGVTest extends AbstractTest
     String data = getFile("bpd-allowedgv2.txt");
     HBCIKernelImpl kernel = new HBCIKernelImpl(null, "300");
 
-    Rewrite.setData("msgName", "Synch");
+    RewriteContext ctx = new RewriteContext(null, null, "Synch", false, false);
     // liste der rewriter erzeugen
     String rewriters_st = HBCIUtils.getParam("kernel.rewriter");
     ArrayList<Rewrite> al = new ArrayList<Rewrite>();
@@ -101,7 +102,7 @@ public class AllowedGVTest extends AbstractTest
     String newmsgstring = data;
     for (int i = 0; i < rewriters.length; i++)
     {
-      newmsgstring = rewriters[i].incomingClearText(newmsgstring, gen);
+      newmsgstring = rewriters[i].incomingClearText(newmsgstring, gen, ctx);
     }
 
     MSG msg = MSGFactory.getInstance().createMSG("SynchRes", newmsgstring, newmsgstring.length(), gen);
@@ -12,6 +12,7 @@ import org.kapott.hbci.manager.MsgGen;
 import org.kapott.hbci.protocol.MSG;
 import org.kapott.hbci.protocol.factory.MSGFactory;
 import org.kapott.hbci.rewrite.Rewrite;
+import org.kapott.hbci.rewrite.RewriteContext;
 import org.kapott.hbci4java.AbstractTest;
 
 /**
@@ -29,7 +30,7 @@ public class TanMediaListTest extends AbstractTest
     String data = getFile("bpd-tanmedialist.txt");
     HBCIKernelImpl kernel = new HBCIKernelImpl(null, "300");
 
-    Rewrite.setData("msgName", "CustomMsg");
+    RewriteContext ctx = new RewriteContext(null, null, "CustomMsg", false, false);
     // liste der rewriter erzeugen
     String rewriters_st = HBCIUtils.getParam("kernel.rewriter");
     ArrayList<Rewrite> al = new ArrayList<Rewrite>();
@@ -56,7 +57,7 @@ public class TanMediaListTest extends AbstractTest
 
     for (int i = 0; i < rewriters.length; i++)
     {
-      newmsgstring = rewriters[i].incomingClearText(newmsgstring, gen);
+      newmsgstring = rewriters[i].incomingClearText(newmsgstring, gen, ctx);
     }
 
     MSG msg = MSGFactory.getInstance().createMSG("CustomMsgRes", newmsgstring, newmsgstring.length(), gen);
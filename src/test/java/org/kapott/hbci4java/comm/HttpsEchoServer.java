@@ -0,0 +1,223 @@
+/**********************************************************************
+ *
+ * This file is part of HBCI4Java.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ **********************************************************************/
+
+package org.kapott.hbci4java.comm;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.net.InetAddress;
+import java.security.KeyStore;
+import java.util.List;
+import java.util.Vector;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLServerSocket;
+import javax.net.ssl.SSLSocket;
+
+import org.junit.Assert;
+
+/**
+ * Lokaler HTTPS-Server, der den Request-Body zurueckliefert.
+ * Dient in den Tests als Ersatz fuer den Bank-Server.
+ */
+public class HttpsEchoServer extends Thread
+{
+  final SSLServerSocket socket;
+  final AtomicInteger accepted = new AtomicInteger();
+  final AtomicInteger requests = new AtomicInteger();
+  final List<String> sessions = new Vector<String>();
+  final List<Throwable> errors = new Vector<Throwable>();
+
+  volatile int status = 200;
+  volatile boolean connectionClose = false;
+  volatile boolean chunked = false;
+  volatile boolean silentClose = false;
+  volatile boolean silent = false;
+  volatile boolean dropRequest = false;
+
+  /**
+   * ct.
+   * @param ks der Keystore mit dem Server-Zertifikat.
+   * @param password das Passwort des Keystores.
+   * @throws Exception
+   */
+  public HttpsEchoServer(KeyStore ks, char[] password) throws Exception
+  {
+    KeyManagerFactory kmf = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+    kmf.init(ks,password);
+    SSLContext ctx = SSLContext.getInstance("TLS");
+    ctx.init(kmf.getKeyManagers(),null,null);
+
+    this.socket = (SSLServerSocket) ctx.getServerSocketFactory().createServerSocket(0,200,InetAddress.getByName("127.0.0.1"));
+    // Bei TLS 1.2 bleibt die Session-ID bei der Wiederaufnahme erhalten
+    this.socket.setEnabledProtocols(new String[]{"TLSv1.2"});
+    this.setDaemon(true);
+    this.start();
+  }
+
+  /**
+   * Liefert den Port des Servers.
+   * @return der Port.
+   */
+  public int getPort()
+  {
+    return this.socket.getLocalPort();
+  }
+
+  /**
+   * @see java.lang.Thread#run()
+   */
+  public void run()
+  {
+    try
+    {
+      while (true)
+      {
+        final SSLSocket s = (SSLSocket) this.socket.accept();
+        this.accepted.incrementAndGet();
+        Thread t = new Thread()
+        {
+          public void run()
+          {
+            handle(s);
+          }
+        };
+        t.setDaemon(true);
+        t.start();
+      }
+    }
+    catch (IOException e)
+    {
+      // Server beendet
+    }
+  }
+
+  /**
+   * Beantwortet die Requests einer Verbindung.
+   * @param s die Verbindung.
+   */
+  private void handle(SSLSocket s)
+  {
+    try
+    {
+      s.startHandshake();
+      this.sessions.add(new BigInteger(1,s.getSession().getId()).toString(16));
+
+      InputStream in = new BufferedInputStream(s.getInputStream());
+      OutputStream out = s.getOutputStream();
+      String line;
+      while ((line = readLine(in)) != null)
+      {
+        Assert.assertTrue(line,line.startsWith("POST /"));
+        int length = -1;
+        boolean close = this.connectionClose;
+        while ((line = readLine(in)).length() > 0)
+        {
+          String lower = line.toLowerCase();
+          if (lower.startsWith("content-length:"))
+            length = Integer.parseInt(line.substring(15).trim());
+          else if (lower.equals("connection: close"))
+            close = true;
+        }
+        Assert.assertTrue(length >= 0);
+        byte[] body = new byte[length];
+        for (int pos=0;pos<length;)
+          pos += in.read(body,pos,length - pos);
+
+        this.requests.incrementAndGet();
+
+        if (this.dropRequest)
+        {
+          // Request annehmen und ohne Antwort schliessen
+          break;
+        }
+
+        if (this.silent)
+        {
+          // Nie antworten, die Verbindung bleibt offen
+          while (in.read() != -1);
+          break;
+        }
+
+        StringBuilder sb = new StringBuilder("HTTP/1.1 " + this.status + " OK\r\nContent-Type: application/octet-stream\r\n");
+        sb.append(close ? "Connection: close\r\n" : "Keep-Alive: timeout=30, max=100\r\n");
+        if (this.chunked)
+        {
+          sb.append("Transfer-Encoding: chunked\r\n\r\n");
+          out.write(sb.toString().getBytes("ISO-8859-1"));
+          for (int pos=0;pos<length;pos++)
+          {
+            out.write(("1;x=y\r\n").getBytes("ISO-8859-1"));
+            out.write(body[pos]);
+            out.write("\r\n".getBytes("ISO-8859-1"));
+          }
+          out.write("0\r\n\r\n".getBytes("ISO-8859-1"));
+        }
+        else
+        {
+          sb.append("Content-Length: ").append(length).append("\r\n\r\n");
+          out.write(sb.toString().getBytes("ISO-8859-1"));
+          out.write(body);
+        }
+        out.flush();
+
+        if (close || this.silentClose)
+          break;
+      }
+      s.close();
+    }
+    catch (Throwable t)
+    {
+      this.errors.add(t);
+    }
+  }
+
+  /**
+   * Liest eine Zeile.
+   * @param in der Stream.
+   * @return die Zeile oder NULL, wenn die Verbindung geschlossen wurde.
+   * @throws IOException
+   */
+  private static String readLine(InputStream in) throws IOException
+  {
+    StringBuilder sb = new StringBuilder();
+    int c;
+    while ((c = in.read()) != -1 && c != '\n')
+    {
+      if (c != '\r')
+        sb.append((char) c);
+    }
+    return (c == -1 && sb.length() == 0) ? null : sb.toString();
+  }
+
+  /**
+   * Beendet den Server.
+   * @throws IOException
+   */
+  public void close() throws IOException
+  {
+    this.socket.close();
+  }
+}
@@ -0,0 +1,150 @@
+/**********************************************************************
+ *
+ * This file is part of HBCI4Java.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ **********************************************************************/
+
+package org.kapott.hbci4java.comm;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.List;
+import java.util.Vector;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Lokaler TCP-Server, der die empfangenen Daten zurueckliefert.
+ * Dient in den Tests als Ersatz fuer den HBCI-Server auf Port 3000.
+ * Die Daten werden in kleinen Stuecken gesendet, damit der Client die
+ * Nachricht aus mehreren Teilen zusammensetzen muss.
+ */
+public class SocketEchoServer extends Thread
+{
+  final ServerSocket socket;
+  final AtomicInteger accepted = new AtomicInteger();
+  final List<Integer> ports = new Vector<Integer>();
+  final List<Throwable> errors = new Vector<Throwable>();
+
+  volatile boolean lineBreaks = false;
+  volatile int closeAfter = -1;
+  volatile boolean silent = false;
+
+  /**
+   * ct.
+   * @throws Exception
+   */
+  public SocketEchoServer() throws Exception
+  {
+    this.socket = new ServerSocket(0,200,InetAddress.getByName("127.0.0.1"));
+    this.setDaemon(true);
+    this.start();
+  }
+
+  /**
+   * Liefert den Port des Servers.
+   * @return der Port.
+   */
+  public int getPort()
+  {
+    return this.socket.getLocalPort();
+  }
+
+  /**
+   * @see java.lang.Thread#run()
+   */
+  public void run()
+  {
+    try
+    {
+      while (true)
+      {
+        final Socket s = this.socket.accept();
+        this.accepted.incrementAndGet();
+        this.ports.add(s.getPort());
+        Thread t = new Thread()
+        {
+          public void run()
+          {
+            handle(s);
+          }
+        };
+        t.setDaemon(true);
+        t.start();
+      }
+    }
+    catch (IOException e)
+    {
+      // Server beendet
+    }
+  }
+
+  /**
+   * Liefert die Daten einer Verbindung zurueck.
+   * @param s die Verbindung.
+   */
+  private void handle(Socket s)
+  {
+    try
+    {
+      InputStream in = s.getInputStream();
+      OutputStream out = s.getOutputStream();
+      byte[] b = new byte[4096];
+      int sent = 0;
+      int n;
+      while ((n = in.read(b)) != -1)
+      {
+        if (this.silent)
+          continue;
+
+        for (int pos=0;pos<n;pos+=7)
+        {
+          int len = Math.min(7,n - pos);
+          if (this.closeAfter >= 0 && sent + len > this.closeAfter)
+          {
+            out.write(b,pos,this.closeAfter - sent);
+            out.flush();
+            s.close();
+            return;
+          }
+          out.write(b,pos,len);
+          if (this.lineBreaks)
+            out.write("\r\n".getBytes("ISO-8859-1"));
+          out.flush();
+          sent += len;
+        }
+      }
+      s.close();
+    }
+    catch (Throwable t)
+    {
+      this.errors.add(t);
+    }
+  }
+
+  /**
+   * Beendet den Server.
+   * @throws IOException
+   */
+  public void close() throws IOException
+  {
+    this.socket.close();
+  }
+}
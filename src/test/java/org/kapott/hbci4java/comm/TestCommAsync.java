@@ -0,0 +1,257 @@
+/**********************************************************************
+ *
+ * This file is part of HBCI4Java.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ **********************************************************************/
+
+package org.kapott.hbci4java.comm;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.kapott.hbci.callback.HBCICallback;
+import org.kapott.hbci.callback.HBCICallbackConsole;
+import org.kapott.hbci.comm.Comm;
+import org.kapott.hbci.exceptions.CanNotParseMessageException;
+import org.kapott.hbci.manager.HBCIConfig;
+import org.kapott.hbci.manager.HBCIHandler;
+import org.kapott.hbci.manager.HBCIUtils;
+import org.kapott.hbci.manager.HBCIUtilsInternal;
+import org.kapott.hbci.manager.LogFilter;
+import org.kapott.hbci.manager.MsgGen;
+import org.kapott.hbci.passport.HBCIPassport;
+import org.kapott.hbci.passport.HBCIPassportInternal;
+import org.kapott.hbci.passport.HBCIPassportPinTan;
+import org.kapott.hbci.protocol.MSG;
+import org.kapott.hbci.protocol.factory.MSGFactory;
+import org.kapott.hbci.rewrite.RewriteContext;
+import org.kapott.hbci4java.AbstractTest;
+
+/**
+ * Testet den asynchronen Nachrichtenaustausch in {@link Comm#pingpongAsync(RewriteContext, MSG)}.
+ */
+public class TestCommAsync extends AbstractTest
+{
+  private HBCICallback prev = null;
+  private Recorder recorder = null;
+
+  /**
+   * Ersetzt den Callback der ThreadGroup.
+   */
+  @Before
+  public void before()
+  {
+    ThreadGroup group = Thread.currentThread().getThreadGroup();
+    this.prev = HBCIUtilsInternal.callbacks.get(group);
+    this.recorder = new Recorder();
+    HBCIUtilsInternal.callbacks.put(group,this.recorder);
+  }
+
+  /**
+   * Stellt den Callback der ThreadGroup wieder her.
+   */
+  @After
+  public void after()
+  {
+    HBCIUtilsInternal.callbacks.put(Thread.currentThread().getThreadGroup(),this.prev);
+  }
+
+  /**
+   * Die Antwort wird erst nach ihrem Eintreffen gemeldet und mit den
+   * Bindungen des Aufrufers verarbeitet.
+   * @throws Exception
+   */
+  @Test
+  public void test001() throws Exception
+  {
+    final String data = getFile("/org/kapott/hbci4java/bpd/bpd2-formatted.txt");
+
+    HBCIPassportPinTan passport = createPassport();
+    HBCIHandler handler = new HBCIHandler("300",passport,true);
+
+    LogFilter scope = LogFilter.createScope();
+    LogFilter prevScope = LogFilter.bind(scope);
+    try
+    {
+      TestComm comm = new TestComm(passport);
+      MSG msg = MSGFactory.getInstance().createMSG("DialogInitAnonRes",data,data.length(),handler.getMsgGen());
+      CompletableFuture<MSG> f = comm.pingpongAsync(new RewriteContext(null,null,"DialogInitAnon",false,false),msg);
+
+      Assert.assertFalse(f.isDone());
+      Assert.assertTrue(this.recorder.statuses.contains(HBCICallback.STATUS_MSG_SEND));
+      Assert.assertFalse(this.recorder.statuses.contains(HBCICallback.STATUS_MSG_RECV));
+
+      // Die Antwort kommt aus einem fremden Thread ohne Bindungen
+      Thread t = new Thread(() -> comm.response.complete(data));
+      t.start();
+      t.join();
+
+      MSG result = f.get(10,TimeUnit.SECONDS);
+      Assert.assertEquals("DialogInitAnonRes",result.getName());
+      Assert.assertTrue(this.recorder.statuses.contains(HBCICallback.STATUS_MSG_RECV));
+      Assert.assertTrue(this.recorder.statuses.indexOf(HBCICallback.STATUS_MSG_RECV) < this.recorder.statuses.indexOf(HBCICallback.STATUS_MSG_RAW_RECV_ENCRYPTED));
+      Assert.assertNotSame(Thread.currentThread(),this.recorder.receiver);
+      Assert.assertSame(scope,this.recorder.filter);
+      Assert.assertSame(HBCIUtils.getConfig(),this.recorder.config);
+    }
+    finally
+    {
+      LogFilter.bind(prevScope);
+    }
+  }
+
+  /**
+   * Fehler beim Parsen werden ueber das Future gemeldet und beim Warten
+   * unveraendert geworfen.
+   * @throws Exception
+   */
+  @Test
+  public void test002() throws Exception
+  {
+    String data = getFile("/org/kapott/hbci4java/bpd/bpd2-formatted.txt");
+
+    HBCIPassportPinTan passport = createPassport();
+    HBCIHandler handler = new HBCIHandler("300",passport,true);
+    MSG msg = MSGFactory.getInstance().createMSG("DialogInitAnonRes",data,data.length(),handler.getMsgGen());
+
+    TestComm comm = new TestComm(passport);
+    CompletableFuture<MSG> f = comm.pingpongAsync(new RewriteContext(null,null,"DialogInitAnon",false,false),msg);
+    comm.response.complete("kaputt'");
+    try
+    {
+      f.get(10,TimeUnit.SECONDS);
+      Assert.fail("invalid message not detected");
+    }
+    catch (ExecutionException e)
+    {
+      Assert.assertTrue(e.getCause() instanceof CanNotParseMessageException);
+    }
+
+    comm = new TestComm(passport);
+    comm.response.complete("kaputt'");
+    try
+    {
+      comm.pingpongAwait(new RewriteContext(null,null,"DialogInitAnon",false,false),msg);
+      Assert.fail("invalid message not detected");
+    }
+    catch (CanNotParseMessageException e)
+    {
+      // erwartet
+    }
+  }
+
+  /**
+   * Erzeugt einen Passport ohne Bankverbindung.
+   * @return der Passport.
+   */
+  private HBCIPassportPinTan createPassport()
+  {
+    HBCIPassportPinTan passport = new HBCIPassportPinTan(null,0);
+    passport.setHBCIVersion("300");
+    passport.setBPD(new Properties());
+    passport.setFilterType("None");
+    return passport;
+  }
+
+  /**
+   * Kommunikation, deren Antwort vom Test erfuellt wird.
+   */
+  private static class TestComm extends Comm
+  {
+    private final CompletableFuture<String> response = new CompletableFuture<String>();
+
+    /**
+     * ct.
+     * @param passport der Passport.
+     */
+    private TestComm(HBCIPassportInternal passport)
+    {
+      super(passport);
+    }
+
+    /**
+     * @see org.kapott.hbci.comm.Comm#exchangeAsync(org.kapott.hbci.protocol.MSG, org.kapott.hbci.manager.MsgGen)
+     */
+    protected CompletableFuture<String> exchangeAsync(MSG msg, MsgGen gen)
+    {
+      return this.response;
+    }
+
+    /**
+     * @see org.kapott.hbci.comm.Comm#ping(org.kapott.hbci.protocol.MSG)
+     */
+    protected void ping(MSG msg)
+    {
+      throw new UnsupportedOperationException();
+    }
+
+    /**
+     * @see org.kapott.hbci.comm.Comm#pong(org.kapott.hbci.manager.MsgGen)
+     */
+    protected String pong(MsgGen gen)
+    {
+      throw new UnsupportedOperationException();
+    }
+
+    /**
+     * @see org.kapott.hbci.comm.Comm#closeConnection()
+     */
+    protected void closeConnection()
+    {
+    }
+  }
+
+  /**
+   * Zeichnet die Status-Meldungen auf.
+   */
+  private static class Recorder extends HBCICallbackConsole
+  {
+    private final List<Integer> statuses = new ArrayList<Integer>();
+    private Thread receiver = null;
+    private LogFilter filter = null;
+    private HBCIConfig config = null;
+
+    /**
+     * @see org.kapott.hbci.callback.HBCICallbackIOStreams#callback(org.kapott.hbci.passport.HBCIPassport, int, java.lang.String, int, java.lang.StringBuffer)
+     */
+    public void callback(HBCIPassport passport, int reason, String msg, int datatype, StringBuffer retData)
+    {
+    }
+
+    /**
+     * @see org.kapott.hbci.callback.HBCICallbackConsole#status(org.kapott.hbci.passport.HBCIPassport, int, java.lang.Object[])
+     */
+    public synchronized void status(HBCIPassport passport, int statusTag, Object[] o)
+    {
+      this.statuses.add(statusTag);
+      if (statusTag == HBCICallback.STATUS_MSG_RECV)
+      {
+        this.receiver = Thread.currentThread();
+        this.filter   = LogFilter.getInstance();
+        this.config   = HBCIUtils.getConfig();
+      }
+    }
+  }
+}
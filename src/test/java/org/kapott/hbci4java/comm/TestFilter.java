@@ -0,0 +1,193 @@
+/**********************************************************************
+ *
+ * This file is part of HBCI4Java.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ **********************************************************************/
+
+package org.kapott.hbci4java.comm;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.kapott.hbci.comm.Filter;
+import org.kapott.hbci.manager.HBCIUtils;
+import org.kapott.hbci4java.AbstractTest;
+
+/**
+ * Tests fuer die Filter der Kommunikation.
+ */
+public class TestFilter extends AbstractTest
+{
+  /**
+   * Das Dekodieren im Empfangspuffer liefert das gleiche Ergebnis wie das Dekodieren des Strings.
+   * @throws Exception
+   */
+  @Test
+  public void test001() throws Exception
+  {
+    Filter filter = Filter.getInstance("Base64");
+    Random random = new Random(42);
+    for (int len=0;len<200;len++)
+    {
+      byte[] data = new byte[len];
+      random.nextBytes(data);
+      String encoded = new String(filter.encode(data),"ISO-8859-1");
+
+      // Zeilenumbrueche, wie sie manche Banken senden
+      StringBuilder sb = new StringBuilder();
+      for (int i=0;i<encoded.length();i++)
+      {
+        if (i > 0 && i % 76 == 0)
+          sb.append("\r\n");
+        sb.append(encoded.charAt(i));
+      }
+      byte[] buf = (sb.toString() + "\r\n").getBytes("ISO-8859-1");
+
+      String expected = filter.decode(sb.toString());
+      Assert.assertEquals(new String(data,"ISO-8859-1"),expected);
+      Assert.assertEquals(expected,filter.decode(buf,buf.length));
+    }
+  }
+
+  /**
+   * Ohne Filter bleiben die Daten unveraendert.
+   * @throws Exception
+   */
+  @Test
+  public void test002() throws Exception
+  {
+    Filter filter = Filter.getInstance("None");
+    byte[] buf = "HNHBK:1:3+000000000100+300+0+1'äöü".getBytes("ISO-8859-1");
+    Assert.assertEquals("HNHBK:1:3+000000000100+300+0+1'",filter.decode(buf,31));
+    Assert.assertEquals("HNHBK:1:3+000000000100+300+0+1'äöü",filter.decode(buf,buf.length));
+  }
+
+  /**
+   * Das Kodieren beim Schreiben liefert das gleiche Ergebnis wie bisher.
+   * Beim Lesen wird auch mit Zeilenumbruechen korrekt dekodiert.
+   * @throws Exception
+   */
+  @Test
+  public void test003() throws Exception
+  {
+    Filter filter = Filter.getInstance("Base64");
+    Random random = new Random(42);
+    for (int len=0;len<200;len++)
+    {
+      byte[] data = new byte[len];
+      random.nextBytes(data);
+      String expected = HBCIUtils.encodeBase64(data);
+      Assert.assertEquals(expected,new String(filter.encode(data),"ISO-8859-1"));
+
+      ByteArrayOutputStream bos = new ByteArrayOutputStream();
+      OutputStream out = filter.encode(bos);
+      out.write(data);
+      out.close();
+      Assert.assertEquals(expected,bos.toString("ISO-8859-1"));
+      Assert.assertEquals(expected.length(),filter.getEncodedLength(len));
+
+      String lines = expected.replaceAll("(.{76})","$1\r\n") + "\r\n";
+      Assert.assertTrue(filter.getMaxDecodedLength(expected.length()) >= len);
+      byte[] encoded = lines.getBytes("ISO-8859-1");
+      Assert.assertEquals(len,filter.getDecodedLength(encoded,encoded.length));
+      Assert.assertArrayEquals(data,read(filter.decode(new ByteArrayInputStream(lines.getBytes("ISO-8859-1")))));
+    }
+  }
+
+  /**
+   * Ohne Filter werden die Streams durchgereicht.
+   * @throws Exception
+   */
+  @Test
+  public void test004() throws Exception
+  {
+    Filter filter = Filter.getInstance("None");
+    byte[] data = "HNHBK:1:3+000000000100+300+0+1'äöü".getBytes("ISO-8859-1");
+
+    ByteArrayOutputStream bos = new ByteArrayOutputStream();
+    OutputStream out = filter.encode(bos);
+    out.write(data);
+    out.close();
+    Assert.assertArrayEquals(data,bos.toByteArray());
+    Assert.assertEquals(data.length,filter.getEncodedLength(data.length));
+    Assert.assertEquals(data.length,filter.getDecodedLength(data,data.length));
+    Assert.assertArrayEquals(data,read(filter.decode(new ByteArrayInputStream(data))));
+  }
+
+  /**
+   * Beim Dekodieren wird nicht ueber das Ende der Nachricht hinaus gelesen.
+   * Bei einer offenen Socket-Verbindung wuerde das blockieren.
+   * @throws Exception
+   */
+  @Test
+  public void test005() throws Exception
+  {
+    Filter filter = Filter.getInstance("Base64");
+    byte[] data = "HNHBK:1:3+000000000034+300+0+1'HNHBS:1:1+1'".getBytes("ISO-8859-1");
+    final byte[] encoded = filter.encode(data);
+
+    // Liefert die Daten in kleinen Stuecken, danach wuerde er blockieren
+    InputStream socket = new InputStream()
+    {
+      private int pos = 0;
+
+      public int read() throws IOException
+      {
+        throw new UnsupportedOperationException();
+      }
+
+      public int read(byte[] b, int off, int len) throws IOException
+      {
+        if (this.pos == encoded.length)
+          throw new IOException("blocked");
+        int n = Math.min(Math.min(len,5),encoded.length - this.pos);
+        System.arraycopy(encoded,this.pos,b,off,n);
+        this.pos += n;
+        return n;
+      }
+    };
+
+    InputStream is = filter.decode(socket);
+    ByteArrayOutputStream bos = new ByteArrayOutputStream();
+    byte[] b = new byte[1024];
+    while (bos.size() < data.length)
+      bos.write(b,0,is.read(b,0,Math.min(b.length,data.length - bos.size())));
+    Assert.assertArrayEquals(data,bos.toByteArray());
+  }
+
+  /**
+   * Liest den Stream komplett.
+   * @param is der Stream.
+   * @return die gelesenen Daten.
+   * @throws Exception
+   */
+  private static byte[] read(InputStream is) throws Exception
+  {
+    ByteArrayOutputStream bos = new ByteArrayOutputStream();
+    byte[] b = new byte[7];
+    int n;
+    while ((n = is.read(b)) != -1)
+      bos.write(b,0,n);
+    return bos.toByteArray();
+  }
+}
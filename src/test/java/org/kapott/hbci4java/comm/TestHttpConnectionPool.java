@@ -0,0 +1,281 @@
+/**********************************************************************
+ *
+ * This file is part of HBCI4Java.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ **********************************************************************/
+
+package org.kapott.hbci4java.comm;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.KeyStore;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSocketFactory;
+import javax.net.ssl.TrustManagerFactory;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.kapott.hbci.comm.HttpConnectionPool;
+import org.kapott.hbci4java.AbstractTest;
+
+/**
+ * Tests fuer die Wiederverwendung von HTTPS-Verbindungen.
+ * Als Bank-Server dient ein lokaler TLS-Server, der den Request-Body zurueckliefert.
+ */
+public class TestHttpConnectionPool extends AbstractTest
+{
+  private final static char[] PASSWORD = "hbci4java".toCharArray();
+
+  private HttpsEchoServer server = null;
+  private SSLSocketFactory client = null;
+
+  /**
+   * Startet den Server und erzeugt den SSL-Kontext fuer den Client.
+   * @throws Exception
+   */
+  @Before
+  public void before() throws Exception
+  {
+    KeyStore ks = KeyStore.getInstance("PKCS12");
+    ks.load(this.getStream("test-server.p12"),PASSWORD);
+    this.server = new HttpsEchoServer(ks,PASSWORD);
+
+    TrustManagerFactory tmf = TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
+    tmf.init(ks);
+    SSLContext ctx = SSLContext.getInstance("TLS");
+    ctx.init(null,tmf.getTrustManagers(),null);
+    this.client = ctx.getSocketFactory();
+  }
+
+  /**
+   * Stoppt den Server.
+   * @throws Exception
+   */
+  @After
+  public void after() throws Exception
+  {
+    HttpConnectionPool.closeAll();
+    this.server.close();
+  }
+
+  /**
+   * Mehrere Nachrichten werden ueber die gleiche Verbindung gesendet.
+   * @throws Exception
+   */
+  @Test
+  public void test001() throws Exception
+  {
+    HttpConnectionPool pool = this.getPool(4,30000L);
+    for (int i=0;i<10;i++)
+    {
+      Assert.assertEquals("Nachricht " + i,this.post(pool,"Nachricht " + i));
+    }
+    Assert.assertEquals(1,pool.getConnectCount());
+    Assert.assertEquals(1,this.server.accepted.get());
+    Assert.assertEquals(1,pool.getIdleCount());
+    Assert.assertEquals(0,this.server.errors.size());
+  }
+
+  /**
+   * Die Anzahl der Verbindungen pro Server ist begrenzt.
+   * @throws Exception
+   */
+  @Test
+  public void test002() throws Exception
+  {
+    HttpConnectionPool pool = this.getPool(2,30000L);
+    HttpConnectionPool.Exchange e1 = pool.post("/","text/plain","a".getBytes("ISO-8859-1"),500,5000);
+    HttpConnectionPool.Exchange e2 = pool.post("/","text/plain","b".getBytes("ISO-8859-1"),500,5000);
+    try
+    {
+      pool.post("/","text/plain","c".getBytes("ISO-8859-1"),500,5000);
+      Assert.fail("connection limit exceeded");
+    }
+    catch (IOException e)
+    {
+      // erwartet
+    }
+
+    Assert.assertEquals("a",read(e1));
+    e1.close();
+    Assert.assertEquals("c",this.post(pool,"c"));
+    Assert.assertEquals("b",read(e2));
+    e2.close();
+
+    Assert.assertEquals(2,pool.getConnectCount());
+    Assert.assertEquals(2,pool.getIdleCount());
+  }
+
+  /**
+   * Unbenutzte Verbindungen werden nach dem Timeout geschlossen. Die TLS-Session
+   * wird bei der neuen Verbindung wiederaufgenommen.
+   * @throws Exception
+   */
+  @Test
+  public void test003() throws Exception
+  {
+    HttpConnectionPool pool = this.getPool(4,100L);
+    Assert.assertEquals("a",this.post(pool,"a"));
+    Thread.sleep(300L);
+    Assert.assertEquals(0,pool.getIdleCount());
+
+    Assert.assertEquals("b",this.post(pool,"b"));
+    Assert.assertEquals(2,pool.getConnectCount());
+    Assert.assertEquals(2,this.server.sessions.size());
+    Assert.assertEquals(this.server.sessions.get(0),this.server.sessions.get(1));
+  }
+
+  /**
+   * Schliesst der Server die Verbindung, wird eine neue aufgebaut.
+   * @throws Exception
+   */
+  @Test
+  public void test004() throws Exception
+  {
+    HttpConnectionPool pool = this.getPool(4,30000L);
+
+    // Server meldet "Connection: close" und sendet chunked
+    this.server.connectionClose = true;
+    this.server.chunked = true;
+    Assert.assertEquals("a",this.post(pool,"a"));
+    Assert.assertEquals(0,pool.getIdleCount());
+
+    // Server schliesst die Verbindung ohne Ankuendigung
+    this.server.connectionClose = false;
+    this.server.chunked = false;
+    this.server.silentClose = true;
+    Assert.assertEquals("b",this.post(pool,"b"));
+    Assert.assertEquals(1,pool.getIdleCount());
+    Thread.sleep(100L);
+    Assert.assertEquals("c",this.post(pool,"c"));
+
+    Assert.assertEquals(3,pool.getConnectCount());
+    Assert.assertEquals(0,this.server.errors.size());
+  }
+
+  /**
+   * Schliesst der Server die Verbindung nach dem Empfang des Requests ohne
+   * Antwort, darf der Request nicht erneut gesendet werden.
+   * @throws Exception
+   */
+  @Test
+  public void test005() throws Exception
+  {
+    HttpConnectionPool pool = this.getPool(4,30000L);
+    Assert.assertEquals("a",this.post(pool,"a"));
+    Assert.assertEquals(1,pool.getIdleCount());
+
+    this.server.dropRequest = true;
+    try
+    {
+      this.post(pool,"b");
+      Assert.fail("missing response not detected");
+    }
+    catch (IOException e)
+    {
+      // erwartet
+    }
+
+    Assert.assertEquals(2,this.server.requests.get());
+    Assert.assertEquals(1,pool.getConnectCount());
+    Assert.assertEquals(0,pool.getIdleCount());
+  }
+
+  /**
+   * Pools, die laenger als ihr Idle-Timeout unbenutzt waren, werden entfernt.
+   * Ein noch benutzter Pool bleibt erhalten.
+   * @throws Exception
+   */
+  @Test
+  public void test006() throws Exception
+  {
+    HttpConnectionPool pool = this.getPool(4,100L);
+    Assert.assertEquals("a",this.post(pool,"a"));
+    Assert.assertSame(pool,this.getPool(4,100L));
+
+    // Waehrend eines Requests wird der Pool nicht entfernt
+    HttpConnectionPool.Exchange e = pool.post("/","text/plain","b".getBytes("ISO-8859-1"),500,5000);
+    Thread.sleep(300L);
+    Assert.assertSame(pool,this.getPool(4,100L));
+    Assert.assertEquals("b",read(e));
+    e.close();
+
+    Thread.sleep(300L);
+    HttpConnectionPool next = this.getPool(4,100L);
+    Assert.assertNotSame(pool,next);
+    Assert.assertEquals(0,pool.getIdleCount());
+
+    // Ein entfernter Pool nimmt keine Verbindungen mehr auf
+    Assert.assertEquals("c",this.post(pool,"c"));
+    Assert.assertEquals(0,pool.getIdleCount());
+    Assert.assertEquals("d",this.post(next,"d"));
+    Assert.assertEquals(1,next.getIdleCount());
+  }
+
+  /**
+   * Liefert einen neuen Pool fuer den Server.
+   * @param max max. Anzahl der Verbindungen.
+   * @param timeout Idle-Timeout.
+   * @return der Pool.
+   */
+  private HttpConnectionPool getPool(int max, long timeout)
+  {
+    return HttpConnectionPool.getInstance("localhost",this.server.getPort(),this.client,true,max,timeout);
+  }
+
+  /**
+   * Sendet den Text und liefert die Antwort.
+   * @param pool der Pool.
+   * @param text der Text.
+   * @return die Antwort.
+   * @throws Exception
+   */
+  private String post(HttpConnectionPool pool, String text) throws Exception
+  {
+    HttpConnectionPool.Exchange e = pool.post("/hbci","application/octet-stream",text.getBytes("ISO-8859-1"),5000,5000);
+    try
+    {
+      Assert.assertEquals(200,e.getStatus());
+      return read(e);
+    }
+    finally
+    {
+      e.close();
+    }
+  }
+
+  /**
+   * Liest die Antwort.
+   * @param e der Request.
+   * @return die Antwort.
+   * @throws Exception
+   */
+  private static String read(HttpConnectionPool.Exchange e) throws Exception
+  {
+    ByteArrayOutputStream bos = new ByteArrayOutputStream();
+    InputStream is = e.getInputStream();
+    byte[] b = new byte[3];
+    int n;
+    while ((n = is.read(b)) != -1)
+      bos.write(b,0,n);
+    return bos.toString("ISO-8859-1");
+  }
+}
@@ -0,0 +1,182 @@
+/**********************************************************************
+ *
+ * This file is part of HBCI4Java.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ **********************************************************************/
+
+package org.kapott.hbci4java.comm;
+
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.security.KeyStore;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.TrustManagerFactory;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.kapott.hbci.comm.CommExecutor;
+import org.kapott.hbci.comm.NioHttpsExchange;
+import org.kapott.hbci.manager.HBCIUtils;
+import org.kapott.hbci4java.AbstractTest;
+
+/**
+ * Tests fuer den nicht-blockierenden HTTPS-Transport.
+ */
+public class TestNioHttpsExchange extends AbstractTest
+{
+  private final static char[] PASSWORD = "hbci4java".toCharArray();
+
+  private HttpsEchoServer server = null;
+  private SSLContext client = null;
+
+  /**
+   * Startet den Server und erzeugt den SSL-Kontext fuer den Client.
+   * @throws Exception
+   */
+  @Before
+  public void before() throws Exception
+  {
+    KeyStore ks = KeyStore.getInstance("PKCS12");
+    ks.load(this.getStream("test-server.p12"),PASSWORD);
+    this.server = new HttpsEchoServer(ks,PASSWORD);
+
+    TrustManagerFactory tmf = TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
+    tmf.init(ks);
+    this.client = SSLContext.getInstance("TLS");
+    this.client.init(null,tmf.getTrustManagers(),null);
+  }
+
+  /**
+   * Stoppt den Server.
+   * @throws Exception
+   */
+  @After
+  public void after() throws Exception
+  {
+    this.server.close();
+  }
+
+  /**
+   * Viele parallele Requests, ohne dass ein Thread pro Request wartet.
+   * @throws Exception
+   */
+  @Test
+  public void test001() throws Exception
+  {
+    List<CompletableFuture<byte[]>> list = new ArrayList<CompletableFuture<byte[]>>();
+    for (int i=0;i<100;i++)
+      list.add(this.post("Nachricht " + i,5000));
+
+    for (int i=0;i<list.size();i++)
+      Assert.assertEquals("Nachricht " + i,new String(list.get(i).get(10,TimeUnit.SECONDS),"ISO-8859-1"));
+
+    Assert.assertEquals(100,this.server.accepted.get());
+    Assert.assertEquals(0,this.server.errors.size());
+  }
+
+  /**
+   * Antwort im Chunked-Encoding und grosse Nachrichten.
+   * @throws Exception
+   */
+  @Test
+  public void test002() throws Exception
+  {
+    this.server.chunked = true;
+    Assert.assertEquals("Hallo Welt",new String(this.post("Hallo Welt",5000).get(10,TimeUnit.SECONDS),"ISO-8859-1"));
+
+    this.server.chunked = false;
+    StringBuilder sb = new StringBuilder();
+    for (int i=0;i<20000;i++)
+      sb.append("HNHBK:").append(i).append('\'');
+    Assert.assertEquals(sb.toString(),new String(this.post(sb.toString(),5000).get(10,TimeUnit.SECONDS),"ISO-8859-1"));
+  }
+
+  /**
+   * HTTP-Fehler des Servers.
+   * @throws Exception
+   */
+  @Test
+  public void test003() throws Exception
+  {
+    this.server.status = 500;
+    try
+    {
+      this.post("a",5000).get(10,TimeUnit.SECONDS);
+      Assert.fail("error expected");
+    }
+    catch (ExecutionException e)
+    {
+      Assert.assertTrue(e.getCause() instanceof IOException);
+    }
+  }
+
+  /**
+   * Antwortet der Server nicht, wird die Verbindung nach dem Timeout abgebrochen.
+   * @throws Exception
+   */
+  @Test
+  public void test004() throws Exception
+  {
+    this.server.silent = true;
+    try
+    {
+      this.post("a",200).get(10,TimeUnit.SECONDS);
+      Assert.fail("timeout expected");
+    }
+    catch (ExecutionException e)
+    {
+      Assert.assertTrue(e.getCause() instanceof SocketTimeoutException);
+    }
+  }
+
+  /**
+   * Die Antworten werden in der ThreadGroup des Aufrufers verarbeitet.
+   * @throws Exception
+   */
+  @Test
+  public void test005() throws Exception
+  {
+    final ThreadGroup group = Thread.currentThread().getThreadGroup();
+    String value = this.post("a",5000).thenApplyAsync(b ->
+    {
+      Assert.assertSame(group,Thread.currentThread().getThreadGroup());
+      return HBCIUtils.getParam("log.loglevel.default");
+    },CommExecutor.getInstance()).get(10,TimeUnit.SECONDS);
+    Assert.assertEquals(Integer.toString(HBCIUtils.LOG_DEBUG2),value);
+  }
+
+  /**
+   * Sendet den Text.
+   * @param text der Text.
+   * @param timeout Read-Timeout.
+   * @return das Future mit der Antwort.
+   * @throws Exception
+   */
+  private CompletableFuture<byte[]> post(String text, int timeout) throws Exception
+  {
+    NioHttpsExchange e = new NioHttpsExchange(this.client,true,"localhost",this.server.getPort(),"/hbci","application/octet-stream",text.getBytes("ISO-8859-1"),timeout);
+    return e.start(5000);
+  }
+}
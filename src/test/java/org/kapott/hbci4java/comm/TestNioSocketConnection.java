@@ -0,0 +1,212 @@
+/**********************************************************************
+ *
+ * This file is part of HBCI4Java.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ **********************************************************************/
+
+package org.kapott.hbci4java.comm;
+
+import java.io.EOFException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.kapott.hbci.comm.Filter;
+import org.kapott.hbci.comm.NioSocketConnection;
+import org.kapott.hbci4java.AbstractTest;
+
+/**
+ * Tests fuer den nicht-blockierenden TCP-Transport.
+ */
+public class TestNioSocketConnection extends AbstractTest
+{
+  private SocketEchoServer server = null;
+  private List<NioSocketConnection> connections = new ArrayList<NioSocketConnection>();
+
+  /**
+   * Startet den Server.
+   * @throws Exception
+   */
+  @Before
+  public void before() throws Exception
+  {
+    this.server = new SocketEchoServer();
+  }
+
+  /**
+   * Stoppt den Server.
+   * @throws Exception
+   */
+  @After
+  public void after() throws Exception
+  {
+    for (NioSocketConnection c:this.connections)
+      c.close();
+    this.server.close();
+  }
+
+  /**
+   * Mehrere Nachrichten ueber die gleiche Verbindung, mit und ohne Base64.
+   * @throws Exception
+   */
+  @Test
+  public void test001() throws Exception
+  {
+    for (String name:new String[]{"None","Base64"})
+    {
+      Filter filter = Filter.getInstance(name);
+      NioSocketConnection c = this.open(filter,0,5000);
+      for (int i=0;i<5;i++)
+      {
+        String msg = msg("HNVSK:998:3+Nachricht " + i + "'");
+        Assert.assertEquals(msg,c.exchange(filter.encode(msg)).get(10,TimeUnit.SECONDS));
+      }
+
+      // Grosse Nachricht
+      StringBuilder sb = new StringBuilder();
+      for (int i=0;i<20000;i++)
+        sb.append("HNHBK:").append(i).append('\'');
+      String msg = msg(sb.toString());
+      Assert.assertEquals(msg,c.exchange(filter.encode(msg)).get(10,TimeUnit.SECONDS));
+    }
+    Assert.assertEquals(2,this.server.accepted.get());
+    Assert.assertEquals(0,this.server.errors.size());
+  }
+
+  /**
+   * Zeilenumbrueche in Base64-Antworten.
+   * @throws Exception
+   */
+  @Test
+  public void test002() throws Exception
+  {
+    this.server.lineBreaks = true;
+    Filter filter = Filter.getInstance("Base64");
+    NioSocketConnection c = this.open(filter,0,5000);
+    for (int i=0;i<3;i++)
+    {
+      String msg = msg("HNVSK:998:3+Nachricht " + i + "'");
+      Assert.assertEquals(msg,c.exchange(filter.encode(msg)).get(10,TimeUnit.SECONDS));
+    }
+  }
+
+  /**
+   * Viele parallele Dialoge ueber den gemeinsamen Selector-Thread.
+   * @throws Exception
+   */
+  @Test
+  public void test003() throws Exception
+  {
+    Filter filter = Filter.getInstance("None");
+    List<CompletableFuture<String>> list = new ArrayList<CompletableFuture<String>>();
+    for (int i=0;i<50;i++)
+      list.add(this.open(filter,0,5000).exchange(filter.encode(msg("Dialog " + i + "'"))));
+
+    for (int i=0;i<list.size();i++)
+      Assert.assertEquals(msg("Dialog " + i + "'"),list.get(i).get(10,TimeUnit.SECONDS));
+    Assert.assertEquals(50,this.server.accepted.get());
+  }
+
+  /**
+   * Der lokale Port kann festgelegt werden.
+   * @throws Exception
+   */
+  @Test
+  public void test004() throws Exception
+  {
+    int port;
+    try (ServerSocket ss = new ServerSocket(0))
+    {
+      port = ss.getLocalPort();
+    }
+    Filter filter = Filter.getInstance("None");
+    NioSocketConnection c = this.open(filter,port,5000);
+    Assert.assertEquals(msg("a'"),c.exchange(filter.encode(msg("a'"))).get(10,TimeUnit.SECONDS));
+    Assert.assertEquals(Integer.valueOf(port),this.server.ports.get(0));
+  }
+
+  /**
+   * Verbindungsabbruch und Timeout.
+   * @throws Exception
+   */
+  @Test
+  public void test005() throws Exception
+  {
+    Filter filter = Filter.getInstance("None");
+
+    this.server.closeAfter = 30;
+    try
+    {
+      this.open(filter,0,5000).exchange(filter.encode(msg("abgebrochen'"))).get(10,TimeUnit.SECONDS);
+      Assert.fail("connection closed expected");
+    }
+    catch (ExecutionException e)
+    {
+      Assert.assertTrue(e.getCause() instanceof EOFException);
+    }
+
+    this.server.closeAfter = -1;
+    this.server.silent = true;
+    NioSocketConnection c = this.open(filter,0,200);
+    try
+    {
+      c.exchange(filter.encode(msg("still'"))).get(10,TimeUnit.SECONDS);
+      Assert.fail("timeout expected");
+    }
+    catch (ExecutionException e)
+    {
+      Assert.assertTrue(e.getCause() instanceof SocketTimeoutException);
+    }
+    Assert.assertFalse(c.isOpen());
+  }
+
+  /**
+   * Oeffnet eine Verbindung zum Server.
+   * @param filter der Filter.
+   * @param localPort der lokale Port.
+   * @param timeout Read-Timeout.
+   * @return die Verbindung.
+   * @throws Exception
+   */
+  private NioSocketConnection open(Filter filter, int localPort, int timeout) throws Exception
+  {
+    NioSocketConnection c = NioSocketConnection.open(new InetSocketAddress("127.0.0.1",this.server.getPort()),localPort,filter,timeout);
+    this.connections.add(c);
+    return c;
+  }
+
+  /**
+   * Erzeugt eine Nachricht mit passender Nachrichtengroesse im Kopf.
+   * @param body der Inhalt nach dem Nachrichtenkopf.
+   * @return die Nachricht.
+   */
+  private static String msg(String body)
+  {
+    String end = "HNHBS:5:1+1'";
+    int size = "HNHBK:1:3+000000000000+300+0+1'".length() + body.length() + end.length();
+    return "HNHBK:1:3+" + String.format("%012d",size) + "+300+0+1'" + body + end;
+  }
+}
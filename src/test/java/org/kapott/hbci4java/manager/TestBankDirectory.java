@@ -0,0 +1,366 @@
+/**********************************************************************
+ *
+ * This file is part of HBCI4Java.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ **********************************************************************/
+
+package org.kapott.hbci4java.manager;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.kapott.hbci.manager.BankDirectory;
+import org.kapott.hbci.manager.BankInfo;
+import org.kapott.hbci.manager.HBCIUtils;
+import org.kapott.hbci.manager.HBCIUtilsInternal;
+import org.kapott.hbci.manager.HBCIVersion;
+import org.kapott.hbci4java.AbstractTest;
+
+/**
+ * Testet das binaere Bankleitzahlen-Verzeichnis.
+ */
+public class TestBankDirectory extends AbstractTest
+{
+  /**
+   * Testet, dass das Verzeichnis nach dem Schreiben und Mappen dieselben Daten liefert.
+   * @throws Exception
+   */
+  @Test
+  public void test001() throws Exception
+  {
+    Properties blzs = loadProperties();
+    BankDirectory created = BankDirectory.create(blzs);
+    Assert.assertEquals(blzs.size(),created.size());
+
+    File file = write(created);
+    try
+    {
+      BankDirectory mapped = BankDirectory.load(file);
+      Assert.assertEquals(created.size(),mapped.size());
+
+      for (String blz:blzs.stringPropertyNames())
+      {
+        BankInfo info = mapped.get(blz);
+        Assert.assertNotNull(blz,info);
+        assertEquals(HBCIUtils.getBankInfo(blz),info);
+        assertEquals(created.get(blz),info);
+
+        // Wiederholte Zugriffe liefern dasselbe Objekt
+        Assert.assertSame(info,mapped.get(blz));
+      }
+
+      Assert.assertNull(mapped.get("12345678"));
+      Assert.assertNull(mapped.get("8605020"));
+      Assert.assertNull(mapped.get("8605020x"));
+      Assert.assertNull(mapped.get(null));
+    }
+    finally
+    {
+      file.delete();
+    }
+  }
+
+  /**
+   * Testet das Aktivieren eines neuen Verzeichnisses.
+   * @throws Exception
+   */
+  @Test
+  @SuppressWarnings("deprecation")
+  public void test002() throws Exception
+  {
+    Properties blzs = new Properties();
+    blzs.setProperty("12345678","Testbank|Teststadt|TESTDEFFXXX|09||https://test.example/|300|");
+    blzs.setProperty("12345679","Andere Testbank|Teststadt||09");
+
+    File file = write(BankDirectory.create(blzs));
+    try
+    {
+      Iterator<Map.Entry<String,BankInfo>> it = HBCIUtilsInternal.banks.entrySet().iterator();
+      Assert.assertTrue(it.hasNext());
+
+      HBCIUtils.refreshBLZList(file);
+
+      Assert.assertEquals(2,HBCIUtilsInternal.banks.size());
+      Assert.assertNull(HBCIUtils.getBankInfo("86050200"));
+
+      BankInfo info = HBCIUtils.getBankInfo("12345678");
+      Assert.assertEquals("Testbank",info.getName());
+      Assert.assertEquals("Teststadt",info.getLocation());
+      Assert.assertEquals("TESTDEFFXXX",info.getBic());
+      Assert.assertEquals("09",HBCIUtilsInternal.getAlgForBLZ("12345678"));
+      Assert.assertEquals("",info.getRdhAddress());
+      Assert.assertEquals("https://test.example/",info.getPinTanAddress());
+      Assert.assertEquals(HBCIVersion.HBCI_300,info.getRdhVersion());
+      Assert.assertNull(info.getPinTanVersion());
+
+      info = HBCIUtils.getBankInfo("12345679");
+      Assert.assertEquals("",info.getBic());
+      Assert.assertNull(info.getRdhAddress());
+      Assert.assertEquals("Andere Testbank|Teststadt||09",HBCIUtilsInternal.getBLZData("12345679"));
+
+      List<BankInfo> list = HBCIUtils.searchBankInfo("teststadt");
+      Assert.assertEquals(2,list.size());
+      Assert.assertEquals("12345678",list.get(0).getBlz());
+      Assert.assertEquals("12345679",list.get(1).getBlz());
+
+      // Ein bereits laufender Iterator arbeitet mit dem alten Verzeichnis weiter
+      int count = 0;
+      while (it.hasNext())
+      {
+        it.next();
+        count++;
+      }
+      Assert.assertTrue(count > 2);
+    }
+    finally
+    {
+      InputStream is = getClass().getClassLoader().getResourceAsStream("blz.properties");
+      try
+      {
+        HBCIUtils.refreshBLZList(is);
+      }
+      finally
+      {
+        is.close();
+      }
+      file.delete();
+    }
+    Assert.assertNotNull(HBCIUtils.getBankInfo("86050200"));
+  }
+
+  /**
+   * Testet das Erkennen ungueltiger Daten.
+   * @throws Exception
+   */
+  @Test
+  public void test003() throws Exception
+  {
+    try
+    {
+      BankDirectory.read(new ByteArrayInputStream("12345678=Testbank|Teststadt".getBytes("UTF-8")));
+      Assert.fail("invalid data not detected");
+    }
+    catch (IOException e)
+    {
+      // erwartet
+    }
+
+    Properties blzs = new Properties();
+    blzs.setProperty("12345678","Testbank|Teststadt");
+    ByteArrayOutputStream bos = new ByteArrayOutputStream();
+    BankDirectory.create(blzs).write(bos);
+    BankDirectory read = BankDirectory.read(new ByteArrayInputStream(bos.toByteArray()));
+    Assert.assertEquals("Testbank",read.get("12345678").getName());
+
+    byte[] truncated = new byte[bos.size() - 30];
+    System.arraycopy(bos.toByteArray(),0,truncated,0,truncated.length);
+    try
+    {
+      BankDirectory.read(new ByteArrayInputStream(truncated));
+      Assert.fail("truncated data not detected");
+    }
+    catch (IOException e)
+    {
+      // erwartet
+    }
+  }
+
+  /**
+   * Testet die veraltete Properties-Sicht auf das Verzeichnis.
+   * @throws Exception
+   */
+  @Test
+  @SuppressWarnings("deprecation")
+  public void test004() throws Exception
+  {
+    Properties blzs = new Properties();
+    blzs.setProperty("12345678","Testbank|Teststadt|TESTDEFFXXX|09");
+
+    File file = write(BankDirectory.create(blzs));
+    try
+    {
+      Assert.assertEquals(HBCIUtilsInternal.getBLZData("86050200"),HBCIUtilsInternal.blzs.getProperty("86050200"));
+      Assert.assertEquals(HBCIUtilsInternal.banks.size(),HBCIUtilsInternal.blzs.size());
+
+      // Nach dem Laden eines neuen Verzeichnisses wird neu befuellt
+      HBCIUtils.refreshBLZList(file);
+      Assert.assertEquals(1,HBCIUtilsInternal.blzs.size());
+      Assert.assertNull(HBCIUtilsInternal.blzs.getProperty("86050200"));
+      Assert.assertEquals("Testbank|Teststadt|TESTDEFFXXX|09",HBCIUtilsInternal.blzs.getProperty("12345678"));
+      Assert.assertEquals(1,HBCIUtilsInternal.blzs.stringPropertyNames().size());
+    }
+    finally
+    {
+      restore();
+      file.delete();
+    }
+    Assert.assertNotNull(HBCIUtilsInternal.blzs.getProperty("86050200"));
+  }
+
+  /**
+   * Testet Aenderungen ueber die Map-Sicht auf das Verzeichnis.
+   * @throws Exception
+   */
+  @Test
+  @SuppressWarnings("deprecation")
+  public void test005() throws Exception
+  {
+    try
+    {
+      int size = HBCIUtilsInternal.banks.size();
+
+      // Eine bestehende Bank unter einer neuen BLZ eintragen
+      BankInfo info = HBCIUtils.getBankInfo("86050200");
+      Assert.assertNull(HBCIUtilsInternal.banks.put("12345678",info));
+
+      Assert.assertEquals(size + 1,HBCIUtilsInternal.banks.size());
+      BankInfo added = HBCIUtils.getBankInfo("12345678");
+      Assert.assertNotSame(info,added);
+      Assert.assertEquals("12345678",added.getBlz());
+      Assert.assertEquals("86050200",info.getBlz());
+      Assert.assertEquals(info.getName(),added.getName());
+      Assert.assertEquals(info.getLocation(),added.getLocation());
+      Assert.assertEquals(info.getBic(),added.getBic());
+      Assert.assertEquals(info.getChecksumMethod(),added.getChecksumMethod());
+      Assert.assertEquals(info.getRdhAddress(),added.getRdhAddress());
+      Assert.assertEquals(info.getPinTanAddress(),added.getPinTanAddress());
+      Assert.assertEquals(info.getRdhVersion(),added.getRdhVersion());
+      Assert.assertEquals(info.getPinTanVersion(),added.getPinTanVersion());
+      Assert.assertEquals(HBCIUtilsInternal.getBLZData("86050200"),HBCIUtilsInternal.blzs.getProperty("12345678"));
+      Assert.assertEquals("12345678",HBCIUtils.searchBankInfo("1234567").get(0).getBlz());
+
+      Assert.assertNotNull(HBCIUtilsInternal.banks.remove("12345678"));
+      Assert.assertNull(HBCIUtils.getBankInfo("12345678"));
+      Assert.assertEquals(size,HBCIUtilsInternal.banks.size());
+
+      // Mehrere Banken in einem Schritt eintragen
+      Map<String,BankInfo> more = new HashMap<String,BankInfo>();
+      more.put("12345678",info);
+      more.put("12345679",info);
+      HBCIUtilsInternal.banks.putAll(more);
+      Assert.assertEquals(size + 2,HBCIUtilsInternal.banks.size());
+      Assert.assertEquals("12345679",HBCIUtils.getBankInfo("12345679").getBlz());
+      HBCIUtilsInternal.banks.keySet().removeAll(more.keySet());
+      Assert.assertEquals(size,HBCIUtilsInternal.banks.size());
+
+      // Entfernen ueber den Iterator
+      Iterator<String> it = HBCIUtilsInternal.banks.keySet().iterator();
+      String first = it.next();
+      it.remove();
+      Assert.assertNull(HBCIUtils.getBankInfo(first));
+      Assert.assertEquals(size - 1,HBCIUtilsInternal.banks.size());
+
+      HBCIUtilsInternal.banks.clear();
+      Assert.assertTrue(HBCIUtilsInternal.banks.isEmpty());
+    }
+    finally
+    {
+      restore();
+    }
+    Assert.assertNotNull(HBCIUtils.getBankInfo("86050200"));
+  }
+
+  /**
+   * Aktiviert wieder die mitgelieferte blz.properties.
+   * @throws Exception
+   */
+  private void restore() throws Exception
+  {
+    InputStream is = getClass().getClassLoader().getResourceAsStream("blz.properties");
+    try
+    {
+      HBCIUtils.refreshBLZList(is);
+    }
+    finally
+    {
+      is.close();
+    }
+  }
+
+  /**
+   * Laedt die mitgelieferte blz.properties.
+   * @return die Properties.
+   * @throws Exception
+   */
+  private Properties loadProperties() throws Exception
+  {
+    Properties blzs = new Properties();
+    InputStream is = getClass().getClassLoader().getResourceAsStream("blz.properties");
+    try
+    {
+      blzs.load(new InputStreamReader(is,"UTF-8"));
+    }
+    finally
+    {
+      is.close();
+    }
+    return blzs;
+  }
+
+  /**
+   * Schreibt das Verzeichnis in eine temporaere Datei.
+   * @param directory das Verzeichnis.
+   * @return die Datei.
+   * @throws Exception
+   */
+  private File write(BankDirectory directory) throws Exception
+  {
+    File file = File.createTempFile("blz",".dat");
+    OutputStream os = new FileOutputStream(file);
+    try
+    {
+      directory.write(os);
+    }
+    finally
+    {
+      os.close();
+    }
+    return file;
+  }
+
+  /**
+   * Vergleicht zwei Bank-Informationen.
+   * @param expected die erwarteten Daten.
+   * @param actual die tatsaechlichen Daten.
+   */
+  private void assertEquals(BankInfo expected, BankInfo actual)
+  {
+    String blz = expected.getBlz();
+    Assert.assertEquals(blz,expected.getBlz(),actual.getBlz());
+    Assert.assertEquals(blz,expected.getName(),actual.getName());
+    Assert.assertEquals(blz,expected.getLocation(),actual.getLocation());
+    Assert.assertEquals(blz,expected.getBic(),actual.getBic());
+    Assert.assertEquals(blz,expected.getChecksumMethod(),actual.getChecksumMethod());
+    Assert.assertEquals(blz,expected.getRdhAddress(),actual.getRdhAddress());
+    Assert.assertEquals(blz,expected.getPinTanAddress(),actual.getPinTanAddress());
+    Assert.assertEquals(blz,expected.getRdhVersion(),actual.getRdhVersion());
+    Assert.assertEquals(blz,expected.getPinTanVersion(),actual.getPinTanVersion());
+  }
+}
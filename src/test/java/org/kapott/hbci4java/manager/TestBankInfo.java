@@ -1,11 +1,15 @@
 package org.kapott.hbci4java.manager;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
 
 import org.junit.Assert;
 import org.junit.Test;
 import org.kapott.hbci.manager.BankInfo;
 import org.kapott.hbci.manager.HBCIUtils;
+import org.kapott.hbci.manager.HBCIUtilsInternal;
 import org.kapott.hbci.manager.HBCIVersion;
 import org.kapott.hbci4java.AbstractTest;
 
@@ -134,4 +138,63 @@ public class TestBankInfo extends AbstractTest {
         Assert.assertNotNull(list);
         Assert.assertEquals("Falsche Treffer-Anzahl",0,list.size());
     }
+
+    /**
+     * Vergleicht die Suche ueber den Index mit einer einfachen Suche ueber alle Banken.
+     */
+    @Test
+    public void test008() {
+        List<String> queries = new ArrayList<String>();
+        queries.add("xyzxyz");
+        queries.add("SPARKASSE");
+        queries.add("bank");
+        queries.add("   gRiMmA  ");
+        queries.add("8605");
+        queries.add("e b");
+
+        int i = 0;
+        for (BankInfo info:HBCIUtilsInternal.banks.values())
+        {
+            if (i++ % 97 != 0)
+                continue;
+            
+            for (String s:new String[]{info.getBlz(),info.getBic(),info.getName(),info.getLocation()})
+            {
+                if (s == null || s.length() < 3)
+                    continue;
+                int len = Math.min(s.length(),3 + (i % 5));
+                int pos = i % (s.length() - len + 1);
+                queries.add(s.substring(pos,pos + len));
+            }
+        }
+
+        for (String query:queries)
+        {
+            Assert.assertEquals(query,search(query),HBCIUtils.searchBankInfo(query));
+        }
+    }
+    
+    /**
+     * Sucht linear ueber alle Banken.
+     * @param query der Suchbegriff.
+     * @return die nach BLZ sortierte Liste der Treffer.
+     */
+    private List<BankInfo> search(String query) {
+        query = query.trim().toLowerCase(Locale.ROOT);
+        List<BankInfo> list = new ArrayList<BankInfo>();
+        if (query.length() < 3)
+            return list;
+        for (BankInfo info:HBCIUtilsInternal.banks.values())
+        {
+            if (info.getBlz().startsWith(query) ||
+                (info.getBic() != null && info.getBic().toLowerCase(Locale.ROOT).startsWith(query)) ||
+                (info.getName() != null && info.getName().toLowerCase(Locale.ROOT).contains(query)) ||
+                (info.getLocation() != null && info.getLocation().toLowerCase(Locale.ROOT).contains(query)))
+            {
+                list.add(info);
+            }
+        }
+        list.sort((a,b) -> a.getBlz().compareTo(b.getBlz()));
+        return list;
+    }
 }
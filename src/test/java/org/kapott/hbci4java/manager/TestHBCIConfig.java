@@ -0,0 +1,222 @@
+/**********************************************************************
+ *
+ * This file is part of HBCI4Java.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ **********************************************************************/
+
+package org.kapott.hbci4java.manager;
+
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.kapott.hbci.manager.HBCIConfig;
+import org.kapott.hbci.manager.HBCIUtils;
+import org.kapott.hbci4java.AbstractTest;
+
+/**
+ * Testet den unveraenderlichen Stand der Kernel-Parameter.
+ */
+public class TestHBCIConfig extends AbstractTest
+{
+  /**
+   * Testet die geparsten Werte.
+   * @throws Exception
+   */
+  @Test
+  public void test001() throws Exception
+  {
+    Properties props = new Properties();
+    props.setProperty("log.loglevel.default","4");
+    props.setProperty("kernel.objpool.SEG"," 17");
+    props.setProperty("foo.enabled","true");
+    props.setProperty("foo.count","42");
+
+    HBCIConfig config = HBCIConfig.create(props);
+    Assert.assertEquals(4,config.getLogLevel());
+    Assert.assertEquals(2,config.getLogFilter());
+    Assert.assertEquals(17,config.getPoolSize("SEG",256));
+    Assert.assertEquals(1024,config.getPoolSize("DE",1024));
+    Assert.assertTrue(config.getBoolean("foo.enabled",false));
+    Assert.assertFalse(config.getBoolean("foo.missing",false));
+    Assert.assertEquals(42,config.getInt("foo.count",0));
+    Assert.assertNull(config.getRewriter());
+
+    HBCIConfig disabled = config.with("kernel.objpool.enabled","0");
+    Assert.assertEquals(0,disabled.getPoolSize("SEG",256));
+
+    // Der alte Stand bleibt unveraendert
+    Assert.assertEquals(17,config.getPoolSize("SEG",256));
+
+    HBCIConfig removed = config.with("log.loglevel.default",null);
+    Assert.assertEquals(2,removed.getLogLevel());
+    Assert.assertNull(removed.get("log.loglevel.default"));
+    Assert.assertEquals("4",config.get("log.loglevel.default"));
+  }
+
+  /**
+   * Testet, dass setParam den Stand durch eine Kopie ersetzt.
+   * @throws Exception
+   */
+  @Test
+  public void test002() throws Exception
+  {
+    HBCIConfig before = HBCIUtils.getConfig();
+    Assert.assertNotNull(before.getRewriter());
+
+    try
+    {
+      HBCIUtils.setParam("test.config.value","1");
+      HBCIConfig after = HBCIUtils.getConfig();
+      Assert.assertNotSame(before,after);
+      Assert.assertNull(before.get("test.config.value"));
+      Assert.assertEquals("1",after.get("test.config.value"));
+      Assert.assertEquals("1",HBCIUtils.getParam("test.config.value"));
+
+      // Aenderungen ueber getParams wirken wie setParam
+      Properties params = HBCIUtils.getParams();
+      Assert.assertEquals("1",params.getProperty("test.config.value"));
+      params.setProperty("test.config.value","2");
+      Assert.assertEquals("2",HBCIUtils.getParam("test.config.value"));
+      Assert.assertNotSame(after,HBCIUtils.getConfig());
+
+      // und zeigen spaetere Aenderungen per setParam
+      HBCIUtils.setParam("test.config.value","3");
+      Assert.assertEquals("3",params.getProperty("test.config.value"));
+      Assert.assertEquals("3",params.remove("test.config.value"));
+      Assert.assertNull(HBCIUtils.getParam("test.config.value"));
+    }
+    finally
+    {
+      HBCIUtils.setParam("test.config.value",null);
+    }
+    Assert.assertNull(HBCIUtils.getParam("test.config.value"));
+  }
+
+  /**
+   * Testet die Bindung an einen Thread ausserhalb der ThreadGroup.
+   * @throws Exception
+   */
+  @Test
+  public void test003() throws Exception
+  {
+    final AtomicReference<Object> result = new AtomicReference<Object>();
+    final ThreadGroup other = new ThreadGroup("test-other");
+
+    // Ohne Bindung ist die ThreadGroup nicht initialisiert
+    Thread t = new Thread(other,() -> {
+      try
+      {
+        result.set(HBCIUtils.getParam("kernel.rewriter"));
+      }
+      catch (RuntimeException e)
+      {
+        // Die Fehlermeldung kann in der fremden ThreadGroup nicht mal
+        // uebersetzt werden
+        result.set(e);
+      }
+    });
+    t.start();
+    t.join();
+    Assert.assertTrue(result.get() instanceof RuntimeException);
+
+    // Mit Bindung sind die Parameter sichtbar - auch Aenderungen in beide Richtungen
+    try
+    {
+      Runnable task = HBCIUtils.withConfig(() -> {
+        result.set(HBCIUtils.getParam("kernel.rewriter"));
+        HBCIUtils.setParam("test.config.bound","1");
+      });
+      t = new Thread(other,task);
+      t.start();
+      t.join();
+      Assert.assertEquals(HBCIUtils.getParam("kernel.rewriter"),result.get());
+      Assert.assertEquals("1",HBCIUtils.getParam("test.config.bound"));
+    }
+    finally
+    {
+      HBCIUtils.setParam("test.config.bound",null);
+    }
+  }
+
+  /**
+   * Ungueltige Zahlen fallen erst beim Zugriff auf und verhindern keine
+   * weiteren Aenderungen.
+   * @throws Exception
+   */
+  @Test
+  public void test004() throws Exception
+  {
+    Properties props = new Properties();
+    props.setProperty("kernel.objpool.SEG","viele");
+
+    HBCIConfig config = HBCIConfig.create(props).with("log.loglevel.default","4");
+    Assert.assertEquals(4,config.getLogLevel());
+    Assert.assertEquals(1024,config.getPoolSize("DE",1024));
+    try
+    {
+      config.getPoolSize("SEG",256);
+      Assert.fail("NumberFormatException erwartet");
+    }
+    catch (NumberFormatException e)
+    {
+      // erwartet
+    }
+  }
+
+  /**
+   * Die schreibenden Default-Methoden von Map wirken ebenfalls wie setParam,
+   * und beim Neubefuellen sind die Parameter nie voruebergehend weg.
+   * @throws Exception
+   */
+  @Test
+  public void test005() throws Exception
+  {
+    final Properties params = HBCIUtils.getParams();
+    final String rewriter = HBCIUtils.getParam("kernel.rewriter");
+    try
+    {
+      Assert.assertNull(params.putIfAbsent("test.config.value","1"));
+      Assert.assertEquals("1",params.putIfAbsent("test.config.value","2"));
+      Assert.assertEquals("1",params.replace("test.config.value","2"));
+      Assert.assertTrue(params.replace("test.config.value","2","3"));
+      Assert.assertEquals("3",HBCIUtils.getParam("test.config.value"));
+      Assert.assertEquals("31",params.merge("test.config.value","1",(a,b) -> (String) a + b));
+      Assert.assertEquals("x",params.compute("test.config.value",(k,v) -> "x"));
+      Assert.assertEquals("x",params.computeIfAbsent("test.config.value",k -> "y"));
+      Assert.assertEquals("x",HBCIUtils.getParam("test.config.value"));
+      Assert.assertFalse(params.remove("test.config.value","y"));
+      Assert.assertTrue(params.remove("test.config.value","x"));
+      Assert.assertNull(HBCIUtils.getParam("test.config.value"));
+
+      Thread writer = new Thread(HBCIUtils.withConfig(() -> {
+        for (int i=0;i<500;i++)
+          HBCIUtils.setParam("test.config.value",Integer.toString(i));
+      }));
+      writer.start();
+      while (writer.isAlive())
+        Assert.assertEquals(rewriter,params.get("kernel.rewriter"));
+      writer.join();
+      Assert.assertEquals("499",params.getProperty("test.config.value"));
+    }
+    finally
+    {
+      HBCIUtils.setParam("test.config.value",null);
+    }
+  }
+}
@@ -0,0 +1,168 @@
+/**********************************************************************
+ *
+ * This file is part of HBCI4Java.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ **********************************************************************/
+
+package org.kapott.hbci4java.manager;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.kapott.hbci.callback.HBCICallbackConsole;
+import org.kapott.hbci.manager.HBCIUtils;
+import org.kapott.hbci4java.AbstractTest;
+
+/**
+ * Testet die Log-Methoden von HBCIUtils.
+ */
+public class TestHBCILog extends AbstractTest
+{
+  /**
+   * Callback, der die Log-Ausgaben sammelt.
+   */
+  private static class Recorder extends HBCICallbackConsole
+  {
+    private final boolean callerInfo;
+    private final List<String> lines = new ArrayList<String>();
+    private final List<StackTraceElement> traces = new ArrayList<StackTraceElement>();
+
+    private Recorder(boolean callerInfo)
+    {
+      this.callerInfo = callerInfo;
+    }
+
+    @Override
+    public void log(String msg, int level, Date date, StackTraceElement trace)
+    {
+      this.lines.add(msg);
+      this.traces.add(trace);
+    }
+
+    @Override
+    public boolean needsCallerInfo()
+    {
+      return this.callerInfo;
+    }
+  }
+
+  /**
+   * Fuehrt den Test in einer eigenen ThreadGroup mit dem Callback aus.
+   * @param callback der Callback.
+   * @param test der Test.
+   * @throws Exception
+   */
+  private void run(Recorder callback, final Runnable test) throws Exception
+  {
+    final Properties props = new Properties();
+    props.setProperty("log.loglevel.default","" + HBCIUtils.LOG_INFO);
+    props.setProperty("log.filter","0");
+
+    final AtomicReference<Throwable> error = new AtomicReference<Throwable>();
+    Thread t = new Thread(new ThreadGroup("test-log"),() -> {
+      HBCIUtils.initThread(props,callback);
+      try
+      {
+        callback.lines.clear();
+        callback.traces.clear();
+        test.run();
+      }
+      catch (Throwable e)
+      {
+        error.set(e);
+      }
+      finally
+      {
+        HBCIUtils.doneThread();
+      }
+    });
+    t.start();
+    t.join();
+    if (error.get() instanceof Error)
+      throw (Error) error.get();
+    if (error.get() != null)
+      throw new Exception(error.get());
+  }
+
+  /**
+   * Testet, dass Meldungen unterhalb des Log-Levels nicht erzeugt werden.
+   * @throws Exception
+   */
+  @Test
+  public void test001() throws Exception
+  {
+    final Recorder r = new Recorder(true);
+    run(r,() -> {
+      Assert.assertTrue(HBCIUtils.isEnabled(HBCIUtils.LOG_INFO));
+      Assert.assertFalse(HBCIUtils.isEnabled(HBCIUtils.LOG_DEBUG));
+
+      HBCIUtils.log(() -> {
+        throw new AssertionError("supplier must not be called");
+      },HBCIUtils.LOG_DEBUG2);
+      HBCIUtils.log("hidden {}",HBCIUtils.LOG_DEBUG,new Object()
+      {
+        public String toString()
+        {
+          throw new AssertionError("argument must not be formatted");
+        }
+      });
+      HBCIUtils.log(new Exception("hidden"),HBCIUtils.LOG_DEBUG);
+      Assert.assertEquals(0,r.lines.size());
+
+      HBCIUtils.log(() -> "supplied",HBCIUtils.LOG_INFO);
+      HBCIUtils.log("a={}, b={}, c={}",HBCIUtils.LOG_WARN,"1",Integer.valueOf(2));
+      HBCIUtils.log("plain {}",HBCIUtils.LOG_ERR);
+      Assert.assertEquals(3,r.lines.size());
+      Assert.assertEquals("supplied",r.lines.get(0));
+      Assert.assertEquals("a=1, b=2, c={}",r.lines.get(1));
+      Assert.assertEquals("plain {}",r.lines.get(2));
+    });
+  }
+
+  /**
+   * Testet die Ermittlung der Aufrufstelle.
+   * @throws Exception
+   */
+  @Test
+  public void test002() throws Exception
+  {
+    final Recorder r = new Recorder(true);
+    run(r,() -> {
+      HBCIUtils.log("string",HBCIUtils.LOG_INFO);
+      HBCIUtils.log(() -> "supplier",HBCIUtils.LOG_INFO);
+      HBCIUtils.log("format {}",HBCIUtils.LOG_INFO,"x");
+      HBCIUtils.log(new Exception("ex"));
+      Assert.assertEquals(4,r.traces.size());
+      for (StackTraceElement e:r.traces)
+      {
+        Assert.assertEquals(TestHBCILog.class.getName(),e.getClassName());
+      }
+    });
+
+    final Recorder r2 = new Recorder(false);
+    run(r2,() -> {
+      HBCIUtils.log("string",HBCIUtils.LOG_INFO);
+      Assert.assertEquals(1,r2.traces.size());
+      Assert.assertNull(r2.traces.get(0));
+    });
+  }
+}
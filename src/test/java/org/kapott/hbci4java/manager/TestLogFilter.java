@@ -0,0 +1,298 @@
+/**********************************************************************
+ *
+ * This file is part of HBCI4Java.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ **********************************************************************/
+
+package org.kapott.hbci4java.manager;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Properties;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+import org.kapott.hbci.GV.HBCIJob;
+import org.kapott.hbci.callback.HBCICallback;
+import org.kapott.hbci.callback.HBCICallbackConsole;
+import org.kapott.hbci.manager.HBCIHandler;
+import org.kapott.hbci.manager.HBCIUtils;
+import org.kapott.hbci.manager.LogFilter;
+import org.kapott.hbci.passport.HBCIPassportPinTan;
+
+/**
+ * Testet das Filtern geheimer Daten aus Log-Ausgaben.
+ */
+public class TestLogFilter
+{
+  private List<LogFilter> scopes = new ArrayList<LogFilter>();
+
+  /**
+   * Entfernt die Geheimnisse der Tests wieder, damit sie nicht in den
+   * Log-Ausgaben der folgenden Tests landen.
+   * @throws Exception
+   */
+  @After
+  public void cleanup() throws Exception
+  {
+    for (LogFilter f:this.scopes)
+      f.clearSecretData();
+    this.scopes.clear();
+    LogFilter.getInstance().clearSecretData();
+  }
+
+  /**
+   * Testet die Filter-Level und die Ersetzungen.
+   * @throws Exception
+   */
+  @Test
+  public void test001() throws Exception
+  {
+    LogFilter f = createScope();
+    f.addSecretData("pinpin","X",LogFilter.FILTER_SECRETS);
+    f.addSecretData("userid","*",LogFilter.FILTER_IDS);
+    f.addSecretData("bankbank","#",LogFilter.FILTER_MOST);
+    f.addSecretData("geheim","[hidden]",LogFilter.FILTER_SECRETS);
+
+    String line = "pinpin userid bankbank geheim";
+    Assert.assertEquals(line,f.filterLine(line,LogFilter.FILTER_NONE));
+    Assert.assertEquals("XXXXXX userid bankbank [hidden]",f.filterLine(line,LogFilter.FILTER_SECRETS));
+    Assert.assertEquals("XXXXXX ****** bankbank [hidden]",f.filterLine(line,LogFilter.FILTER_IDS));
+    Assert.assertEquals("XXXXXX ****** ######## [hidden]",f.filterLine(line,LogFilter.FILTER_MOST));
+
+    // Ohne Treffer wird die Zeile unveraendert geliefert
+    String clean = "nothing to hide";
+    Assert.assertSame(clean,f.filterLine(clean,LogFilter.FILTER_MOST));
+    Assert.assertNull(f.filterLine(null,LogFilter.FILTER_MOST));
+  }
+
+  /**
+   * Testet ueberlappende und enthaltene Geheimnisse.
+   * @throws Exception
+   */
+  @Test
+  public void test002() throws Exception
+  {
+    LogFilter f = createScope();
+    f.addSecretData("abcd","X",LogFilter.FILTER_SECRETS);
+    f.addSecretData("cdef","X",LogFilter.FILTER_SECRETS);
+    f.addSecretData("bc","X",LogFilter.FILTER_SECRETS);
+
+    Assert.assertEquals("zXXXXXXz",f.filterLine("zabcdefz",LogFilter.FILTER_SECRETS));
+    Assert.assertEquals("zXXz",f.filterLine("zbcz",LogFilter.FILTER_SECRETS));
+    Assert.assertEquals("XXXXXXXX",f.filterLine("abcdabcd",LogFilter.FILTER_SECRETS));
+  }
+
+  /**
+   * Vergleicht das Ergebnis mit einer einfachen Suche nach allen Vorkommen.
+   * @throws Exception
+   */
+  @Test
+  public void test003() throws Exception
+  {
+    Random r = new Random(4711);
+    for (int run=0;run<200;run++)
+    {
+      LogFilter f = createScope();
+      List<String> secrets = new ArrayList<String>();
+      int count = 1 + r.nextInt(20);
+      for (int i=0;i<count;i++)
+      {
+        String s = random(r,1 + r.nextInt(5));
+        secrets.add(s);
+        f.addSecretData(s,"X",LogFilter.FILTER_SECRETS);
+      }
+
+      String line = random(r,r.nextInt(200));
+      boolean[] covered = new boolean[line.length()];
+      for (String s:secrets)
+      {
+        int pos = -1;
+        while ((pos = line.indexOf(s,pos + 1)) != -1)
+        {
+          for (int i=0;i<s.length();i++)
+            covered[pos + i] = true;
+        }
+      }
+
+      StringBuilder expected = new StringBuilder();
+      for (int i=0;i<line.length();i++)
+        expected.append(covered[i] ? 'X' : line.charAt(i));
+
+      Assert.assertEquals(secrets + " in " + line,expected.toString(),f.filterLine(line,LogFilter.FILTER_SECRETS));
+    }
+  }
+
+  /**
+   * Testet die Trennung der Bereiche.
+   * @throws Exception
+   */
+  @Test
+  public void test004() throws Exception
+  {
+    LogFilter a = createScope();
+    LogFilter b = createScope();
+    a.addSecretData("scope-a-secret","X",LogFilter.FILTER_SECRETS);
+    b.addSecretData("scope-b-secret","X",LogFilter.FILTER_SECRETS);
+    LogFilter.getInstance().addSecretData("global-secret","X",LogFilter.FILTER_SECRETS);
+
+    String line = "scope-a-secret scope-b-secret global-secret";
+
+    // Ein Bereich filtert nur die eigenen und die globalen Geheimnisse
+    Assert.assertEquals("XXXXXXXXXXXXXX scope-b-secret XXXXXXXXXXXXX",a.filterLine(line,LogFilter.FILTER_SECRETS));
+    Assert.assertEquals("scope-a-secret XXXXXXXXXXXXXX XXXXXXXXXXXXX",b.filterLine(line,LogFilter.FILTER_SECRETS));
+
+    // Ohne gebundenen Bereich filtert der globale Filter die Geheimnisse aller Bereiche
+    Assert.assertEquals("XXXXXXXXXXXXXX XXXXXXXXXXXXXX XXXXXXXXXXXXX",LogFilter.getInstance().filterLine(line,LogFilter.FILTER_SECRETS));
+
+    // Aenderungen werden beim naechsten Filtern beruecksichtigt
+    b.addSecretData("qqqq","G",LogFilter.FILTER_SECRETS);
+    Assert.assertEquals("GGGG",b.filterLine("qqqq",LogFilter.FILTER_SECRETS));
+    Assert.assertEquals("GGGG",LogFilter.getInstance().filterLine("qqqq",LogFilter.FILTER_SECRETS));
+    Assert.assertEquals("qqqq",a.filterLine("qqqq",LogFilter.FILTER_SECRETS));
+
+    // Bereits maskierte Stellen behalten ihren Filler
+    b.addSecretData("scope-b","G",LogFilter.FILTER_SECRETS);
+    Assert.assertEquals("scope-a-secret GGGGGGGXXXXXXX XXXXXXXXXXXXX",b.filterLine(line,LogFilter.FILTER_SECRETS));
+  }
+
+  /**
+   * Testet das Binden eines Bereiches an den Thread.
+   * @throws Exception
+   */
+  @Test
+  public void test005() throws Exception
+  {
+    final LogFilter a = createScope();
+    final LogFilter b = createScope();
+    a.addSecretData("scope-a-secret","X",LogFilter.FILTER_SECRETS);
+    b.addSecretData("scope-b-secret","X",LogFilter.FILTER_SECRETS);
+    String line = "scope-a-secret scope-b-secret";
+
+    LogFilter prev = LogFilter.bind(a);
+    try
+    {
+      Assert.assertNull(prev);
+      Assert.assertSame(a,LogFilter.getInstance());
+      Assert.assertEquals("XXXXXXXXXXXXXX scope-b-secret",LogFilter.getInstance().filterLine(line,LogFilter.FILTER_SECRETS));
+
+      // In anderen Threads gilt die Bindung nicht
+      final LogFilter[] other = new LogFilter[1];
+      Thread t = new Thread(() -> other[0] = LogFilter.getInstance());
+      t.start();
+      t.join();
+      Assert.assertNotSame(a,other[0]);
+    }
+    finally
+    {
+      LogFilter.bind(prev);
+    }
+    Assert.assertNotSame(a,LogFilter.getInstance());
+    Assert.assertEquals("XXXXXXXXXXXXXX XXXXXXXXXXXXXX",LogFilter.getInstance().filterLine(line,LogFilter.FILTER_SECRETS));
+  }
+
+  /**
+   * Testet, dass Job-Parameter auch dann maskiert werden, wenn die Anwendung
+   * den Job direkt benutzt und kein Bereich gebunden ist.
+   * @throws Exception
+   */
+  @Test
+  public void test006() throws Exception
+  {
+    final List<String> lines = new ArrayList<String>();
+    final HBCICallback callback = new HBCICallbackConsole()
+    {
+      @Override
+      public synchronized void log(String msg, int level, Date date, StackTraceElement trace)
+      {
+        lines.add(msg);
+      }
+    };
+
+    final Properties props = new Properties();
+    props.setProperty("log.loglevel.default","" + HBCIUtils.LOG_DEBUG);
+    props.setProperty("log.filter","" + LogFilter.FILTER_IDS);
+
+    final AtomicReference<Throwable> error = new AtomicReference<Throwable>();
+    Thread t = new Thread(new ThreadGroup("test-logfilter"),() -> {
+      HBCIUtils.initThread(props,callback);
+      try
+      {
+        Properties bpd = new Properties();
+        bpd.setProperty("Params_1.SaldoPar5.SegHead.code","HISALS");
+
+        HBCIPassportPinTan passport = new HBCIPassportPinTan(null,0);
+        passport.setHBCIVersion("300");
+        passport.setBPD(bpd);
+        this.scopes.add(LogFilter.getInstance(passport));
+
+        HBCIJob job = new HBCIHandler("300",passport,true).newJob("SaldoReq");
+        Assert.assertNull(LogFilter.bind(null));
+
+        lines.clear();
+        job.setParam("my.number","4711081542");
+      }
+      catch (Throwable e)
+      {
+        error.set(e);
+      }
+      finally
+      {
+        HBCIUtils.doneThread();
+      }
+    });
+    t.start();
+    t.join();
+    if (error.get() instanceof Error)
+      throw (Error) error.get();
+    if (error.get() != null)
+      throw new Exception(error.get());
+
+    String logged = lines.toString();
+    Assert.assertTrue(logged,logged.contains("setting lowlevel parameter"));
+    Assert.assertFalse(logged,logged.contains("4711081542"));
+  }
+
+  /**
+   * Erzeugt einen Bereich, der nach dem Test wieder geleert wird.
+   * @return der Bereich.
+   */
+  private LogFilter createScope()
+  {
+    LogFilter f = LogFilter.createScope();
+    this.scopes.add(f);
+    return f;
+  }
+
+  /**
+   * Erzeugt einen Zufallsstring aus wenigen Zeichen, damit es viele Treffer gibt.
+   * @param r der Zufallsgenerator.
+   * @param len die Laenge.
+   * @return der String.
+   */
+  private static String random(Random r, int len)
+  {
+    char[] c = new char[len];
+    for (int i=0;i<len;i++)
+      c[i] = (char) ('a' + r.nextInt(3));
+    return new String(c);
+  }
+}
@@ -26,11 +26,8 @@ import java.util.Hashtable;
 import org.junit.Assert;
 import org.junit.Test;
 import org.kapott.hbci.exceptions.ParseErrorException;
-import org.kapott.hbci.manager.HBCIKernelImpl;
 import org.kapott.hbci.manager.HBCIUtils;
-import org.kapott.hbci.manager.MsgGen;
 import org.kapott.hbci.protocol.MSG;
-import org.kapott.hbci.protocol.factory.MSGFactory;
 import org.kapott.hbci4java.AbstractTest;
 
 /**
@@ -45,12 +42,7 @@ public class TestBug1129 extends AbstractTest
    */
   private Hashtable<String, String> parse() throws Exception
   {
-    String data = this.getFile("bugzilla-1129.txt");
-    HBCIKernelImpl kernel = new HBCIKernelImpl(null,"plus");
-    kernel.rawNewMsg("DauerList");
-    
-    MsgGen gen = kernel.getMsgGen();
-    MSG msg = MSGFactory.getInstance().createMSG("CustomMsgRes",data,data.length(),gen);
+    MSG msg = this.parseBug1129();
 
     Hashtable<String,String> ht = new Hashtable<String,String>();
     msg.extractValues(ht);
@@ -0,0 +1,157 @@
+/**********************************************************************
+ *
+ * This file is part of HBCI4Java.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ **********************************************************************/
+
+
+package org.kapott.hbci4java.msg;
+
+import java.util.Hashtable;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.kapott.hbci.manager.HBCIKernelImpl;
+import org.kapott.hbci.protocol.ParseCursor;
+import org.kapott.hbci.protocol.SEG;
+import org.kapott.hbci.protocol.factory.SEGFactory;
+import org.kapott.hbci.protocol.syntax.SyntaxModel;
+import org.kapott.hbci4java.AbstractTest;
+
+/**
+ * Testet das Ueberspringen leerer Elemente in mehrfach vorkommenden Syntax-Elementen.
+ */
+public class TestEmptyElements extends AbstractTest
+{
+  private SyntaxModel syntax = null;
+
+  /**
+   * Laedt die Syntax.
+   * @throws Exception
+   */
+  @Before
+  public void before() throws Exception
+  {
+    this.syntax = new HBCIKernelImpl(null,"300").getMsgGen().getSyntaxModel();
+  }
+
+  /**
+   * Leere Wiederholungen einer DEG am Ende des Segments werden uebersprungen.
+   * @throws Exception
+   */
+  @Test
+  public void test001() throws Exception
+  {
+    Map<String,String> values = parse("KInfo6","HIUPD:5:6:4+1234567::280:12345678++kunde+1+EUR+Name++Konto++HKUEB:1+HKSAL:1++++'");
+    Assert.assertEquals("HKUEB",values.get("Test.KInfo6.AllowedGV.code"));
+    Assert.assertEquals("1",values.get("Test.KInfo6.AllowedGV.reqSigs"));
+    Assert.assertEquals("HKSAL",values.get("Test.KInfo6.AllowedGV_2.code"));
+    Assert.assertEquals("1",values.get("Test.KInfo6.AllowedGV_2.reqSigs"));
+    Assert.assertEquals("Konto",values.get("Test.KInfo6.konto"));
+    Assert.assertNull(values.get("Test.KInfo6.accountdata"));
+    for (String key:values.keySet())
+      Assert.assertFalse(key,key.startsWith("Test.KInfo6.AllowedGV_3"));
+  }
+
+  /**
+   * Innerhalb einer DEG sind mehrfach vorkommende DEs per ":" getrennt. Dort
+   * ist auch ein folgendes ":" ein leeres Element. Die Nummerierung der
+   * nachfolgenden Elemente bleibt dabei erhalten.
+   * @throws Exception
+   */
+  @Test
+  public void test002() throws Exception
+  {
+    Map<String,String> values = parse("RetGlob","HIRMG:2:2+3060::Text:p1:::+3050::Anderer Text'");
+    Assert.assertEquals("3060",values.get("Test.RetGlob.RetVal.code"));
+    Assert.assertEquals("Text",values.get("Test.RetGlob.RetVal.text"));
+    Assert.assertEquals("p1",values.get("Test.RetGlob.RetVal.parm"));
+    Assert.assertNull(values.get("Test.RetGlob.RetVal.parm_2"));
+    Assert.assertEquals("3050",values.get("Test.RetGlob.RetVal_2.code"));
+    Assert.assertEquals("Anderer Text",values.get("Test.RetGlob.RetVal_2.text"));
+    Assert.assertNull(values.get("Test.RetGlob.RetVal_2.parm"));
+
+    values = parse("RetGlob","HIRMG:2:2+3060::Text::::p4:p5+3050::Anderer Text'");
+    Assert.assertNull(values.get("Test.RetGlob.RetVal.parm"));
+    Assert.assertNull(values.get("Test.RetGlob.RetVal.parm_2"));
+    Assert.assertNull(values.get("Test.RetGlob.RetVal.parm_3"));
+    Assert.assertEquals("p4",values.get("Test.RetGlob.RetVal.parm_4"));
+    Assert.assertEquals("p5",values.get("Test.RetGlob.RetVal.parm_5"));
+    Assert.assertEquals("3050",values.get("Test.RetGlob.RetVal_2.code"));
+  }
+
+  /**
+   * Es werden hoechstens so viele leere Elemente uebersprungen, wie bis zur
+   * Maximal-Anzahl noch fehlen. Die restlichen Delimiter gehoeren zum
+   * naechsten Element.
+   * @throws Exception
+   */
+  @Test
+  public void test003() throws Exception
+  {
+    // AllowedGV darf 999 mal vorkommen. Nach dem ersten folgen 998 leere,
+    // der naechste Delimiter leitet bereits "accountdata" ein
+    StringBuilder sb = new StringBuilder("HIUPD:5:6:4+1234567::280:12345678++kunde+1+EUR+Name++Konto++HKUEB:1");
+    for (int i=0;i<999;i++)
+      sb.append('+');
+    sb.append("data'");
+
+    Map<String,String> values = parse("KInfo6",sb.toString());
+    Assert.assertEquals("HKUEB",values.get("Test.KInfo6.AllowedGV.code"));
+    Assert.assertEquals("data",values.get("Test.KInfo6.accountdata"));
+    for (String key:values.keySet())
+      Assert.assertFalse(key,key.startsWith("Test.KInfo6.AllowedGV_"));
+
+    // Ein Delimiter weniger - dann ist "HKSAL:2" die 999. AllowedGV
+    sb.setLength(0);
+    sb.append("HIUPD:5:6:4+1234567::280:12345678++kunde+1+EUR+Name++Konto++HKUEB:1");
+    for (int i=0;i<998;i++)
+      sb.append('+');
+    sb.append("HKSAL:2'");
+
+    values = parse("KInfo6",sb.toString());
+    Assert.assertEquals("HKSAL",values.get("Test.KInfo6.AllowedGV_999.code"));
+    Assert.assertEquals("2",values.get("Test.KInfo6.AllowedGV_999.reqSigs"));
+    Assert.assertNull(values.get("Test.KInfo6.accountdata"));
+  }
+
+  /**
+   * Parst ein einzelnes Segment.
+   * @param type der Segment-Typ.
+   * @param data die Daten.
+   * @return die nach Namen sortierten Werte.
+   * @throws Exception
+   */
+  private Map<String,String> parse(String type, String data) throws Exception
+  {
+    SEG seg = SEGFactory.getInstance().createSEG(type,type,"Test",(char) 0,0,new ParseCursor(data),this.syntax,new Hashtable<String,String>(),new Hashtable<String,List<String>>());
+    try
+    {
+      Hashtable<String,String> ht = new Hashtable<String,String>();
+      seg.extractValues(ht);
+      return new TreeMap<String,String>(ht);
+    }
+    finally
+    {
+      SEGFactory.getInstance().unuseObject(seg);
+    }
+  }
+}
@@ -0,0 +1,114 @@
+/**********************************************************************
+ *
+ * This file is part of HBCI4Java.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ **********************************************************************/
+
+package org.kapott.hbci4java.msg;
+
+import java.util.Hashtable;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.kapott.hbci.manager.HBCIUtils;
+import org.kapott.hbci.manager.SyntaxCache;
+import org.kapott.hbci.protocol.DE;
+import org.kapott.hbci.protocol.MSG;
+import org.kapott.hbci.protocol.SyntaxElement;
+import org.kapott.hbci.protocol.factory.MSGFactory;
+import org.kapott.hbci4java.AbstractTest;
+
+/**
+ * Tests fuer den Zugriff auf die Elemente einer Nachricht ueber ihren Pfad.
+ */
+public class TestMsgIndex extends AbstractTest
+{
+  private MSG msg = null;
+  private Hashtable<String,String> values = null;
+
+  /**
+   * Parst eine Nachricht.
+   * @throws Exception
+   */
+  @Before
+  public void parse() throws Exception
+  {
+    HBCIUtils.setParam("client.errors.ignoreWrongDataSyntaxErrors","yes");
+    this.msg = this.parseBug1129();
+    this.values = new Hashtable<String,String>();
+    this.msg.extractValues(this.values);
+  }
+
+  /**
+   * Jedes Datenelement muss ueber seinen Pfad gefunden werden.
+   * @throws Exception
+   */
+  @Test
+  public void test001() throws Exception
+  {
+    Assert.assertFalse(this.values.isEmpty());
+    for (String path:this.values.keySet())
+    {
+      SyntaxElement e = this.msg.getElement(path);
+      Assert.assertNotNull(path,e);
+      Assert.assertTrue(path,e instanceof DE);
+      Assert.assertEquals(path,e.getPath());
+      Assert.assertEquals(path,this.values.get(path),this.msg.getValueOfDE(path));
+    }
+    Assert.assertEquals(this.msg,this.msg.getElement("CustomMsgRes"));
+    Assert.assertNull(this.msg.getElement("CustomMsgRes.GibtsNicht"));
+  }
+
+  /**
+   * Testet das Ueberschreiben eines Wertes.
+   * @throws Exception
+   */
+  @Test
+  public void test002() throws Exception
+  {
+    String path = "CustomMsgRes.GVRes_6.DauerListRes4.usage.usage_3";
+    Assert.assertTrue(this.msg.propagateValue(path,"NEUER TEXT",SyntaxElement.DONT_TRY_TO_CREATE,SyntaxElement.ALLOW_OVERWRITE));
+    Assert.assertEquals("NEUER TEXT",this.msg.getValueOfDE(path));
+    Assert.assertFalse(this.msg.propagateValue("CustomMsgRes.GibtsNicht.foo","bar",SyntaxElement.DONT_TRY_TO_CREATE,SyntaxElement.ALLOW_OVERWRITE));
+  }
+
+  /**
+   * Testet, dass beim Erzeugen einer Nachricht angelegte optionale Elemente
+   * danach ueber ihren Pfad gefunden werden.
+   * @throws Exception
+   */
+  @Test
+  public void test003() throws Exception
+  {
+    MSG msg = createDialogInitAnon(SyntaxCache.createMsgGen(null,"300"));
+    try
+    {
+      Assert.assertEquals("12345678",msg.getValueOfDE("DialogInitAnon.Idn.KIK.blz"));
+      Assert.assertEquals("DialogInitAnon.Idn.KIK.blz",msg.getElement("DialogInitAnon.Idn.KIK.blz").getPath());
+      Assert.assertEquals("4",msg.getValueOfDE("DialogInitAnon.MsgTail.SegHead.seq"));
+
+      String data = msg.toString(0);
+      Assert.assertEquals(data.length(),Integer.parseInt(msg.getValueOfDE("DialogInitAnon.MsgHead.msgsize")));
+      Assert.assertTrue(data,data.contains("+280:12345678+"));
+    }
+    finally
+    {
+      MSGFactory.getInstance().unuseObject(msg);
+    }
+  }
+}
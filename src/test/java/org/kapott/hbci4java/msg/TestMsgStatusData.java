@@ -0,0 +1,209 @@
+/**********************************************************************
+ *
+ * This file is part of HBCI4Java.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ **********************************************************************/
+
+package org.kapott.hbci4java.msg;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.TreeMap;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.kapott.hbci.manager.HBCIUtils;
+import org.kapott.hbci.manager.SyntaxCache;
+import org.kapott.hbci.protocol.MSG;
+import org.kapott.hbci.status.HBCIMsgStatus;
+import org.kapott.hbci4java.AbstractTest;
+
+/**
+ * Tests fuer den Zugriff auf die Daten eines Nachrichtenaustauschs im Status-Objekt.
+ */
+public class TestMsgStatusData extends AbstractTest
+{
+  private MSG sent = null;
+  private MSG received = null;
+
+  /**
+   * Erzeugt die gesendete und parst die empfangene Nachricht.
+   * @throws Exception
+   */
+  @Before
+  public void parse() throws Exception
+  {
+    HBCIUtils.setParam("client.errors.ignoreWrongDataSyntaxErrors","yes");
+    this.received = this.parseBug1129();
+    this.sent = createDialogInitAnon(SyntaxCache.createMsgGen(null,"300"));
+  }
+
+  /**
+   * Die einzeln gelesenen Werte entsprechen den Properties.
+   * @throws Exception
+   */
+  @Test
+  public void test001() throws Exception
+  {
+    HBCIMsgStatus all = this.create();
+    Properties data = all.getData();
+    Assert.assertEquals("12345678",data.getProperty("orig_DialogInitAnon.Idn.KIK.blz"));
+    Assert.assertEquals("DialogInitAnon.Idn",data.getProperty("2"));
+    Assert.assertEquals("raw",data.getProperty("_msg"));
+
+    HBCIMsgStatus lazy = this.create();
+    for (String key:data.stringPropertyNames())
+      Assert.assertEquals(key,data.getProperty(key),lazy.getValue(key));
+
+    Assert.assertNull(lazy.getValue("GibtsNicht.foo"));
+    Assert.assertNull(lazy.getValue("orig_DialogInitAnon.GibtsNicht"));
+    Assert.assertNull(lazy.getValue("99"));
+    Assert.assertEquals(all.toString(),lazy.toString());
+    Assert.assertTrue(lazy.segStatus.getRetVals().length > 0);
+
+    // Erst jetzt werden die Properties erzeugt
+    Assert.assertEquals(data,lazy.getData());
+    Assert.assertSame(lazy.getData(),lazy.getData());
+  }
+
+  /**
+   * Hinzugefuegte Daten haben Vorrang vor denen aus den Nachrichten.
+   * @throws Exception
+   */
+  @Test
+  public void test002() throws Exception
+  {
+    HBCIMsgStatus status = this.create();
+    Properties p = new Properties();
+    p.setProperty("_msg","anders");
+    p.setProperty("extra","1");
+    status.addData(p);
+
+    Assert.assertEquals("anders",status.getValue("_msg"));
+    Assert.assertEquals("1",status.getValue("extra"));
+    Assert.assertEquals("12345678",status.getValue("orig_DialogInitAnon.Idn.KIK.blz"));
+    Assert.assertEquals("anders",status.getData().getProperty("_msg"));
+    Assert.assertEquals("1",status.getData().getProperty("extra"));
+  }
+
+  /**
+   * Der Index der Antwortsegmente liefert die gleichen Daten wie das Durchsuchen aller Properties.
+   * @throws Exception
+   */
+  @Test
+  public void test003() throws Exception
+  {
+    Properties data = this.create().getData();
+
+    // einmal ohne und einmal mit materialisierten Properties
+    HBCIMsgStatus lazy = this.create();
+    HBCIMsgStatus full = this.create();
+    full.getData();
+
+    int found = 0;
+    for (int ref=0;ref<20;ref++)
+    {
+      // Wie bisher in HBCIJobImpl.fillJobResult
+      TreeMap<Integer,String> expected = new TreeMap<Integer,String>();
+      for (String key:data.stringPropertyNames())
+      {
+        if (key.startsWith("GVRes") && key.endsWith(".SegHead.ref") && Integer.parseInt(data.getProperty(key)) == ref)
+        {
+          int resnum = key.startsWith("GVRes_") ? Integer.parseInt(key.substring(key.indexOf('_')+1,key.indexOf('.'))) : 0;
+          expected.put(resnum,key.substring(0,key.length()-".SegHead.ref".length()));
+        }
+      }
+
+      List<String> headers = new ArrayList<String>(expected.values());
+      Assert.assertEquals(headers,lazy.getResponseHeaders(ref));
+      Assert.assertEquals(headers,full.getResponseHeaders(ref));
+
+      for (String header:headers)
+      {
+        Properties p = new Properties();
+        for (String key:data.stringPropertyNames())
+        {
+          if (key.startsWith(header + "."))
+            p.setProperty(key.substring(header.length()+1),data.getProperty(key));
+        }
+        Assert.assertFalse(p.isEmpty());
+        Assert.assertEquals(p,lazy.getResponseData(header));
+        Assert.assertEquals(p,full.getResponseData(header));
+        found++;
+      }
+    }
+    Assert.assertTrue(found > 1);
+    Assert.assertTrue(lazy.getResponseHeaders(999).isEmpty());
+    Assert.assertTrue(lazy.getResponseData("GVRes_999.Foo").isEmpty());
+  }
+
+  /**
+   * Nach dem Ende des Nachrichtenaustauschs bleiben die Nachrichten bis zum
+   * Kopieren der Daten im Status-Objekt.
+   * @throws Exception
+   */
+  @Test
+  public void test004() throws Exception
+  {
+    Properties data = this.create().getData();
+    HBCIMsgStatus live = this.create();
+
+    // Nach dem Hinzufuegen von Daten bleibt der Index gleich
+    HBCIMsgStatus added = this.create();
+    added.addData(new Properties());
+    Assert.assertEquals(live.getResponseHeaders(2),added.getResponseHeaders(2));
+    Assert.assertEquals(data,added.getData());
+
+    HBCIMsgStatus status = this.create();
+    status.adoptMessages();
+    Assert.assertTrue(status.uses(this.sent));
+    Assert.assertTrue(status.uses(this.received));
+
+    // Status und Index der Antwortsegmente werden direkt aus den Nachrichten gelesen
+    Assert.assertEquals(live.toString(),status.toString());
+    Assert.assertTrue(status.segStatus.getRetVals().length > 0);
+    for (int ref=0;ref<20;ref++)
+    {
+      Assert.assertEquals(live.getResponseHeaders(ref),status.getResponseHeaders(ref));
+      for (String header:live.getResponseHeaders(ref))
+        Assert.assertEquals(live.getResponseData(header),status.getResponseData(header));
+    }
+    Assert.assertEquals("12345678",status.getValue("orig_DialogInitAnon.Idn.KIK.blz"));
+
+    // Erst nach dem Kopieren gibt der Status die Nachrichten frei
+    Assert.assertEquals(data,status.getData());
+    Assert.assertFalse(status.uses(this.sent));
+    Assert.assertFalse(status.uses(this.received));
+    Assert.assertEquals("raw",status.getValue("_msg"));
+    Assert.assertEquals(live.getResponseHeaders(2),status.getResponseHeaders(2));
+  }
+
+  /**
+   * Erzeugt ein Status-Objekt fuer die Nachrichten.
+   * @return das Status-Objekt.
+   */
+  private HBCIMsgStatus create()
+  {
+    HBCIMsgStatus status = new HBCIMsgStatus();
+    status.setSentMessage(this.sent);
+    status.setReceivedMessage(this.received,"raw");
+    Assert.assertTrue(status.uses(this.sent));
+    return status;
+  }
+}
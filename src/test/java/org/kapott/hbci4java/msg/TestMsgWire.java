@@ -0,0 +1,130 @@
+/**********************************************************************
+ *
+ * This file is part of HBCI4Java.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ **********************************************************************/
+
+package org.kapott.hbci4java.msg;
+
+import java.io.ByteArrayOutputStream;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.kapott.hbci.comm.Comm;
+import org.kapott.hbci.manager.MsgGen;
+import org.kapott.hbci.manager.SyntaxCache;
+import org.kapott.hbci.protocol.DE;
+import org.kapott.hbci.protocol.MSG;
+import org.kapott.hbci.protocol.SyntaxElement;
+import org.kapott.hbci.protocol.factory.MSGFactory;
+import org.kapott.hbci4java.AbstractTest;
+
+/**
+ * Tests fuer die serialisierte Form einer Nachricht.
+ */
+public class TestMsgWire extends AbstractTest
+{
+  private MsgGen gen = null;
+  private MSG msg = null;
+
+  /**
+   * Erzeugt eine Nachricht.
+   * @throws Exception
+   */
+  @Before
+  public void generate() throws Exception
+  {
+    this.gen = SyntaxCache.createMsgGen(null,"300");
+    this.msg = createDialogInitAnon(this.gen);
+  }
+
+  /**
+   * Gibt die Nachricht wieder frei.
+   * @throws Exception
+   */
+  @After
+  public void cleanup() throws Exception
+  {
+    MSGFactory.getInstance().unuseObject(this.msg);
+  }
+
+  /**
+   * Testet, dass Bytes, String und Nachrichtengroesse zueinander passen.
+   * @throws Exception
+   */
+  @Test
+  public void test001() throws Exception
+  {
+    byte[] data = this.msg.toBytes();
+    String s = this.msg.toString(0);
+    Assert.assertArrayEquals(s.getBytes(Comm.ENCODING),data);
+    Assert.assertEquals("HNHBK:1:3+000000000" + data.length + "+300+0+1'HKIDN:2:2+280:12345678+9999999999+0+0'",s.substring(0,s.indexOf("HKVVB")));
+    Assert.assertEquals(data.length,this.msg.getSize());
+    Assert.assertEquals(data.length,Integer.parseInt(this.msg.getValueOfDE("DialogInitAnon.MsgHead.msgsize")));
+
+    // Solange sich nichts aendert, wird die Nachricht nicht neu erzeugt
+    Assert.assertSame(data,this.msg.toBytes());
+
+    ByteArrayOutputStream bos = new ByteArrayOutputStream();
+    this.msg.writeTo(bos);
+    Assert.assertArrayEquals(data,bos.toByteArray());
+  }
+
+  /**
+   * Testet, dass die serialisierte Form nach einer Aenderung neu erzeugt wird.
+   * @throws Exception
+   */
+  @Test
+  public void test002() throws Exception
+  {
+    byte[] data = this.msg.toBytes();
+
+    // Aenderung ueber die Nachricht
+    this.msg.propagateValue("DialogInitAnon.ProcPrep.prodVersion","3.1",SyntaxElement.DONT_TRY_TO_CREATE,SyntaxElement.ALLOW_OVERWRITE);
+    Assert.assertNotSame(data,this.msg.toBytes());
+    Assert.assertTrue(this.msg.toString(0).contains("+HBCI4Java+3.1'"));
+
+    // Aenderung direkt am Datenelement
+    data = this.msg.toBytes();
+    DE de = (DE) this.msg.getElement("DialogInitAnon.Idn.customerid");
+    de.setValue("1234567890");
+    Assert.assertNotSame(data,this.msg.toBytes());
+    Assert.assertTrue(this.msg.toString(0).contains("+1234567890+"));
+  }
+
+  /**
+   * Testet, dass eine erzeugte Nachricht nach dem Parsen identisch serialisiert wird.
+   * @throws Exception
+   */
+  @Test
+  public void test003() throws Exception
+  {
+    String data = this.msg.toString(0);
+    MSG parsed = MSGFactory.getInstance().createMSG("DialogInitAnon",data,data.length(),this.gen);
+    try
+    {
+      Assert.assertEquals(data,parsed.toString(0));
+      Assert.assertEquals(data.length(),parsed.getSize());
+    }
+    finally
+    {
+      MSGFactory.getInstance().unuseObject(parsed);
+    }
+  }
+}
@@ -0,0 +1,102 @@
+/**********************************************************************
+ *
+ * This file is part of HBCI4Java.
+ * Copyright (c) Olaf Willuhn
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ **********************************************************************/
+
+package org.kapott.hbci4java.msg;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.kapott.hbci.datatypes.SyntaxAN;
+import org.kapott.hbci.datatypes.SyntaxBin;
+import org.kapott.hbci.datatypes.SyntaxNum;
+import org.kapott.hbci.protocol.ParseCursor;
+
+/**
+ * Tests fuer das Parsen der Datentypen per Cursor.
+ */
+public class TestParseCursor
+{
+  /**
+   * Testet, dass die Datenelemente nacheinander gelesen werden und der Cursor korrekt weiterrueckt.
+   * @throws Exception
+   */
+  @Test
+  public void test001() throws Exception
+  {
+    ParseCursor res = new ParseCursor("HNHBK:1:3+000000000123+300'");
+
+    SyntaxAN code = new SyntaxAN(res,1,0);
+    Assert.assertEquals("HNHBK",code.toString());
+    Assert.assertEquals(5,res.getPos());
+
+    SyntaxNum seq = new SyntaxNum(res,1,0);
+    Assert.assertEquals("1",seq.toString());
+
+    SyntaxNum version = new SyntaxNum(res,1,0);
+    Assert.assertEquals("3",version.toString());
+
+    SyntaxAN size = new SyntaxAN(res,1,0);
+    Assert.assertEquals("000000000123",size.toString());
+    Assert.assertEquals("+300'",res.toString());
+  }
+
+  /**
+   * Testet das Lesen von maskierten Zeichen und Binaerdaten mit Delimitern.
+   * @throws Exception
+   */
+  @Test
+  public void test002() throws Exception
+  {
+    ParseCursor res = new ParseCursor("+Foo?+Bar?:+@5@a+b:'+X'");
+
+    SyntaxAN an = new SyntaxAN(res,1,0);
+    Assert.assertEquals("Foo+Bar:",an.toString());
+
+    SyntaxBin bin = new SyntaxBin(res,1,0);
+    Assert.assertEquals("a+b:'",bin.toString());
+    Assert.assertEquals("+X'",res.toString());
+  }
+
+  /**
+   * Testet die Position bezogen auf die Original-Nachricht.
+   * @throws Exception
+   */
+  @Test
+  public void test003() throws Exception
+  {
+    ParseCursor res = new ParseCursor("+1+2'",10);
+    new SyntaxNum(res,1,0);
+    Assert.assertEquals(2,res.getPos());
+    Assert.assertEquals(12,res.getPosInMsg());
+  }
+
+  /**
+   * Testet die gekuerzte Vorschau des Rests fuer Fehlermeldungen.
+   * @throws Exception
+   */
+  @Test
+  public void test004() throws Exception
+  {
+    ParseCursor res = new ParseCursor("+1+2+3+4'");
+    res.setPos(2);
+    Assert.assertEquals("+2+3...",res.preview(4));
+    Assert.assertEquals("+2+3+4'",res.preview(100));
+  }
+}
@@ -0,0 +1,140 @@
+/**********************************************************************
+ *
+ * This file is part of HBCI4Java.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ **********************************************************************/
+
+package org.kapott.hbci4java.msg;
+
+import java.util.List;
+import java.util.Properties;
+import java.util.Vector;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.kapott.hbci.exceptions.HBCI_Exception;
+import org.kapott.hbci.rewrite.RInvalidSegment;
+import org.kapott.hbci.rewrite.RKUmsDelimiters;
+import org.kapott.hbci.rewrite.RMissingMsgRef;
+import org.kapott.hbci.rewrite.Rewrite;
+import org.kapott.hbci.rewrite.RewriteContext;
+import org.kapott.hbci.rewrite.RewriterChain;
+import org.kapott.hbci.status.HBCIMsgStatus;
+import org.kapott.hbci4java.AbstractTest;
+
+/**
+ * Tests fuer die Kette der Rewriter.
+ */
+public class TestRewriterChain extends AbstractTest
+{
+  /**
+   * Die Kette wird pro Parameter-Wert nur einmal erzeugt.
+   * @throws Exception
+   */
+  @Test
+  public void test001() throws Exception
+  {
+    RewriterChain chain = RewriterChain.getInstance("InvalidSegment, MissingMsgRef,,KUmsDelimiters");
+    Assert.assertSame(chain,RewriterChain.getInstance("InvalidSegment, MissingMsgRef,,KUmsDelimiters"));
+    Assert.assertNotSame(chain,RewriterChain.getInstance("InvalidSegment"));
+
+    Rewrite[] list = chain.getRewriters();
+    Assert.assertEquals(3,list.length);
+    Assert.assertTrue(list[0] instanceof RInvalidSegment);
+    Assert.assertTrue(list[1] instanceof RMissingMsgRef);
+    Assert.assertTrue(list[2] instanceof RKUmsDelimiters);
+  }
+
+  /**
+   * Hooks, die kein Rewriter ueberschreibt, werden uebersprungen.
+   * @throws Exception
+   */
+  @Test
+  public void test002() throws Exception
+  {
+    RewriterChain chain = RewriterChain.getInstance("InvalidSegment,MissingMsgRef,KUmsDelimiters");
+    Assert.assertTrue(chain.hasHook("incomingClearText"));
+    Assert.assertTrue(chain.hasHook("incomingCrypted"));
+    Assert.assertTrue(chain.hasHook("incomingData"));
+    Assert.assertFalse(chain.hasHook("outgoingClearText"));
+    Assert.assertFalse(chain.hasHook("outgoingSigned"));
+    Assert.assertFalse(chain.hasHook("outgoingCrypted"));
+
+    chain = RewriterChain.getInstance(null);
+    Assert.assertEquals(0,chain.getRewriters().length);
+    Assert.assertEquals("foo",chain.incomingClearText("foo",null,null));
+  }
+
+  /**
+   * Ein unbekannter Rewriter fuehrt zu einem Fehler.
+   * @throws Exception
+   */
+  @Test(expected=HBCI_Exception.class)
+  public void test003() throws Exception
+  {
+    RewriterChain.getInstance("InvalidSegment,GibtsNicht");
+  }
+
+  /**
+   * Parallele Nachrichten haben jeweils ihren eigenen Kontext. Nach dem
+   * Nachrichtenaustausch bleibt kein Kontext zurueck.
+   * @throws Exception
+   */
+  @Test
+  @SuppressWarnings("deprecation")
+  public void test004() throws Exception
+  {
+    final RewriterChain chain = RewriterChain.getInstance("HBCIVersion");
+    final String msg = "HNHBK:1:3+000000000100+0+DLG+2'HNHBS:2:1+2'";
+    final List<Throwable> errors = new Vector<Throwable>();
+
+    Thread[] threads = new Thread[8];
+    for (int i=0;i<threads.length;i++)
+    {
+      final String version = Integer.toString(200 + i);
+      threads[i] = new Thread()
+      {
+        public void run()
+        {
+          try
+          {
+            Properties p = new Properties();
+            p.setProperty("orig_DialogEnd.MsgHead.hbciversion",version);
+            HBCIMsgStatus status = new HBCIMsgStatus();
+            status.addData(p);
+            RewriteContext ctx = new RewriteContext(null,status,"DialogEnd",false,false);
+            for (int k=0;k<1000;k++)
+            {
+              String s = chain.incomingCrypted(msg,null,ctx);
+              Assert.assertEquals("HNHBK:1:3+000000000100+" + version + "+DLG+2'HNHBS:2:1+2'",s);
+            }
+            Assert.assertNull(Rewrite.getData(RewriteContext.MSGSTATUS));
+          }
+          catch (Throwable t)
+          {
+            errors.add(t);
+          }
+        }
+      };
+      threads[i].start();
+    }
+    for (Thread t:threads)
+      t.join();
+
+    Assert.assertEquals(errors.toString(),0,errors.size());
+  }
+}
@@ -0,0 +1,107 @@
+/**********************************************************************
+ *
+ * This file is part of HBCI4Java.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ **********************************************************************/
+
+package org.kapott.hbci4java.msg;
+
+import java.util.Properties;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.kapott.hbci.rewrite.RHBCIVersion;
+import org.kapott.hbci.rewrite.RInvalidSegment;
+import org.kapott.hbci.rewrite.RMissingMsgRef;
+import org.kapott.hbci.rewrite.RSigIdLeadingZero;
+import org.kapott.hbci.rewrite.RWrongSequenceNumbers;
+import org.kapott.hbci.rewrite.RWrongStatusSegOrder;
+import org.kapott.hbci.rewrite.Rewrite;
+import org.kapott.hbci.rewrite.RewriteContext;
+import org.kapott.hbci.rewrite.RewriterChain;
+import org.kapott.hbci.status.HBCIMsgStatus;
+import org.kapott.hbci4java.AbstractTest;
+
+/**
+ * Tests fuer die segmentweise arbeitenden Rewriter.
+ */
+public class TestSegmentRewrite extends AbstractTest
+{
+  private final static String CHAIN = "InvalidSegment,WrongStatusSegOrder,WrongSequenceNumbers,SigIdLeadingZero";
+
+  /**
+   * Eine korrekte Nachricht wird unveraendert und ohne Kopie geliefert.
+   * @throws Exception
+   */
+  @Test
+  public void test001() throws Exception
+  {
+    String msg = "HNHBK:1:3+000000000100+300+DLG+2+DLG:2'HNSHK:2:4+PIN:1+999+1234+1+1+42+1'" +
+                 "HIRMG:3:2+0010::Nachricht?'entgegengenommen'HIRMS:4:2:1+0020::OK'HIXYZ:5:1+@5@a'b+c'HNHBS:6:1+2'";
+    Assert.assertSame(msg,RewriterChain.getInstance(CHAIN).incomingClearText(msg,null,null));
+  }
+
+  /**
+   * Alle Rewriter werden in einem Durchlauf angewendet. Escape-Zeichen und
+   * Binaerdaten werden dabei beachtet.
+   * @throws Exception
+   */
+  @Test
+  public void test002() throws Exception
+  {
+    String msg = "HNHBK:1:3+000000000100+300+DLG+2+DLG:2'HIRMS:2:2:1+0020::OK'" +
+                 "HIRMG:3:2+0010::Nachricht?'entgegengenommen'IIDIA:4:1+x'HNSHK:5:4+PIN:1+999+1234+1+1+00042+1'" +
+                 "HIXYZ:9:1+@5@a'b+c'HNHBS:7:1+2'";
+    String expected = "HNHBK:1:3+000000000100+300+DLG+2+DLG:2'HNSHK:2:4+PIN:1+999+1234+1+1+42+1'" +
+                      "HIRMG:3:2+0010::Nachricht?'entgegengenommen'HIRMS:4:2:1+0020::OK'HIXYZ:5:1+@5@a'b+c'HNHBS:6:1+2'";
+
+    Assert.assertEquals(expected,RewriterChain.getInstance(CHAIN).incomingClearText(msg,null,null));
+
+    // Die String-basierte Schnittstelle der einzelnen Rewriter liefert das gleiche Ergebnis
+    Rewrite[] list = new Rewrite[]{new RInvalidSegment(),new RWrongStatusSegOrder(),new RWrongSequenceNumbers(),new RSigIdLeadingZero()};
+    String s = msg;
+    for (Rewrite r:list)
+      s = r.incomingClearText(s,null);
+    Assert.assertEquals(expected,s);
+  }
+
+  /**
+   * Testet die Rewriter fuer den Nachrichtenkopf der verschluesselten Nachricht.
+   * @throws Exception
+   */
+  @Test
+  public void test003() throws Exception
+  {
+    Properties p = new Properties();
+    p.setProperty("orig_DialogEnd.MsgHead.hbciversion","300");
+    p.setProperty("orig_DialogEnd.MsgHead.dialogid","DLG");
+    p.setProperty("orig_DialogEnd.MsgHead.msgnum","2");
+    HBCIMsgStatus status = new HBCIMsgStatus();
+    status.addData(p);
+    RewriteContext ctx = new RewriteContext(null,status,"DialogEnd",true,true);
+
+    String msg = "HNHBK:1:3+000000000100+0+DLG+2'HNVSK:998:3+x'HNVSD:999:1+@4@ab'c''";
+    String expected = "HNHBK:1:3+000000000100+300+DLG+2+DLG:2'HNVSK:998:3+x'HNVSD:999:1+@4@ab'c''";
+
+    RewriterChain chain = RewriterChain.getInstance("MissingMsgRef,HBCIVersion");
+    Assert.assertEquals(expected,chain.incomingCrypted(msg,null,ctx));
+    Assert.assertSame(expected,chain.incomingCrypted(expected,null,ctx));
+
+    // Die String-basierte Schnittstelle der einzelnen Rewriter liefert das gleiche Ergebnis
+    Assert.assertEquals(expected,new RHBCIVersion().incomingCrypted(new RMissingMsgRef().incomingCrypted(msg,null,ctx),null,ctx));
+  }
+}
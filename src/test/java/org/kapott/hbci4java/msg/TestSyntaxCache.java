@@ -0,0 +1,192 @@
+/**********************************************************************
+ *
+ * This file is part of HBCI4Java.
+ * Copyright (c) Olaf Willuhn
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ **********************************************************************/
+
+package org.kapott.hbci4java.msg;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Hashtable;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.kapott.hbci.exceptions.InvalidUserDataException;
+import org.kapott.hbci.manager.HBCIKernelImpl;
+import org.kapott.hbci.manager.MsgGen;
+import org.kapott.hbci.manager.SyntaxCache;
+import org.kapott.hbci4java.AbstractTest;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+/**
+ * Tests fuer den prozessweiten Syntax-Cache.
+ */
+public class TestSyntaxCache extends AbstractTest
+{
+  /**
+   * Testet, dass mehrere Kernels die gleiche Syntax verwenden, aber eigene Werte haben.
+   * @throws Exception
+   */
+  @Test
+  public void test001() throws Exception
+  {
+    HBCIKernelImpl k1 = new HBCIKernelImpl(null,"300");
+    HBCIKernelImpl k2 = new HBCIKernelImpl(null,"300");
+
+    MsgGen g1 = k1.getMsgGen();
+    MsgGen g2 = k2.getMsgGen();
+    Assert.assertNotSame(g1,g2);
+    Assert.assertSame(g1.getSyntaxModel(),g2.getSyntaxModel());
+
+    // Das DOM ist nicht threadsicher, daher erhaelt jeder eine eigene Kopie
+    Assert.assertNotSame(g1.getSyntax(),g2.getSyntax());
+    Assert.assertTrue(g1.getSyntax().isEqualNode(g2.getSyntax()));
+
+    Assert.assertNotSame(g1.getSyntaxModel(),new HBCIKernelImpl(null,"220").getMsgGen().getSyntaxModel());
+
+    g1.set("foo","bar");
+    Assert.assertEquals("bar",g1.get("foo"));
+    Assert.assertNull(g2.get("foo"));
+  }
+
+  /**
+   * Testet, dass eine fehlende Spezifikation nicht im Cache landet.
+   * @throws Exception
+   */
+  @Test(expected=InvalidUserDataException.class)
+  public void test002() throws Exception
+  {
+    SyntaxCache.createMsgGen(null,"999");
+  }
+
+  /**
+   * Testet, dass die Lowlevel-Informationen aus dem kompilierten Modell
+   * denen aus dem DOM entsprechen.
+   * @throws Exception
+   */
+  @Test
+  public void test003() throws Exception
+  {
+    for (String version:new String[]{"220","300"})
+    {
+      MsgGen gen = new HBCIKernelImpl(null,version).getMsgGen();
+      Document syntax = gen.getSyntax();
+
+      Hashtable<String,List<String>> gvs = gen.getLowlevelGVs();
+      Assert.assertEquals(version,getLowlevelGVs(syntax),gvs);
+      Assert.assertNotSame(gvs,gen.getLowlevelGVs());
+
+      for (String name:gvs.keySet())
+      {
+        for (String v:gvs.get(name))
+        {
+          Assert.assertEquals(name + v,getNames(syntax,name + v),gen.getGVParameterNames(name,v));
+          Assert.assertEquals(name + v,getNames(syntax,name + "Res" + v),gen.getGVResultNames(name,v));
+        }
+      }
+      Assert.assertEquals(Arrays.asList("maxlen"),gen.getGVRestrictionNames("CustomMsg2"));
+      Assert.assertTrue(gen.getGVRestrictionNames("UebSEPA1").isEmpty());
+    }
+  }
+
+  /**
+   * Ermittelt die Geschaeftsvorfaelle direkt aus dem DOM.
+   * @param syntax das DOM.
+   * @return die Geschaeftsvorfaelle mit ihren Versionen.
+   */
+  private Hashtable<String,List<String>> getLowlevelGVs(Document syntax)
+  {
+    Hashtable<String,List<String>> result = new Hashtable<String,List<String>>();
+    for (Node n=syntax.getElementById("GV").getFirstChild();n!=null;n=n.getNextSibling())
+    {
+      if (n.getNodeType() != Node.ELEMENT_NODE)
+        continue;
+
+      String type = ((Element) n).getAttribute("type");
+      String name = type.replaceAll("[0-9]+$","");
+      List<String> list = result.get(name);
+      if (list == null)
+      {
+        list = new ArrayList<String>();
+        result.put(name,list);
+      }
+      list.add(type.substring(name.length()));
+    }
+    return result;
+  }
+
+  /**
+   * Ermittelt die Lowlevel-Namen eines Segments direkt aus dem DOM.
+   * @param syntax das DOM.
+   * @param id die ID des Segments.
+   * @return die Namen ohne den Segment-Kopf.
+   */
+  private List<String> getNames(Document syntax, String id)
+  {
+    List<String> result = new ArrayList<String>();
+    Element def = syntax.getElementById(id);
+    if (def == null)
+      return result;
+
+    boolean first = true;
+    for (Node n=def.getFirstChild();n!=null;n=n.getNextSibling())
+    {
+      if (n.getNodeType() != Node.ELEMENT_NODE)
+        continue;
+      if (first)
+        first = false;
+      else
+        addNames(result,"",(Element) n);
+    }
+    return result;
+  }
+
+  /**
+   * Fuegt die Namen des Elements rekursiv hinzu.
+   * @param result die Ergebnisliste.
+   * @param path der bisherige Pfad.
+   * @param ref das referenzierende Element.
+   */
+  private void addNames(List<String> result, String path, Element ref)
+  {
+    String type = ref.getAttribute("type");
+    if (type.length() == 0)
+      return;
+
+    String name = ref.getAttribute("name");
+    if (name.length() == 0)
+      name = type;
+    name = (path.length() == 0 ? "" : path + ".") + name;
+
+    if (ref.getNodeName().equals("DE"))
+    {
+      result.add(name);
+      return;
+    }
+
+    for (Node n=ref.getOwnerDocument().getElementById(type).getFirstChild();n!=null;n=n.getNextSibling())
+    {
+      if (n.getNodeType() == Node.ELEMENT_NODE)
+        addNames(result,name,(Element) n);
+    }
+  }
+}
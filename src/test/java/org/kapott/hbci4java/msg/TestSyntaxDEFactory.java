@@ -0,0 +1,138 @@
+/**********************************************************************
+ *
+ * This file is part of HBCI4Java.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ **********************************************************************/
+
+package org.kapott.hbci4java.msg;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+import org.kapott.hbci.datatypes.SyntaxAN;
+import org.kapott.hbci.datatypes.SyntaxDE;
+import org.kapott.hbci.datatypes.SyntaxNum;
+import org.kapott.hbci.datatypes.factory.SyntaxDEFactory;
+import org.kapott.hbci.exceptions.InitializingException;
+import org.kapott.hbci.exceptions.NoSuchSyntaxException;
+import org.kapott.hbci.protocol.ParseCursor;
+import org.kapott.hbci4java.AbstractTest;
+
+/**
+ * Tests fuer das Erzeugen der Datentypen.
+ */
+public class TestSyntaxDEFactory extends AbstractTest
+{
+  /**
+   * Eigener Datentyp fuer den Test.
+   */
+  public static class SyntaxUpper extends SyntaxAN
+  {
+    /**
+     * ct.
+     * @param x der Wert.
+     * @param minsize Mindestlaenge.
+     * @param maxsize Maximallaenge.
+     */
+    public SyntaxUpper(String x, int minsize, int maxsize)
+    {
+      super(x.toUpperCase(),minsize,maxsize);
+    }
+
+    /**
+     * ct.
+     * @param res der Parser.
+     * @param minsize Mindestlaenge.
+     * @param maxsize Maximallaenge.
+     */
+    public SyntaxUpper(ParseCursor res, int minsize, int maxsize)
+    {
+      super(res,minsize,maxsize);
+    }
+  }
+
+  /**
+   * Stellt den Default-Resolver wieder her.
+   * @throws Exception
+   */
+  @After
+  public void cleanup() throws Exception
+  {
+    SyntaxDEFactory.setResolver(null);
+  }
+
+  /**
+   * Testet das Erzeugen der eingebauten Datentypen.
+   * @throws Exception
+   */
+  @Test
+  public void test001() throws Exception
+  {
+    SyntaxDEFactory factory = SyntaxDEFactory.getInstance();
+    SyntaxDE de = factory.createSyntaxDE("Num","Test.num","4711",0,0);
+    try
+    {
+      Assert.assertTrue(de instanceof SyntaxNum);
+      Assert.assertEquals("4711",de.toString(0));
+    }
+    finally
+    {
+      factory.unuseObject(de,"Num");
+    }
+
+    try
+    {
+      factory.createSyntaxDE("Num","Test.num","abc",0,0);
+      Assert.fail("InitializingException expected");
+    }
+    catch (InitializingException e)
+    {
+      // erwartet
+    }
+  }
+
+  /**
+   * Unbekannte Datentypen werden ueber den Resolver gesucht.
+   * @throws Exception
+   */
+  @Test
+  public void test002() throws Exception
+  {
+    SyntaxDEFactory factory = SyntaxDEFactory.getInstance();
+    try
+    {
+      factory.createSyntaxDE("Upper","Test.upper","abc",0,0);
+      Assert.fail("NoSuchSyntaxException expected");
+    }
+    catch (NoSuchSyntaxException e)
+    {
+      // erwartet
+    }
+
+    SyntaxDEFactory.setResolver(type -> type.equals("Upper") ? new SyntaxDEFactory.Creators(SyntaxUpper::new,SyntaxUpper::new) : null);
+    SyntaxDE de = factory.createSyntaxDE("Upper","Test.upper","abc",0,0);
+    try
+    {
+      Assert.assertTrue(de instanceof SyntaxUpper);
+      Assert.assertEquals("ABC",de.toString(0));
+    }
+    finally
+    {
+      factory.unuseObject(de,"Upper");
+    }
+  }
+}
@@ -0,0 +1,78 @@
+/**********************************************************************
+ *
+ * This file is part of HBCI4Java.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ **********************************************************************/
+
+package org.kapott.hbci4java.msg;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.kapott.hbci.protocol.syntax.SyntaxGenerator;
+import org.kapott.hbci.protocol.syntax.SyntaxModel;
+import org.kapott.hbci.protocol.syntax.SyntaxSerializer;
+
+/**
+ * Erzeugt die Binaerform der Syntax-Spezifikationen.
+ * Im Maven-Build wird der Test in der Execution "compile-syntax" vor den
+ * eigentlichen Tests ausgefuehrt (siehe pom.xml) und schreibt die Dateien
+ * dann in das per "hbci.syntax.outputDirectory" angegebene Verzeichnis der
+ * Klassen. Ohne das System-Property wird nur in ein temporaeres Verzeichnis
+ * geschrieben.
+ */
+public class TestSyntaxGenerator
+{
+  /**
+   * Temporaeres Verzeichnis.
+   */
+  @Rule
+  public TemporaryFolder tmp = new TemporaryFolder();
+
+  /**
+   * Erzeugt die Binaerform und prueft, dass sie zu den XML-Dateien passt.
+   * @throws Exception
+   */
+  @Test
+  public void test001() throws Exception
+  {
+    File source = new File(System.getProperty("hbci.syntax.sourceDirectory","src/main/resources"));
+    String out  = System.getProperty("hbci.syntax.outputDirectory");
+    File target = out != null ? new File(out) : tmp.getRoot();
+
+    SyntaxGenerator.main(new String[]{source.getPath(),target.getPath()});
+
+    File xml = new File(source,"hbci-300.xml");
+    File bin = new File(target,"hbci-300" + SyntaxSerializer.SUFFIX);
+    InputStream is = new FileInputStream(bin);
+    try
+    {
+      SyntaxModel model = SyntaxSerializer.read(is,SyntaxSerializer.checksum(new FileInputStream(xml)));
+      Assert.assertNotNull(model);
+      Assert.assertEquals("HNHBK",model.getDef("MsgHeadUser").getValue("SegHead.code"));
+    }
+    finally
+    {
+      is.close();
+    }
+  }
+}
@@ -0,0 +1,104 @@
+/**********************************************************************
+ *
+ * This file is part of HBCI4Java.
+ * Copyright (c) Olaf Willuhn
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ **********************************************************************/
+
+package org.kapott.hbci4java.msg;
+
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.kapott.hbci.manager.MsgGen;
+import org.kapott.hbci.protocol.syntax.SyntaxDef;
+import org.kapott.hbci.protocol.syntax.SyntaxModel;
+import org.kapott.hbci.protocol.syntax.SyntaxRef;
+import org.kapott.hbci4java.AbstractTest;
+
+/**
+ * Tests fuer die kompilierte Syntax-Spezifikation.
+ */
+public class TestSyntaxModel extends AbstractTest
+{
+  /**
+   * Laedt die Syntax fuer HBCI 3.0.
+   * @return die Syntax.
+   */
+  private SyntaxModel load()
+  {
+    MsgGen gen = new MsgGen(MsgGen.class.getClassLoader().getResourceAsStream("hbci-300.xml"));
+    return gen.getSyntaxModel();
+  }
+
+  /**
+   * Testet die Kind-Elemente und vorgegebenen Werte eines Segments.
+   * @throws Exception
+   */
+  @Test
+  public void test001() throws Exception
+  {
+    SyntaxModel model = load();
+    SyntaxDef def = model.getDef("MsgHeadUser");
+    Assert.assertNotNull(def);
+    Assert.assertEquals("SEGdef",def.getElement());
+    Assert.assertEquals("300",def.getValue("hbciversion"));
+    Assert.assertEquals("HNHBK",def.getValue("SegHead.code"));
+
+    List<SyntaxRef> refs = def.getRefs();
+    Assert.assertEquals(SyntaxRef.Kind.DEG,refs.get(0).getKind());
+    Assert.assertEquals("SegHead",refs.get(0).getName());
+
+    SyntaxRef msgsize = refs.get(1);
+    Assert.assertEquals(SyntaxRef.Kind.DE,msgsize.getKind());
+    Assert.assertEquals("msgsize",msgsize.getName());
+    Assert.assertEquals("Dig",msgsize.getType());
+    Assert.assertEquals(12,msgsize.getMinSize());
+    Assert.assertEquals(1,msgsize.getIndex());
+  }
+
+  /**
+   * Testet die Flags und Mindest-/Maximalanzahlen.
+   * @throws Exception
+   */
+  @Test
+  public void test002() throws Exception
+  {
+    SyntaxModel model = load();
+    Assert.assertNull(model.getDef("GibtsNicht"));
+    Assert.assertTrue(model.getDef("DialogInitAnon").isDontSign());
+    Assert.assertTrue(model.getDef("DialogInitAnon").isDontCrypt());
+    Assert.assertFalse(model.getDef("DialogInit").isDontSign());
+
+    SyntaxRef gv = null;
+    for (SyntaxRef ref:model.getDef("CustomMsg").getRefs())
+    {
+      if (ref.getName().equals("GV"))
+        gv = ref;
+    }
+    Assert.assertNotNull(gv);
+    Assert.assertEquals(SyntaxRef.Kind.SF,gv.getKind());
+    Assert.assertEquals(1,gv.getMinNum());
+    Assert.assertEquals(0,gv.getMaxNum());
+
+    SyntaxRef tan = model.getDef("DialogInit").getRefs().get(4);
+    Assert.assertEquals("TAN2Step6",tan.getType());
+    Assert.assertEquals(0,tan.getMinNum());
+    Assert.assertEquals(1,tan.getMaxNum());
+  }
+}
@@ -0,0 +1,246 @@
+/**********************************************************************
+ *
+ * This file is part of HBCI4Java.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ **********************************************************************/
+
+package org.kapott.hbci4java.msg;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.Hashtable;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.jar.JarOutputStream;
+import java.util.zip.ZipEntry;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.kapott.hbci.GV.HBCIJob;
+import org.kapott.hbci.manager.HBCIHandler;
+import org.kapott.hbci.manager.HBCIKernelImpl;
+import org.kapott.hbci.manager.MsgGen;
+import org.kapott.hbci.manager.SyntaxCache;
+import org.kapott.hbci.passport.HBCIPassportPinTan;
+import org.kapott.hbci.protocol.MSG;
+import org.kapott.hbci.protocol.factory.MSGFactory;
+import org.kapott.hbci.protocol.syntax.SyntaxDef;
+import org.kapott.hbci.protocol.syntax.SyntaxModel;
+import org.kapott.hbci.protocol.syntax.SyntaxRef;
+import org.kapott.hbci.protocol.syntax.SyntaxSerializer;
+import org.kapott.hbci.protocol.syntax.SyntaxValids;
+import org.kapott.hbci.protocol.syntax.SyntaxValue;
+import org.kapott.hbci4java.AbstractTest;
+
+/**
+ * Tests fuer die Binaerform der Syntax-Spezifikation.
+ */
+public class TestSyntaxSerializer extends AbstractTest
+{
+  /**
+   * Laedt die Syntax fuer HBCI 3.0 aus dem XML.
+   * @return die Syntax.
+   */
+  private SyntaxModel load()
+  {
+    MsgGen gen = new MsgGen(MsgGen.class.getClassLoader().getResourceAsStream("hbci-300.xml"));
+    return gen.getSyntaxModel();
+  }
+
+  /**
+   * Schreibt die Syntax und liest sie wieder ein.
+   * Das Ergebnis muss identisch mit der aus dem XML kompilierten Syntax sein.
+   * @throws Exception
+   */
+  @Test
+  public void test001() throws Exception
+  {
+    SyntaxModel model = load();
+
+    ByteArrayOutputStream bos = new ByteArrayOutputStream();
+    SyntaxSerializer.write(model,4711L,bos);
+    SyntaxModel read = SyntaxSerializer.read(new ByteArrayInputStream(bos.toByteArray()),4711L);
+    Assert.assertNotNull(read);
+    Assert.assertEquals(model.getDefs().size(),read.getDefs().size());
+
+    for (SyntaxDef def:model.getDefs())
+    {
+      SyntaxDef other = read.getDef(def.getId());
+      Assert.assertNotNull(def.getId(),other);
+      Assert.assertEquals(def.getElement(),other.getElement());
+      Assert.assertEquals(def.isNeedsRequestTag(),other.isNeedsRequestTag());
+      Assert.assertEquals(def.isDontSign(),other.isDontSign());
+      Assert.assertEquals(def.isDontCrypt(),other.isDontCrypt());
+
+      List<SyntaxRef> refs = def.getRefs();
+      Assert.assertEquals(refs.size(),other.getRefs().size());
+      for (int i=0;i<refs.size();i++)
+      {
+        SyntaxRef r1 = refs.get(i);
+        SyntaxRef r2 = other.getRefs().get(i);
+        Assert.assertEquals(r1.getKind(),r2.getKind());
+        Assert.assertEquals(r1.getType(),r2.getType());
+        Assert.assertEquals(r1.getName(),r2.getName());
+        Assert.assertEquals(r1.getMinNum(),r2.getMinNum());
+        Assert.assertEquals(r1.getMaxNum(),r2.getMaxNum());
+        Assert.assertEquals(r1.getMinSize(),r2.getMinSize());
+        Assert.assertEquals(r1.getMaxSize(),r2.getMaxSize());
+        Assert.assertEquals(r1.getIndex(),r2.getIndex());
+      }
+
+      List<SyntaxValue> values = def.getValues();
+      Assert.assertEquals(values.size(),other.getValues().size());
+      for (int i=0;i<values.size();i++)
+      {
+        Assert.assertEquals(values.get(i).getPath(),other.getValues().get(i).getPath());
+        Assert.assertEquals(values.get(i).getValue(),other.getValues().get(i).getValue());
+      }
+
+      List<SyntaxValids> valids = def.getValids();
+      Assert.assertEquals(valids.size(),other.getValids().size());
+      for (int i=0;i<valids.size();i++)
+      {
+        Assert.assertEquals(valids.get(i).getPath(),other.getValids().get(i).getPath());
+        Assert.assertEquals(valids.get(i).getValues(),other.getValids().get(i).getValues());
+      }
+    }
+  }
+
+  /**
+   * Passt die Pruefsumme nicht zur XML-Datei, wird die Binaerform ignoriert.
+   * @throws Exception
+   */
+  @Test
+  public void test002() throws Exception
+  {
+    ByteArrayOutputStream bos = new ByteArrayOutputStream();
+    SyntaxSerializer.write(load(),4711L,bos);
+    Assert.assertNull(SyntaxSerializer.read(new ByteArrayInputStream(bos.toByteArray()),4712L));
+  }
+
+  /**
+   * Die beim Build erzeugte Binaerform muss zur aktuellen XML-Datei passen.
+   * @throws Exception
+   */
+  @Test
+  public void test003() throws Exception
+  {
+    ClassLoader cl = MsgGen.class.getClassLoader();
+    long crc = SyntaxSerializer.checksum(cl.getResourceAsStream("hbci-300.xml"));
+    SyntaxModel model = SyntaxSerializer.read(cl.getResourceAsStream("hbci-300" + SyntaxSerializer.SUFFIX),crc);
+    Assert.assertNotNull(model);
+    Assert.assertEquals("HNHBK",model.getDef("MsgHeadUser").getValue("SegHead.code"));
+  }
+
+  /**
+   * Testet, dass mit der Binaerform weder beim Erzeugen eines Handlers noch
+   * beim Anlegen eines SEPA-Auftrages das XML geparst wird.
+   * @throws Exception
+   */
+  @Test
+  public void test004() throws Exception
+  {
+    SyntaxCache.clear();
+
+    Properties bpd = getBPD("300");
+    Assert.assertFalse(SyntaxCache.isParsed(null,"300"));
+
+    HBCIPassportPinTan passport = new HBCIPassportPinTan(null,0);
+    passport.setHBCIVersion("300");
+    passport.setBPD(bpd);
+
+    HBCIHandler handler = new HBCIHandler("300",passport,true);
+    HBCIJob job = handler.newJob("UebSEPA");
+    Assert.assertNotNull(job);
+    Assert.assertFalse(handler.getSupportedLowlevelJobs().isEmpty());
+    Assert.assertFalse(SyntaxCache.isParsed(null,"300"));
+
+    // Erst der explizite Zugriff auf das DOM parst das XML
+    handler.getMsgGen().getSyntax();
+    Assert.assertTrue(SyntaxCache.isParsed(null,"300"));
+  }
+
+  /**
+   * Liegt das XML in einem Jar, wird die dort gespeicherte Pruefsumme
+   * verwendet. Sie muss der Pruefsumme des Inhaltes entsprechen.
+   * @throws Exception
+   */
+  @Test
+  public void test005() throws Exception
+  {
+    ClassLoader cl = MsgGen.class.getClassLoader();
+    File file = File.createTempFile("syntax",".jar");
+    file.deleteOnExit();
+
+    JarOutputStream jar = new JarOutputStream(new FileOutputStream(file));
+    try
+    {
+      jar.putNextEntry(new ZipEntry("hbci-300.xml"));
+      InputStream is = cl.getResourceAsStream("hbci-300.xml");
+      try
+      {
+        byte[] buf = new byte[8192];
+        int read = 0;
+        while ((read = is.read(buf)) != -1)
+          jar.write(buf,0,read);
+      }
+      finally
+      {
+        is.close();
+      }
+      jar.closeEntry();
+    }
+    finally
+    {
+      jar.close();
+    }
+
+    URL url = new URL("jar:" + file.toURI().toURL() + "!/hbci-300.xml");
+    long expected = SyntaxSerializer.checksum(cl.getResourceAsStream("hbci-300.xml"));
+    Assert.assertEquals(expected,SyntaxSerializer.checksum(url));
+    Assert.assertEquals(expected,SyntaxSerializer.checksum(cl.getResource("hbci-300.xml")));
+  }
+
+  /**
+   * Liefert BPD aus einer mitgelieferten Antwort-Nachricht.
+   * @param version die HBCI-Version.
+   * @return die BPD.
+   * @throws Exception
+   */
+  private Properties getBPD(String version) throws Exception
+  {
+    String data = getFile("/org/kapott/hbci4java/bpd/bpd2-formatted.txt");
+    HBCIKernelImpl kernel = new HBCIKernelImpl(null,version);
+    MSG msg = MSGFactory.getInstance().createMSG("DialogInitAnonRes",data,data.length(),kernel.getMsgGen());
+    Hashtable<String,String> ht = new Hashtable<String,String>();
+    msg.extractValues(ht);
+
+    Properties bpd = new Properties();
+    for (Map.Entry<String,String> e:ht.entrySet())
+    {
+      String name = e.getKey();
+      if (name.startsWith("DialogInitAnonRes.BPD."))
+        bpd.put(name.substring("DialogInitAnonRes.BPD.".length()),e.getValue());
+    }
+    return bpd;
+  }
+}
@@ -0,0 +1,248 @@
+/**********************************************************************
+ *
+ * This file is part of HBCI4Java.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ **********************************************************************/
+
+package org.kapott.hbci4java.tools;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.kapott.hbci.manager.HBCIUtils;
+import org.kapott.hbci.tools.ObjectFactory;
+import org.kapott.hbci.tools.PoolableObject;
+import org.kapott.hbci4java.AbstractTest;
+
+/**
+ * Testet den Object-Pool.
+ */
+public class TestObjectFactory extends AbstractTest
+{
+    /**
+     * Freigegebene Objekte werden wiederverwendet.
+     * @throws Exception
+     */
+    @Test
+    public void testReuse() throws Exception
+    {
+        ObjectFactory f = new ObjectFactory(10);
+        Assert.assertNull(f.getFreeObject());
+        
+        Object o = new Object();
+        f.unuseObject(o);
+        Assert.assertSame(o,f.getFreeObject());
+        Assert.assertNull(f.getFreeObject());
+        
+        Assert.assertEquals(1L,f.getHits());
+        Assert.assertEquals(2L,f.getMisses());
+    }
+    
+    /**
+     * Ein doppelt freigegebenes Objekt darf nur einmal ausgegeben werden.
+     * Erkannt wird das bei Objekten, die von {@link PoolableObject} abgeleitet sind.
+     * @throws Exception
+     */
+    @Test
+    public void testDoubleRelease() throws Exception
+    {
+        final List<Object> destroyed = new ArrayList<Object>();
+        ObjectFactory f = new ObjectFactory(10) {
+            protected void destroyObject(Object o)
+            {
+                destroyed.add(o);
+            }
+        };
+        
+        Object o = new PoolableObject() {};
+        f.unuseObject(o);
+        f.unuseObject(o);
+        Assert.assertEquals(1,destroyed.size());
+        
+        Assert.assertSame(o,f.getFreeObject());
+        Assert.assertNull(f.getFreeObject());
+        
+        // Nach der erneuten Ausgabe ist eine Freigabe wieder erlaubt
+        f.unuseObject(o);
+        Assert.assertEquals(2,destroyed.size());
+        Assert.assertSame(o,f.getFreeObject());
+    }
+    
+    /**
+     * Laeuft der Cache des Threads ueber, landen die Objekte im gemeinsamen Pool
+     * und koennen auch von anderen Threads verwendet werden. Mehr als die
+     * maximale Groesse wird dort nicht vorgehalten.
+     * @throws Exception
+     */
+    @Test
+    @SuppressWarnings("deprecation")
+    public void testShared() throws Exception
+    {
+        final ObjectFactory f = new ObjectFactory(100);
+        for (int i=0;i<200;i++)
+            f.unuseObject(new Object());
+        
+        int shared = f.getFreeObjects().size();
+        Assert.assertTrue(shared > 0);
+        Assert.assertTrue(shared <= 100);
+        
+        final AtomicReference<Object> other = new AtomicReference<Object>();
+        Thread t = new Thread(new Runnable() {
+            public void run()
+            {
+                other.set(f.getFreeObject());
+            }
+        });
+        t.start();
+        t.join();
+        Assert.assertNotNull(other.get());
+    }
+    
+    /**
+     * Mit Poolgroesse 0 werden keine Objekte vorgehalten.
+     * @throws Exception
+     */
+    @Test
+    public void testDisabled() throws Exception
+    {
+        ObjectFactory f = new ObjectFactory(0);
+        f.unuseObject(new Object());
+        Assert.assertNull(f.getFreeObject());
+        Assert.assertEquals(0L,f.getHits());
+        
+        String before = HBCIUtils.getParam("kernel.objpool.enabled");
+        try
+        {
+            HBCIUtils.setParam("kernel.objpool.enabled","0");
+            Assert.assertEquals(0,ObjectFactory.getPoolSize("DE",1024));
+            HBCIUtils.setParam("kernel.objpool.enabled","1");
+            Assert.assertEquals(1024,ObjectFactory.getPoolSize("DE",1024));
+        }
+        finally
+        {
+            HBCIUtils.setParam("kernel.objpool.enabled",before);
+        }
+    }
+    
+    /**
+     * Mehrere Threads entnehmen und geben parallel frei. Kein Objekt darf
+     * dabei gleichzeitig an zwei Threads ausgegeben werden.
+     * @throws Exception
+     */
+    @Test
+    public void testConcurrent() throws Exception
+    {
+        final ObjectFactory f = new ObjectFactory(64);
+        final AtomicReference<Throwable> error = new AtomicReference<Throwable>();
+        List<Thread> threads = new ArrayList<Thread>();
+        for (int i=0;i<8;i++)
+        {
+            threads.add(new Thread(new Runnable() {
+                public void run()
+                {
+                    try
+                    {
+                        for (int k=0;k<10000;k++)
+                        {
+                            int[] o = (int[]) f.getFreeObject();
+                            if (o == null)
+                                o = new int[1];
+                            if (o[0] != 0)
+                                throw new IllegalStateException("object used twice");
+                            o[0] = 1;
+                            Thread.yield();
+                            o[0] = 0;
+                            f.unuseObject(o);
+                        }
+                    }
+                    catch (Throwable t)
+                    {
+                        error.set(t);
+                    }
+                }
+            }));
+        }
+        for (Thread t:threads)
+            t.start();
+        for (Thread t:threads)
+            t.join();
+        
+        Assert.assertNull(error.get());
+        Assert.assertEquals(80000L,f.getHits() + f.getMisses());
+    }
+    
+    /**
+     * Die maximale Groesse gilt fuer den ganzen Pool inklusive der Caches
+     * aller Threads. Endet ein Thread, werden die Plaetze seines Caches
+     * wieder frei.
+     * @throws Exception
+     */
+    @Test
+    @SuppressWarnings("deprecation")
+    public void testBounded() throws Exception
+    {
+        final ObjectFactory f = new ObjectFactory(50);
+        final CountDownLatch filled = new CountDownLatch(16);
+        final CountDownLatch done = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<Thread>();
+        for (int i=0;i<16;i++)
+        {
+            threads.add(new Thread(new Runnable() {
+                public void run()
+                {
+                    for (int k=0;k<100;k++)
+                        f.unuseObject(new Object());
+                    filled.countDown();
+                    try
+                    {
+                        done.await();
+                    }
+                    catch (InterruptedException e)
+                    {
+                        // dann eben frueher beenden
+                    }
+                }
+            }));
+        }
+        for (Thread t:threads)
+            t.start();
+        
+        filled.await();
+        Assert.assertTrue(f.toString(),f.getSize() > 0);
+        Assert.assertTrue(f.toString(),f.getSize() <= 50);
+        
+        done.countDown();
+        for (Thread t:threads)
+            t.join();
+        
+        // Die Plaetze der Caches werden erst freigegeben, wenn die Caches
+        // eingesammelt wurden. Reserviert bleibt danach nur, was noch im
+        // gemeinsamen Pool liegt.
+        threads = null;
+        long timeout = System.currentTimeMillis() + 10000L;
+        while (f.getSize() != f.getFreeObjects().size() && System.currentTimeMillis() < timeout)
+        {
+            System.gc();
+            Thread.sleep(50L);
+        }
+        Assert.assertEquals(f.toString(),f.getFreeObjects().size(),f.getSize());
+    }
+}